@@ -108,7 +108,8 @@ public class ClassMapLister {
 		}
 		Model result = ModelFactory.createDefaultModel();
 		result.setNsPrefixes(mapping.getPrefixMapping());
-		FindQuery query = new FindQuery(Triple.ANY, inventoryBridges, limitPerClassMap, null);
+		FindQuery query = new FindQuery(Triple.ANY, inventoryBridges, limitPerClassMap, 
+				mapping.configuration().getQueryParallelism(), null);
 		result.getGraph().getBulkUpdateHandler().add(TripleQueryIter.create(query.iterator()));
 		return result;
 	}
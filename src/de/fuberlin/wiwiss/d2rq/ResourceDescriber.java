@@ -55,18 +55,21 @@ public class ResourceDescriber {
 		
 		FindQuery outgoing = new FindQuery(
 				Triple.create(node, Node.ANY, Node.ANY), 
-				mapping.compiledPropertyBridges(), limit, context);
+				mapping.compiledPropertyBridgeIndex(), limit, 
+				mapping.configuration().getQueryParallelism(), context);
 		qIter.add(outgoing.iterator());
 		
 		if (!onlyOutgoing) {
 			FindQuery incoming = new FindQuery(
 					Triple.create(Node.ANY, Node.ANY, node), 
-					mapping.compiledPropertyBridges(), limit, context);
+					mapping.compiledPropertyBridgeIndex(), limit, 
+					mapping.configuration().getQueryParallelism(), context);
 			qIter.add(incoming.iterator());
 	
 			FindQuery triples = new FindQuery(
 					Triple.create(Node.ANY, node, Node.ANY), 
-					mapping.compiledPropertyBridges(), limit, context);
+					mapping.compiledPropertyBridgeIndex(), limit, 
+					mapping.configuration().getQueryParallelism(), context);
 			qIter.add(triples.iterator());
 		}
 		result.getBulkUpdateHandler().add(TripleQueryIter.create(qIter));
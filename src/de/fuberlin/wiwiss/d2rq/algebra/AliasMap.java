@@ -7,6 +7,7 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * A map from table names to aliases. Can be applied to various objects and will 
@@ -146,6 +147,22 @@ public class AliasMap extends ColumnRenamer {
 		return new AliasMap(newAliases);
 	}
 	
+	/**
+	 * @param names Relation names that are still in use
+	 * @return A map with only those aliases whose alias names are in use
+	 */
+	public AliasMap retainAliases(Set<RelationName> names) {
+		if (names.containsAll(byAlias.keySet())) {
+			return this;
+		}
+		Collection<Alias> newAliases = new ArrayList<Alias>();
+		for (Alias alias: byAlias.values()) {
+			if (!names.contains(alias.alias())) continue;
+			newAliases.add(alias);
+		}
+		return new AliasMap(newAliases);
+	}
+	
 	public boolean equals(Object other) {
 		if (!(other instanceof AliasMap)) {
 			return false;
@@ -1,23 +1,40 @@
 package de.fuberlin.wiwiss.d2rq.algebra;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import com.hp.hpl.jena.sparql.core.Var;
+
+import de.fuberlin.wiwiss.d2rq.expr.Conjunction;
+import de.fuberlin.wiwiss.d2rq.expr.Equality;
+import de.fuberlin.wiwiss.d2rq.expr.Expression;
 import de.fuberlin.wiwiss.d2rq.nodes.NodeMaker;
+import de.fuberlin.wiwiss.d2rq.sql.ConnectedDB;
 
 
 /**
- * <p>Removes unnecessary joins from a {@link TripleRelation} in cases
+ * <p>Removes unnecessary joins from a {@link NodeRelation} in cases
  * where this is possible without affecting the result. This is an
  * optimization.</p>
- * 
- * <p>A join J from table T1 to table T2 with join condition 
+ *
+ * <p>Two aliases T1 and T2 of the same table can be merged if the
+ * join conditions and the relation's condition imply
+ * <em>T1.k_1 = T2.k_1 && T1.k_2 = T2.k_2 && ...</em> for all columns
+ * of a primary key or unique key of the table. T1 and T2 then stand
+ * for the same row, so all mentions of T2 can be replaced with T1.
+ * This turns the self-joins of a star-shaped basic graph pattern
+ * over one table into a scan of that table.</p>
+ *
+ * <p>A join J from table T1 to table T2 with join condition
  * <em>T1.c_1 = T2.c_1 && T1.c_2 = T2.c_2 && ...</em>
  * can be removed if these conditions hold:</p>
- * 
+ *
  * <ol>
  *   <li>The only join mentioning T2 is J.</li>
  *   <li>All columns of T2 that are selected or constrained or used in
@@ -26,92 +43,212 @@ import de.fuberlin.wiwiss.d2rq.nodes.NodeMaker;
  *     in <em>T2.c_n</em>, that is, there is a foreign key constraint
  *     on <em>T1.c_n</em>.</li>
  * </ol>
- * 
+ *
  * <p>In this case, J can be dropped, and all mentions of <em>T2.c_n</em>
  * can be replaced with <em>T1.c_n</em>.</p>
- * 
- * TODO: Currently this only is used for TripleRelations in FindQuery but it could be used for NodeRelations in SPARQL queries too
- * TODO: Prune unnecessary aliases after removing joins
- * 
+ *
+ * <p>In both cases, the columns that were compared must not be
+ * <code>NULL</code>, as they wouldn't have matched. Aliases of tables
+ * that are no longer mentioned are dropped.</p>
+ *
  * @author Richard Cyganiak (richard@cyganiak.de)
  */
 public class JoinOptimizer {
-	private TripleRelation relation;
-	
+	private NodeRelation relation;
+
 	/**
 	 * Constructs a new JoinOptimizer.
-	 * @param relation The TripleRelation to be optimized
+	 * @param relation The NodeRelation to be optimized
 	 */
-	public JoinOptimizer(TripleRelation relation) {
+	public JoinOptimizer(NodeRelation relation) {
 		this.relation = relation;
 	}
-	
-	public TripleRelation optimize() {
-		Map<Attribute,Attribute> replacedColumns = new HashMap<Attribute,Attribute>();
-		Set<Attribute> allRequiredColumns = relation.baseRelation().allKnownAttributes();
-		Set<Join> requiredJoins = new HashSet<Join>(this.relation.baseRelation().joinConditions());
-		for (Join join: relation.baseRelation().joinConditions()) {
-			if (!isRemovableJoin(join)) continue;
-						
-			boolean isRemovable1 = join.joinDirection() == Join.DIRECTION_RIGHT && isRemovableJoinSide(join.table1(), join, allRequiredColumns);
-			boolean isRemovable2 = join.joinDirection() == Join.DIRECTION_LEFT && isRemovableJoinSide(join.table2(), join, allRequiredColumns);
-
-			if (isRemovable1) {
-				requiredJoins.remove(join);
-				replacedColumns.putAll(replacementColumns(join.attributes1(), join));
+
+	public NodeRelation optimize() {
+		Relation base = this.relation.baseRelation();
+		if (base.database() == null || base instanceof LeftJoinRelation) {
+			return this.relation;
+		}
+		while (mergeSelfJoin() || removeJoin()) {
+			// Each change may allow further ones
+		}
+		base = this.relation.baseRelation();
+		AliasMap aliases = base.aliases().retainAliases(base.tables());
+		if (aliases != base.aliases()) {
+			replaceColumns(Collections.<Attribute,Attribute>emptyMap(), aliases);
+		}
+		return this.relation;
+	}
+
+	/**
+	 * Merges two aliases of a table that are joined on a unique key.
+	 * @return <tt>true</tt> if two aliases were merged
+	 */
+	private boolean mergeSelfJoin() {
+		Relation base = this.relation.baseRelation();
+		Map<Attribute,Set<Attribute>> equalColumns = equalColumns(base);
+		List<RelationName> tables = new ArrayList<RelationName>(base.tables());
+		Collections.sort(tables);
+		for (int i = 0; i < tables.size(); i++) {
+			RelationName kept = tables.get(i);
+			RelationName original = base.aliases().originalOf(kept);
+			for (int j = i + 1; j < tables.size(); j++) {
+				RelationName merged = tables.get(j);
+				if (!original.equals(base.aliases().originalOf(merged))) continue;
+				if (!isJoinedOnKey(original, kept, merged, equalColumns)) continue;
+				Map<Attribute,Attribute> replacedColumns = new HashMap<Attribute,Attribute>();
+				Set<RelationName> remainingTables = new HashSet<RelationName>(tables);
+				remainingTables.remove(merged);
+				for (Attribute column: base.allKnownAttributes()) {
+					if (!column.relationName().equals(merged)) continue;
+					replacedColumns.put(column, new Attribute(kept, column.attributeName()));
+				}
+				replaceColumns(replacedColumns, base.aliases().retainAliases(remainingTables));
+				return true;
 			}
-			if (isRemovable2) {
-				requiredJoins.remove(join);
-				replacedColumns.putAll(replacementColumns(join.attributes2(), join));
+		}
+		return false;
+	}
+
+	/**
+	 * Groups the columns that the join conditions and the top-level
+	 * equalities of the condition require to be equal.
+	 * @return A map from each column to the set of columns equal to it
+	 */
+	private Map<Attribute,Set<Attribute>> equalColumns(Relation base) {
+		Map<Attribute,Set<Attribute>> result = new HashMap<Attribute,Set<Attribute>>();
+		for (Join join: base.joinConditions()) {
+			for (Attribute side1: join.attributes1()) {
+				addEquality(result, side1, join.equalAttribute(side1));
 			}
 		}
-		if (replacedColumns.isEmpty()) {
-			return this.relation;
+		for (Expression expression: conjuncts(base.condition())) {
+			if (!(expression instanceof Equality)) continue;
+			if (!((Equality) expression).isAttributeEquality()) continue;
+			List<Attribute> columns = new ArrayList<Attribute>(expression.attributes());
+			if (columns.size() != 2) continue;
+			addEquality(result, columns.get(0), columns.get(1));
 		}
-		ColumnRenamer renamer = new ColumnRenamerMap(replacedColumns);
-		NodeMaker s = this.relation.nodeMaker(TripleRelation.SUBJECT);
-		NodeMaker p = this.relation.nodeMaker(TripleRelation.PREDICATE);
-		NodeMaker o = this.relation.nodeMaker(TripleRelation.OBJECT);
-		Set<ProjectionSpec> projections = new HashSet<ProjectionSpec>();
-		projections.addAll(s.projectionSpecs());
-		projections.addAll(p.projectionSpecs());
-		projections.addAll(o.projectionSpecs());
-		return new TripleRelation(
-				new RelationImpl(this.relation.baseRelation().database(),
-					this.relation.baseRelation().aliases(),
-					this.relation.baseRelation().condition(),
-					this.relation.baseRelation().softCondition(),
-					requiredJoins, projections,
-					this.relation.baseRelation().isUnique(),
-					this.relation.baseRelation().orderSpecs(),
-					this.relation.baseRelation().limit(),
-					this.relation.baseRelation().limitInverse()).renameColumns(renamer),
-				s.renameAttributes(renamer),
-				p.renameAttributes(renamer),
-				o.renameAttributes(renamer));
+		return result;
+	}
+
+	private void addEquality(Map<Attribute,Set<Attribute>> equalColumns,
+			Attribute column1, Attribute column2) {
+		Set<Attribute> result = equalSet(equalColumns, column1);
+		Set<Attribute> other = equalSet(equalColumns, column2);
+		if (result == other) return;
+		result.addAll(other);
+		for (Attribute column: other) {
+			equalColumns.put(column, result);
+		}
+	}
+
+	private Set<Attribute> equalSet(Map<Attribute,Set<Attribute>> equalColumns, Attribute column) {
+		if (!equalColumns.containsKey(column)) {
+			Set<Attribute> result = new HashSet<Attribute>();
+			result.add(column);
+			equalColumns.put(column, result);
+		}
+		return equalColumns.get(column);
+	}
+
+	/**
+	 * Checks if two aliases of a table have equal values in all columns
+	 * of a primary key or unique key of the table.
+	 */
+	private boolean isJoinedOnKey(RelationName original, RelationName alias1,
+			RelationName alias2, Map<Attribute,Set<Attribute>> equalColumns) {
+		for (List<String> key: keys(original)) {
+			boolean joined = true;
+			for (String column: key) {
+				Set<Attribute> equal = equalColumns.get(new Attribute(alias1, column));
+				if (equal == null || !equal.contains(new Attribute(alias2, column))) {
+					joined = false;
+					break;
+				}
+			}
+			if (joined) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Unique keys may contain <code>NULL</code>s, but rows with equal
+	 * non-<code>NULL</code> values are still the same row.
+	 * @return The column names of the primary key and unique keys of a table
+	 */
+	private List<List<String>> keys(RelationName table) {
+		ConnectedDB database = this.relation.baseRelation().database();
+		List<List<String>> result = new ArrayList<List<String>>();
+		List<Attribute> primaryKey = database.getPrimaryKeyColumns(table);
+		if (primaryKey != null && !primaryKey.isEmpty()) {
+			List<String> columns = new ArrayList<String>();
+			for (Attribute column: primaryKey) {
+				columns.add(column.attributeName());
+			}
+			result.add(columns);
+		}
+		Map<String,List<String>> uniqueKeys = database.getUniqueKeyColumns(table);
+		if (uniqueKeys != null) {
+			for (List<String> columns: uniqueKeys.values()) {
+				if (columns.isEmpty()) continue;
+				result.add(columns);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Removes a join to a table that is only there to check that the
+	 * values on the other side exist.
+	 * @return <tt>true</tt> if a join was removed
+	 */
+	private boolean removeJoin() {
+		Relation base = this.relation.baseRelation();
+		Set<Attribute> allRequiredColumns = base.allKnownAttributes();
+		for (Join join: base.joinConditions()) {
+			if (join.isSameTable() || !isRemovableJoin(join)) continue;
+			if (join.joinDirection() == Join.DIRECTION_RIGHT
+					&& isRemovableJoinSide(join.table1(), join, allRequiredColumns)) {
+				replaceColumns(replacementColumns(join.attributes1(), join), base.aliases());
+				return true;
+			}
+			if (join.joinDirection() == Join.DIRECTION_LEFT
+					&& isRemovableJoinSide(join.table2(), join, allRequiredColumns)) {
+				replaceColumns(replacementColumns(join.attributes2(), join), base.aliases());
+				return true;
+			}
+		}
+		return false;
 	}
 
 	private boolean isRemovableJoin(Join join) {
 		for (Attribute side1: join.attributes1()) {
 			Attribute side2 = join.equalAttribute(side1);
 			if (!relation.baseRelation().database().areCompatibleFormats(
-					relation.baseRelation().aliases().originalOf(side1), 
+					relation.baseRelation().aliases().originalOf(side1),
 					relation.baseRelation().aliases().originalOf(side2))) {
 				return false;
 			}
 		}
 		return true;
 	}
-	
+
 	/**
 	 * Checks if the table on one side of a join is irrelevant to the result.
 	 * @param tableName A table that is on one side of the join
 	 * @param join The join whose status we check
 	 * @param allRequiredColumns All columns that are involved in the query
-	 * @return <tt>true</tt> iff all columns from that table are covered by
-	 * 		the join's condition
+	 * @return <tt>true</tt> iff no other join mentions the table, and all
+	 * 		columns from that table are covered by the join's condition
 	 */
 	private boolean isRemovableJoinSide(RelationName tableName, Join join, Set<Attribute> allRequiredColumns) {
+		for (Join otherJoin: relation.baseRelation().joinConditions()) {
+			if (otherJoin.equals(join)) continue;
+			if (otherJoin.table1().equals(tableName) || otherJoin.table2().equals(tableName)) {
+				return false;	// another join needs the table
+			}
+		}
 		for (Attribute requiredColumn: allRequiredColumns) {
 			if (!requiredColumn.relationName().equals(tableName)) {
 				continue;		// requiredColumn is in another table
@@ -122,7 +259,7 @@ public class JoinOptimizer {
 		}
 		return true;	// all columns from our table are in the join condition
 	}
-	
+
 	private Map<Attribute,Attribute> replacementColumns(Collection<Attribute> originalColumns, Join removableJoin) {
 		Map<Attribute,Attribute> result = new HashMap<Attribute,Attribute>();
 		for (Attribute originalColumn: originalColumns) {
@@ -130,4 +267,60 @@ public class JoinOptimizer {
 		}
 		return result;
 	}
+
+	/**
+	 * Renames columns throughout the relation and its node makers.
+	 * Equalities and joins that now compare a column with itself are
+	 * replaced with <code>IS NOT NULL</code> conditions on the column.
+	 */
+	private void replaceColumns(Map<Attribute,Attribute> replacedColumns, AliasMap aliases) {
+		Relation base = this.relation.baseRelation();
+		ColumnRenamer renamer = new ColumnRenamerMap(replacedColumns);
+		Collection<Expression> conditions = new ArrayList<Expression>();
+		for (Expression expression: conjuncts(base.condition())) {
+			Expression renamed = renamer.applyTo(expression);
+			if (!renamed.isTrue()) {
+				conditions.add(renamed);
+				continue;
+			}
+			for (Attribute column: renamed.attributes()) {
+				conditions.add(column.notNullExpression(base.database(), base.aliases()));
+			}
+		}
+		Set<Join> joins = new HashSet<Join>();
+		for (Join join: base.joinConditions()) {
+			Join renamed = renamer.applyTo(join);
+			if (!isTrivial(renamed)) {
+				joins.add(renamed);
+				continue;
+			}
+			for (Attribute column: renamed.attributes1()) {
+				conditions.add(column.notNullExpression(base.database(), base.aliases()));
+			}
+		}
+		Relation optimized = new RelationImpl(base.database(), aliases,
+				Conjunction.create(conditions), renamer.applyTo(base.softCondition()),
+				joins, renamer.applyToProjectionSet(base.projections()),
+				base.isUnique(), renamer.applyTo(base.orderSpecs()),
+				base.limit(), base.limitInverse());
+		Map<Var,NodeMaker> nodeMakers = new HashMap<Var,NodeMaker>();
+		for (Var var: this.relation.variables()) {
+			nodeMakers.put(var, this.relation.nodeMaker(var).renameAttributes(renamer));
+		}
+		this.relation = new NodeRelation(optimized, nodeMakers);
+	}
+
+	private static boolean isTrivial(Join join) {
+		for (Attribute side1: join.attributes1()) {
+			if (!side1.equals(join.equalAttribute(side1))) return false;
+		}
+		return true;
+	}
+
+	private static Collection<Expression> conjuncts(Expression expression) {
+		if (expression instanceof Conjunction) {
+			return ((Conjunction) expression).expressions();
+		}
+		return Collections.singleton(expression);
+	}
 }
@@ -0,0 +1,173 @@
+package de.fuberlin.wiwiss.d2rq.algebra;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import de.fuberlin.wiwiss.d2rq.expr.Conjunction;
+import de.fuberlin.wiwiss.d2rq.expr.Equality;
+import de.fuberlin.wiwiss.d2rq.expr.Expression;
+import de.fuberlin.wiwiss.d2rq.sql.ConnectedDB;
+
+/**
+ * A left outer join of two {@link Relation}s from the same database.
+ * Every tuple of the left relation is retained. It is combined with
+ * all tuples of the right relation that satisfy the join condition,
+ * or with <code>NULL</code>s if there are none.
+ *
+ * Conditions, joins and order of the relation as a whole are those
+ * of the left relation; those of the right relation only decide
+ * which right tuples are joined, and go into the <code>ON</code>
+ * clause of the SQL statement. The left relation may itself be
+ * a LeftJoinRelation, which results in a chain of outer joins.
+ * The table names of the two sides must be distinct.
+ */
+public class LeftJoinRelation extends Relation {
+	private final Relation left;
+	private final Relation right;
+	private final Expression joinCondition;
+
+	/**
+	 * @param left The relation whose tuples are all retained
+	 * @param right The optional relation
+	 * @param joinCondition Expression over attributes of both sides
+	 * 		that must hold for a right tuple to be joined
+	 */
+	public LeftJoinRelation(Relation left, Relation right, Expression joinCondition) {
+		this.left = left;
+		this.right = right;
+		this.joinCondition = joinCondition;
+	}
+
+	public Relation left() {
+		return left;
+	}
+
+	public Relation right() {
+		return right;
+	}
+
+	public Expression joinCondition() {
+		return joinCondition;
+	}
+
+	/**
+	 * @return The complete condition for the <code>ON</code> clause,
+	 * 		including the right relation's own joins and conditions
+	 */
+	public Expression onCondition() {
+		Set<Expression> expressions = new HashSet<Expression>();
+		expressions.add(joinCondition);
+		expressions.add(right.condition());
+		expressions.add(right.softCondition());
+		for (Join join: right.joinConditions()) {
+			for (Attribute attribute1: join.attributes1()) {
+				Attribute attribute2 = join.equalAttribute(attribute1);
+				expressions.add(Equality.createAttributeEquality(attribute1, attribute2));
+			}
+		}
+		return Conjunction.create(expressions);
+	}
+
+	/**
+	 * @return <code>true</code> if all the given projections come from
+	 * 		a right side of this join, and thus may be <code>NULL</code>
+	 */
+	public boolean isOptional(Set<? extends ProjectionSpec> projections) {
+		if (projections.isEmpty()) return false;
+		Set<RelationName> optionalTables = optionalTables();
+		for (ProjectionSpec projection: projections) {
+			for (Attribute attribute: projection.requiredAttributes()) {
+				if (!optionalTables.contains(attribute.relationName())) return false;
+			}
+		}
+		return true;
+	}
+
+	private Set<RelationName> optionalTables() {
+		Set<RelationName> result = new HashSet<RelationName>(right.tables());
+		if (left instanceof LeftJoinRelation) {
+			result.addAll(((LeftJoinRelation) left).optionalTables());
+		}
+		return result;
+	}
+
+	public ConnectedDB database() {
+		return left.database();
+	}
+
+	public AliasMap aliases() {
+		return left.aliases().applyTo(right.aliases());
+	}
+
+	public Set<Join> joinConditions() {
+		return left.joinConditions();
+	}
+
+	public Expression condition() {
+		return left.condition();
+	}
+
+	public Expression softCondition() {
+		return left.softCondition();
+	}
+
+	public Set<ProjectionSpec> projections() {
+		Set<ProjectionSpec> result = new HashSet<ProjectionSpec>(left.projections());
+		result.addAll(right.projections());
+		return result;
+	}
+
+	public boolean isUnique() {
+		return left.isUnique() && right.isUnique();
+	}
+
+	public List<OrderSpec> orderSpecs() {
+		return left.orderSpecs();
+	}
+
+	public int limit() {
+		return left.limit();
+	}
+
+	public int limitInverse() {
+		return Relation.NO_LIMIT;
+	}
+
+	/**
+	 * Restricts the left relation. A condition on the right relation
+	 * would also have to admit unmatched left tuples, which can't be
+	 * expressed here, so it is the caller's duty to avoid them.
+	 */
+	public Relation select(Expression condition) {
+		if (condition.isTrue()) return this;
+		if (condition.isFalse()) return Relation.EMPTY;
+		return new LeftJoinRelation(left.select(condition), right, joinCondition);
+	}
+
+	public Relation renameColumns(ColumnRenamer renamer) {
+		return new LeftJoinRelation(left.renameColumns(renamer),
+				right.renameColumns(renamer), renamer.applyTo(joinCondition));
+	}
+
+	public Relation project(Set<? extends ProjectionSpec> projectionSpecs) {
+		return new LeftJoinRelation(left.project(projectionSpecs),
+				right.project(projectionSpecs), joinCondition);
+	}
+
+	public String toString() {
+		return "LeftJoinRelation(\n" + left + "\n    LEFT JOIN " + right +
+				"\n    ON " + joinCondition + ")";
+	}
+
+	public boolean equals(Object other) {
+		if (!(other instanceof LeftJoinRelation)) return false;
+		LeftJoinRelation otherJoin = (LeftJoinRelation) other;
+		return left.equals(otherJoin.left) && right.equals(otherJoin.right)
+				&& joinCondition.equals(otherJoin.joinCondition);
+	}
+
+	public int hashCode() {
+		return left.hashCode() ^ right.hashCode() ^ joinCondition.hashCode() ^ 835;
+	}
+}
@@ -85,4 +85,23 @@ public class MutableRelation implements RelationalOperators {
 	            Relation.combineLimits(relation.limit(), limit),
 				relation.limitInverse());
 	}
+
+	/**
+	 * @param isUnique <code>true</code> if the relation is known to
+	 * 		contain no duplicate rows; <code>false</code> if duplicates
+	 * 		have to be eliminated
+	 */
+	public Relation unique(boolean isUnique) {
+		return relation = new RelationImpl(
+				relation.database(),
+	            relation.aliases(),
+	            relation.condition(),
+	            relation.softCondition(),
+	            relation.joinConditions(),
+	            relation.projections(),
+	            isUnique,
+	            relation.orderSpecs(),
+	            relation.limit(),
+				relation.limitInverse());
+	}
 }
@@ -4,6 +4,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -14,9 +15,14 @@ import com.hp.hpl.jena.sparql.core.Var;
 import com.hp.hpl.jena.sparql.engine.binding.Binding;
 
 import de.fuberlin.wiwiss.d2rq.algebra.AliasMap.Alias;
+import de.fuberlin.wiwiss.d2rq.expr.Conjunction;
 import de.fuberlin.wiwiss.d2rq.expr.Expression;
 import de.fuberlin.wiwiss.d2rq.nodes.FixedNodeMaker;
 import de.fuberlin.wiwiss.d2rq.nodes.NodeMaker;
+import de.fuberlin.wiwiss.d2rq.nodes.TypedNodeMaker;
+import de.fuberlin.wiwiss.d2rq.values.BlankNodeID;
+import de.fuberlin.wiwiss.d2rq.values.Column;
+import de.fuberlin.wiwiss.d2rq.values.Pattern;
 
 /**
  * A {@link Relation} associated with a number of named {@link NodeMaker}s.
@@ -126,12 +132,94 @@ public class NodeRelation {
         return new NodeRelation(mutator.immutableSnapshot(), nodeMakers);
 	}
 	
+	public NodeRelation orderBy(List<OrderSpec> orderSpecs) {
+        MutableRelation mutator = new MutableRelation(baseRelation());
+        mutator.orderBy(orderSpecs);
+        return new NodeRelation(mutator.immutableSnapshot(), nodeMakers);
+	}
+	
 	public NodeRelation limit(int limit) {
         MutableRelation mutator = new MutableRelation(baseRelation());
         mutator.limit(limit);
         return new NodeRelation(mutator.immutableSnapshot(), nodeMakers);
 	}
 	
+	/**
+	 * Tells whether every row of the base relation produces a node for
+	 * a variable, so that rows can be counted or tested for existence
+	 * in SQL. This is the case for node makers that turn the values of
+	 * non-<code>NULL</code> columns into a node in all cases.
+	 */
+	public boolean producesNodeForEveryRow(Var variable) {
+		NodeMaker nodeMaker = nodeMaker(variable);
+		if (nodeMaker instanceof FixedNodeMaker) return true;
+		if (!(nodeMaker instanceof TypedNodeMaker)) return false;
+		if (!((TypedNodeMaker) nodeMaker).makesNodeForEveryValue()) return false;
+		Object valueMaker = ((TypedNodeMaker) nodeMaker).valueMaker();
+		return valueMaker instanceof Column || valueMaker instanceof Pattern
+				|| valueMaker instanceof BlankNodeID;
+	}
+	
+	/**
+	 * Tells whether every row of the base relation produces a binding,
+	 * that is, a node for each variable.
+	 * @see #producesNodeForEveryRow(Var)
+	 */
+	public boolean producesBindingForEveryRow() {
+		for (Var variable: variables()) {
+			if (!producesNodeForEveryRow(variable)) return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * Keeps only the given variables, and only the projections
+	 * required to produce their values.
+	 * @param variables Variables to keep; variables not in the relation are ignored
+	 */
+	public NodeRelation project(Set<Var> variables) {
+		return project(variables, Collections.<ProjectionSpec>emptySet());
+	}
+	
+	/**
+	 * Keeps only the given variables, and only the projections
+	 * required to produce their values, plus some others. Columns that
+	 * are no longer projected must still be non-<code>NULL</code>, as 
+	 * the variables would otherwise have been unbound.
+	 * @param variables Variables to keep; variables not in the relation are ignored
+	 * @param otherProjections Projections of the relation to keep as well
+	 */
+	public NodeRelation project(Set<Var> variables, 
+			Set<? extends ProjectionSpec> otherProjections) {
+		Map<Var,NodeMaker> projectedNodeMakers = new HashMap<Var,NodeMaker>();
+		Set<ProjectionSpec> projections = new HashSet<ProjectionSpec>(otherProjections);
+		for (Var variable: variables) {
+			if (!nodeMakers.containsKey(variable)) continue;
+			projectedNodeMakers.put(variable, nodeMakers.get(variable));
+			projections.addAll(nodeMakers.get(variable).projectionSpecs());
+		}
+		Set<Expression> notNull = new HashSet<Expression>();
+		for (ProjectionSpec projection: base.projections()) {
+			if (projections.contains(projection)) continue;
+			notNull.add(projection.notNullExpression(base.database(), base.aliases()));
+		}
+        MutableRelation mutator = new MutableRelation(baseRelation());
+        mutator.select(Conjunction.create(notNull));
+        mutator.project(projections);
+        return new NodeRelation(mutator.immutableSnapshot(), projectedNodeMakers);
+	}
+	
+	/**
+	 * @param isUnique <code>true</code> if the relation is known to
+	 * 		contain no duplicate rows; <code>false</code> if SQL should
+	 * 		eliminate duplicates
+	 */
+	public NodeRelation unique(boolean isUnique) {
+        MutableRelation mutator = new MutableRelation(baseRelation());
+        mutator.unique(isUnique);
+        return new NodeRelation(mutator.immutableSnapshot(), nodeMakers);
+	}
+	
 	public String toString() {
 		StringBuffer result = new StringBuffer("NodeRelation(");
 		result.append(base.toString());
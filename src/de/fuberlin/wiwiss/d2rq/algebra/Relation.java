@@ -1,9 +1,11 @@
 package de.fuberlin.wiwiss.d2rq.algebra;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import de.fuberlin.wiwiss.d2rq.expr.Expression;
@@ -159,6 +161,69 @@ public abstract class Relation implements RelationalOperators {
 		return results;
 	}
 	
+	/**
+	 * Tells if the projections include all columns of a primary key
+	 * or unique key of every table in the relation. If so, the
+	 * rows of the relation are unique, even if {@link #isUnique()}
+	 * doesn't say so.
+	 */
+	public boolean projectsUniqueKeys() {
+		return projectedUniqueKeys() != null;
+	}
+	
+	/**
+	 * Returns the columns of one primary key or unique key of every
+	 * table in the relation, if all of them are among the projections.
+	 * @return A set of projected columns that identify each row, or 
+	 * 		<code>null</code> if some table has no projected key
+	 */
+	public Set<Attribute> projectedUniqueKeys() {
+		if (database() == null) return null;
+		Set<Attribute> result = new HashSet<Attribute>();
+		for (RelationName table: tables()) {
+			Set<String> columns = new HashSet<String>();
+			for (ProjectionSpec projection: projections()) {
+				if (!(projection instanceof Attribute)) continue;
+				Attribute attribute = (Attribute) projection;
+				if (table.equals(attribute.relationName())) {
+					columns.add(attribute.attributeName());
+				}
+			}
+			if (columns.isEmpty()) return null;
+			List<String> key = projectedKey(aliases().originalOf(table), columns);
+			if (key == null) return null;
+			for (String column: key) {
+				result.add(new Attribute(table, column));
+			}
+		}
+		return result;
+	}
+	
+	private List<String> projectedKey(RelationName table, Set<String> columns) {
+		List<Attribute> primaryKey = database().getPrimaryKeyColumns(table);
+		if (primaryKey != null && !primaryKey.isEmpty()) {
+			List<String> keyColumns = new ArrayList<String>();
+			for (Attribute keyColumn: primaryKey) {
+				keyColumns.add(keyColumn.attributeName());
+			}
+			if (columns.containsAll(keyColumns)) return keyColumns;
+		}
+		Map<String,List<String>> uniqueKeys = database().getUniqueKeyColumns(table);
+		if (uniqueKeys == null) return null;
+		for (List<String> keyColumns: uniqueKeys.values()) {
+			if (keyColumns.isEmpty() || !columns.containsAll(keyColumns)) continue;
+			// Unique keys allow several NULLs
+			boolean nullable = false;
+			for (String column: keyColumns) {
+				if (database().isNullable(new Attribute(table, column))) {
+					nullable = true;
+				}
+			}
+			if (!nullable) return keyColumns;
+		}
+		return null;
+	}
+	
 	/**
 	 * @return <code>true</code> if this is the trivial table (one row, no columns)
 	 */
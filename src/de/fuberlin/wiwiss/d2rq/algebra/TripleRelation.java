@@ -31,7 +31,7 @@ public class TripleRelation extends NodeRelation {
 	
 	private static final TripleRelation EMPTY = fromNodeRelation(NodeRelation.empty(SPO));
 	
-	private static TripleRelation fromNodeRelation(NodeRelation relation) {
+	public static TripleRelation fromNodeRelation(NodeRelation relation) {
 		if (relation instanceof TripleRelation) return (TripleRelation) relation;
 		if (!relation.variables().equals(SPO)) {
 			throw new IllegalArgumentException(
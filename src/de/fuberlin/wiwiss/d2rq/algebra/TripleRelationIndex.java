@@ -0,0 +1,292 @@
+package de.fuberlin.wiwiss.d2rq.algebra;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.vocabulary.RDF;
+
+import de.fuberlin.wiwiss.d2rq.nodes.FixedNodeMaker;
+import de.fuberlin.wiwiss.d2rq.nodes.NodeMaker;
+import de.fuberlin.wiwiss.d2rq.nodes.TypedNodeMaker;
+import de.fuberlin.wiwiss.d2rq.values.Pattern;
+
+/**
+ * An index over a collection of {@link TripleRelation}s that finds
+ * the relations that may match a triple pattern without calling
+ * {@link TripleRelation#selectTriple(Triple)} on each of them.
+ *
+ * Relations are indexed by their constant predicate and, for
+ * <code>rdf:type</code>, by their constant object. The remaining
+ * candidates are checked against the kind of node (URI, blank node
+ * or literal) of a constant subject or object.
+ *
+ * A constant URI in subject or object position is looked up in a
+ * trie of the first literal parts of all URI patterns, and checked
+ * against their last literal parts. This rules out most relations
+ * whose URI pattern can't produce the URI before any regular
+ * expression is run.
+ *
+ * The index only rules out relations that are known not to match.
+ * Callers must still call <code>selectTriple</code> on the candidates.
+ * Candidates are returned in the order of the original collection.
+ */
+public class TripleRelationIndex {
+	private final static Node TYPE = RDF.Nodes.type;
+
+	private final static int URI = 1;
+	private final static int BLANK = 2;
+	private final static int LITERAL = 4;
+	private final static int ANY = URI | BLANK | LITERAL;
+
+	private final List<TripleRelation> relations;
+	private final int[] subjectKinds;
+	private final int[] objectKinds;
+	private final Map<Node,List<Integer>> byPredicate = new HashMap<Node,List<Integer>>();
+	private final Map<Node,List<Integer>> typesByObject = new HashMap<Node,List<Integer>>();
+	private final List<Integer> typesWithoutFixedObject = new ArrayList<Integer>();
+	private final List<Integer> withoutFixedPredicate = new ArrayList<Integer>();
+	private final URIPatterns subjectPatterns;
+	private final URIPatterns objectPatterns;
+
+	public TripleRelationIndex(Collection<TripleRelation> tripleRelations) {
+		relations = new ArrayList<TripleRelation>(tripleRelations);
+		subjectKinds = new int[relations.size()];
+		objectKinds = new int[relations.size()];
+		subjectPatterns = new URIPatterns(relations.size());
+		objectPatterns = new URIPatterns(relations.size());
+		for (int i = 0; i < relations.size(); i++) {
+			TripleRelation relation = relations.get(i);
+			subjectKinds[i] = kindOf(relation.nodeMaker(TripleRelation.SUBJECT));
+			objectKinds[i] = kindOf(relation.nodeMaker(TripleRelation.OBJECT));
+			subjectPatterns.add(i, relation.nodeMaker(TripleRelation.SUBJECT));
+			objectPatterns.add(i, relation.nodeMaker(TripleRelation.OBJECT));
+			Node predicate = fixedNode(relation.nodeMaker(TripleRelation.PREDICATE));
+			if (predicate == null) {
+				withoutFixedPredicate.add(i);
+				continue;
+			}
+			add(byPredicate, predicate, i);
+			if (!predicate.equals(TYPE)) continue;
+			Node object = fixedNode(relation.nodeMaker(TripleRelation.OBJECT));
+			if (object == null) {
+				typesWithoutFixedObject.add(i);
+			} else {
+				add(typesByObject, object, i);
+			}
+		}
+	}
+
+	/**
+	 * @return All relations, in their original order
+	 */
+	public List<TripleRelation> all() {
+		return Collections.unmodifiableList(relations);
+	}
+
+	public int size() {
+		return relations.size();
+	}
+
+	/**
+	 * Returns the relations that may match a triple pattern. Variables
+	 * and {@link Node#ANY} match anything.
+	 *
+	 * @return A list of candidates, in their original order
+	 */
+	public List<TripleRelation> candidates(Triple pattern) {
+		Node predicate = pattern.getPredicate();
+		Node object = pattern.getObject();
+		int subjectKind = kindOf(pattern.getSubject());
+		int objectKind = kindOf(object);
+		int[] positions;
+		if (!predicate.isConcrete()) {
+			positions = null;
+		} else if (predicate.equals(TYPE) && object.isConcrete()) {
+			positions = merge(get(typesByObject, object),
+					typesWithoutFixedObject, withoutFixedPredicate);
+		} else {
+			positions = merge(get(byPredicate, predicate),
+					withoutFixedPredicate, Collections.<Integer>emptyList());
+		}
+		positions = intersect(positions, subjectPatterns.candidates(pattern.getSubject()));
+		positions = intersect(positions, objectPatterns.candidates(object));
+		List<TripleRelation> results = new ArrayList<TripleRelation>();
+		int count = positions == null ? relations.size() : positions.length;
+		for (int j = 0; j < count; j++) {
+			int i = positions == null ? j : positions[j];
+			if ((subjectKinds[i] & subjectKind) == 0) continue;
+			if ((objectKinds[i] & objectKind) == 0) continue;
+			results.add(relations.get(i));
+		}
+		return results;
+	}
+
+	private static void add(Map<Node,List<Integer>> map, Node key, int position) {
+		List<Integer> positions = map.get(key);
+		if (positions == null) {
+			positions = new ArrayList<Integer>();
+			map.put(key, positions);
+		}
+		positions.add(position);
+	}
+
+	private static List<Integer> get(Map<Node,List<Integer>> map, Node key) {
+		List<Integer> positions = map.get(key);
+		return positions == null ? Collections.<Integer>emptyList() : positions;
+	}
+
+	private static int[] merge(List<Integer> first, List<Integer> second, List<Integer> third) {
+		int[] result = new int[first.size() + second.size() + third.size()];
+		int i = 0;
+		for (Integer position: first) result[i++] = position;
+		for (Integer position: second) result[i++] = position;
+		for (Integer position: third) result[i++] = position;
+		// Each position is in at most one of the lists
+		Arrays.sort(result);
+		return result;
+	}
+
+	/**
+	 * Intersects two sorted arrays of positions; <code>null</code>
+	 * stands for all positions.
+	 */
+	private static int[] intersect(int[] a, int[] b) {
+		if (a == null) return b;
+		if (b == null) return a;
+		int[] result = new int[Math.min(a.length, b.length)];
+		int i = 0, j = 0, size = 0;
+		while (i < a.length && j < b.length) {
+			if (a[i] < b[j]) {
+				i++;
+			} else if (a[i] > b[j]) {
+				j++;
+			} else {
+				result[size++] = a[i];
+				i++;
+				j++;
+			}
+		}
+		int[] trimmed = new int[size];
+		System.arraycopy(result, 0, trimmed, 0, size);
+		return trimmed;
+	}
+
+	private static Node fixedNode(NodeMaker nodeMaker) {
+		if (!(nodeMaker instanceof FixedNodeMaker)) return null;
+		return nodeMaker.makeNode(null);
+	}
+
+	private static int kindOf(NodeMaker nodeMaker) {
+		if (nodeMaker instanceof FixedNodeMaker) {
+			return kindOf(nodeMaker.makeNode(null));
+		}
+		if (nodeMaker instanceof TypedNodeMaker) {
+			TypedNodeMaker.NodeType type = ((TypedNodeMaker) nodeMaker).nodeType();
+			if (type == TypedNodeMaker.URI) return URI;
+			if (type == TypedNodeMaker.BLANK) return BLANK;
+			return LITERAL;
+		}
+		return ANY;
+	}
+
+	private static int kindOf(Node node) {
+		if (node.isURI()) return URI;
+		if (node.isBlank()) return BLANK;
+		if (node.isLiteral()) return LITERAL;
+		return ANY;
+	}
+
+	/**
+	 * The URI patterns in one position of the triple relations.
+	 * Relations that make URIs from a pattern are stored in a trie
+	 * under the pattern's first literal part; all other relations are
+	 * kept in a list, as any URI may match them.
+	 */
+	private static class URIPatterns {
+		private final Pattern[] patterns;
+		private final TrieNode root = new TrieNode();
+		private final List<Integer> others = new ArrayList<Integer>();
+
+		URIPatterns(int size) {
+			patterns = new Pattern[size];
+		}
+
+		void add(int position, NodeMaker nodeMaker) {
+			Pattern pattern = uriPattern(nodeMaker);
+			if (pattern == null) {
+				others.add(position);
+				return;
+			}
+			patterns[position] = pattern;
+			String prefix = pattern.firstLiteralPart();
+			TrieNode node = root;
+			for (int i = 0; i < prefix.length(); i++) {
+				node = node.child(prefix.charAt(i));
+			}
+			node.positions.add(position);
+		}
+
+		/**
+		 * @return Sorted positions of the relations that may produce
+		 * 		the node, or <code>null</code> if the node is not a URI
+		 */
+		int[] candidates(Node node) {
+			if (!node.isURI()) return null;
+			String uri = node.getURI();
+			List<Integer> matches = new ArrayList<Integer>();
+			TrieNode trieNode = root;
+			int i = 0;
+			while (trieNode != null) {
+				for (Integer position: trieNode.positions) {
+					if (canMatch(patterns[position], uri)) {
+						matches.add(position);
+					}
+				}
+				if (i == uri.length()) break;
+				trieNode = trieNode.children == null ? null : trieNode.children.get(uri.charAt(i));
+				i++;
+			}
+			return merge(matches, others, Collections.<Integer>emptyList());
+		}
+
+		private static boolean canMatch(Pattern pattern, String uri) {
+			if (pattern.attributes().isEmpty()) {
+				return uri.equals(pattern.firstLiteralPart());
+			}
+			return uri.length() >= pattern.firstLiteralPart().length() + pattern.lastLiteralPart().length()
+					&& uri.endsWith(pattern.lastLiteralPart());
+		}
+
+		private static Pattern uriPattern(NodeMaker nodeMaker) {
+			if (!(nodeMaker instanceof TypedNodeMaker)) return null;
+			TypedNodeMaker typed = (TypedNodeMaker) nodeMaker;
+			if (typed.nodeType() != TypedNodeMaker.URI) return null;
+			if (!(typed.valueMaker() instanceof Pattern)) return null;
+			return (Pattern) typed.valueMaker();
+		}
+	}
+
+	private static class TrieNode {
+		private Map<Character,TrieNode> children = null;
+		private final List<Integer> positions = new ArrayList<Integer>(1);
+
+		TrieNode child(char c) {
+			if (children == null) {
+				children = new HashMap<Character,TrieNode>();
+			}
+			TrieNode result = children.get(c);
+			if (result == null) {
+				result = new TrieNode();
+				children.put(c, result);
+			}
+			return result;
+		}
+	}
+}
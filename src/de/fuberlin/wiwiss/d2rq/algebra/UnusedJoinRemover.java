@@ -0,0 +1,149 @@
+package de.fuberlin.wiwiss.d2rq.algebra;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.hp.hpl.jena.sparql.core.Var;
+
+import de.fuberlin.wiwiss.d2rq.expr.Conjunction;
+import de.fuberlin.wiwiss.d2rq.expr.Expression;
+import de.fuberlin.wiwiss.d2rq.nodes.NodeMaker;
+import de.fuberlin.wiwiss.d2rq.sql.ConnectedDB;
+
+/**
+ * <p>Removes joins from a {@link NodeRelation} that only serve to
+ * reach a table that is no longer needed, typically because the
+ * variables taking their values from it have been projected away.</p>
+ *
+ * <p>A join J from table T1 to table T2 with join condition
+ * <em>T1.c_1 = T2.c_1 && T1.c_2 = T2.c_2 && ...</em>
+ * can be removed if these conditions hold:</p>
+ *
+ * <ol>
+ *   <li>The only join mentioning T2 is J.</li>
+ *   <li>All columns of T2 that are selected or constrained or used in
+ *     an expression occur in J's join condition.</li>
+ *   <li>The database has a foreign key constraint from the
+ *     <em>T1.c_n</em> to the <em>T2.c_n</em>. Every row of T1 then
+ *     matches exactly one row of T2, unless one of the <em>T1.c_n</em>
+ *     is <code>NULL</code>.</li>
+ * </ol>
+ *
+ * <p>In this case, J can be dropped, all mentions of <em>T2.c_n</em>
+ * can be replaced with <em>T1.c_n</em>, and the <em>T1.c_n</em>
+ * must not be <code>NULL</code>.</p>
+ *
+ * <p>Unlike {@link JoinOptimizer}, this relies on the foreign keys
+ * reported by the database rather than on the direction of
+ * d2rq:join conditions.</p>
+ */
+public class UnusedJoinRemover {
+	private NodeRelation table;
+
+	/**
+	 * @param table The NodeRelation to be optimized
+	 */
+	public UnusedJoinRemover(NodeRelation table) {
+		this.table = table;
+	}
+
+	public NodeRelation optimize() {
+		if (table.baseRelation().database() == null) return table;
+		boolean changed = true;
+		while (changed) {
+			changed = false;
+			for (Join join: table.baseRelation().joinConditions()) {
+				if (join.isSameTable()) continue;
+				if (isRemovableJoinSide(join.table2(), join.table1(), join)) {
+					removeJoin(join, join.table2());
+					changed = true;
+					break;
+				}
+				if (isRemovableJoinSide(join.table1(), join.table2(), join)) {
+					removeJoin(join, join.table1());
+					changed = true;
+					break;
+				}
+			}
+		}
+		return table;
+	}
+
+	/**
+	 * Checks if a table on one side of a join is irrelevant to the result.
+	 * @param removed The table we'd like to remove
+	 * @param kept The table on the other side of the join
+	 * @param join The join whose status we check
+	 */
+	private boolean isRemovableJoinSide(RelationName removed, RelationName kept, Join join) {
+		Relation relation = table.baseRelation();
+		for (Join otherJoin: relation.joinConditions()) {
+			if (otherJoin.equals(join)) continue;
+			if (otherJoin.table1().equals(removed) || otherJoin.table2().equals(removed)) {
+				return false;
+			}
+		}
+		for (Attribute requiredColumn: relation.allKnownAttributes()) {
+			if (!requiredColumn.relationName().equals(removed)) continue;
+			if (!join.containsColumn(requiredColumn)) return false;
+		}
+		return hasForeignKey(kept, removed, join);
+	}
+
+	private boolean hasForeignKey(RelationName from, RelationName to, Join join) {
+		ConnectedDB database = table.baseRelation().database();
+		AliasMap aliases = table.baseRelation().aliases();
+		List<Attribute> fromColumns = from.equals(join.table1())
+				? join.attributes1() : join.attributes2();
+		Map<String,String> columnPairs = new HashMap<String,String>();
+		for (Attribute fromColumn: fromColumns) {
+			Attribute toColumn = join.equalAttribute(fromColumn);
+			if (!database.areCompatibleFormats(
+					aliases.originalOf(fromColumn), aliases.originalOf(toColumn))) {
+				return false;
+			}
+			columnPairs.put(fromColumn.attributeName(), toColumn.attributeName());
+		}
+		List<Join> foreignKeys = database.getForeignKeys(aliases.originalOf(from));
+		if (foreignKeys == null) return false;
+		for (Join foreignKey: foreignKeys) {
+			if (!foreignKey.table2().equals(aliases.originalOf(to))) continue;
+			Map<String,String> keyPairs = new HashMap<String,String>();
+			for (Attribute keyColumn: foreignKey.attributes1()) {
+				keyPairs.put(keyColumn.attributeName(),
+						foreignKey.equalAttribute(keyColumn).attributeName());
+			}
+			if (keyPairs.equals(columnPairs)) return true;
+		}
+		return false;
+	}
+
+	private void removeJoin(Join join, RelationName removed) {
+		Relation relation = table.baseRelation();
+		List<Attribute> removedColumns = removed.equals(join.table1())
+				? join.attributes1() : join.attributes2();
+		Map<Attribute,Attribute> replacedColumns = new HashMap<Attribute,Attribute>();
+		Set<Expression> notNull = new HashSet<Expression>();
+		for (Attribute removedColumn: removedColumns) {
+			Attribute keptColumn = join.equalAttribute(removedColumn);
+			replacedColumns.put(removedColumn, keptColumn);
+			notNull.add(keptColumn.notNullExpression(relation.database(), relation.aliases()));
+		}
+		Set<Join> requiredJoins = new HashSet<Join>(relation.joinConditions());
+		requiredJoins.remove(join);
+		ColumnRenamer renamer = new ColumnRenamerMap(replacedColumns);
+		Relation optimized = new RelationImpl(relation.database(), relation.aliases(),
+				relation.condition().and(Conjunction.create(notNull)),
+				relation.softCondition(), requiredJoins, relation.projections(),
+				relation.isUnique(), relation.orderSpecs(),
+				relation.limit(), relation.limitInverse()).renameColumns(renamer);
+		Map<Var,NodeMaker> nodeMakers = new HashMap<Var,NodeMaker>();
+		for (Var var: table.variables()) {
+			nodeMakers.put(var, table.nodeMaker(var).renameAttributes(renamer));
+		}
+		table = new NodeRelation(optimized, nodeMakers);
+	}
+}
@@ -33,6 +33,20 @@ public class VariableConstraints {
 	private final Map<Var,AliasMap> nodeRelationAliases = new HashMap<Var,AliasMap>();
 	private final Set<ProjectionSpec> projections = new HashSet<ProjectionSpec>();
 
+	public VariableConstraints() {}
+	
+	/**
+	 * Creates a copy that can be extended without affecting the original.
+	 */
+	public VariableConstraints(VariableConstraints original) {
+		for (Var var: original.nodeSets.keySet()) {
+			nodeSets.put(var, ((NodeSetConstraintBuilder) original.nodeSets.get(var)).copy());
+		}
+		nodeMakers.putAll(original.nodeMakers);
+		nodeRelationAliases.putAll(original.nodeRelationAliases);
+		projections.addAll(original.projections);
+	}
+	
 	public void add(Var var, NodeMaker nodeMaker, AliasMap aliases) {
 		if (!nodeMakers.containsKey(var)) {
 			nodeMakers.put(var, nodeMaker);
@@ -66,6 +80,22 @@ public class VariableConstraints {
 		return !constraint().isFalse();
 	}
 
+	/**
+	 * Like {@link #satisfiable()}, but only looks at some variables.
+	 * Useful if the constraints on the other variables are already
+	 * known to be satisfiable.
+	 * @return <tt>false</tt> if two node makers for one of the variables cannot produce the same node
+	 */
+	public boolean satisfiable(Collection<Var> variables) {
+		for (Var var: variables) {
+			NodeSetConstraintBuilder nodeSet = (NodeSetConstraintBuilder) nodeSets.get(var);
+			if (nodeSet != null && nodeSet.constraint().isFalse()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
 	/**
 	 * @return An expression that, if it holds for a result row, will ensure that
 	 * 		any two identically-named node makers produce the same node
@@ -1,14 +1,17 @@
 package de.fuberlin.wiwiss.d2rq.dbschema;
 
+import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
 
 import org.apache.log4j.Logger;
@@ -217,6 +220,105 @@ public class DatabaseSchemaInspector {
 		}
 	}	
 	
+	/**
+	 * Returns the database's estimates of a table's size. The row count
+	 * and distinct values come from the JDBC index information; if the
+	 * driver doesn't report a row count, the vendor's catalog is asked.
+	 * Statistics are optional, so errors are logged and result in
+	 * unknown values.
+	 * @param tableName Name of a table
+	 * @return Statistics, possibly with unknown row count
+	 */
+	public TableStatistics tableStatistics(RelationName tableName) {
+		long rowCount = TableStatistics.UNKNOWN;
+		Map<String,List<String>> indexColumns = new HashMap<String,List<String>>();
+		Map<String,Long> indexCardinalities = new HashMap<String,Long>();
+		Set<String> uniqueIndexes = new HashSet<String>();
+		try {
+			// Approximate data is good enough and avoids an ANALYZE on Oracle
+			ResultSet rs = this.schema.getIndexInfo(
+					null, schemaName(tableName), tableName(tableName), false, true);
+			try {
+				while (rs.next()) {
+					long cardinality = rs.getLong("CARDINALITY");
+					if (rs.wasNull() || cardinality <= 0) {
+						cardinality = TableStatistics.UNKNOWN;
+					}
+					if (rs.getShort("TYPE") == DatabaseMetaData.tableIndexStatistic) {
+						rowCount = cardinality;
+						continue;
+					}
+					String index = rs.getString("INDEX_NAME");
+					if (index == null) continue;
+					if (!indexColumns.containsKey(index)) {
+						indexColumns.put(index, new ArrayList<String>());
+					}
+					indexColumns.get(index).add(rs.getString("COLUMN_NAME"));
+					indexCardinalities.put(index, cardinality);
+					if (!rs.getBoolean("NON_UNIQUE")) {
+						uniqueIndexes.add(index);
+					}
+				}
+			} finally {
+				rs.close();
+			}
+		} catch (SQLException ex) {
+			log.warn("Unable to read index statistics of " + tableName + ": " + ex.getMessage());
+		}
+		if (rowCount == TableStatistics.UNKNOWN) {
+			rowCount = estimatedRowCount(tableName);
+		}
+		Map<String,Long> distinctValues = new HashMap<String,Long>();
+		for (String index: indexColumns.keySet()) {
+			List<String> columns = indexColumns.get(index);
+			if (columns.size() > 1) continue;
+			long distinct = uniqueIndexes.contains(index) 
+					? rowCount : indexCardinalities.get(index);
+			if (distinct != TableStatistics.UNKNOWN) {
+				distinctValues.put(columns.get(0), distinct);
+			}
+		}
+		return new TableStatistics(rowCount, distinctValues);
+	}
+	
+	/**
+	 * Asks the vendor's catalog for a row count. The query may fail, for
+	 * example for lack of privileges; without auto-commit, that aborts the
+	 * transaction on some databases, so it is rolled back.
+	 */
+	private long estimatedRowCount(RelationName tableName) {
+		String query = db.vendor().getRowCountEstimateQuery(tableName);
+		if (query == null) return TableStatistics.UNKNOWN;
+		Connection connection = db.borrowConnection();
+		try {
+			Statement stmt = connection.createStatement();
+			try {
+				db.vendor().beforeQuery(connection);
+				ResultSet rs = stmt.executeQuery(query);
+				db.vendor().afterQuery(connection);
+				if (!rs.next()) return TableStatistics.UNKNOWN;
+				long result = rs.getLong(1);
+				return (rs.wasNull() || result < 0) ? TableStatistics.UNKNOWN : result;
+			} finally {
+				db.vendor().beforeClose(connection);
+				stmt.close();
+				db.vendor().afterClose(connection);
+			}
+		} catch (SQLException ex) {
+			log.warn("Unable to read row count estimate of " + tableName + ": " + ex.getMessage());
+			try {
+				if (!connection.getAutoCommit()) {
+					connection.rollback();
+				}
+			} catch (SQLException ex2) {
+				log.warn("Unable to roll back after row count estimate: " + ex2.getMessage());
+			}
+			return TableStatistics.UNKNOWN;
+		} finally {
+			db.releaseConnection(connection);
+		}
+	}
+	
 	/**
 	 * Returns a list of imported or exported (foreign) keys for a table.
 	 * @param tableName The table we are interested in
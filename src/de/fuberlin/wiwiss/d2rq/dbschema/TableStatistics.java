@@ -0,0 +1,53 @@
+package de.fuberlin.wiwiss.d2rq.dbschema;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * What the database knows about the size of a table: the number of
+ * rows and the number of distinct values of indexed columns. All
+ * numbers are the database's own estimates and may be out of date.
+ */
+public class TableStatistics {
+	public final static long UNKNOWN = -1;
+	
+	public final static TableStatistics NONE = new TableStatistics(UNKNOWN, 
+			Collections.<String,Long>emptyMap());
+	
+	private final long rowCount;
+	private final Map<String,Long> distinctValues;
+	
+	/**
+	 * @param rowCount Estimated number of rows, or {@link #UNKNOWN}
+	 * @param distinctValues Estimated number of distinct values by column name
+	 */
+	public TableStatistics(long rowCount, Map<String,Long> distinctValues) {
+		this.rowCount = rowCount;
+		this.distinctValues = distinctValues;
+	}
+	
+	public boolean isKnown() {
+		return rowCount != UNKNOWN;
+	}
+	
+	/**
+	 * @return Estimated number of rows, or {@link #UNKNOWN}
+	 */
+	public long rowCount() {
+		return rowCount;
+	}
+	
+	/**
+	 * @return Estimated number of distinct values in the column, or {@link #UNKNOWN}
+	 */
+	public long distinctValues(String columnName) {
+		Long result = distinctValues.get(columnName);
+		return result == null ? UNKNOWN : result;
+	}
+	
+	public String toString() {
+		if (!isKnown()) return "TableStatistics(unknown)";
+		return "TableStatistics(" + rowCount + " rows, distinct values " + 
+				distinctValues + ")";
+	}
+}
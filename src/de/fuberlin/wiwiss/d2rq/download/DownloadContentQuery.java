@@ -50,6 +50,7 @@ public class DownloadContentQuery {
 	private InputStream resultStream = null;
 	private String mediaType = null;
 	private ConnectedDB db = null;
+	private Connection connection = null;
 	
 	/**
 	 * @param downloadMap The download map to be queried
@@ -76,15 +77,15 @@ public class DownloadContentQuery {
 	
 	public void close() {
 		try {
-			if (this.db != null) {
-				this.db.vendor().beforeClose(db.connection());
+			if (this.connection != null) {
+				this.db.vendor().beforeClose(connection);
 			}
 			if (this.statement != null) {
 				this.statement.close();
 				this.statement = null;
 			}
-			if (this.db != null) {
-				this.db.vendor().afterClose(db.connection());
+			if (this.connection != null) {
+				this.db.vendor().afterClose(connection);
 			}
 			if (this.resultSet != null) {
 				this.resultSet.close();
@@ -92,6 +93,11 @@ public class DownloadContentQuery {
 			}
 		} catch (SQLException ex) {
 			throw new D2RQException(ex);
+		} finally {
+			if (this.connection != null) {
+				this.db.releaseConnection(connection);
+				this.connection = null;
+			}
 		}
 	}
 	
@@ -110,7 +116,8 @@ public class DownloadContentQuery {
 		String sql = builder.getSQLStatement();
 		int contentColumn = builder.getColumnSpecs().indexOf(downloadMap.getContentDownloadColumn()) + 1;
     	db = filteredRelation.database();
-		Connection conn = db.connection();
+		Connection conn = db.borrowConnection();
+		connection = conn;
 		try {
 			statement = conn.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
 			log.debug(sql);
@@ -139,6 +146,7 @@ public class DownloadContentQuery {
 			mediaType = mediaTypeValueMaker.makeValue(
 					ResultRowMap.fromResultSet(resultSet, builder.getColumnSpecs(), db));
 		} catch (SQLException ex) {
+			close();
 			throw new D2RQException(ex);
 		}
 	}
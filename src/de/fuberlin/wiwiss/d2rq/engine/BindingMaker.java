@@ -1,6 +1,8 @@
 package de.fuberlin.wiwiss.d2rq.engine;
 
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 
@@ -10,9 +12,11 @@ import com.hp.hpl.jena.sparql.engine.binding.Binding;
 import com.hp.hpl.jena.sparql.engine.binding.BindingHashMap;
 import com.hp.hpl.jena.sparql.engine.binding.BindingMap;
 
+import de.fuberlin.wiwiss.d2rq.algebra.LeftJoinRelation;
 import de.fuberlin.wiwiss.d2rq.algebra.NodeRelation;
 import de.fuberlin.wiwiss.d2rq.algebra.ProjectionSpec;
 import de.fuberlin.wiwiss.d2rq.nodes.NodeMaker;
+import de.fuberlin.wiwiss.d2rq.sql.ProjectionSlot;
 import de.fuberlin.wiwiss.d2rq.sql.ResultRow;
 
 /**
@@ -22,36 +26,58 @@ import de.fuberlin.wiwiss.d2rq.sql.ResultRow;
  */
 public class BindingMaker {
 
+	/**
+	 * Variables whose values come only from the right side of a
+	 * {@link LeftJoinRelation} are optional: they are left unbound
+	 * if their node maker produces no node.
+	 */
 	public static BindingMaker createFor(NodeRelation relation) {
 		Map<Var, NodeMaker> vars = new HashMap<Var,NodeMaker>();
+		Set<Var> optionalVars = new HashSet<Var>();
 		for (Var variable: relation.variables()) {
-			vars.put(variable, relation.nodeMaker(variable));
+			NodeMaker nodeMaker = relation.nodeMaker(variable);
+			vars.put(variable, nodeMaker);
+			if (relation.baseRelation() instanceof LeftJoinRelation 
+					&& ((LeftJoinRelation) relation.baseRelation()).isOptional(
+							nodeMaker.projectionSpecs())) {
+				optionalVars.add(variable);
+			}
 		}
-		return new BindingMaker(vars, null);
+		return new BindingMaker(vars, optionalVars, null);
 	}
 
 	private final Map<Var,NodeMaker> nodeMakers;
+	private final Set<Var> optionalVars;
 	private final ProjectionSpec condition;
+	private final ProjectionSlot conditionSlot;
 
 	public BindingMaker(Map<Var,NodeMaker> nodeMakers, ProjectionSpec condition) {
+		this(nodeMakers, Collections.<Var>emptySet(), condition);
+	}
+
+	public BindingMaker(Map<Var,NodeMaker> nodeMakers, Set<Var> optionalVars, 
+			ProjectionSpec condition) {
 		this.nodeMakers = nodeMakers;
+		this.optionalVars = optionalVars;
 		this.condition = condition;
+		this.conditionSlot = condition == null ? null : new ProjectionSlot(condition);
 	}
 
 	public Binding makeBinding(ResultRow row) {
 		if (condition != null) {
-			String value = row.get(condition);
+			String value = conditionSlot.get(row);
 			if (value == null || "false".equals(value) || "0".equals(value) || "".equals(value)) {
 				return null;
 			}
 		}
 		BindingMap result = new BindingHashMap();
-		for (Var variableName: nodeMakers.keySet()) {
-			Node node = nodeMakers.get(variableName).makeNode(row);
+		for (Map.Entry<Var,NodeMaker> entry: nodeMakers.entrySet()) {
+			Node node = entry.getValue().makeNode(row);
 			if (node == null) {
+				if (optionalVars.contains(entry.getKey())) continue;
 				return null;
 			}
-			result.add(Var.alloc(variableName), node);
+			result.add(entry.getKey(), node);
 		}
 		return result;
 	}
@@ -87,6 +113,6 @@ public class BindingMaker {
 	}
 	
 	public BindingMaker makeConditional(ProjectionSpec condition) {
-		return new BindingMaker(nodeMakers, condition);
+		return new BindingMaker(nodeMakers, optionalVars, condition);
 	}
 }
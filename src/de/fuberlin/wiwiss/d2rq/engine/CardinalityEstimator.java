@@ -0,0 +1,120 @@
+package de.fuberlin.wiwiss.d2rq.engine;
+
+import java.util.Collection;
+import java.util.Collections;
+
+import de.fuberlin.wiwiss.d2rq.algebra.Attribute;
+import de.fuberlin.wiwiss.d2rq.algebra.Join;
+import de.fuberlin.wiwiss.d2rq.algebra.NodeRelation;
+import de.fuberlin.wiwiss.d2rq.algebra.Relation;
+import de.fuberlin.wiwiss.d2rq.algebra.RelationName;
+import de.fuberlin.wiwiss.d2rq.dbschema.TableStatistics;
+import de.fuberlin.wiwiss.d2rq.expr.Conjunction;
+import de.fuberlin.wiwiss.d2rq.expr.Equality;
+import de.fuberlin.wiwiss.d2rq.expr.Expression;
+
+/**
+ * Estimates the number of rows of a {@link Relation} from the
+ * {@link TableStatistics} of its tables. Uses the textbook
+ * assumptions that values are evenly distributed and conditions
+ * are independent:
+ *
+ * <ul>
+ * <li>A comparison of a column with a constant keeps one row per
+ *   distinct value of the column, or a tenth of the rows if the
+ *   number of distinct values is unknown.</li>
+ * <li>Other conditions keep half of the rows.</li>
+ * <li>A join divides the product of the row counts by the larger
+ *   number of distinct values of the joined columns; a column with
+ *   unknown distinct values is assumed to be a key.</li>
+ * </ul>
+ *
+ * The result is only good for comparing relations with each other.
+ * It is {@link #UNKNOWN} if the row count of any table is unknown.
+ */
+public class CardinalityEstimator {
+	public final static double UNKNOWN = -1;
+
+	private final static double EQUALITY_SELECTIVITY = 0.1;
+	private final static double CONDITION_SELECTIVITY = 0.5;
+
+	/**
+	 * @return Estimated number of rows, or {@link #UNKNOWN}
+	 */
+	public static double estimate(Relation relation) {
+		if (relation.equals(Relation.EMPTY) || relation.condition().isFalse()) return 0;
+		if (relation.isTrivial()) return 1;
+		if (relation.database() == null) return UNKNOWN;
+		CardinalityEstimator estimator = new CardinalityEstimator(relation);
+		return estimator.estimate();
+	}
+
+	/**
+	 * @return Estimated total number of rows of all relations, or {@link #UNKNOWN}
+	 */
+	public static double estimate(Collection<? extends NodeRelation> relations) {
+		double result = 0;
+		for (NodeRelation relation: relations) {
+			double rows = estimate(relation.baseRelation());
+			if (rows == UNKNOWN) return UNKNOWN;
+			result += rows;
+		}
+		return result;
+	}
+
+	private final Relation relation;
+
+	private CardinalityEstimator(Relation relation) {
+		this.relation = relation;
+	}
+
+	private double estimate() {
+		double rows = 1;
+		for (RelationName table: relation.tables()) {
+			TableStatistics statistics = statistics(table);
+			if (!statistics.isKnown()) return UNKNOWN;
+			rows *= statistics.rowCount();
+		}
+		for (Expression condition: conjuncts(relation.condition())) {
+			if (condition.isTrue()) continue;
+			if (condition instanceof Equality && condition.attributes().size() == 1) {
+				long distinct = distinctValues(condition.attributes().iterator().next());
+				rows *= (distinct > 0) ? 1.0 / distinct : EQUALITY_SELECTIVITY;
+			} else {
+				rows *= CONDITION_SELECTIVITY;
+			}
+		}
+		for (Join join: relation.joinConditions()) {
+			long distinct = Math.max(
+					distinctOrRowCount(join.attributes1().get(0)),
+					distinctOrRowCount(join.attributes2().get(0)));
+			rows /= Math.max(distinct, 1);
+		}
+		if (relation.limit() != Relation.NO_LIMIT) {
+			rows = Math.min(rows, relation.limit());
+		}
+		return rows;
+	}
+
+	private TableStatistics statistics(RelationName table) {
+		return relation.database().getTableStatistics(
+				relation.aliases().originalOf(table));
+	}
+
+	private long distinctValues(Attribute column) {
+		return statistics(column.relationName()).distinctValues(column.attributeName());
+	}
+
+	private long distinctOrRowCount(Attribute column) {
+		long result = distinctValues(column);
+		return result == TableStatistics.UNKNOWN
+				? statistics(column.relationName()).rowCount() : result;
+	}
+
+	private static Collection<Expression> conjuncts(Expression expression) {
+		if (expression instanceof Conjunction) {
+			return ((Conjunction) expression).expressions();
+		}
+		return Collections.singleton(expression);
+	}
+}
@@ -3,14 +3,23 @@ package de.fuberlin.wiwiss.d2rq.engine;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.hp.hpl.jena.graph.Node;
 import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.sparql.core.Var;
 
 import de.fuberlin.wiwiss.d2rq.algebra.NodeRelation;
 import de.fuberlin.wiwiss.d2rq.algebra.Relation;
 import de.fuberlin.wiwiss.d2rq.algebra.TripleRelation;
+import de.fuberlin.wiwiss.d2rq.algebra.TripleRelationIndex;
+import de.fuberlin.wiwiss.d2rq.nodes.NodeMaker;
+import de.fuberlin.wiwiss.d2rq.nodes.NodeSetConstraintBuilder;
 
 /**
  * Matches a BGP against a collection of {@link TripleRelation}s
@@ -20,23 +29,68 @@ import de.fuberlin.wiwiss.d2rq.algebra.TripleRelation;
  * get from matching the BGP against the materialized triples
  * produced by the triple relations.
  * 
+ * Before the candidates of the triple patterns are combined,
+ * candidates that can't produce the same node as any candidate
+ * of another triple pattern on a shared variable are dropped.
+ * Combinations are checked while they are built up, so that
+ * a combination with contradictory node makers is not extended
+ * any further. If the number of combinations still exceeds a
+ * ceiling, the translation is abandoned.
+ * 
  * @author Richard Cyganiak (richard@cyganiak.de)
  */
 public class GraphPatternTranslator {
+	private static final Log log = LogFactory.getLog(GraphPatternTranslator.class);
+
+	/**
+	 * Value for the maximum number of combinations that means there is no maximum
+	 */
+	public static final int NO_LIMIT = 0;
+
+	/**
+	 * Two candidate lists are not compared with each other if this would
+	 * take more comparisons, as pruning would cost more than it saves
+	 */
+	private static final long PRUNING_BUDGET = 100000;
+
+	private static final Var[] TRIPLE_POSITIONS = 
+		{TripleRelation.SUBJECT, TripleRelation.PREDICATE, TripleRelation.OBJECT};
+
 	private final List<Triple> triplePatterns;
-	private final Collection<TripleRelation> tripleRelations;
+	private final TripleRelationIndex tripleRelations;
 	boolean useAllOptimizations;
+	private final int maxJoinCombinations;
 	
 	public GraphPatternTranslator(List<Triple> triplePatterns, 
 			Collection<TripleRelation> tripleRelations, boolean useAllOptimizations) 
+	{
+		this(triplePatterns, new TripleRelationIndex(tripleRelations), useAllOptimizations);
+	}
+
+	public GraphPatternTranslator(List<Triple> triplePatterns, 
+			TripleRelationIndex tripleRelations, boolean useAllOptimizations) 
+	{
+		this(triplePatterns, tripleRelations, useAllOptimizations, NO_LIMIT);
+	}
+
+	/**
+	 * @param maxJoinCombinations Maximum number of combinations of
+	 * 		candidates that are built up while joining the triple patterns,
+	 * 		or {@link #NO_LIMIT}
+	 */
+	public GraphPatternTranslator(List<Triple> triplePatterns, 
+			TripleRelationIndex tripleRelations, boolean useAllOptimizations,
+			int maxJoinCombinations) 
 	{
 		this.triplePatterns = triplePatterns;
 		this.tripleRelations = tripleRelations;
 		this.useAllOptimizations = useAllOptimizations;
+		this.maxJoinCombinations = maxJoinCombinations;
 	}
 
 	/**
-	 * @return A list of {@link NodeRelation}s
+	 * @return A list of {@link NodeRelation}s, or <code>null</code> if
+	 * 		joining the triple patterns takes more combinations than allowed
 	 */
 	public List<NodeRelation> translate() {
 		if (triplePatterns.isEmpty()) {
@@ -58,13 +112,25 @@ public class GraphPatternTranslator {
 			// inc value
 			index++;
 		}
-		Collections.sort(candidateLists);
+		if (!pruneCandidateLists(candidateLists)) {
+			return Collections.<NodeRelation>emptyList();
+		}
+		sortCandidateLists(candidateLists);
 		List<TripleRelationJoiner> joiners = new ArrayList<TripleRelationJoiner>();
 		joiners.add(TripleRelationJoiner.create(this.useAllOptimizations));
 		for (CandidateList candidates: candidateLists) {
 			List<TripleRelationJoiner> nextJoiners = new ArrayList<TripleRelationJoiner>();
 			for (TripleRelationJoiner joiner: joiners) {
 				nextJoiners.addAll(joiner.joinAll(candidates.triplePattern(), candidates.all()));
+				if (maxJoinCombinations != NO_LIMIT && nextJoiners.size() > maxJoinCombinations) {
+					log.warn("Giving up on translating BGP after " + nextJoiners.size() + 
+							" combinations of property bridges (d2rq:maxJoinCombinations is " + 
+							maxJoinCombinations + "): " + triplePatterns);
+					return null;
+				}
+			}
+			if (nextJoiners.isEmpty()) {
+				return Collections.<NodeRelation>emptyList();
 			}
 			joiners = nextJoiners;
 		}
@@ -77,12 +143,67 @@ public class GraphPatternTranslator {
 		return results;
 	}
 
+	/**
+	 * Drops candidates that can't produce the same node as any
+	 * candidate of another triple pattern on a shared variable.
+	 * Repeats until no more candidates can be dropped, as dropping
+	 * a candidate may leave candidates of other triple patterns
+	 * without a partner.
+	 * 
+	 * @return <code>false</code> if a triple pattern has no candidates left
+	 */
+	private boolean pruneCandidateLists(List<CandidateList> candidateLists) {
+		if (candidateLists.size() < 2) return true;
+		boolean changed = true;
+		while (changed) {
+			changed = false;
+			for (CandidateList candidates: candidateLists) {
+				for (CandidateList others: candidateLists) {
+					if (candidates == others || !candidates.prune(others)) continue;
+					if (candidates.isEmpty()) return false;
+					changed = true;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Puts the most selective triple patterns first. If the database
+	 * has statistics for all candidates, the triple patterns are
+	 * ordered by the estimated number of rows of their candidates;
+	 * otherwise, by the number of candidates.
+	 */
+	private void sortCandidateLists(List<CandidateList> candidateLists) {
+		for (CandidateList candidates: candidateLists) {
+			if (candidates.estimatedRows() == CardinalityEstimator.UNKNOWN) {
+				Collections.sort(candidateLists);
+				return;
+			}
+		}
+		Collections.sort(candidateLists, new Comparator<CandidateList>() {
+			public int compare(CandidateList list1, CandidateList list2) {
+				if (list1.estimatedRows() < list2.estimatedRows()) return -1;
+				if (list1.estimatedRows() > list2.estimatedRows()) return 1;
+				return list1.compareTo(list2);
+			}
+		});
+		if (log.isDebugEnabled()) {
+			for (CandidateList candidates: candidateLists) {
+				log.debug("Estimated rows: " + candidates.estimatedRows() + 
+						" for " + candidates.triplePattern());
+			}
+		}
+	}
+
 	private class CandidateList implements Comparable<CandidateList> {
 		private final Triple triplePattern;
-		private final List<NodeRelation> candidates;
+		private List<NodeRelation> candidates;
+		private final double estimatedRows;
 		CandidateList(Triple triplePattern, boolean useIndex, int index) {
 			this.triplePattern = triplePattern;
 			List<NodeRelation> matches = findMatchingTripleRelations(triplePattern);
+			estimatedRows = CardinalityEstimator.estimate(matches);
 			if (useIndex) {
 				candidates = prefixTripleRelations(matches, index);
 			} else {
@@ -98,6 +219,46 @@ public class GraphPatternTranslator {
 		List<NodeRelation> all() {
 			return candidates;
 		}
+		double estimatedRows() {
+			return estimatedRows;
+		}
+		/**
+		 * Drops the candidates that are not compatible with any
+		 * candidate of another list on the variables shared with it.
+		 * @return <code>true</code> if any candidates were dropped
+		 */
+		boolean prune(CandidateList others) {
+			List<Var> shared = new ArrayList<Var>();
+			for (Var var: variables(triplePattern)) {
+				if (variables(others.triplePattern).contains(var) && !shared.contains(var)) {
+					shared.add(var);
+				}
+			}
+			if (shared.isEmpty()) return false;
+			if ((long) candidates.size() * others.candidates.size() > PRUNING_BUDGET) return false;
+			List<NodeRelation> kept = new ArrayList<NodeRelation>(candidates.size());
+			for (NodeRelation candidate: candidates) {
+				for (NodeRelation other: others.candidates) {
+					if (compatible(candidate, other, others.triplePattern, shared)) {
+						kept.add(candidate);
+						break;
+					}
+				}
+			}
+			if (kept.size() == candidates.size()) return false;
+			candidates = kept;
+			return true;
+		}
+		private boolean compatible(NodeRelation candidate, NodeRelation other, 
+				Triple otherPattern, List<Var> variables) {
+			for (Var var: variables) {
+				NodeSetConstraintBuilder nodeSet = new NodeSetConstraintBuilder();
+				nodeMaker(candidate, triplePattern, var).describeSelf(nodeSet);
+				nodeMaker(other, otherPattern, var).describeSelf(nodeSet);
+				if (nodeSet.isEmpty()) return false;
+			}
+			return true;
+		}
 		public int compareTo(CandidateList other) {
 			CandidateList otherList = (CandidateList) other;
 			if (candidates.size() < otherList.candidates.size()) {
@@ -110,7 +271,7 @@ public class GraphPatternTranslator {
 		}
 		private List<NodeRelation> findMatchingTripleRelations(Triple triplePattern) {
 			List<NodeRelation> results = new ArrayList<NodeRelation>();
-			for (TripleRelation tripleRelation: tripleRelations) {
+			for (TripleRelation tripleRelation: tripleRelations.candidates(triplePattern)) {
 				TripleRelation selected = tripleRelation.selectTriple(triplePattern);
 				if (selected == null) continue;
 				results.add(selected);
@@ -128,4 +289,31 @@ public class GraphPatternTranslator {
 			return "CandidateList(" + triplePattern + ")[" + candidates + "]";
 		}
 	}
+
+	private static List<Var> variables(Triple triplePattern) {
+		List<Var> result = new ArrayList<Var>(3);
+		for (Node node: positions(triplePattern)) {
+			if (node.isVariable()) result.add(Var.alloc(node));
+		}
+		return result;
+	}
+
+	/**
+	 * @return The node maker of a candidate for the first position of
+	 * 		the triple pattern that holds the variable
+	 */
+	private static NodeMaker nodeMaker(NodeRelation candidate, Triple triplePattern, Var var) {
+		Node[] positions = positions(triplePattern);
+		for (int i = 0; i < positions.length; i++) {
+			if (positions[i].isVariable() && var.equals(Var.alloc(positions[i]))) {
+				return candidate.nodeMaker(TRIPLE_POSITIONS[i]);
+			}
+		}
+		throw new IllegalArgumentException(var + " not in " + triplePattern);
+	}
+
+	private static Node[] positions(Triple triplePattern) {
+		return new Node[] {triplePattern.getSubject(), 
+				triplePattern.getPredicate(), triplePattern.getObject()};
+	}
 }
@@ -0,0 +1,298 @@
+package de.fuberlin.wiwiss.d2rq.engine;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.sparql.core.Var;
+import com.hp.hpl.jena.sparql.core.VarExprList;
+import com.hp.hpl.jena.sparql.engine.binding.Binding;
+import com.hp.hpl.jena.sparql.engine.binding.BindingHashMap;
+import com.hp.hpl.jena.sparql.engine.binding.BindingMap;
+import com.hp.hpl.jena.sparql.expr.ExprAggregator;
+import com.hp.hpl.jena.sparql.expr.NodeValue;
+import com.hp.hpl.jena.sparql.expr.aggregate.AggAvg;
+import com.hp.hpl.jena.sparql.expr.aggregate.AggCount;
+import com.hp.hpl.jena.sparql.expr.aggregate.AggCountVar;
+import com.hp.hpl.jena.sparql.expr.aggregate.AggCountVarDistinct;
+import com.hp.hpl.jena.sparql.expr.aggregate.AggMax;
+import com.hp.hpl.jena.sparql.expr.aggregate.AggMin;
+import com.hp.hpl.jena.sparql.expr.aggregate.AggSum;
+import com.hp.hpl.jena.sparql.expr.aggregate.Aggregator;
+import com.hp.hpl.jena.sparql.expr.nodevalue.XSDFuncOp;
+
+import de.fuberlin.wiwiss.d2rq.algebra.Attribute;
+import de.fuberlin.wiwiss.d2rq.algebra.NodeRelation;
+import de.fuberlin.wiwiss.d2rq.algebra.ProjectionSpec;
+import de.fuberlin.wiwiss.d2rq.algebra.Relation;
+import de.fuberlin.wiwiss.d2rq.expr.Aggregate;
+import de.fuberlin.wiwiss.d2rq.expr.AttributeExpr;
+import de.fuberlin.wiwiss.d2rq.nodes.FixedNodeMaker;
+import de.fuberlin.wiwiss.d2rq.nodes.NodeMaker;
+import de.fuberlin.wiwiss.d2rq.nodes.TypedNodeMaker;
+import de.fuberlin.wiwiss.d2rq.sql.AggregateStatementBuilder;
+import de.fuberlin.wiwiss.d2rq.sql.ProjectionSlot;
+import de.fuberlin.wiwiss.d2rq.sql.ResultRow;
+import de.fuberlin.wiwiss.d2rq.sql.ResultRowMap;
+import de.fuberlin.wiwiss.d2rq.sql.types.DataType;
+import de.fuberlin.wiwiss.d2rq.sql.types.SQLApproximateNumeric;
+import de.fuberlin.wiwiss.d2rq.sql.types.SQLExactNumeric;
+import de.fuberlin.wiwiss.d2rq.values.Column;
+
+/**
+ * Produces the {@link Binding}s of a SPARQL GROUP BY with aggregates
+ * from the result rows of an {@link AggregateStatementBuilder}
+ * statement, one row per group.
+ *
+ * SPARQL aggregates are translated into SQL aggregates only where
+ * both give the same result. This requires that every row of the
+ * underlying relation produces a solution, and that the values of
+ * SUM, AVG, MIN and MAX come straight from numeric columns
+ * whose SQL type fits the RDF datatype of the values.
+ */
+public class GroupBindingMaker {
+	private enum NumericType { INTEGER, DECIMAL, DOUBLE, FLOAT }
+
+	/**
+	 * @return A GroupBindingMaker for grouping the solutions of a single
+	 * 		SQL query, or <code>null</code> if the grouping or one of the
+	 * 		aggregates can't be done in SQL
+	 */
+	public static GroupBindingMaker create(NodeRelation table,
+			VarExprList groupVars, List<ExprAggregator> aggregators) {
+		for (Var var: table.variables()) {
+			if (!table.producesNodeForEveryRow(var)) return null;
+		}
+		Map<Var,NodeMaker> groupNodeMakers = new LinkedHashMap<Var,NodeMaker>();
+		List<Attribute> groupBy = new ArrayList<Attribute>();
+		for (Var var: groupVars.getVars()) {
+			if (groupVars.hasExpr(var)) return null;
+			if (!table.variables().contains(var)) {
+				// Unbound in all solutions, doesn't split the groups
+				continue;
+			}
+			NodeMaker nodeMaker = table.nodeMaker(var);
+			for (ProjectionSpec projection: nodeMaker.projectionSpecs()) {
+				if (!(projection instanceof Attribute)) return null;
+				groupBy.add((Attribute) projection);
+			}
+			groupNodeMakers.put(var, nodeMaker);
+		}
+		List<AggregateValue> values = new ArrayList<AggregateValue>();
+		for (ExprAggregator aggregator: aggregators) {
+			AggregateValue value = createValue(table, aggregator);
+			if (value == null) return null;
+			values.add(value);
+		}
+		return new GroupBindingMaker(groupNodeMakers, groupBy,
+				!groupVars.isEmpty(), values);
+	}
+
+	private static AggregateValue createValue(NodeRelation table, ExprAggregator expr) {
+		Aggregator aggregator = expr.getAggregator();
+		if (aggregator instanceof AggCount) {
+			return new AggregateValue(expr, null, null, null);
+		}
+		if (aggregator.getExpr() == null || !aggregator.getExpr().isVariable()
+				|| !table.variables().contains(aggregator.getExpr().asVar())) {
+			return null;
+		}
+		NodeMaker nodeMaker = table.nodeMaker(aggregator.getExpr().asVar());
+		if (aggregator instanceof AggCountVar) {
+			// The variable is bound in all solutions
+			return new AggregateValue(expr, null, null, null);
+		}
+		if (aggregator instanceof AggCountVarDistinct) {
+			Set<ProjectionSpec> projections = nodeMaker.projectionSpecs();
+			if (nodeMaker instanceof FixedNodeMaker || projections.size() != 1
+					|| !(projections.iterator().next() instanceof Attribute)) {
+				return null;
+			}
+			Attribute column = (Attribute) projections.iterator().next();
+			if (!columnType(table.baseRelation(), column).supportsDistinct()) return null;
+			return new AggregateValue(expr,
+					Aggregate.count(new AttributeExpr(column), true), null, null);
+		}
+		if (!(aggregator instanceof AggMin) && !(aggregator instanceof AggMax)
+				&& !(aggregator instanceof AggSum) && !(aggregator instanceof AggAvg)) {
+			return null;
+		}
+		if (!(nodeMaker instanceof TypedNodeMaker)
+				|| !(((TypedNodeMaker) nodeMaker).valueMaker() instanceof Column)) {
+			return null;
+		}
+		Attribute column = (Attribute) nodeMaker.projectionSpecs().iterator().next();
+		NumericType type = numericType((TypedNodeMaker) nodeMaker,
+				columnType(table.baseRelation(), column));
+		if (type == null) return null;
+		AttributeExpr columnExpr = new AttributeExpr(column);
+		if (aggregator instanceof AggMin) {
+			return new AggregateValue(expr, Aggregate.min(columnExpr), nodeMaker, type);
+		}
+		if (aggregator instanceof AggMax) {
+			return new AggregateValue(expr, Aggregate.max(columnExpr), nodeMaker, type);
+		}
+		if (type == NumericType.FLOAT) {
+			// SQL would add up in double precision
+			return null;
+		}
+		return new AggregateValue(expr, Aggregate.sum(columnExpr), null, type);
+	}
+
+	private static DataType columnType(Relation relation, Attribute column) {
+		return relation.database().columnType(relation.aliases().originalOf(column));
+	}
+
+	/**
+	 * @return The numeric type of the literals produced by the node
+	 * 		maker, or <code>null</code> if they are not numeric or if
+	 * 		the SQL column doesn't hold numbers of that type
+	 */
+	private static NumericType numericType(TypedNodeMaker nodeMaker, DataType columnType) {
+		if (!(columnType instanceof SQLExactNumeric)
+				&& !(columnType instanceof SQLApproximateNumeric)) {
+			return null;
+		}
+		Node sample = nodeMaker.nodeType().makeNode("0");
+		if (sample == null || !sample.isLiteral()) return null;
+		NodeValue value = NodeValue.makeNode(sample);
+		if (value.isInteger()) {
+			return "xsd:integer".equals(columnType.rdfType()) ? NumericType.INTEGER : null;
+		}
+		if (value.isDecimal()) {
+			return columnType instanceof SQLExactNumeric ? NumericType.DECIMAL : null;
+		}
+		if (value.isDouble()) return NumericType.DOUBLE;
+		if (value.isFloat()) return NumericType.FLOAT;
+		return null;
+	}
+
+	private final Map<Var,NodeMaker> groupNodeMakers;
+	private final List<Attribute> groupBy;
+	private final boolean isGrouped;
+	private final List<AggregateValue> values;
+	private final ProjectionSlot countSlot =
+		new ProjectionSlot(AggregateStatementBuilder.columnSpec(Aggregate.COUNT_ALL));
+
+	private GroupBindingMaker(Map<Var,NodeMaker> groupNodeMakers,
+			List<Attribute> groupBy, boolean isGrouped, List<AggregateValue> values) {
+		this.groupNodeMakers = groupNodeMakers;
+		this.groupBy = groupBy;
+		this.isGrouped = isGrouped;
+		this.values = values;
+	}
+
+	/**
+	 * @return The attributes for the SQL GROUP BY clause
+	 */
+	public List<Attribute> groupBy() {
+		return groupBy;
+	}
+
+	/**
+	 * @return The SQL aggregates needed to make the bindings;
+	 * 		<code>COUNT(*)</code> is always the first
+	 */
+	public List<Aggregate> aggregates() {
+		List<Aggregate> result = new ArrayList<Aggregate>();
+		result.add(Aggregate.COUNT_ALL);
+		for (AggregateValue value: values) {
+			if (value.sqlAggregate != null && !result.contains(value.sqlAggregate)) {
+				result.add(value.sqlAggregate);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @param row A result row, or {@link ResultRow#NO_ATTRIBUTES}
+	 * 		if there are no solutions to group
+	 * @return A binding, or <code>null</code> for the empty group
+	 * 		of an empty solution sequence with GROUP BY
+	 */
+	public Binding makeBinding(ResultRow row) {
+		String countValue = countSlot.get(row);
+		long count = countValue == null ? 0 : Long.parseLong(countValue);
+		if (count == 0 && isGrouped) {
+			return null;
+		}
+		BindingMap result = new BindingHashMap();
+		for (Map.Entry<Var,NodeMaker> entry: groupNodeMakers.entrySet()) {
+			Node node = entry.getValue().makeNode(row);
+			if (node == null) return null;
+			result.add(entry.getKey(), node);
+		}
+		for (AggregateValue value: values) {
+			Node node = count == 0
+					? value.expr.getAggregator().getValueEmpty()
+					: value.makeNode(row, count);
+			if (node == null) continue;
+			result.add(value.expr.getVar(), node);
+		}
+		return result;
+	}
+
+	public String toString() {
+		return "GroupBindingMaker(" + groupNodeMakers + ", " + aggregates() + ")";
+	}
+
+	/**
+	 * Computes the value of one SPARQL aggregate from a result row.
+	 */
+	private static class AggregateValue {
+		private final ExprAggregator expr;
+		private final Aggregate sqlAggregate;
+		private final ProjectionSlot slot;
+		private final NodeMaker nodeMaker;
+		private final NumericType type;
+
+		/**
+		 * @param expr The SPARQL aggregate
+		 * @param sqlAggregate The SQL aggregate, or <code>null</code>
+		 * 		if the value is the number of rows
+		 * @param nodeMaker Node maker for the SQL aggregate's value,
+		 * 		or <code>null</code> if the value is a number
+		 * @param type The type of the numbers being aggregated
+		 */
+		AggregateValue(ExprAggregator expr, Aggregate sqlAggregate,
+				NodeMaker nodeMaker, NumericType type) {
+			this.expr = expr;
+			this.sqlAggregate = sqlAggregate;
+			this.slot = sqlAggregate == null ? null :
+				new ProjectionSlot(AggregateStatementBuilder.columnSpec(sqlAggregate));
+			this.nodeMaker = nodeMaker;
+			this.type = type;
+		}
+
+		Node makeNode(ResultRow row, long count) {
+			if (sqlAggregate == null) {
+				return NodeValue.makeInteger(count).asNode();
+			}
+			String value = slot.get(row);
+			if (value == null) return null;
+			if (nodeMaker != null) {
+				Attribute column = (Attribute) nodeMaker.projectionSpecs().iterator().next();
+				return nodeMaker.makeNode(new ResultRowMap(
+						Collections.<ProjectionSpec,String>singletonMap(column, value)));
+			}
+			if (type == null) {
+				return NodeValue.makeInteger(value).asNode();
+			}
+			NodeValue sum;
+			switch (type) {
+			case INTEGER: sum = NodeValue.makeInteger(new BigDecimal(value).toBigIntegerExact()); break;
+			case DECIMAL: sum = NodeValue.makeDecimal(new BigDecimal(value)); break;
+			default: sum = NodeValue.makeDouble(Double.parseDouble(value));
+			}
+			if (expr.getAggregator() instanceof AggAvg) {
+				return XSDFuncOp.divide(sum, NodeValue.makeInteger(count)).asNode();
+			}
+			return sum.asNode();
+		}
+	}
+}
@@ -0,0 +1,141 @@
+package de.fuberlin.wiwiss.d2rq.engine;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.openjena.atlas.io.IndentedWriter;
+
+import com.hp.hpl.jena.sparql.algebra.Op;
+import com.hp.hpl.jena.sparql.algebra.op.OpExt;
+import com.hp.hpl.jena.sparql.algebra.op.OpGroup;
+import com.hp.hpl.jena.sparql.engine.ExecutionContext;
+import com.hp.hpl.jena.sparql.engine.QueryIterator;
+import com.hp.hpl.jena.sparql.engine.binding.Binding;
+import com.hp.hpl.jena.sparql.engine.iterator.QueryIter;
+import com.hp.hpl.jena.sparql.engine.iterator.QueryIterConcat;
+import com.hp.hpl.jena.sparql.engine.iterator.QueryIterNullIterator;
+import com.hp.hpl.jena.sparql.engine.iterator.QueryIterSingleton;
+import com.hp.hpl.jena.sparql.engine.main.QC;
+import com.hp.hpl.jena.sparql.serializer.SerializationContext;
+import com.hp.hpl.jena.sparql.util.NodeIsomorphismMap;
+
+import de.fuberlin.wiwiss.d2rq.algebra.Relation;
+import de.fuberlin.wiwiss.d2rq.sql.AggregateStatementBuilder;
+import de.fuberlin.wiwiss.d2rq.sql.ResultRow;
+import de.fuberlin.wiwiss.d2rq.sql.SQLIterator;
+
+/**
+ * An {@link OpGroup} (SPARQL GROUP BY and aggregates) over a single
+ * SQL query that has been translated into an SQL query with
+ * <code>GROUP BY</code> and aggregate functions, returning one
+ * row per group.
+ *
+ * This is only used if the input is a single binding that binds no
+ * variables, as is the case for the top level of a query. Otherwise,
+ * evaluation falls back to grouping in memory.
+ */
+public class OpGroupTableSQL extends OpExt {
+	private final static Log log = LogFactory.getLog(OpGroupTableSQL.class);
+
+	private final OpGroup original;
+	private final Relation relation;
+	private final GroupBindingMaker bindingMaker;
+
+	/**
+	 * @param original The OpGroup over an OpUnionTableSQL
+	 * @param relation The relation whose solutions are grouped
+	 * @param bindingMaker Describes the grouping and aggregates
+	 */
+	public OpGroupTableSQL(OpGroup original, Relation relation,
+			GroupBindingMaker bindingMaker) {
+		super("sqlgroup");
+		this.original = original;
+		this.relation = relation;
+		this.bindingMaker = bindingMaker;
+	}
+
+	@Override
+	public QueryIterator eval(QueryIterator input, ExecutionContext execCxt) {
+		if (!input.hasNext()) {
+			return input;
+		}
+		Binding first = input.nextBinding();
+		if (!input.hasNext() && first.isEmpty()) {
+			input.close();
+			if (relation.condition().isFalse()) {
+				Binding binding = bindingMaker.makeBinding(ResultRow.NO_ATTRIBUTES);
+				return binding == null ? new QueryIterNullIterator(execCxt)
+						: QueryIterSingleton.create(binding, execCxt);
+			}
+			return new QueryIterGroupSQL(execCxt);
+		}
+		QueryIterConcat all = new QueryIterConcat(execCxt);
+		all.add(QueryIterSingleton.create(first, execCxt));
+		all.add(input);
+		return QC.execute(original, all, execCxt);
+	}
+
+	@Override
+	public Op effectiveOp() {
+		return original;
+	}
+
+	@Override
+	public void outputArgs(IndentedWriter out, SerializationContext sCxt) {
+		out.println(bindingMaker);
+		out.println(relation);
+	}
+
+	@Override
+	public int hashCode() {
+		return 72345647 ^ original.hashCode();
+	}
+
+	@Override
+	public boolean equalTo(Op other, NodeIsomorphismMap labelMap) {
+		if (!(other instanceof OpGroupTableSQL)) return false;
+		return ((OpGroupTableSQL) other).original.equalTo(original, labelMap);
+	}
+
+	/**
+	 * Runs the aggregating SQL query and turns each row into a binding.
+	 */
+	private class QueryIterGroupSQL extends QueryIter {
+		private final SQLIterator wrapped;
+		private Binding next = null;
+
+		QueryIterGroupSQL(ExecutionContext execCxt) {
+			super(execCxt);
+			AggregateStatementBuilder builder = new AggregateStatementBuilder(
+					relation, bindingMaker.groupBy(), bindingMaker.aggregates());
+			wrapped = new SQLIterator(builder.getSQLStatement(),
+					builder.getColumnSpecs(), relation.database());
+		}
+
+		@Override
+		protected boolean hasNextBinding() {
+			while (next == null && wrapped.hasNext()) {
+				next = bindingMaker.makeBinding(wrapped.next());
+			}
+			return next != null;
+		}
+
+		@Override
+		protected Binding moveToNextBinding() {
+			Binding result = next;
+			next = null;
+			return result;
+		}
+
+		@Override
+		protected void closeIterator() {
+			log.debug("closeIterator() called ...");
+			wrapped.close();
+		}
+
+		@Override
+		protected void requestCancel() {
+			log.info("requestCancel() called ...");
+			wrapped.cancel();
+		}
+	}
+}
@@ -0,0 +1,92 @@
+package de.fuberlin.wiwiss.d2rq.engine;
+
+import java.util.Set;
+
+import org.openjena.atlas.io.IndentedWriter;
+
+import com.hp.hpl.jena.sparql.algebra.Op;
+import com.hp.hpl.jena.sparql.algebra.op.OpExt;
+import com.hp.hpl.jena.sparql.algebra.op.OpLeftJoin;
+import com.hp.hpl.jena.sparql.core.Var;
+import com.hp.hpl.jena.sparql.engine.ExecutionContext;
+import com.hp.hpl.jena.sparql.engine.QueryIterator;
+import com.hp.hpl.jena.sparql.engine.binding.Binding;
+import com.hp.hpl.jena.sparql.engine.iterator.QueryIterRepeatApply;
+import com.hp.hpl.jena.sparql.engine.main.QC;
+import com.hp.hpl.jena.sparql.serializer.SerializationContext;
+import com.hp.hpl.jena.sparql.util.NodeIsomorphismMap;
+
+import de.fuberlin.wiwiss.d2rq.algebra.LeftJoinRelation;
+import de.fuberlin.wiwiss.d2rq.algebra.NodeRelation;
+
+/**
+ * An {@link OpLeftJoin} (SPARQL OPTIONAL) that has been translated
+ * into a single SQL query over a {@link LeftJoinRelation}.
+ *
+ * An input binding that binds one of the optional variables can't
+ * be pushed into the SQL query, because the variable may also
+ * be unbound in a matching solution. Such bindings are evaluated
+ * using the original OpLeftJoin.
+ */
+public class OpLeftJoinTableSQL extends OpExt {
+	private final OpLeftJoin original;
+	private final NodeRelation table;
+	private final Set<Var> optionalVars;
+
+	/**
+	 * @param original The OpLeftJoin being replaced
+	 * @param table A NodeRelation over a {@link LeftJoinRelation}
+	 * @param optionalVars The variables that may be unbound
+	 */
+	public OpLeftJoinTableSQL(OpLeftJoin original, NodeRelation table,
+			Set<Var> optionalVars) {
+		super("sqlleftjoin");
+		this.original = original;
+		this.table = table;
+		this.optionalVars = optionalVars;
+	}
+
+	public NodeRelation table() {
+		return table;
+	}
+
+	public Set<Var> optionalVars() {
+		return optionalVars;
+	}
+
+	@Override
+	public QueryIterator eval(QueryIterator input, final ExecutionContext execCxt) {
+		return new QueryIterRepeatApply(input, execCxt) {
+			@Override
+			protected QueryIterator nextStage(Binding binding) {
+				for (Var var: optionalVars) {
+					if (binding.contains(var)) {
+						return QC.execute(original, binding, execCxt);
+					}
+				}
+				return QueryIterTableSQL.create(table.extendWith(binding), execCxt);
+			}
+		};
+	}
+
+	@Override
+	public Op effectiveOp() {
+		return original;
+	}
+
+	@Override
+	public void outputArgs(IndentedWriter out, SerializationContext sCxt) {
+		out.println(table);
+	}
+
+	@Override
+	public int hashCode() {
+		return 72345646 ^ table.hashCode();
+	}
+
+	@Override
+	public boolean equalTo(Op other, NodeIsomorphismMap labelMap) {
+		if (!(other instanceof OpLeftJoinTableSQL)) return false;
+		return ((OpLeftJoinTableSQL) other).table.equals(table);
+	}
+}
@@ -0,0 +1,101 @@
+package de.fuberlin.wiwiss.d2rq.engine;
+
+import java.util.List;
+
+import org.openjena.atlas.io.IndentedWriter;
+
+import com.hp.hpl.jena.query.SortCondition;
+import com.hp.hpl.jena.sparql.algebra.Op;
+import com.hp.hpl.jena.sparql.algebra.op.OpExt;
+import com.hp.hpl.jena.sparql.algebra.op.OpOrder;
+import com.hp.hpl.jena.sparql.engine.ExecutionContext;
+import com.hp.hpl.jena.sparql.engine.QueryIterator;
+import com.hp.hpl.jena.sparql.engine.binding.Binding;
+import com.hp.hpl.jena.sparql.engine.iterator.QueryIterConcat;
+import com.hp.hpl.jena.sparql.engine.iterator.QueryIterSingleton;
+import com.hp.hpl.jena.sparql.engine.iterator.QueryIterSort;
+import com.hp.hpl.jena.sparql.serializer.SerializationContext;
+import com.hp.hpl.jena.sparql.sse.writers.WriterOp;
+import com.hp.hpl.jena.sparql.util.NodeIsomorphismMap;
+
+/**
+ * An {@link OpOrder} over an {@link OpUnionTableSQL} whose ordering
+ * has been translated to an SQL <code>ORDER BY</code> clause.
+ *
+ * The SQL results are in the right order only if they are produced
+ * for a single input binding. If there are several input bindings,
+ * evaluation falls back to sorting in memory.
+ */
+public class OpOrderedTableSQL extends OpExt {
+	private final OpOrder original;
+	private final OpUnionTableSQL ordered;
+
+	/**
+	 * @param original The OpOrder over an OpUnionTableSQL
+	 * @param ordered Equivalent OpUnionTableSQL with SQL ordering
+	 */
+	public OpOrderedTableSQL(OpOrder original, OpUnionTableSQL ordered) {
+		super("sqlorder");
+		this.original = original;
+		this.ordered = ordered;
+	}
+
+	public OpUnionTableSQL orderedOp() {
+		return ordered;
+	}
+
+	public List<SortCondition> getConditions() {
+		return original.getConditions();
+	}
+
+	/**
+	 * Returns an equivalent Op that requests at most the given number
+	 * of rows from its SQL queries. This is used to answer top-N
+	 * queries (ORDER BY with LIMIT) entirely in the database.
+	 * @param limit Maximum number of rows, must be at least 1
+	 */
+	public OpOrderedTableSQL limit(int limit) {
+		return new OpOrderedTableSQL(original, ordered.limit(limit));
+	}
+
+	@Override
+	public QueryIterator eval(QueryIterator input, ExecutionContext execCxt) {
+		if (!input.hasNext()) {
+			return input;
+		}
+		Binding first = input.nextBinding();
+		if (!input.hasNext()) {
+			input.close();
+			return ordered.eval(QueryIterSingleton.create(first, execCxt), execCxt);
+		}
+		QueryIterConcat all = new QueryIterConcat(execCxt);
+		all.add(QueryIterSingleton.create(first, execCxt));
+		all.add(input);
+		return new QueryIterSort(((OpUnionTableSQL) original.getSubOp()).eval(all, execCxt),
+				getConditions(), execCxt);
+	}
+
+	@Override
+	public Op effectiveOp() {
+		return original;
+	}
+
+	@Override
+	public void outputArgs(IndentedWriter out, SerializationContext sCxt) {
+		out.println();
+		WriterOp.output(out, ordered, sCxt);
+	}
+
+	@Override
+	public int hashCode() {
+		return 72345645 ^ ordered.hashCode() ^ getConditions().hashCode();
+	}
+
+	@Override
+	public boolean equalTo(Op other, NodeIsomorphismMap labelMap) {
+		if (!(other instanceof OpOrderedTableSQL)) return false;
+		OpOrderedTableSQL otherOp = (OpOrderedTableSQL) other;
+		return otherOp.getConditions().equals(getConditions())
+				&& otherOp.ordered.equalTo(ordered, labelMap);
+	}
+}
@@ -0,0 +1,283 @@
+package de.fuberlin.wiwiss.d2rq.engine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.openjena.atlas.io.IndentedWriter;
+
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.sparql.algebra.Op;
+import com.hp.hpl.jena.sparql.algebra.op.OpExt;
+import com.hp.hpl.jena.sparql.algebra.op.OpPath;
+import com.hp.hpl.jena.sparql.core.Var;
+import com.hp.hpl.jena.sparql.engine.ExecutionContext;
+import com.hp.hpl.jena.sparql.engine.QueryIterator;
+import com.hp.hpl.jena.sparql.engine.binding.Binding;
+import com.hp.hpl.jena.sparql.engine.binding.BindingHashMap;
+import com.hp.hpl.jena.sparql.engine.binding.BindingMap;
+import com.hp.hpl.jena.sparql.engine.iterator.QueryIter;
+import com.hp.hpl.jena.sparql.engine.iterator.QueryIterConcat;
+import com.hp.hpl.jena.sparql.engine.iterator.QueryIterNullIterator;
+import com.hp.hpl.jena.sparql.engine.iterator.QueryIterRepeatApply;
+import com.hp.hpl.jena.sparql.engine.iterator.QueryIterSingleton;
+import com.hp.hpl.jena.sparql.engine.main.QC;
+import com.hp.hpl.jena.sparql.serializer.SerializationContext;
+import com.hp.hpl.jena.sparql.util.NodeIsomorphismMap;
+
+import de.fuberlin.wiwiss.d2rq.algebra.Attribute;
+import de.fuberlin.wiwiss.d2rq.algebra.ProjectionSpec;
+import de.fuberlin.wiwiss.d2rq.algebra.TripleRelation;
+import de.fuberlin.wiwiss.d2rq.expr.Expression;
+import de.fuberlin.wiwiss.d2rq.nodes.NodeMaker;
+import de.fuberlin.wiwiss.d2rq.nodes.NodeSetConstraintBuilder;
+import de.fuberlin.wiwiss.d2rq.sql.ClosureStatementBuilder;
+import de.fuberlin.wiwiss.d2rq.sql.ResultRow;
+import de.fuberlin.wiwiss.d2rq.sql.SQLIterator;
+
+/**
+ * An {@link OpPath} with a path of the form <code>:p+</code> or
+ * <code>:p*</code> that is evaluated with a recursive SQL query over
+ * the triples of the property bridge that produces <code>:p</code>.
+ *
+ * The recursion starts from the subject if it is a constant or bound
+ * by the input, otherwise from the object if that is, otherwise from
+ * all triples. The paths of length zero of <code>:p*</code> are added
+ * without SQL. If neither end of a <code>:p*</code> path is bound,
+ * evaluation falls back to ARQ, as every node of the graph would be
+ * connected to itself.
+ */
+public class OpPathTableSQL extends OpExt {
+	private final static Log log = LogFactory.getLog(OpPathTableSQL.class);
+
+	private final OpPath original;
+	private final Node subject;
+	private final Node object;
+	private final boolean zeroLength;
+	private final TripleRelation edges;
+	private final NodeMaker subjects;
+	private final NodeMaker objects;
+	private final ClosureStatementBuilder builder;
+
+	/**
+	 * @param original The OpPath
+	 * @param subject The node or variable at the start of the path
+	 * @param object The node or variable at the end of the path
+	 * @param zeroLength Does the path include paths of length zero?
+	 * @param edges The triples of the property, whose subjects and
+	 * 		objects are made from disjoint sets of non-<code>NULL</code>
+	 * 		attributes
+	 */
+	public OpPathTableSQL(OpPath original, Node subject, Node object,
+			boolean zeroLength, TripleRelation edges) {
+		super("sqlpath");
+		this.original = original;
+		this.subject = subject;
+		this.object = object;
+		this.zeroLength = zeroLength;
+		this.edges = edges;
+		this.subjects = edges.nodeMaker(TripleRelation.SUBJECT);
+		this.objects = edges.nodeMaker(TripleRelation.OBJECT);
+		this.builder = new ClosureStatementBuilder(edges.baseRelation(),
+				attributes(subjects), attributes(objects));
+	}
+
+	/**
+	 * @return The attributes that a node maker needs, in sorted order
+	 */
+	static List<Attribute> attributes(NodeMaker nodeMaker) {
+		Set<Attribute> results = new TreeSet<Attribute>();
+		for (ProjectionSpec projection: nodeMaker.projectionSpecs()) {
+			results.addAll(projection.requiredAttributes());
+		}
+		return new ArrayList<Attribute>(results);
+	}
+
+	/**
+	 * Returns the statement that finds the paths between two nodes.
+	 * If both are constants, the statement finds all paths from the
+	 * start, and those that don't reach the end must be skipped.
+	 *
+	 * @param start The node at the start of the paths, or a variable
+	 * @param end The node at the end of the paths, or a variable
+	 * @return A recursive SQL statement, or <code>null</code> if there
+	 * 		are no such paths
+	 */
+	public String getSQLStatement(Node start, Node end) {
+		boolean backward = start.isVariable() && !end.isVariable();
+		Expression seed = backward ? constraint(end, objects) : constraint(start, subjects);
+		if (seed.isFalse()) return null;
+		NodeSetConstraintBuilder nodeSet = new NodeSetConstraintBuilder();
+		if (backward) {
+			subjects.renameAttributes(builder.closureRenamer()).describeSelf(nodeSet);
+			objects.describeSelf(nodeSet);
+		} else {
+			objects.renameAttributes(builder.closureRenamer()).describeSelf(nodeSet);
+			subjects.describeSelf(nodeSet);
+		}
+		return builder.getSQLStatement(seed, nodeSet.constraint(), backward);
+	}
+
+	private Expression constraint(Node node, NodeMaker nodeMaker) {
+		if (node.isVariable()) return Expression.TRUE;
+		NodeSetConstraintBuilder nodeSet = new NodeSetConstraintBuilder();
+		nodeSet.limitTo(node);
+		nodeMaker.describeSelf(nodeSet);
+		return nodeSet.constraint();
+	}
+
+	@Override
+	public QueryIterator eval(QueryIterator input, final ExecutionContext execCxt) {
+		return new QueryIterRepeatApply(input, execCxt) {
+			@Override
+			protected QueryIterator nextStage(Binding binding) {
+				return evalPath(binding, execCxt);
+			}
+		};
+	}
+
+	private QueryIterator evalPath(Binding binding, ExecutionContext execCxt) {
+		Node start = substitute(subject, binding);
+		Node end = substitute(object, binding);
+		if (!zeroLength) {
+			return create(binding, start, end, execCxt);
+		}
+		if (start.isVariable() && end.isVariable()) {
+			return QC.execute(original, QueryIterSingleton.create(binding, execCxt), execCxt);
+		}
+		// The path of length zero connects the bound end to itself
+		Binding self = binding;
+		if (start.isVariable()) {
+			self = extend(binding, (Var) start, end);
+		} else if (end.isVariable()) {
+			self = extend(binding, (Var) end, start);
+		} else if (!start.equals(end)) {
+			return create(binding, start, end, execCxt);
+		} else {
+			return QueryIterSingleton.create(binding, execCxt);
+		}
+		QueryIterConcat result = new QueryIterConcat(execCxt);
+		result.add(QueryIterSingleton.create(self, execCxt));
+		result.add(create(binding, start, end, execCxt));
+		return result;
+	}
+
+	private QueryIterator create(Binding binding, Node start, Node end,
+			ExecutionContext execCxt) {
+		String sql = getSQLStatement(start, end);
+		if (sql == null) {
+			return new QueryIterNullIterator(execCxt);
+		}
+		return new QueryIterPathSQL(sql, binding, start, end, execCxt);
+	}
+
+	private static Node substitute(Node node, Binding binding) {
+		if (!node.isVariable() || !binding.contains((Var) node)) return node;
+		return binding.get((Var) node);
+	}
+
+	private static Binding extend(Binding binding, Var var, Node value) {
+		BindingMap result = new BindingHashMap(binding);
+		result.add(var, value);
+		return result;
+	}
+
+	@Override
+	public Op effectiveOp() {
+		return original;
+	}
+
+	@Override
+	public void outputArgs(IndentedWriter out, SerializationContext sCxt) {
+		out.println(original.getTriplePath());
+		out.println(edges);
+	}
+
+	@Override
+	public int hashCode() {
+		return 72345649 ^ original.hashCode();
+	}
+
+	@Override
+	public boolean equalTo(Op other, NodeIsomorphismMap labelMap) {
+		if (!(other instanceof OpPathTableSQL)) return false;
+		return ((OpPathTableSQL) other).original.equalTo(original, labelMap);
+	}
+
+	/**
+	 * Runs the recursive SQL query and turns each path into a binding.
+	 * A path back to the start of a <code>:p*</code> path is skipped,
+	 * as the path of length zero has already produced that binding.
+	 */
+	private class QueryIterPathSQL extends QueryIter {
+		private final SQLIterator wrapped;
+		private final Binding parent;
+		private final Node start;
+		private final Node end;
+		private Binding next = null;
+		private boolean done = false;
+
+		QueryIterPathSQL(String sql, Binding parent, Node start, Node end,
+				ExecutionContext execCxt) {
+			super(execCxt);
+			this.wrapped = new SQLIterator(sql, builder.getColumnSpecs(),
+					edges.baseRelation().database());
+			this.parent = parent;
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		protected boolean hasNextBinding() {
+			while (next == null && !done && wrapped.hasNext()) {
+				next = makeBinding(wrapped.next());
+			}
+			return next != null;
+		}
+
+		@Override
+		protected Binding moveToNextBinding() {
+			Binding result = next;
+			next = null;
+			return result;
+		}
+
+		private Binding makeBinding(ResultRow row) {
+			Node s = subjects.makeNode(row);
+			Node o = objects.makeNode(row);
+			if (s == null || o == null) return null;
+			if (!start.isVariable() && !end.isVariable()) {
+				// Only tells if the two nodes are connected
+				if (!o.equals(end)) return null;
+				done = true;
+				return parent;
+			}
+			if (zeroLength && (start.isVariable() ? s.equals(end) : o.equals(start))) {
+				return null;
+			}
+			BindingMap result = new BindingHashMap(parent);
+			if (start.isVariable()) {
+				result.add((Var) start, s);
+			}
+			if (end.isVariable()) {
+				result.add((Var) end, o);
+			}
+			return result;
+		}
+
+		@Override
+		protected void closeIterator() {
+			log.debug("closeIterator() called ...");
+			wrapped.close();
+		}
+
+		@Override
+		protected void requestCancel() {
+			log.info("requestCancel() called ...");
+			wrapped.cancel();
+		}
+	}
+}
@@ -2,7 +2,10 @@ package de.fuberlin.wiwiss.d2rq.engine;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.openjena.atlas.io.IndentedWriter;
 
@@ -13,7 +16,6 @@ import com.hp.hpl.jena.sparql.algebra.op.OpTable;
 import com.hp.hpl.jena.sparql.engine.ExecutionContext;
 import com.hp.hpl.jena.sparql.engine.QueryIterator;
 import com.hp.hpl.jena.sparql.engine.binding.Binding;
-import com.hp.hpl.jena.sparql.engine.iterator.QueryIterConcat;
 import com.hp.hpl.jena.sparql.engine.iterator.QueryIterRepeatApply;
 import com.hp.hpl.jena.sparql.serializer.SerializationContext;
 import com.hp.hpl.jena.sparql.sse.writers.WriterOp;
@@ -21,6 +23,11 @@ import com.hp.hpl.jena.sparql.util.NodeIsomorphismMap;
 
 import de.fuberlin.wiwiss.d2rq.algebra.CompatibleRelationGroup;
 import de.fuberlin.wiwiss.d2rq.algebra.NodeRelation;
+import de.fuberlin.wiwiss.d2rq.algebra.OrderSpec;
+import de.fuberlin.wiwiss.d2rq.algebra.Relation;
+import de.fuberlin.wiwiss.d2rq.map.Configuration;
+import de.fuberlin.wiwiss.d2rq.sql.ConnectedDB;
+import de.fuberlin.wiwiss.d2rq.sql.UnionStatementBuilder;
 
 /**
  * An {@link Op} that wraps a union of multiple {@link NodeRelation}s.
@@ -38,6 +45,16 @@ public class OpUnionTableSQL extends OpExt {
 	 * if optimizations are possible.
 	 */
 	public static Op create(Collection<NodeRelation> tables) {
+		return create(tables, new Configuration());
+	}
+	
+	/**
+	 * Creates a new instance from a collection of
+	 * {@link NodeRelation}s, or a simpler equivalent Op
+	 * if optimizations are possible.
+	 * @param configuration Provides the query parallelism and bind join batch size
+	 */
+	public static Op create(Collection<NodeRelation> tables, Configuration configuration) {
 		Collection<OpTableSQL> nonEmpty = new ArrayList<OpTableSQL>();
 		for (NodeRelation table: tables) {
 			if (table.baseRelation().condition().isFalse()) continue;
@@ -46,39 +63,221 @@ public class OpUnionTableSQL extends OpExt {
 		if (nonEmpty.isEmpty()) {
 			return OpNull.create();
 		}
-		return new OpUnionTableSQL(nonEmpty);
+		return new OpUnionTableSQL(nonEmpty, OpTable.unit(), configuration);
 	}
 	
 	private final List<OpTableSQL> tableOps;
 	private final Op effectiveOp;
+	private final Configuration configuration;
+	private final int parallelism;
+	private final int batchSize;
 	
 	public OpUnionTableSQL(Collection<OpTableSQL> tableOps) {
 		this(tableOps, OpTable.unit());
 	}
 	
 	public OpUnionTableSQL(Collection<OpTableSQL> tableOps, Op effectiveOp) {
+		this(tableOps, effectiveOp, new Configuration());
+	}
+	
+	public OpUnionTableSQL(Collection<OpTableSQL> tableOps, Op effectiveOp, 
+			Configuration configuration) {
 		super("sqlunion");
 		this.tableOps = new ArrayList<OpTableSQL>(tableOps);
 		this.effectiveOp = effectiveOp;
+		this.configuration = configuration;
+		this.parallelism = configuration.getQueryParallelism();
+		this.batchSize = canBatch() ? configuration.getBindJoinBatchSize() : 1;
+	}
+	
+	public List<OpTableSQL> tableOps() {
+		return tableOps;
+	}
+
+	/**
+	 * @return The NodeRelation if this consists of a single unordered
+	 * 		and unlimited SQL query; <code>null</code> otherwise
+	 */
+	public NodeRelation singleTable() {
+		if (tableOps.size() != 1) return null;
+		NodeRelation table = tableOps.get(0).table();
+		Relation relation = table.baseRelation();
+		if (relation.isTrivial() || relation.database() == null) return null;
+		if (relation.limit() != Relation.NO_LIMIT || !relation.orderSpecs().isEmpty()) return null;
+		return table;
+	}
+	
+	/**
+	 * Returns a copy that evaluates different tables, such as
+	 * modified versions of its own tables.
+	 */
+	public OpUnionTableSQL withTables(Collection<NodeRelation> tables) {
+		List<OpTableSQL> replaced = new ArrayList<OpTableSQL>(tables.size());
+		for (NodeRelation table: tables) {
+			replaced.add(new OpTableSQL(table));
+		}
+		return new OpUnionTableSQL(replaced, effectiveOp, configuration);
+	}
+	
+	/**
+	 * Returns an Op that evaluates the tables of this and another
+	 * OpUnionTableSQL, which is equivalent to a SPARQL
+	 * <code>UNION</code> of the two.
+	 */
+	public OpUnionTableSQL union(OpUnionTableSQL other) {
+		List<OpTableSQL> combined = new ArrayList<OpTableSQL>(tableOps);
+		combined.addAll(other.tableOps);
+		return new OpUnionTableSQL(combined, effectiveOp, configuration);
+	}
+	
+	/**
+	 * Tells whether every row of every SQL query produces a binding.
+	 * This is not the case if a value can be rejected, for example by
+	 * a translation table or the xsd:date check.
+	 */
+	public boolean producesBindingForEveryRow() {
+		for (OpTableSQL tableOp: tableOps) {
+			if (!tableOp.table().producesBindingForEveryRow()) return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * Returns an equivalent Op that requests at most the given number
+	 * of rows from each of its SQL queries. This is safe if no more than
+	 * that many bindings will be consumed, and if
+	 * {@link #producesBindingForEveryRow()}.
+	 * @param limit Maximum number of rows, must be at least 1
+	 */
+	public OpUnionTableSQL limit(int limit) {
+		List<OpTableSQL> limited = new ArrayList<OpTableSQL>(tableOps.size());
+		for (OpTableSQL tableOp: tableOps) {
+			if (tableOp.table().baseRelation().isTrivial()) {
+				limited.add(tableOp);
+			} else {
+				limited.add(new OpTableSQL(tableOp.table().limit(limit)));
+			}
+		}
+		return new OpUnionTableSQL(limited, effectiveOp, configuration);
+	}
+	
+	/**
+	 * Returns an equivalent Op whose SQL queries have
+	 * an <code>ORDER BY</code> clause.
+	 */
+	public OpUnionTableSQL orderBy(List<OrderSpec> orderSpecs) {
+		List<OpTableSQL> ordered = new ArrayList<OpTableSQL>(tableOps.size());
+		for (OpTableSQL tableOp: tableOps) {
+			ordered.add(new OpTableSQL(tableOp.table().orderBy(orderSpecs)));
+		}
+		return new OpUnionTableSQL(ordered, effectiveOp, configuration);
 	}
 	
 	@Override
 	public QueryIterator eval(QueryIterator input, final ExecutionContext execCxt) {
-		return new QueryIterRepeatApply(input, execCxt) {
-			@Override
-			protected QueryIterator nextStage(Binding binding) {
-				QueryIterConcat resultIt = new QueryIterConcat(execCxt);
-				Collection<NodeRelation> tables = new ArrayList<NodeRelation>();
-				for (OpTableSQL tableOp: tableOps) {
-					tables.add(tableOp.table().extendWith(binding));
+		if (batchSize <= 1) {
+			return new QueryIterRepeatApply(input, execCxt) {
+				@Override
+				protected QueryIterator nextStage(Binding binding) {
+					return evalBatch(Collections.singletonList(binding), execCxt);
 				}
-				for (CompatibleRelationGroup group: CompatibleRelationGroup.groupNodeRelations(tables)) {
-					resultIt.add(QueryIterTableSQL.create(group.baseRelation(), group.bindingMakers(), execCxt));
-				}
-				return resultIt;
+			};
+		}
+		return new QueryIterBatchRepeatApply(input, batchSize, execCxt) {
+			@Override
+			protected QueryIterator nextStage(List<Binding> bindings) {
+				return evalBatch(bindings, execCxt);
 			}
 		};
 	}
+	
+	/**
+	 * Evaluates the tables for several input bindings at once. Tables
+	 * extended with different bindings only differ in their conditions,
+	 * so {@link CompatibleRelationGroup} combines them into a single
+	 * SQL query whose <code>WHERE</code> clause is the disjunction of
+	 * the conditions, and uses the individual conditions to tell which
+	 * input binding a result row belongs to.
+	 */
+	private QueryIterator evalBatch(List<Binding> bindings, ExecutionContext execCxt) {
+		Collection<NodeRelation> tables = new ArrayList<NodeRelation>();
+		for (Binding binding: bindings) {
+			for (OpTableSQL tableOp: tableOps) {
+				NodeRelation table = tableOp.table().extendWith(binding);
+				if (bindings.size() > 1 && table.baseRelation().condition().isFalse()) continue;
+				tables.add(table);
+			}
+		}
+		Collection<CompatibleRelationGroup> groups = 
+			CompatibleRelationGroup.groupNodeRelations(tables);
+		int effectiveParallelism = 
+			QueryIterParallelUnion.effectiveParallelism(parallelism, groups);
+		if (effectiveParallelism <= 1 && groups.size() > 1) {
+			return evalUnionAll(groups, execCxt);
+		}
+		List<QueryIterator> members = new ArrayList<QueryIterator>(groups.size());
+		for (CompatibleRelationGroup group: groups) {
+			// Untracked, as they may be evaluated on worker threads
+			members.add(QueryIterTableSQL.create(group.baseRelation(), group.bindingMakers(), null));
+		}
+		return QueryIterParallelUnion.create(members, effectiveParallelism, execCxt);
+	}
+	
+	/**
+	 * Evaluates groups that would otherwise run as separate SQL
+	 * queries against the same database with a single 
+	 * <code>UNION ALL</code> query, saving round trips. This is 
+	 * not done if the queries are supposed to run concurrently.
+	 */
+	private QueryIterator evalUnionAll(Collection<CompatibleRelationGroup> groups, 
+			ExecutionContext execCxt) {
+		Map<ConnectedDB,List<CompatibleRelationGroup>> combinable = 
+			new LinkedHashMap<ConnectedDB,List<CompatibleRelationGroup>>();
+		List<QueryIterator> members = new ArrayList<QueryIterator>(groups.size());
+		for (CompatibleRelationGroup group: groups) {
+			Relation relation = group.baseRelation();
+			if (!UnionStatementBuilder.canCombine(relation)) {
+				members.add(QueryIterTableSQL.create(relation, group.bindingMakers(), execCxt));
+				continue;
+			}
+			if (!combinable.containsKey(relation.database())) {
+				combinable.put(relation.database(), new ArrayList<CompatibleRelationGroup>());
+			}
+			combinable.get(relation.database()).add(group);
+		}
+		for (List<CompatibleRelationGroup> sameDatabase: combinable.values()) {
+			if (sameDatabase.size() == 1) {
+				CompatibleRelationGroup group = sameDatabase.get(0);
+				members.add(QueryIterTableSQL.create(
+						group.baseRelation(), group.bindingMakers(), execCxt));
+				continue;
+			}
+			List<Relation> relations = new ArrayList<Relation>(sameDatabase.size());
+			List<Collection<BindingMaker>> bindingMakers = 
+				new ArrayList<Collection<BindingMaker>>(sameDatabase.size());
+			for (CompatibleRelationGroup group: sameDatabase) {
+				relations.add(group.baseRelation());
+				bindingMakers.add(group.bindingMakers());
+			}
+			members.add(QueryIterTableSQL.createUnion(relations, bindingMakers, execCxt));
+		}
+		return QueryIterParallelUnion.create(members, 1, execCxt);
+	}
+	
+	/**
+	 * A LIMIT would apply to the combined query, not to each input
+	 * binding, so tables with limits can't be batched.
+	 */
+	private boolean canBatch() {
+		for (OpTableSQL tableOp: tableOps) {
+			Relation relation = tableOp.table().baseRelation();
+			if (relation.limit() != Relation.NO_LIMIT 
+					|| relation.limitInverse() != Relation.NO_LIMIT) {
+				return false;
+			}
+		}
+		return true;
+	}
 
 	@Override
 	public Op effectiveOp() {
@@ -0,0 +1,106 @@
+package de.fuberlin.wiwiss.d2rq.engine;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.hp.hpl.jena.sparql.algebra.Op;
+
+/**
+ * A bounded cache of translated operator trees, so that a query
+ * that is run again doesn't have to be matched against the mapping
+ * again. The key is the operator tree before translation, in its
+ * SSE serialization. Constants are part of the key because they
+ * decide which property bridges match and end up in the SQL
+ * conditions, so queries that differ only in their constants are
+ * cached separately.
+ *
+ * The least recently used plan is evicted when the cache is full.
+ * Counts hits and misses. Safe for use by multiple threads.
+ */
+public class PlanCache {
+	private final int maxSize;
+	private final Map<String,Op> plans;
+	private long hits = 0;
+	private long misses = 0;
+	private long evictions = 0;
+
+	/**
+	 * @param maxSize Maximum number of plans; 0 disables the cache
+	 */
+	public PlanCache(final int maxSize) {
+		this.maxSize = maxSize;
+		this.plans = new LinkedHashMap<String,Op>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String,Op> eldest) {
+				if (size() <= maxSize) return false;
+				evictions++;
+				return true;
+			}
+		};
+	}
+
+	/**
+	 * Computes the key under which the translation of an operator
+	 * tree is cached. Must be called before translation, which may
+	 * modify the tree.
+	 */
+	public static String keyOf(Op op) {
+		return op.toString();
+	}
+
+	/**
+	 * @return The cached plan, or <code>null</code> if there is none
+	 */
+	public synchronized Op get(String key) {
+		Op result = plans.get(key);
+		if (result == null) {
+			misses++;
+		} else {
+			hits++;
+		}
+		return result;
+	}
+
+	public synchronized void put(String key, Op plan) {
+		if (maxSize == 0) return;
+		plans.put(key, plan);
+	}
+
+	/**
+	 * Removes all plans, for example because the mapping has changed.
+	 * The counters are kept.
+	 */
+	public synchronized void clear() {
+		plans.clear();
+	}
+
+	public boolean isEnabled() {
+		return maxSize > 0;
+	}
+
+	public int maxSize() {
+		return maxSize;
+	}
+
+	public synchronized int size() {
+		return plans.size();
+	}
+
+	public synchronized long hits() {
+		return hits;
+	}
+
+	public synchronized long misses() {
+		return misses;
+	}
+
+	public synchronized long evictions() {
+		return evictions;
+	}
+
+	public synchronized String toString() {
+		return "PlanCache(" + plans.size() + "/" + maxSize + " plans, " +
+				hits + " hits, " + misses + " misses, " + evictions + " evictions)";
+	}
+}
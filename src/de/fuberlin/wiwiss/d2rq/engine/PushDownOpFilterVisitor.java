@@ -374,7 +374,7 @@ public class PushDownOpFilterVisitor implements OpVisitor {
 	}
 
 	private void wrapInFilter(Op op, List<Expr> filters) {
-		if (filterExpr.isEmpty()) {
+		if (filters.isEmpty()) {
 			stack.push(op);
 		} else {
 			stack.push(OpFilter.filter(new ExprList(filters), op));
@@ -466,7 +466,7 @@ public class PushDownOpFilterVisitor implements OpVisitor {
 			((OpFilter) newOp).getExprs().getList()
 					.addAll(notMoveableFilterExpr);
 		} else {
-			newOp = opUnion;
+			newOp = opUnion.copy(left, right);
 		}
 
 		// restore filterexpressions
@@ -535,8 +535,8 @@ public class PushDownOpFilterVisitor implements OpVisitor {
 			((OpFilter) newOp).getExprs().getList()
 					.addAll(notMoveableFilterExpr);
 		} else {
-			// nothing must be done
-			newOp = opJoin;
+			// no filter needed, but the children may have changed
+			newOp = opJoin.copy(left, right);
 		}
 
 		// restore filterexpressions
@@ -623,8 +623,8 @@ public class PushDownOpFilterVisitor implements OpVisitor {
 			((OpFilter) newOp).getExprs().getList()
 					.addAll(notMoveableFilterExpr);
 		} else {
-			// nothing must be done
-			newOp = opLeftJoin;
+			// no filter needed, but the children may have changed
+			newOp = opLeftJoin.copy(left, right);
 		}
 
 		// restore filterexpressions
@@ -696,8 +696,8 @@ public class PushDownOpFilterVisitor implements OpVisitor {
 			((OpFilter) newOp).getExprs().getList()
 					.addAll(notMoveableFilterExpr);
 		} else {
-			// nothing must be done
-			newOp = opDiff;
+			// no filter needed, but the children may have changed
+			newOp = opDiff.copy(left, right);
 		}
 
 		// restore filterexpressions
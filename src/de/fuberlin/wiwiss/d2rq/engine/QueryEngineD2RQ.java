@@ -1,5 +1,8 @@
 package de.fuberlin.wiwiss.d2rq.engine;
 
+import java.util.HashSet;
+import java.util.Set;
+
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.openjena.atlas.io.PrintUtils;
@@ -7,7 +10,11 @@ import org.openjena.atlas.io.PrintUtils;
 import com.hp.hpl.jena.query.Query;
 import com.hp.hpl.jena.sparql.algebra.Op;
 import com.hp.hpl.jena.sparql.algebra.Transformer;
+import com.hp.hpl.jena.sparql.algebra.op.OpLeftJoin;
+import com.hp.hpl.jena.sparql.algebra.op.OpSlice;
+import com.hp.hpl.jena.sparql.algebra.optimize.TransformJoinStrategy;
 import com.hp.hpl.jena.sparql.algebra.optimize.TransformScopeRename;
+import com.hp.hpl.jena.sparql.core.BasicPattern;
 import com.hp.hpl.jena.sparql.core.DatasetGraph;
 import com.hp.hpl.jena.sparql.core.DatasetGraphFactory;
 import com.hp.hpl.jena.sparql.engine.Plan;
@@ -35,6 +42,7 @@ public class QueryEngineD2RQ extends QueryEngineMain {
 	private static final Log log = LogFactory.getLog(QueryEngineD2RQ.class);
 
 	private final Mapping mapping;
+	private final PlanCache planCache;
 	private final Binding inputBinding;
 
 	public QueryEngineD2RQ(GraphD2RQ graph, Query query) {
@@ -44,15 +52,32 @@ public class QueryEngineD2RQ extends QueryEngineMain {
 	public QueryEngineD2RQ(GraphD2RQ graph, Query query, Binding input, Context context) {
 		super(query, DatasetGraphFactory.createOneGraph(graph), input, context);
 		this.mapping = graph.getMapping();
+		this.planCache = graph.planCache();
 		this.inputBinding = input;
 	}
 
 	public QueryEngineD2RQ(GraphD2RQ graph, Op op, Binding input, Context context) {
 		super(op, DatasetGraphFactory.createOneGraph(graph), input, context);
 		this.mapping = graph.getMapping();
+		this.planCache = graph.planCache();
 		this.inputBinding = input;
 	}
 
+	/**
+	 * An ASK query needs only one solution, so it is wrapped into a
+	 * slice of one. {@link TransformOpSlice} turns that into a
+	 * <code>LIMIT 1</code> on the SQL query only if every SQL row
+	 * produces a solution; otherwise ARQ stops after the first one.
+	 */
+	@Override
+	protected Op createOp(Query query) {
+		Op op = super.createOp(query);
+		if (query.isAskType()) {
+			op = new OpSlice(op, Query.NOLIMIT, 1);
+		}
+		return op;
+	}
+
 	@Override
 	protected Op modifyOp(Op op) {
 		// According to ARQ's {@link Optimize#rewrite()} source code,
@@ -65,7 +90,20 @@ public class QueryEngineD2RQ extends QueryEngineMain {
 		// TODO: Apply all or some of ARQ's standard transforms?
 		// op = super.modifyOp(op);
 
-		return translate(op);
+		if (!planCache.isEnabled()) {
+			return translate(op);
+		}
+		String key = PlanCache.keyOf(op);
+		Op plan = planCache.get(key);
+		if (plan != null) {
+			if (log.isDebugEnabled()) {
+				log.debug("Using cached translation:\n" + PrintUtils.toString(plan));
+			}
+			return plan;
+		}
+		plan = translate(op);
+		planCache.put(key, plan);
+		return plan;
 	}
 
 	/**
@@ -77,15 +115,54 @@ public class QueryEngineD2RQ extends QueryEngineMain {
 		if (log.isDebugEnabled()) {
 			log.debug("Before translation:\n" + PrintUtils.toString(op));
 		}
+		// Turn BINDINGS of a variable into a filter that can become an IN list
+		op = Transformer.transformSkipService(new TransformOpTable(), op);
 		// Shape filter expressions to maximize opportunities for pushing them
 		// down
 		op = Transformer.transformSkipService(new TransformFilterCNF(), op);
 		// Try to move any filters as far down as possible
 		op = PushDownOpFilterVisitor.transform(op);
+		// Evaluate joins by feeding the left side's bindings into the right
+		// side where possible, so that batches of them become single SQL queries.
+		// Gets an empty context, not the query's, as the plan may be cached
+		if (mapping.configuration().getBindJoinBatchSize() > 1) {
+			op = Transformer.transformSkipService(new TransformJoinStrategy(new Context()) {
+				@Override
+				public Op transform(OpLeftJoin opLeftJoin, Op left, Op right) {
+					// Keep OPTIONALs for translation into LEFT OUTER JOINs
+					return opLeftJoin.copy(left, right);
+				}
+			}, op);
+		}
 		// Translate BGPs that have a filter immediately above them
-		op = Transformer.transformSkipService(new TransformOpBGP(mapping, true), op);
-		// Translate BGPs that don't have a filter
-		op = Transformer.transformSkipService(new TransformOpBGP(mapping, false), op);
+		Set<BasicPattern> untranslatable = new HashSet<BasicPattern>();
+		op = Transformer.transformSkipService(
+				new TransformOpBGP(mapping, true, untranslatable), op);
+		// Translate BGPs that don't have a filter, except those given up on
+		op = Transformer.transformSkipService(
+				new TransformOpBGP(mapping, false, untranslatable), op);
+		// Find the paths of :p+ and :p* with recursive SQL queries; not
+		// yet run against a database in the test suite, so only on request
+		if (mapping.configuration().getUseAllOptimizations()) {
+			op = Transformer.transformSkipService(
+					new TransformOpPath(mapping.compiledPropertyBridgeIndex()), op);
+		}
+		// Evaluate MINUS as NOT EXISTS subqueries in SQL
+		op = Transformer.transformSkipService(new TransformOpMinus(), op);
+		// Evaluate OPTIONALs as LEFT OUTER JOINs in SQL
+		op = Transformer.transformSkipService(new TransformOpLeftJoin(), op);
+		// Let the database compute groups and aggregates
+		op = Transformer.transformSkipService(new TransformOpGroup(), op);
+		// Fetch the branches of UNIONs with as few SQL queries as possible
+		op = Transformer.transformSkipService(new TransformOpUnion(), op);
+		// Let the database eliminate duplicates, or skip it if keys rule them out
+		op = Transformer.transformSkipService(new TransformOpDistinct(), op);
+		// Don't select columns that only projected-away variables need
+		op = Transformer.transformSkipService(new TransformOpProject(), op);
+		// Let the database sort where it can do so like SPARQL would
+		op = Transformer.transformSkipService(new TransformOpOrder(), op);
+		// Let SQL queries return no more rows than a LIMIT requires
+		op = Transformer.transformSkipService(new TransformOpSlice(), op);
 
 		if (log.isDebugEnabled()) {
 			log.debug("After translation:\n" + PrintUtils.toString(op));
@@ -0,0 +1,74 @@
+package de.fuberlin.wiwiss.d2rq.engine;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.hp.hpl.jena.sparql.engine.ExecutionContext;
+import com.hp.hpl.jena.sparql.engine.QueryIterator;
+import com.hp.hpl.jena.sparql.engine.binding.Binding;
+import com.hp.hpl.jena.sparql.engine.iterator.QueryIter1;
+import com.hp.hpl.jena.sparql.engine.iterator.QueryIterRepeatApply;
+
+/**
+ * Like {@link QueryIterRepeatApply}, but hands the input bindings
+ * to {@link #nextStage(List)} in batches of a fixed maximum size.
+ * This allows evaluating a stage for many input bindings at once,
+ * e.g., in a single SQL query.
+ */
+public abstract class QueryIterBatchRepeatApply extends QueryIter1 {
+	private final int batchSize;
+	private QueryIterator currentStage = null;
+
+	public QueryIterBatchRepeatApply(QueryIterator input, int batchSize,
+			ExecutionContext execCxt) {
+		super(input, execCxt);
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * @param bindings A non-empty batch of input bindings
+	 * @return Iterator over the results of all input bindings in the batch
+	 */
+	protected abstract QueryIterator nextStage(List<Binding> bindings);
+
+	@Override
+	protected boolean hasNextBinding() {
+		while (true) {
+			if (currentStage != null && currentStage.hasNext()) {
+				return true;
+			}
+			if (currentStage != null) {
+				currentStage.close();
+				currentStage = null;
+			}
+			List<Binding> batch = new ArrayList<Binding>(batchSize);
+			while (batch.size() < batchSize && getInput().hasNext()) {
+				batch.add(getInput().nextBinding());
+			}
+			if (batch.isEmpty()) {
+				return false;
+			}
+			currentStage = nextStage(batch);
+		}
+	}
+
+	@Override
+	protected Binding moveToNextBinding() {
+		return currentStage.nextBinding();
+	}
+
+	@Override
+	protected void closeSubIterator() {
+		if (currentStage != null) {
+			performClose(currentStage);
+			currentStage = null;
+		}
+	}
+
+	@Override
+	protected void requestSubCancel() {
+		if (currentStage != null) {
+			performRequestCancel(currentStage);
+		}
+	}
+}
@@ -0,0 +1,213 @@
+package de.fuberlin.wiwiss.d2rq.engine;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.hp.hpl.jena.query.QueryCancelledException;
+import com.hp.hpl.jena.sparql.engine.ExecutionContext;
+import com.hp.hpl.jena.sparql.engine.QueryIterator;
+import com.hp.hpl.jena.sparql.engine.binding.Binding;
+import com.hp.hpl.jena.sparql.engine.iterator.QueryIter;
+import com.hp.hpl.jena.sparql.engine.iterator.QueryIterConcat;
+
+import de.fuberlin.wiwiss.d2rq.algebra.CompatibleRelationGroup;
+import de.fuberlin.wiwiss.d2rq.sql.ConnectedDB;
+
+/**
+ * A union of {@link QueryIterator}s that are evaluated concurrently
+ * by a fixed number of worker threads. Bindings are delivered as
+ * they arrive, so unlike in {@link QueryIterConcat}, the results
+ * of the members may be interleaved. Cancellation is passed on
+ * to all members, which cancels any SQL queries in flight.
+ * <p>
+ * ARQ's iterator tracking in {@link ExecutionContext} is not thread-safe,
+ * and a member closes itself on the worker thread when it is exhausted.
+ * Members should therefore be created without an execution context;
+ * the union itself is tracked, and closes all members on the consumer
+ * thread after its workers have finished.
+ */
+public class QueryIterParallelUnion extends QueryIter {
+	private final static Log log = LogFactory.getLog(QueryIterParallelUnion.class);
+	private final static int BUFFER_SIZE = 1000;
+
+	/**
+	 * Creates an instance, or a {@link QueryIterConcat} if there is
+	 * nothing to gain from parallel evaluation.
+	 * @param members The iterators to be combined, created without an
+	 * 		{@link ExecutionContext}
+	 * @param parallelism Maximum number of members evaluated at the same time
+	 */
+	public static QueryIter create(List<QueryIterator> members,
+			int parallelism, ExecutionContext execCxt) {
+		if (parallelism <= 1 || members.size() <= 1) {
+			QueryIterConcat result = new QueryIterConcat(execCxt);
+			for (QueryIterator member: members) {
+				result.add(member);
+			}
+			return result;
+		}
+		return new QueryIterParallelUnion(members,
+				Math.min(parallelism, members.size()), execCxt);
+	}
+
+	/**
+	 * Queries against the same {@link ConnectedDB} can only run concurrently
+	 * if the database has a connection pool, and no more of them than the
+	 * pool has connections.
+	 * @return The given parallelism, capped at the smallest pool size of
+	 * 		the groups' databases; 1 if some database has no pool
+	 */
+	public static int effectiveParallelism(int parallelism,
+			Collection<CompatibleRelationGroup> groups) {
+		int result = parallelism;
+		for (CompatibleRelationGroup group: groups) {
+			ConnectedDB db = group.baseRelation().database();
+			if (db == null) continue;
+			int maxActive = db.poolMaxActive();
+			if (maxActive > 0) {
+				result = Math.min(result, maxActive);
+			}
+		}
+		return result;
+	}
+
+	private final Object END = new Object();
+	private final List<QueryIterator> members;
+	private final int parallelism;
+	private final BlockingQueue<Object> buffer = new ArrayBlockingQueue<Object>(BUFFER_SIZE);
+	private ExecutorService executor = null;
+	private volatile boolean stopped = false;
+	private int unfinishedMembers;
+	private Binding nextBinding = null;
+
+	private QueryIterParallelUnion(List<QueryIterator> members,
+			int parallelism, ExecutionContext execCxt) {
+		super(execCxt);
+		this.members = new ArrayList<QueryIterator>(members);
+		this.parallelism = parallelism;
+		this.unfinishedMembers = members.size();
+	}
+
+	@Override
+	protected boolean hasNextBinding() {
+		if (nextBinding != null) return true;
+		ensureStarted();
+		while (unfinishedMembers > 0) {
+			Object next;
+			try {
+				next = buffer.take();
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				throw new QueryCancelledException();
+			}
+			if (next == END) {
+				unfinishedMembers--;
+				continue;
+			}
+			if (next instanceof RuntimeException) {
+				throw (RuntimeException) next;
+			}
+			nextBinding = (Binding) next;
+			return true;
+		}
+		return false;
+	}
+
+	@Override
+	protected Binding moveToNextBinding() {
+		Binding result = nextBinding;
+		nextBinding = null;
+		return result;
+	}
+
+	@Override
+	protected void closeIterator() {
+		stopped = true;
+		if (executor != null) {
+			// Abort any members that are still running, and wait for
+			// the workers to let go of them before closing them here
+			if (unfinishedMembers > 0) {
+				for (QueryIterator member: members) {
+					member.cancel();
+				}
+			}
+			executor.shutdownNow();
+			try {
+				while (!executor.awaitTermination(100, TimeUnit.MILLISECONDS)) {
+					log.debug("Waiting for union workers to finish");
+				}
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		for (QueryIterator member: members) {
+			performClose(member);
+		}
+	}
+
+	@Override
+	protected void requestCancel() {
+		for (QueryIterator member: members) {
+			performRequestCancel(member);
+		}
+	}
+
+	private void ensureStarted() {
+		if (executor != null) return;
+		log.debug("Evaluating " + members.size() + " queries with " + parallelism + " threads");
+		executor = Executors.newFixedThreadPool(parallelism, new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread result = new Thread(r, "D2RQ parallel union");
+				result.setDaemon(true);
+				return result;
+			}
+		});
+		for (final QueryIterator member: members) {
+			executor.execute(new Runnable() {
+				public void run() {
+					drain(member);
+				}
+			});
+		}
+		executor.shutdown();
+	}
+
+	/**
+	 * Runs on a worker thread. Closing members is left to the consumer
+	 * thread, see {@link #closeIterator()}.
+	 */
+	private void drain(QueryIterator member) {
+		try {
+			while (!stopped && member.hasNext()) {
+				put(member.nextBinding());
+			}
+		} catch (RuntimeException ex) {
+			put(ex);
+		} finally {
+			put(END);
+		}
+	}
+
+	/**
+	 * Waits for buffer space, giving up if the consumer goes away.
+	 */
+	private void put(Object o) {
+		try {
+			while (!stopped) {
+				if (buffer.offer(o, 100, TimeUnit.MILLISECONDS)) return;
+			}
+		} catch (InterruptedException ex) {
+			stopped = true;
+		}
+	}
+}
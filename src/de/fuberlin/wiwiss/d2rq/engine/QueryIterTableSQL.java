@@ -4,6 +4,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.LinkedList;
+import java.util.List;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -18,9 +19,11 @@ import com.hp.hpl.jena.sparql.engine.iterator.QueryIterSingleton;
 
 import de.fuberlin.wiwiss.d2rq.algebra.NodeRelation;
 import de.fuberlin.wiwiss.d2rq.algebra.Relation;
+import de.fuberlin.wiwiss.d2rq.sql.ProjectionSlot;
 import de.fuberlin.wiwiss.d2rq.sql.ResultRow;
 import de.fuberlin.wiwiss.d2rq.sql.SQLIterator;
 import de.fuberlin.wiwiss.d2rq.sql.SelectStatementBuilder;
+import de.fuberlin.wiwiss.d2rq.sql.UnionStatementBuilder;
 
 /**
  * A {@link QueryIterator} over the bindings produced by a
@@ -72,16 +75,50 @@ public class QueryIterTableSQL extends QueryIter {
 				Collections.singleton(BindingMaker.createFor(table)), execCxt);
 	}
 	
+	/**
+	 * Creates an instance that runs a single <code>UNION ALL</code>
+	 * statement over several relations, and applies the binding makers of
+	 * each relation to the rows produced by that relation.
+	 * @param relations Relations over the same database that satisfy
+	 * 		{@link UnionStatementBuilder#canCombine(Relation)}
+	 * @param bindingMakers The binding makers of each relation
+	 * @return A query iterator over the contents of all relations
+	 */
+	public static QueryIterator createUnion(List<Relation> relations, 
+			List<Collection<BindingMaker>> bindingMakers, ExecutionContext execCxt) {
+		UnionStatementBuilder builder = new UnionStatementBuilder(relations);
+		return new QueryIterTableSQL(
+				new SQLIterator(builder.getSQLStatement(), builder.getColumnSpecs(), 
+						relations.get(0).database()),
+				bindingMakers, new ProjectionSlot(UnionStatementBuilder.BRANCH), execCxt);
+	}
+	
 	private final SQLIterator wrapped;
-	private final Collection<BindingMaker> bindingMakers;
+	private final List<Collection<BindingMaker>> branches;
+	private final ProjectionSlot branchSlot;
 	private final LinkedList<Binding> queue = new LinkedList<Binding>();
 
 	private QueryIterTableSQL(Relation relation, 
 			Collection<BindingMaker> bindingMakers, ExecutionContext execCxt) {
+		this(sqlIterator(new SelectStatementBuilder(relation), relation),
+				Collections.singletonList(bindingMakers), null, execCxt);
+	}
+	
+	/**
+	 * @param branchSlot Reads the number of the branch that produced
+	 * 		a row, or <code>null</code> if there is only one branch
+	 */
+	private QueryIterTableSQL(SQLIterator wrapped, 
+			List<Collection<BindingMaker>> branches, ProjectionSlot branchSlot, 
+			ExecutionContext execCxt) {
 		super(execCxt);
-		this.bindingMakers = bindingMakers;
-		SelectStatementBuilder builder = new SelectStatementBuilder(relation);
-		wrapped = new SQLIterator(
+		this.wrapped = wrapped;
+		this.branches = branches;
+		this.branchSlot = branchSlot;
+	}
+	
+	private static SQLIterator sqlIterator(SelectStatementBuilder builder, Relation relation) {
+		return new SQLIterator(
 				builder.getSQLStatement(), builder.getColumnSpecs(), relation.database());
 	}
 	
@@ -115,6 +152,9 @@ public class QueryIterTableSQL extends QueryIter {
 	 * them onto the queue
 	 */
 	private void enqueueBindings(ResultRow row) {
+		Collection<BindingMaker> bindingMakers = branchSlot == null
+				? branches.get(0)
+				: branches.get(Integer.parseInt(branchSlot.get(row)) - 1);
 		for (BindingMaker bindingMaker: bindingMakers) {
 			Binding binding = bindingMaker.makeBinding(row);
 			if (binding == null) continue; 
@@ -1,17 +1,26 @@
 package de.fuberlin.wiwiss.d2rq.engine;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import com.hp.hpl.jena.sparql.algebra.Op;
 import com.hp.hpl.jena.sparql.algebra.TransformCopy;
+import com.hp.hpl.jena.sparql.algebra.Transformer;
 import com.hp.hpl.jena.sparql.algebra.op.OpBGP;
 import com.hp.hpl.jena.sparql.algebra.op.OpFilter;
+import com.hp.hpl.jena.sparql.core.BasicPattern;
 import com.hp.hpl.jena.sparql.expr.Expr;
+import com.hp.hpl.jena.sparql.expr.ExprFunctionOp;
 import com.hp.hpl.jena.sparql.expr.ExprList;
+import com.hp.hpl.jena.sparql.expr.ExprVisitorBase;
+import com.hp.hpl.jena.sparql.expr.ExprWalker;
 
 import de.fuberlin.wiwiss.d2rq.algebra.NodeRelation;
 import de.fuberlin.wiwiss.d2rq.expr.Expression;
@@ -24,6 +33,10 @@ import de.fuberlin.wiwiss.d2rq.optimizer.expr.TransformExprToSQLApplyer;
  * expressions into the SQL. Leave an OpFilter if not all
  * expressions could be absorbed. 
  * 
+ * If the BGP matches too many combinations of property bridges,
+ * it is left untranslated, and is evaluated by ARQ through
+ * {@link de.fuberlin.wiwiss.d2rq.jena.GraphD2RQ#find}.
+ * 
  * @author Herwig Leimer
  * @author Richard Cyganiak (richard@cyganiak.de)
  */
@@ -33,10 +46,21 @@ public class TransformOpBGP extends TransformCopy {
 	private final Mapping mapping;
 	private final boolean useAllOptimizations;
 	private final boolean transformFilters;
+	private final Set<BasicPattern> untranslatable;
 	
 	public TransformOpBGP(Mapping mapping, boolean transformFilters) {
+		this(mapping, transformFilters, new HashSet<BasicPattern>());
+	}
+	
+	/**
+	 * @param untranslatable BGPs that were given up on. Passes that share
+	 * 		the set don't attempt them again.
+	 */
+	public TransformOpBGP(Mapping mapping, boolean transformFilters, 
+			Set<BasicPattern> untranslatable) {
 		this.mapping = mapping;
 		this.transformFilters = transformFilters;
+		this.untranslatable = untranslatable;
 		this.useAllOptimizations = mapping.configuration().getUseAllOptimizations();
 	}
 	
@@ -45,7 +69,8 @@ public class TransformOpBGP extends TransformCopy {
 		if (transformFilters) {
 			return opBGP;
 		}
-		return createOpD2RQ(opBGP, new ExprList());
+		Op op = createOpD2RQ(opBGP, new ExprList());
+		return op == null ? opBGP : op;
 	}
 
 	@Override
@@ -53,39 +78,77 @@ public class TransformOpBGP extends TransformCopy {
 		if (!transformFilters || !(opFilter.getSubOp() instanceof OpBGP)) {
 			return super.transform(opFilter, subOp);
 		}
-		return createOpD2RQ((OpBGP) subOp, opFilter.getExprs());
+		Op op = createOpD2RQ((OpBGP) subOp, opFilter.getExprs());
+		return op == null ? super.transform(opFilter, subOp) : op;
 	}
 
+	/**
+	 * @return The translated BGP, or <code>null</code> if it matches
+	 * 		too many combinations of property bridges
+	 */
 	public Op createOpD2RQ(OpBGP opBGP, ExprList filters) {
+		if (untranslatable.contains(opBGP.getPattern())) {
+			return null;
+		}
         List<NodeRelation> tables = new GraphPatternTranslator(
-        		opBGP.getPattern().getList(), mapping.compiledPropertyBridges(), 
-        		useAllOptimizations).translate();
+        		opBGP.getPattern().getList(), mapping.compiledPropertyBridgeIndex(), 
+        		useAllOptimizations, mapping.configuration().getMaxJoinCombinations()).translate();
+        if (tables == null) {
+        	untranslatable.add(opBGP.getPattern());
+        	return null;
+        }
         
         if (useAllOptimizations) {
         	log.debug("NodeRelations before applying filters: " + tables.size());
+        	Map<Op,Op> patterns = translatePatterns(filters);
         	ExprList copy = new ExprList(filters);
         	for (Expr filter: copy) {
-        		tables = applyFilter(tables, filter, filters);
+        		tables = applyFilter(tables, filter, filters, patterns);
         	}
         	if (log.isDebugEnabled()) {
         		log.debug("NodeRelations after applying filters: " + tables.size());
         	}
         }
         
-        Op op = OpUnionTableSQL.create(tables);
+        Op op = OpUnionTableSQL.create(tables, mapping.configuration());
         if (!filters.isEmpty()) {
             op = OpFilter.filter(filters, op);
         }
         return op;
     }
     
-    private List<NodeRelation> applyFilter(
-    		List<NodeRelation> nodeRelations, Expr filter, ExprList allFilters) {
+    /**
+     * Translates the patterns of <code>EXISTS</code> and
+     * <code>NOT EXISTS</code> in the filters, so that they can become
+     * SQL subqueries. The filters keep the original patterns, as ARQ
+     * can't print expressions that contain our own operators.
+     */
+    private Map<Op,Op> translatePatterns(ExprList filters) {
+    	final Map<Op,Op> results = new HashMap<Op,Op>();
+    	for (Expr filter: filters) {
+    		ExprWalker.walk(new ExprVisitorBase() {
+    			@Override
+    			public void visit(ExprFunctionOp funcOp) {
+    				Op pattern = funcOp.getGraphPattern();
+    				if (results.containsKey(pattern)) return;
+    				Op op = Transformer.transform(
+    						new TransformOpBGP(mapping, true, untranslatable), pattern);
+    				op = Transformer.transform(
+    						new TransformOpBGP(mapping, false, untranslatable), op);
+    				results.put(pattern, op);
+    			}
+    		}, filter);
+    	}
+    	return results;
+    }
+    
+    private List<NodeRelation> applyFilter(List<NodeRelation> nodeRelations, 
+    		Expr filter, ExprList allFilters, Map<Op,Op> patterns) {
         List<NodeRelation> result = new ArrayList<NodeRelation>();
         boolean convertable = true;
         for (NodeRelation nodeRelation: nodeRelations) {
         	// TODO: The transformation from Expr to Expression should happen in NodeRelation.select()
-            Expression expression = TransformExprToSQLApplyer.convert(filter, nodeRelation);
+            Expression expression = TransformExprToSQLApplyer.convert(filter, nodeRelation, patterns);
             if (expression == null) {
             	// the expression cannot be transformed to SQL
                 convertable = false;
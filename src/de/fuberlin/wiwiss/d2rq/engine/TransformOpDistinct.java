@@ -0,0 +1,148 @@
+package de.fuberlin.wiwiss.d2rq.engine;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import com.hp.hpl.jena.query.SortCondition;
+import com.hp.hpl.jena.sparql.algebra.Op;
+import com.hp.hpl.jena.sparql.algebra.TransformCopy;
+import com.hp.hpl.jena.sparql.algebra.op.Op1;
+import com.hp.hpl.jena.sparql.algebra.op.OpDistinct;
+import com.hp.hpl.jena.sparql.algebra.op.OpOrder;
+import com.hp.hpl.jena.sparql.algebra.op.OpProject;
+import com.hp.hpl.jena.sparql.algebra.op.OpReduced;
+import com.hp.hpl.jena.sparql.core.Var;
+
+import de.fuberlin.wiwiss.d2rq.algebra.Attribute;
+import de.fuberlin.wiwiss.d2rq.algebra.NodeRelation;
+import de.fuberlin.wiwiss.d2rq.algebra.ProjectionSpec;
+import de.fuberlin.wiwiss.d2rq.algebra.Relation;
+import de.fuberlin.wiwiss.d2rq.nodes.FixedNodeMaker;
+import de.fuberlin.wiwiss.d2rq.nodes.NodeMaker;
+import de.fuberlin.wiwiss.d2rq.nodes.TypedNodeMaker;
+import de.fuberlin.wiwiss.d2rq.values.BlankNodeID;
+import de.fuberlin.wiwiss.d2rq.values.Column;
+import de.fuberlin.wiwiss.d2rq.values.Pattern;
+import de.fuberlin.wiwiss.d2rq.values.ValueMaker;
+
+/**
+ * Moves the duplicate elimination of an {@link OpDistinct} or
+ * {@link OpReduced} over an {@link OpUnionTableSQL} into SQL,
+ * so that it no longer has to keep all solutions in memory.
+ *
+ * This is only done if the OpUnionTableSQL consists of a single
+ * unlimited SQL query, optionally below an {@link OpProject} and
+ * an {@link OpOrder} that sorts by projected variables. The SQL
+ * query is reduced to the columns of the projected variables.
+ * If the projected columns include a primary key or unique key of
+ * each table, the rows are already unique and no SQL
+ * <code>DISTINCT</code> is needed; otherwise, all columns must
+ * support <code>DISTINCT</code>.
+ *
+ * The OpDistinct or OpReduced is dropped if distinct rows are
+ * known to produce distinct solutions, which is the case for values
+ * taken straight from a column or from a pattern with a single column.
+ * Otherwise it is kept, but has fewer solutions to look at.
+ */
+public class TransformOpDistinct extends TransformCopy {
+
+	@Override
+	public Op transform(OpDistinct opDistinct, Op subOp) {
+		Op result = eliminateDuplicates(opDistinct, subOp);
+		return result == null ? super.transform(opDistinct, subOp) : result;
+	}
+
+	@Override
+	public Op transform(OpReduced opReduced, Op subOp) {
+		Op result = eliminateDuplicates(opReduced, subOp);
+		return result == null ? super.transform(opReduced, subOp) : result;
+	}
+
+	private Op eliminateDuplicates(Op1 original, Op subOp) {
+		OpProject opProject = null;
+		OpOrder opOrder = null;
+		Op op = subOp;
+		if (op instanceof OpProject) {
+			opProject = (OpProject) op;
+			op = opProject.getSubOp();
+		}
+		if (op instanceof OpOrder) {
+			opOrder = (OpOrder) op;
+			op = opOrder.getSubOp();
+		}
+		if (!(op instanceof OpUnionTableSQL)) return null;
+		OpUnionTableSQL union = (OpUnionTableSQL) op;
+		NodeRelation table = union.singleTable();
+		if (table == null) return null;
+		Set<Var> vars = opProject == null
+				? table.variables() : new HashSet<Var>(opProject.getVars());
+		if (opOrder != null) {
+			for (SortCondition condition: opOrder.getConditions()) {
+				if (!vars.containsAll(condition.getExpression().getVarsMentioned())) return null;
+			}
+		}
+		for (Var var: table.variables()) {
+			// Variables that are projected away must not drop any rows
+			if (!vars.contains(var)
+					&& !table.producesNodeForEveryRow(var)) {
+				return null;
+			}
+		}
+		NodeRelation projected = table.project(vars);
+		Relation relation = projected.baseRelation();
+		if (relation.projections().isEmpty()) return null;
+		boolean isUnique = relation.projectsUniqueKeys();
+		if (!isUnique && !supportsDistinct(relation)) return null;
+		Op result = union.withTables(
+				Collections.singleton(projected.unique(isUnique)));
+		if (opOrder != null) {
+			result = opOrder.copy(result);
+		}
+		if (opProject != null) {
+			result = opProject.copy(result);
+		}
+		for (Var var: projected.variables()) {
+			if (!makesDistinctNodes(projected.nodeMaker(var))) {
+				return original.copy(result);
+			}
+		}
+		return result;
+	}
+
+	private boolean supportsDistinct(Relation relation) {
+		for (ProjectionSpec projection: relation.projections()) {
+			for (Attribute column: projection.requiredAttributes()) {
+				if (!relation.database().columnType(
+						relation.aliases().originalOf(column)).supportsDistinct()) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Tells if different values of the node maker's columns always
+	 * produce different nodes.
+	 */
+	private boolean makesDistinctNodes(NodeMaker nodeMaker) {
+		if (nodeMaker instanceof FixedNodeMaker) return true;
+		if (!(nodeMaker instanceof TypedNodeMaker)) return false;
+		TypedNodeMaker typed = (TypedNodeMaker) nodeMaker;
+		if (typed.nodeType() == TypedNodeMaker.XSD_BOOLEAN) {
+			// "0" and "false" are the same node
+			return false;
+		}
+		ValueMaker values = typed.valueMaker();
+		if (values instanceof Column) return true;
+		if (values instanceof Pattern) {
+			Pattern pattern = (Pattern) values;
+			return pattern.attributes().size() == 1 && !pattern.usesColumnFunctions();
+		}
+		if (values instanceof BlankNodeID) {
+			return ((BlankNodeID) values).attributes().size() == 1;
+		}
+		return false;
+	}
+}
@@ -0,0 +1,39 @@
+package de.fuberlin.wiwiss.d2rq.engine;
+
+import com.hp.hpl.jena.sparql.algebra.Op;
+import com.hp.hpl.jena.sparql.algebra.TransformCopy;
+import com.hp.hpl.jena.sparql.algebra.op.OpGroup;
+
+import de.fuberlin.wiwiss.d2rq.algebra.NodeRelation;
+
+/**
+ * Translates an {@link OpGroup} over an {@link OpUnionTableSQL}
+ * into an {@link OpGroupTableSQL}, which lets the database compute
+ * groups and aggregates (COUNT, SUM, AVG, MIN, MAX).
+ *
+ * This is only done if the OpUnionTableSQL consists of a single
+ * SQL query, and if all aggregates can be computed in SQL with
+ * the same result as in SPARQL; see {@link GroupBindingMaker}.
+ * Anything else, such as GROUP_CONCAT, SAMPLE, or grouping by
+ * expressions, is left to ARQ.
+ */
+public class TransformOpGroup extends TransformCopy {
+
+	@Override
+	public Op transform(OpGroup opGroup, Op subOp) {
+		if (!(subOp instanceof OpUnionTableSQL)) {
+			return super.transform(opGroup, subOp);
+		}
+		NodeRelation table = ((OpUnionTableSQL) subOp).singleTable();
+		if (table == null) {
+			return super.transform(opGroup, subOp);
+		}
+		GroupBindingMaker bindingMaker = GroupBindingMaker.create(table,
+				opGroup.getGroupVars(), opGroup.getAggregators());
+		if (bindingMaker == null) {
+			return super.transform(opGroup, subOp);
+		}
+		return new OpGroupTableSQL((OpGroup) opGroup.copy(subOp),
+				table.baseRelation(), bindingMaker);
+	}
+}
@@ -0,0 +1,109 @@
+package de.fuberlin.wiwiss.d2rq.engine;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import com.hp.hpl.jena.sparql.algebra.Op;
+import com.hp.hpl.jena.sparql.algebra.TransformCopy;
+import com.hp.hpl.jena.sparql.algebra.op.OpLeftJoin;
+import com.hp.hpl.jena.sparql.core.Var;
+
+import de.fuberlin.wiwiss.d2rq.algebra.LeftJoinRelation;
+import de.fuberlin.wiwiss.d2rq.algebra.NodeRelation;
+import de.fuberlin.wiwiss.d2rq.algebra.Relation;
+import de.fuberlin.wiwiss.d2rq.algebra.VariableConstraints;
+import de.fuberlin.wiwiss.d2rq.expr.Expression;
+import de.fuberlin.wiwiss.d2rq.nodes.NodeMaker;
+
+/**
+ * Translates an {@link OpLeftJoin} (SPARQL OPTIONAL) whose sides each
+ * are a single SQL query against the same database into an
+ * {@link OpLeftJoinTableSQL}, which evaluates both sides in
+ * one SQL statement with a <code>LEFT OUTER JOIN</code>. The left
+ * side may itself be an OpLeftJoinTableSQL, so a sequence
+ * of OPTIONALs becomes a single SQL statement.
+ *
+ * OPTIONALs with a FILTER are left to ARQ, and so are those whose
+ * right side has rows that don't produce a binding, such as invalid
+ * typed literals: SQL would still join such a row and bind the other
+ * variables of the group.
+ */
+public class TransformOpLeftJoin extends TransformCopy {
+
+	@Override
+	public Op transform(OpLeftJoin opLeftJoin, Op left, Op right) {
+		if (opLeftJoin.getExprs() != null && !opLeftJoin.getExprs().isEmpty()) {
+			return super.transform(opLeftJoin, left, right);
+		}
+		NodeRelation leftTable;
+		Set<Var> leftOptionalVars;
+		if (left instanceof OpLeftJoinTableSQL) {
+			leftTable = ((OpLeftJoinTableSQL) left).table();
+			leftOptionalVars = ((OpLeftJoinTableSQL) left).optionalVars();
+		} else {
+			leftTable = singleTable(left);
+			leftOptionalVars = Collections.emptySet();
+		}
+		NodeRelation rightTable = singleTable(right);
+		if (leftTable == null || rightTable == null
+				|| !rightTable.producesBindingForEveryRow()
+				|| (leftTable.baseRelation().database() != rightTable.baseRelation().database()
+						&& !leftTable.baseRelation().database().equals(rightTable.baseRelation().database()))) {
+			return super.transform(opLeftJoin, left, right);
+		}
+		Set<Var> sharedVars = new HashSet<Var>(leftTable.variables());
+		sharedVars.retainAll(rightTable.variables());
+		Set<Var> optionalVars = new HashSet<Var>(rightTable.variables());
+		optionalVars.removeAll(sharedVars);
+		if (!Collections.disjoint(sharedVars, leftOptionalVars)) {
+			return super.transform(opLeftJoin, left, right);
+		}
+		for (Var var: optionalVars) {
+			// Without columns, we couldn't tell whether the right side matched
+			if (rightTable.nodeMaker(var).projectionSpecs().isEmpty()) {
+				return super.transform(opLeftJoin, left, right);
+			}
+		}
+		rightTable = withDistinctTableNames(rightTable, leftTable.baseRelation());
+		VariableConstraints constraints = new VariableConstraints();
+		for (Var var: sharedVars) {
+			constraints.add(var, leftTable.nodeMaker(var), leftTable.baseRelation().aliases());
+			constraints.add(var, rightTable.nodeMaker(var), rightTable.baseRelation().aliases());
+		}
+		Expression joinCondition = constraints.constraint();
+		if (joinCondition.isFalse()) {
+			// The right side never matches
+			return left;
+		}
+		Map<Var,NodeMaker> nodeMakers = new HashMap<Var,NodeMaker>();
+		for (Var var: leftTable.variables()) {
+			nodeMakers.put(var, leftTable.nodeMaker(var));
+		}
+		for (Var var: optionalVars) {
+			nodeMakers.put(var, rightTable.nodeMaker(var));
+		}
+		Set<Var> allOptionalVars = new HashSet<Var>(leftOptionalVars);
+		allOptionalVars.addAll(optionalVars);
+		Relation joined = new LeftJoinRelation(leftTable.baseRelation(),
+				rightTable.baseRelation(), joinCondition);
+		return new OpLeftJoinTableSQL((OpLeftJoin) opLeftJoin.copy(left, right),
+				new NodeRelation(joined, nodeMakers), allOptionalVars);
+	}
+
+	private NodeRelation singleTable(Op op) {
+		if (!(op instanceof OpUnionTableSQL)) return null;
+		return ((OpUnionTableSQL) op).singleTable();
+	}
+
+	private NodeRelation withDistinctTableNames(NodeRelation table, Relation other) {
+		int index = 1;
+		NodeRelation result = table;
+		while (!Collections.disjoint(result.baseRelation().tables(), other.tables())) {
+			result = table.withPrefix(index++);
+		}
+		return result;
+	}
+}
@@ -0,0 +1,75 @@
+package de.fuberlin.wiwiss.d2rq.engine;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import com.hp.hpl.jena.sparql.algebra.Op;
+import com.hp.hpl.jena.sparql.algebra.TransformCopy;
+import com.hp.hpl.jena.sparql.algebra.op.OpMinus;
+import com.hp.hpl.jena.sparql.algebra.op.OpNull;
+
+import de.fuberlin.wiwiss.d2rq.algebra.NodeRelation;
+import de.fuberlin.wiwiss.d2rq.algebra.Relation;
+import de.fuberlin.wiwiss.d2rq.expr.Disjunction;
+import de.fuberlin.wiwiss.d2rq.expr.Exists;
+import de.fuberlin.wiwiss.d2rq.expr.Expression;
+import de.fuberlin.wiwiss.d2rq.expr.Negation;
+
+/**
+ * Evaluates a SPARQL <code>MINUS</code> of two patterns that were
+ * translated to SQL as a <code>NOT EXISTS</code> condition on the
+ * SQL queries of the left side, instead of fetching the solutions
+ * of both sides and comparing them in memory.
+ *
+ * A solution of the left side is removed if the right side has a
+ * solution that shares a variable with it and agrees on all shared
+ * variables. The SQL queries of the right side bind all of their
+ * variables in every solution, so the shared variables are the same
+ * for all solutions of one of its SQL queries.
+ */
+public class TransformOpMinus extends TransformCopy {
+
+	@Override
+	public Op transform(OpMinus opMinus, Op left, Op right) {
+		if (!(left instanceof OpUnionTableSQL)) {
+			return super.transform(opMinus, left, right);
+		}
+		if (right instanceof OpNull) {
+			return left;
+		}
+		if (!(right instanceof OpUnionTableSQL)) {
+			return super.transform(opMinus, left, right);
+		}
+		List<NodeRelation> results = new ArrayList<NodeRelation>();
+		for (OpTableSQL leftOp: ((OpUnionTableSQL) left).tableOps()) {
+			NodeRelation table = leftOp.table();
+			if (table.baseRelation().limit() != Relation.NO_LIMIT) {
+				return super.transform(opMinus, left, right);
+			}
+			Collection<Expression> matches = new ArrayList<Expression>();
+			for (OpTableSQL rightOp: ((OpUnionTableSQL) right).tableOps()) {
+				if (Collections.disjoint(table.variables(), rightOp.table().variables())) {
+					continue;
+				}
+				Expression match = Exists.create(table, rightOp.table());
+				if (match == null) {
+					return super.transform(opMinus, left, right);
+				}
+				matches.add(match);
+			}
+			Expression match = Disjunction.create(matches);
+			if (match.isTrue()) continue;
+			if (!match.isFalse()) {
+				table = table.select(new Negation(match));
+				if (table.baseRelation().condition().isFalse()) continue;
+			}
+			results.add(table);
+		}
+		if (results.isEmpty()) {
+			return OpNull.create();
+		}
+		return ((OpUnionTableSQL) left).withTables(results);
+	}
+}
@@ -0,0 +1,70 @@
+package de.fuberlin.wiwiss.d2rq.engine;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.hp.hpl.jena.query.Query;
+import com.hp.hpl.jena.query.SortCondition;
+import com.hp.hpl.jena.sparql.algebra.Op;
+import com.hp.hpl.jena.sparql.algebra.TransformCopy;
+import com.hp.hpl.jena.sparql.algebra.op.OpOrder;
+import com.hp.hpl.jena.sparql.core.Var;
+
+import de.fuberlin.wiwiss.d2rq.algebra.NodeRelation;
+import de.fuberlin.wiwiss.d2rq.algebra.OrderSpec;
+import de.fuberlin.wiwiss.d2rq.nodes.FixedNodeMaker;
+import de.fuberlin.wiwiss.d2rq.nodes.NodeMaker;
+import de.fuberlin.wiwiss.d2rq.nodes.TypedNodeMaker;
+import de.fuberlin.wiwiss.d2rq.values.Column;
+
+/**
+ * Translates an {@link OpOrder} over an {@link OpUnionTableSQL}
+ * into an SQL <code>ORDER BY</code> clause, using
+ * {@link NodeMaker#orderSpecs(boolean)}.
+ *
+ * This is only done if the OpUnionTableSQL consists of a single
+ * SQL query, and all sort keys are variables whose values come
+ * straight from a database column. In that case, the database
+ * orders the values like SPARQL does: numbers numerically, dates
+ * chronologically, and strings according to the column's collation.
+ * Values generated from URI patterns or SQL expressions would
+ * sort differently and are left to ARQ.
+ */
+public class TransformOpOrder extends TransformCopy {
+
+	@Override
+	public Op transform(OpOrder opOrder, Op subOp) {
+		if (!(subOp instanceof OpUnionTableSQL)) {
+			return super.transform(opOrder, subOp);
+		}
+		OpUnionTableSQL union = (OpUnionTableSQL) subOp;
+		if (union.tableOps().size() != 1) {
+			return super.transform(opOrder, subOp);
+		}
+		NodeRelation table = union.tableOps().get(0).table();
+		List<OrderSpec> orderSpecs = new ArrayList<OrderSpec>();
+		for (SortCondition condition: opOrder.getConditions()) {
+			if (!condition.getExpression().isVariable()) {
+				return super.transform(opOrder, subOp);
+			}
+			Var var = condition.getExpression().asVar();
+			if (!table.variables().contains(var)) {
+				// Unbound in all solutions, doesn't affect the order
+				continue;
+			}
+			NodeMaker nodeMaker = table.nodeMaker(var);
+			if (nodeMaker instanceof FixedNodeMaker) {
+				// Same value in all solutions
+				continue;
+			}
+			if (!(nodeMaker instanceof TypedNodeMaker)
+					|| !(((TypedNodeMaker) nodeMaker).valueMaker() instanceof Column)) {
+				return super.transform(opOrder, subOp);
+			}
+			orderSpecs.addAll(nodeMaker.orderSpecs(
+					condition.getDirection() != Query.ORDER_DESCENDING));
+		}
+		OpOrder original = (OpOrder) opOrder.copy(subOp);
+		return new OpOrderedTableSQL(original, union.orderBy(orderSpecs));
+	}
+}
@@ -0,0 +1,186 @@
+package de.fuberlin.wiwiss.d2rq.engine;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.sparql.algebra.Op;
+import com.hp.hpl.jena.sparql.algebra.TransformCopy;
+import com.hp.hpl.jena.sparql.algebra.op.OpPath;
+import com.hp.hpl.jena.sparql.core.TriplePath;
+import com.hp.hpl.jena.sparql.path.P_Inverse;
+import com.hp.hpl.jena.sparql.path.P_OneOrMore;
+import com.hp.hpl.jena.sparql.path.P_Path0;
+import com.hp.hpl.jena.sparql.path.P_Path1;
+import com.hp.hpl.jena.sparql.path.P_ZeroOrMore;
+import com.hp.hpl.jena.sparql.path.Path;
+
+import de.fuberlin.wiwiss.d2rq.algebra.Attribute;
+import de.fuberlin.wiwiss.d2rq.algebra.LeftJoinRelation;
+import de.fuberlin.wiwiss.d2rq.algebra.Relation;
+import de.fuberlin.wiwiss.d2rq.algebra.TripleRelation;
+import de.fuberlin.wiwiss.d2rq.algebra.TripleRelationIndex;
+import de.fuberlin.wiwiss.d2rq.expr.AttributeExpr;
+import de.fuberlin.wiwiss.d2rq.expr.Conjunction;
+import de.fuberlin.wiwiss.d2rq.expr.Expression;
+import de.fuberlin.wiwiss.d2rq.expr.NotNull;
+import de.fuberlin.wiwiss.d2rq.nodes.NodeMaker;
+import de.fuberlin.wiwiss.d2rq.nodes.TypedNodeMaker;
+import de.fuberlin.wiwiss.d2rq.sql.ClosureStatementBuilder;
+import de.fuberlin.wiwiss.d2rq.sql.ConnectedDB;
+import de.fuberlin.wiwiss.d2rq.values.BlankNodeID;
+import de.fuberlin.wiwiss.d2rq.values.Column;
+import de.fuberlin.wiwiss.d2rq.values.Pattern;
+import de.fuberlin.wiwiss.d2rq.values.ValueMaker;
+
+/**
+ * Translates SPARQL property paths of the form <code>:p+</code> and
+ * <code>:p*</code>, or their inverses, into an
+ * {@link OpPathTableSQL} that evaluates them with a single recursive
+ * SQL query, instead of one query for each step along the path.
+ *
+ * This is only done if a single property bridge produces the
+ * property, its subjects and objects are produced from the values of
+ * non-<code>NULL</code> columns in the same way, so that an object
+ * can be matched to the next subject by comparing columns, and its
+ * database supports recursive queries. Other paths are left to ARQ.
+ */
+public class TransformOpPath extends TransformCopy {
+	private final TripleRelationIndex tripleRelations;
+
+	public TransformOpPath(TripleRelationIndex tripleRelations) {
+		this.tripleRelations = tripleRelations;
+	}
+
+	@Override
+	public Op transform(OpPath opPath) {
+		TriplePath triplePath = opPath.getTriplePath();
+		Path path = triplePath.getPath();
+		boolean forward = true;
+		if (path instanceof P_Inverse) {
+			forward = false;
+			path = ((P_Inverse) path).getSubPath();
+		}
+		boolean zeroLength;
+		if (path instanceof P_OneOrMore) {
+			zeroLength = false;
+		} else if (path instanceof P_ZeroOrMore) {
+			zeroLength = true;
+		} else {
+			return super.transform(opPath);
+		}
+		Path step = ((P_Path1) path).getSubPath();
+		if (!(step instanceof P_Path0)) {
+			return super.transform(opPath);
+		}
+		if (!((P_Path0) step).isForward()) {
+			forward = !forward;
+		}
+		Node subject = triplePath.getSubject();
+		Node object = triplePath.getObject();
+		if (!forward) {
+			subject = triplePath.getObject();
+			object = triplePath.getSubject();
+		}
+		if (subject.isVariable() && subject.equals(object)) {
+			return super.transform(opPath);
+		}
+		TripleRelation edges = findEdges(((P_Path0) step).getNode());
+		if (edges == null) {
+			return super.transform(opPath);
+		}
+		return new OpPathTableSQL(opPath, subject, object, zeroLength, edges);
+	}
+
+	/**
+	 * @return The triples of the property bridge that produces all
+	 * 		triples of the property, with <code>IS NOT NULL</code>
+	 * 		conditions on the columns of its subjects and objects,
+	 * 		or <code>null</code> if recursive SQL can't find paths
+	 * 		along them
+	 */
+	private TripleRelation findEdges(Node property) {
+		Triple pattern = Triple.create(Node.ANY, property, Node.ANY);
+		TripleRelation result = null;
+		for (TripleRelation candidate: tripleRelations.candidates(pattern)) {
+			TripleRelation selected = candidate.selectTriple(pattern);
+			if (selected == null) continue;
+			if (selected.baseRelation().condition().isFalse()) continue;
+			if (result != null) return null;
+			result = selected;
+		}
+		if (result == null) return null;
+		Relation relation = result.baseRelation();
+		if (relation.isTrivial() || relation instanceof LeftJoinRelation) return null;
+		if (relation.limit() != Relation.NO_LIMIT || !relation.orderSpecs().isEmpty()) return null;
+		if (relation.tables().contains(ClosureStatementBuilder.CLOSURE)) return null;
+		if (!result.producesNodeForEveryRow(TripleRelation.SUBJECT)
+				|| !result.producesNodeForEveryRow(TripleRelation.OBJECT)) {
+			return null;
+		}
+		NodeMaker subjects = result.nodeMaker(TripleRelation.SUBJECT);
+		NodeMaker objects = result.nodeMaker(TripleRelation.OBJECT);
+		List<Attribute> sources = OpPathTableSQL.attributes(subjects);
+		List<Attribute> targets = OpPathTableSQL.attributes(objects);
+		if (sources.isEmpty() || targets.isEmpty()) return null;
+		if (!Collections.disjoint(sources, targets)) return null;
+		if (!isCompatible(subjects, sources, objects, targets)) return null;
+		ConnectedDB database = relation.database();
+		if (!database.vendor().supportsRecursiveQueries()) return null;
+		Collection<Expression> notNull = new ArrayList<Expression>();
+		List<Attribute> all = new ArrayList<Attribute>(sources);
+		all.addAll(targets);
+		for (Attribute attribute: all) {
+			if (database.isNullable(relation.aliases().originalOf(attribute))) {
+				notNull.add(NotNull.create(new AttributeExpr(attribute)));
+			}
+		}
+		return new TripleRelation(relation.select(Conjunction.create(notNull)),
+				subjects, result.nodeMaker(TripleRelation.PREDICATE), objects);
+	}
+
+	/**
+	 * Tells whether the objects of an edge are the subjects of the next
+	 * edge exactly when their columns are equal: both must make the same
+	 * kind of node from the same pattern, and the recursive query must
+	 * compare each object column with the subject column that sits at
+	 * the same place in the pattern.
+	 */
+	private boolean isCompatible(NodeMaker subjects, List<Attribute> sources,
+			NodeMaker objects, List<Attribute> targets) {
+		if (!(subjects instanceof TypedNodeMaker) || !(objects instanceof TypedNodeMaker)) {
+			return false;
+		}
+		if (((TypedNodeMaker) subjects).nodeType() != ((TypedNodeMaker) objects).nodeType()) {
+			return false;
+		}
+		ValueMaker subjectValues = ((TypedNodeMaker) subjects).valueMaker();
+		ValueMaker objectValues = ((TypedNodeMaker) objects).valueMaker();
+		List<Attribute> subjectColumns;
+		List<Attribute> objectColumns;
+		if (subjectValues instanceof Column && objectValues instanceof Column) {
+			return true;
+		} else if (subjectValues instanceof Pattern && objectValues instanceof Pattern) {
+			if (!((Pattern) subjectValues).isEquivalentTo((Pattern) objectValues)) return false;
+			subjectColumns = ((Pattern) subjectValues).attributes();
+			objectColumns = ((Pattern) objectValues).attributes();
+		} else if (subjectValues instanceof BlankNodeID && objectValues instanceof BlankNodeID) {
+			if (!((BlankNodeID) subjectValues).classMapID().equals(
+					((BlankNodeID) objectValues).classMapID())) return false;
+			subjectColumns = ((BlankNodeID) subjectValues).attributes();
+			objectColumns = ((BlankNodeID) objectValues).attributes();
+		} else {
+			return false;
+		}
+		if (subjectColumns.size() != objectColumns.size()) return false;
+		for (int i = 0; i < subjectColumns.size(); i++) {
+			if (sources.indexOf(subjectColumns.get(i)) != targets.indexOf(objectColumns.get(i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
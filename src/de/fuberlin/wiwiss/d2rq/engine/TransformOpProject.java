@@ -0,0 +1,101 @@
+package de.fuberlin.wiwiss.d2rq.engine;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.hp.hpl.jena.query.SortCondition;
+import com.hp.hpl.jena.sparql.algebra.Op;
+import com.hp.hpl.jena.sparql.algebra.TransformCopy;
+import com.hp.hpl.jena.sparql.algebra.op.OpOrder;
+import com.hp.hpl.jena.sparql.algebra.op.OpProject;
+import com.hp.hpl.jena.sparql.core.Var;
+
+import de.fuberlin.wiwiss.d2rq.algebra.Attribute;
+import de.fuberlin.wiwiss.d2rq.algebra.NodeRelation;
+import de.fuberlin.wiwiss.d2rq.algebra.ProjectionSpec;
+import de.fuberlin.wiwiss.d2rq.algebra.Relation;
+import de.fuberlin.wiwiss.d2rq.algebra.UnusedJoinRemover;
+
+/**
+ * Removes variables that are projected away by an {@link OpProject}
+ * from the tables of an {@link OpUnionTableSQL} below it, so that
+ * the SQL queries don't select columns that aren't needed. Joins that
+ * only led to such columns are then removed where foreign keys make
+ * this safe; see {@link UnusedJoinRemover}.
+ *
+ * A variable is only removed if its node maker produces a node for
+ * every row, as other node makers could drop rows. An {@link OpOrder}
+ * between the OpProject and the OpUnionTableSQL keeps its sort
+ * variables.
+ *
+ * SPARQL projection keeps duplicates, so the number of rows must
+ * not change. SQL queries of relations that are not known to be
+ * unique use <code>DISTINCT</code>, which would merge rows that only
+ * differed in the removed columns. Such relations are only narrowed if
+ * the columns of a primary key or unique key of every table remain
+ * selected.
+ */
+public class TransformOpProject extends TransformCopy {
+
+	@Override
+	public Op transform(OpProject opProject, Op subOp) {
+		Set<Var> vars = new HashSet<Var>(opProject.getVars());
+		OpOrder opOrder = null;
+		Op op = subOp;
+		if (op instanceof OpOrder) {
+			opOrder = (OpOrder) op;
+			for (SortCondition condition: opOrder.getConditions()) {
+				vars.addAll(condition.getExpression().getVarsMentioned());
+			}
+			op = opOrder.getSubOp();
+		}
+		if (!(op instanceof OpUnionTableSQL)) {
+			return super.transform(opProject, subOp);
+		}
+		OpUnionTableSQL union = (OpUnionTableSQL) op;
+		List<NodeRelation> tables = new ArrayList<NodeRelation>();
+		boolean changed = false;
+		for (OpTableSQL tableOp: union.tableOps()) {
+			NodeRelation table = tableOp.table();
+			NodeRelation projected = project(table, vars);
+			tables.add(projected);
+			changed = changed || projected != table;
+		}
+		if (!changed) {
+			return super.transform(opProject, subOp);
+		}
+		Op result = union.withTables(tables);
+		if (opOrder != null) {
+			result = opOrder.copy(result);
+		}
+		return opProject.copy(result);
+	}
+
+	private NodeRelation project(NodeRelation table, Set<Var> vars) {
+		Relation relation = table.baseRelation();
+		if (relation.isTrivial() || relation.database() == null) return table;
+		Set<Var> keep = new HashSet<Var>();
+		for (Var var: table.variables()) {
+			if (vars.contains(var)
+					|| !table.producesNodeForEveryRow(var)) {
+				keep.add(var);
+			}
+		}
+		if (keep.size() == table.variables().size()) return table;
+		Set<? extends ProjectionSpec> keys = Collections.<ProjectionSpec>emptySet();
+		if (!relation.isUnique()) {
+			Set<Attribute> uniqueKeys = relation.projectedUniqueKeys();
+			if (uniqueKeys == null) return table;
+			keys = uniqueKeys;
+		}
+		NodeRelation projected = table.project(keep, keys);
+		if (projected.baseRelation().projections().isEmpty()) {
+			// Would be mistaken for the trivial table
+			return table;
+		}
+		return new UnusedJoinRemover(projected).optimize();
+	}
+}
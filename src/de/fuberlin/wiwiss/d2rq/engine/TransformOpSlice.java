@@ -0,0 +1,66 @@
+package de.fuberlin.wiwiss.d2rq.engine;
+
+import com.hp.hpl.jena.query.Query;
+import com.hp.hpl.jena.sparql.algebra.Op;
+import com.hp.hpl.jena.sparql.algebra.TransformCopy;
+import com.hp.hpl.jena.sparql.algebra.op.Op1;
+import com.hp.hpl.jena.sparql.algebra.op.OpExtend;
+import com.hp.hpl.jena.sparql.algebra.op.OpProject;
+import com.hp.hpl.jena.sparql.algebra.op.OpSlice;
+import com.hp.hpl.jena.sparql.algebra.op.OpUnion;
+
+/**
+ * Pushes the LIMIT of an {@link OpSlice} into the SQL queries
+ * of {@link OpUnionTableSQL}s below it. This is only done if
+ * the operators in between never drop or reorder solutions,
+ * and every SQL row produces a solution, so that the first
+ * LIMIT+OFFSET rows of each SQL query are guaranteed to contain
+ * the solutions of the slice. Together with
+ * {@link OpOrderedTableSQL}, this answers top-N queries in SQL.
+ *
+ * The OpSlice itself is kept, as it still has to apply the OFFSET,
+ * and has to cut off the combined results of multiple SQL queries.
+ * OFFSET can't be applied in SQL because a union of several SQL
+ * queries has to skip its first rows across all queries.
+ */
+public class TransformOpSlice extends TransformCopy {
+
+	@Override
+	public Op transform(OpSlice opSlice, Op subOp) {
+		if (opSlice.getLength() == Query.NOLIMIT) {
+			return super.transform(opSlice, subOp);
+		}
+		long rows = opSlice.getLength();
+		if (opSlice.getStart() != Query.NOLIMIT) {
+			rows += opSlice.getStart();
+		}
+		if (rows < 1 || rows > Integer.MAX_VALUE) {
+			return super.transform(opSlice, subOp);
+		}
+		return super.transform(opSlice, pushLimit(subOp, (int) rows));
+	}
+
+	private Op pushLimit(Op op, int limit) {
+		if (op instanceof OpUnionTableSQL) {
+			OpUnionTableSQL union = (OpUnionTableSQL) op;
+			return union.producesBindingForEveryRow() ? union.limit(limit) : op;
+		}
+		if (op instanceof OpOrderedTableSQL) {
+			OpOrderedTableSQL ordered = (OpOrderedTableSQL) op;
+			return ordered.orderedOp().producesBindingForEveryRow() ? ordered.limit(limit) : op;
+		}
+		if (op instanceof OpProject || op instanceof OpExtend) {
+			Op1 op1 = (Op1) op;
+			Op subOp = pushLimit(op1.getSubOp(), limit);
+			return subOp == op1.getSubOp() ? op : op1.copy(subOp);
+		}
+		if (op instanceof OpUnion) {
+			OpUnion union = (OpUnion) op;
+			Op left = pushLimit(union.getLeft(), limit);
+			Op right = pushLimit(union.getRight(), limit);
+			if (left == union.getLeft() && right == union.getRight()) return op;
+			return union.copy(left, right);
+		}
+		return op;
+	}
+}
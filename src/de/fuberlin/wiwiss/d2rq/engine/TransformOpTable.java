@@ -0,0 +1,91 @@
+package de.fuberlin.wiwiss.d2rq.engine;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.sparql.algebra.Op;
+import com.hp.hpl.jena.sparql.algebra.OpVars;
+import com.hp.hpl.jena.sparql.algebra.Table;
+import com.hp.hpl.jena.sparql.algebra.TransformCopy;
+import com.hp.hpl.jena.sparql.algebra.op.OpBGP;
+import com.hp.hpl.jena.sparql.algebra.op.OpFilter;
+import com.hp.hpl.jena.sparql.algebra.op.OpJoin;
+import com.hp.hpl.jena.sparql.algebra.op.OpTable;
+import com.hp.hpl.jena.sparql.core.Var;
+import com.hp.hpl.jena.sparql.engine.QueryIterator;
+import com.hp.hpl.jena.sparql.expr.E_OneOf;
+import com.hp.hpl.jena.sparql.expr.ExprList;
+import com.hp.hpl.jena.sparql.expr.ExprVar;
+import com.hp.hpl.jena.sparql.expr.NodeValue;
+
+/**
+ * Turns the join of a basic graph pattern with an {@link OpTable}
+ * of values for one of its variables, as written in a
+ * <code>BINDINGS</code> clause, into a filter with an
+ * <code>IN</code> expression. {@link TransformOpBGP} can then
+ * translate the filter into a SQL <code>IN</code> list on the
+ * columns of the variable, instead of fetching all solutions of
+ * the pattern and joining them in memory.
+ *
+ * This is only done if every row of the table binds the variable
+ * to a distinct URI. The join compares RDF terms, while
+ * <code>IN</code> compares values; the two only agree on URIs.
+ * A basic graph pattern always binds its variables, so unlike the
+ * join, the filter never has to extend a solution with the values.
+ */
+public class TransformOpTable extends TransformCopy {
+
+	@Override
+	public Op transform(OpJoin opJoin, Op left, Op right) {
+		Op result = filter(left, right);
+		if (result == null) {
+			result = filter(right, left);
+		}
+		return result == null ? super.transform(opJoin, left, right) : result;
+	}
+
+	private Op filter(Op pattern, Op values) {
+		if (!(values instanceof OpTable)) return null;
+		Table table = ((OpTable) values).getTable();
+		if (table.getVars().size() != 1) return null;
+		Var var = table.getVars().get(0);
+		if (!bindsAlways(pattern, var)) return null;
+		ExprList uris = uris(table, var);
+		if (uris == null || uris.isEmpty()) return null;
+		ExprList exprs = new ExprList();
+		if (pattern instanceof OpFilter) {
+			exprs.addAll(((OpFilter) pattern).getExprs());
+			pattern = ((OpFilter) pattern).getSubOp();
+		}
+		exprs.add(new E_OneOf(new ExprVar(var), uris));
+		return OpFilter.filter(exprs, pattern);
+	}
+
+	/**
+	 * @return The values of the variable in each row, or
+	 * 		<code>null</code> if one of them is not a URI, or occurs twice
+	 */
+	private ExprList uris(Table table, Var var) {
+		ExprList result = new ExprList();
+		Set<Node> seen = new HashSet<Node>();
+		QueryIterator it = table.iterator(null);
+		try {
+			while (it.hasNext()) {
+				Node node = it.nextBinding().get(var);
+				if (node == null || !node.isURI() || !seen.add(node)) return null;
+				result.add(NodeValue.makeNode(node));
+			}
+		} finally {
+			it.close();
+		}
+		return result;
+	}
+
+	private boolean bindsAlways(Op op, Var var) {
+		if (op instanceof OpFilter) {
+			op = ((OpFilter) op).getSubOp();
+		}
+		return op instanceof OpBGP && OpVars.patternVars(op).contains(var);
+	}
+}
@@ -0,0 +1,28 @@
+package de.fuberlin.wiwiss.d2rq.engine;
+
+import com.hp.hpl.jena.sparql.algebra.Op;
+import com.hp.hpl.jena.sparql.algebra.TransformCopy;
+import com.hp.hpl.jena.sparql.algebra.op.OpUnion;
+
+/**
+ * Turns an {@link OpUnion} of two {@link OpUnionTableSQL}s into a
+ * single OpUnionTableSQL with the tables of both. Nested unions,
+ * such as those of a SPARQL UNION with more than two branches,
+ * become a single OpUnionTableSQL as well.
+ *
+ * ARQ would evaluate the branches one after another. The
+ * OpUnionTableSQL instead combines all compatible tables into one
+ * SQL query, and evaluates the remaining SQL queries against the same
+ * database as a single <code>UNION ALL</code> query, or concurrently
+ * if d2rq:queryParallelism is set.
+ */
+public class TransformOpUnion extends TransformCopy {
+
+	@Override
+	public Op transform(OpUnion opUnion, Op left, Op right) {
+		if (!(left instanceof OpUnionTableSQL) || !(right instanceof OpUnionTableSQL)) {
+			return super.transform(opUnion, left, right);
+		}
+		return ((OpUnionTableSQL) left).union((OpUnionTableSQL) right);
+	}
+}
@@ -17,6 +17,7 @@ import de.fuberlin.wiwiss.d2rq.algebra.AliasMap;
 import de.fuberlin.wiwiss.d2rq.algebra.AliasMap.Alias;
 import de.fuberlin.wiwiss.d2rq.algebra.Attribute;
 import de.fuberlin.wiwiss.d2rq.algebra.Join;
+import de.fuberlin.wiwiss.d2rq.algebra.JoinOptimizer;
 import de.fuberlin.wiwiss.d2rq.algebra.VariableConstraints;
 import de.fuberlin.wiwiss.d2rq.algebra.NodeRelation;
 import de.fuberlin.wiwiss.d2rq.algebra.OrderSpec;
@@ -74,8 +75,8 @@ class TripleRelationJoiner {
 				}
 			}
 		}
-		List<Attribute> primaryKeys = database.schemaInspector().primaryKeyColumns(originalName);
-		if (primaryKeys != null) {
+		List<Attribute> primaryKeys = database.getPrimaryKeyColumns(originalName);
+		if (primaryKeys != null && !primaryKeys.isEmpty()) {
 			for (Attribute attr: primaryKeys) {
 				if (!attributeNames.contains(attr.attributeName()))
 					return false;
@@ -148,134 +149,149 @@ class TripleRelationJoiner {
 	}
 	
 	public TripleRelationJoiner join(Triple pattern, NodeRelation relation) {
+		// The constraints of the patterns joined so far stay the same,
+		// so only the new pattern is added to a copy of them
+		VariableConstraints nodeSets = new VariableConstraints(this.nodeSets);
+		NodeRelation r = addTriplePattern(pattern, relation, nodeSets);
+		if (!nodeSets.satisfiable(variablesOf(pattern))) {
+			return null;
+		}
 		List<Triple> newPatterns = new ArrayList<Triple>(joinedTriplePatterns);
 		newPatterns.add(pattern);
 		List<NodeRelation> newRelations = new ArrayList<NodeRelation>(joinedTripleRelations);
-		newRelations.add(relation);
+		newRelations.add(r);
+		return new TripleRelationJoiner(nodeSets, newPatterns, newRelations, useAllOptimizations);
+	}
 
-		VariableConstraints nodeSets = new VariableConstraints();
-		for (int i = 0; i < newPatterns.size(); i++) {
-			Triple t = (Triple) newPatterns.get(i);
-			NodeRelation r = newRelations.get(i);
+	private static List<Var> variablesOf(Triple t) {
+		List<Var> result = new ArrayList<Var>(3);
+		if (t.getSubject().isVariable()) result.add(Var.alloc(t.getSubject()));
+		if (t.getPredicate().isVariable()) result.add(Var.alloc(t.getPredicate()));
+		if (t.getObject().isVariable()) result.add(Var.alloc(t.getObject()));
+		return result;
+	}
 
-			if (useAllOptimizations) {
-				/*
-				 * Before adding a NodeMaker, try to adopt aliases from existing NodeMakers
-				 * in order to prevent unnecessary self-joins (#2798308) 
-				 */
-				// This failed when originalName had more than 1 alias r.baseRelation (fixed, GM)
-				List<String> names = new ArrayList<String>();
-	
-				if (t.getSubject().isVariable())
-					names.add(t.getSubject().getName());
-				if (t.getPredicate().isVariable())
-					names.add(t.getPredicate().getName());
-				if (t.getObject().isVariable())
-					names.add(t.getObject().getName());
-	
-				for (String name: names) {
-					Var nameVar = Var.alloc(name);
-					NodeMaker n = (NodeMaker) nodeSets.toMap().get(nameVar);
-					if (n != null/* && n instanceof TypedNodeMaker*/) {
+	/**
+	 * Adds the node makers of a triple relation that matches a triple
+	 * pattern to the node sets.
+	 * @return The triple relation, possibly with tables renamed to
+	 * 		aliases already in use 
+	 */
+	private NodeRelation addTriplePattern(Triple t, NodeRelation r, VariableConstraints nodeSets) {
+		if (useAllOptimizations) {
+			/*
+			 * Before adding a NodeMaker, try to adopt aliases from existing NodeMakers
+			 * in order to prevent unnecessary self-joins (#2798308) 
+			 */
+			// This failed when originalName had more than 1 alias r.baseRelation (fixed, GM)
+			List<String> names = new ArrayList<String>();
+
+			if (t.getSubject().isVariable())
+				names.add(t.getSubject().getName());
+			if (t.getPredicate().isVariable())
+				names.add(t.getPredicate().getName());
+			if (t.getObject().isVariable())
+				names.add(t.getObject().getName());
+
+			for (String name: names) {
+				Var nameVar = Var.alloc(name);
+				NodeMaker n = (NodeMaker) nodeSets.toMap().get(nameVar);
+				if (n != null/* && n instanceof TypedNodeMaker*/) {
 
-						AttributeSet attributes = AttributeSet.createFrom(n);
-						/*
-						 * If we would set an alias to this table...
-						 */
-						if (attributes != null) {
-							AliasMap amap = (AliasMap)(nodeSets.relationAliases().get(nameVar));
-							RelationName originalName = amap.originalOf(attributes.relationName);
-							if (r.baseRelation().aliases().hasAlias(originalName)) { 
+					AttributeSet attributes = AttributeSet.createFrom(n);
+					/*
+					 * If we would set an alias to this table...
+					 */
+					if (attributes != null) {
+						AliasMap amap = (AliasMap)(nodeSets.relationAliases().get(nameVar));
+						RelationName originalName = amap.originalOf(attributes.relationName);
+						if (r.baseRelation().aliases().hasAlias(originalName)) { 
 
-								/*
-								 * ... and indexes are in place to guarantee uniqueness of the attribute combination...
-								 */
-								if (isUnique(r.baseRelation().database(), originalName, attributes.attributeNames)) {
-									
-									if (t.getSubject().isVariable() && t.getSubject().getName().equals(name)) {
-										// ... then first find the right relation name...
-										AttributeSet existing = AttributeSet.createFrom(r.nodeMaker(TripleRelation.SUBJECT));
-										if (existing != null && existing.attributeNames.equals(attributes.attributeNames)) {
-											// ... then apply it
-											r = r.renameSingleRelation(existing.relationName, attributes.relationName);
-											newRelations.set(i, r);
-										}
+							/*
+							 * ... and indexes are in place to guarantee uniqueness of the attribute combination...
+							 */
+							if (isUnique(r.baseRelation().database(), originalName, attributes.attributeNames)) {
+								
+								if (t.getSubject().isVariable() && t.getSubject().getName().equals(name)) {
+									// ... then first find the right relation name...
+									AttributeSet existing = AttributeSet.createFrom(r.nodeMaker(TripleRelation.SUBJECT));
+									if (existing != null && existing.attributeNames.equals(attributes.attributeNames)) {
+										// ... then apply it
+										r = r.renameSingleRelation(existing.relationName, attributes.relationName);
 									}
-									
-									if (t.getPredicate().isVariable() && t.getPredicate().getName().equals(name)) {
-										// ... then first find the right relation name...
-										AttributeSet existing = AttributeSet.createFrom(r.nodeMaker(TripleRelation.PREDICATE));
-										if (existing != null && existing.attributeNames.equals(attributes.attributeNames)) {
-											// ... then apply it
-											r = r.renameSingleRelation(existing.relationName, attributes.relationName);
-											newRelations.set(i, r);
-										}
+								}
+								
+								if (t.getPredicate().isVariable() && t.getPredicate().getName().equals(name)) {
+									// ... then first find the right relation name...
+									AttributeSet existing = AttributeSet.createFrom(r.nodeMaker(TripleRelation.PREDICATE));
+									if (existing != null && existing.attributeNames.equals(attributes.attributeNames)) {
+										// ... then apply it
+										r = r.renameSingleRelation(existing.relationName, attributes.relationName);
 									}
-									
-									if (t.getObject().isVariable() && t.getObject().getName().equals(name)) {
-										// ... then first find the right relation name...
-										AttributeSet existing = AttributeSet.createFrom(r.nodeMaker(TripleRelation.OBJECT));
-										if (existing != null && existing.attributeNames.equals(attributes.attributeNames)) {
-											// ... then apply it
-											r = r.renameSingleRelation(existing.relationName, attributes.relationName);
-											newRelations.set(i, r);
-										}
+								}
+								
+								if (t.getObject().isVariable() && t.getObject().getName().equals(name)) {
+									// ... then first find the right relation name...
+									AttributeSet existing = AttributeSet.createFrom(r.nodeMaker(TripleRelation.OBJECT));
+									if (existing != null && existing.attributeNames.equals(attributes.attributeNames)) {
+										// ... then apply it
+										r = r.renameSingleRelation(existing.relationName, attributes.relationName);
 									}
-								}							
-							}
+								}
+							}							
 						}
 					}
 				}
 			}
-			
-			if (t.getObject().isVariable()) {
-				List<RelationName> relationNames = getRelationNames(
-						r.nodeMaker(TripleRelation.OBJECT));
-				Set<Alias> aliases = new HashSet<Alias>();
-								
-				for (RelationName rname: relationNames) {
-					if (r.baseRelation().aliases().isAlias(rname))
-						aliases.add(new AliasMap.Alias(r.baseRelation().aliases().originalOf(rname), rname));
-				}
-				nodeSets.add(Var.alloc(t.getObject()), r.nodeMaker(TripleRelation.OBJECT), new AliasMap(aliases));
-			}
-			
-			if (t.getPredicate().isVariable()) {
-				List<RelationName> relationNames = getRelationNames(
-						r.nodeMaker(TripleRelation.PREDICATE));
-				Set<Alias> aliases = new HashSet<Alias>();
-								
-				for (RelationName rname: relationNames) {
-					if (r.baseRelation().aliases().isAlias(rname))
-						aliases.add(new AliasMap.Alias(r.baseRelation().aliases().originalOf(rname), rname));
-				}
-				nodeSets.add(Var.alloc(t.getPredicate()), r.nodeMaker(TripleRelation.PREDICATE), new AliasMap(aliases));
+		}
+		
+		if (t.getObject().isVariable()) {
+			List<RelationName> relationNames = getRelationNames(
+					r.nodeMaker(TripleRelation.OBJECT));
+			Set<Alias> aliases = new HashSet<Alias>();
+							
+			for (RelationName rname: relationNames) {
+				if (r.baseRelation().aliases().isAlias(rname))
+					aliases.add(new AliasMap.Alias(r.baseRelation().aliases().originalOf(rname), rname));
 			}
-			
-			if (t.getSubject().isVariable()) {
-				List<RelationName> relationNames = getRelationNames(
-						r.nodeMaker(TripleRelation.SUBJECT));
-				Set<Alias> aliases = new HashSet<Alias>();
-								
-				for (RelationName rname: relationNames) {
-					if (r.baseRelation().aliases().isAlias(rname))
-						aliases.add(new AliasMap.Alias(r.baseRelation().aliases().originalOf(rname), rname));
-				}
-				nodeSets.add(Var.alloc(t.getSubject()), r.nodeMaker(TripleRelation.SUBJECT), new AliasMap(aliases));
+			nodeSets.add(Var.alloc(t.getObject()), r.nodeMaker(TripleRelation.OBJECT), new AliasMap(aliases));
+		}
+		
+		if (t.getPredicate().isVariable()) {
+			List<RelationName> relationNames = getRelationNames(
+					r.nodeMaker(TripleRelation.PREDICATE));
+			Set<Alias> aliases = new HashSet<Alias>();
+							
+			for (RelationName rname: relationNames) {
+				if (r.baseRelation().aliases().isAlias(rname))
+					aliases.add(new AliasMap.Alias(r.baseRelation().aliases().originalOf(rname), rname));
 			}
-
+			nodeSets.add(Var.alloc(t.getPredicate()), r.nodeMaker(TripleRelation.PREDICATE), new AliasMap(aliases));
 		}
-		if (!nodeSets.satisfiable()) {
-			return null;
+		
+		if (t.getSubject().isVariable()) {
+			List<RelationName> relationNames = getRelationNames(
+					r.nodeMaker(TripleRelation.SUBJECT));
+			Set<Alias> aliases = new HashSet<Alias>();
+							
+			for (RelationName rname: relationNames) {
+				if (r.baseRelation().aliases().isAlias(rname))
+					aliases.add(new AliasMap.Alias(r.baseRelation().aliases().originalOf(rname), rname));
+			}
+			nodeSets.add(Var.alloc(t.getSubject()), r.nodeMaker(TripleRelation.SUBJECT), new AliasMap(aliases));
 		}
-		return new TripleRelationJoiner(nodeSets, newPatterns, newRelations, useAllOptimizations);
+		return r;
 	}
 	
+	/**
+	 * @return The join of the triple relations, without self-joins on
+	 * 		unique keys and other joins that {@link JoinOptimizer} can remove
+	 */
 	public NodeRelation toNodeRelation() {
-		return new NodeRelation(
+		return new JoinOptimizer(new NodeRelation(
 				joinedBaseRelation().select(
 						nodeSets.constraint()).project(nodeSets.allProjections()), 
-				nodeSets.toMap());
+				nodeSets.toMap())).optimize();
 	}
 	
 	private Relation joinedBaseRelation() {
@@ -0,0 +1,86 @@
+package de.fuberlin.wiwiss.d2rq.expr;
+
+import java.util.Collections;
+import java.util.Set;
+
+import de.fuberlin.wiwiss.d2rq.algebra.AliasMap;
+import de.fuberlin.wiwiss.d2rq.algebra.Attribute;
+import de.fuberlin.wiwiss.d2rq.algebra.ColumnRenamer;
+import de.fuberlin.wiwiss.d2rq.sql.ConnectedDB;
+
+/**
+ * An SQL aggregate function, such as <code>SUM(expr)</code> or
+ * <code>COUNT(*)</code>. Only meaningful in the SELECT clause of
+ * a query with a GROUP BY clause, or of a query that aggregates
+ * all rows into one.
+ */
+public class Aggregate extends Expression {
+	public final static Aggregate COUNT_ALL = new Aggregate("COUNT", null, false);
+
+	public static Aggregate count(Expression expr, boolean distinct) {
+		return new Aggregate("COUNT", expr, distinct);
+	}
+
+	public static Aggregate sum(Expression expr) {
+		return new Aggregate("SUM", expr, false);
+	}
+
+	public static Aggregate min(Expression expr) {
+		return new Aggregate("MIN", expr, false);
+	}
+
+	public static Aggregate max(Expression expr) {
+		return new Aggregate("MAX", expr, false);
+	}
+
+	private final String function;
+	private final Expression expr;
+	private final boolean distinct;
+
+	private Aggregate(String function, Expression expr, boolean distinct) {
+		this.function = function;
+		this.expr = expr;
+		this.distinct = distinct;
+	}
+
+	public Set<Attribute> attributes() {
+		if (expr == null) return Collections.emptySet();
+		return expr.attributes();
+	}
+
+	public boolean isFalse() {
+		return false;
+	}
+
+	public boolean isTrue() {
+		return false;
+	}
+
+	public Expression renameAttributes(ColumnRenamer columnRenamer) {
+		if (expr == null) return this;
+		return new Aggregate(function, columnRenamer.applyTo(expr), distinct);
+	}
+
+	public String toSQL(ConnectedDB database, AliasMap aliases) {
+		return function + "(" + (distinct ? "DISTINCT " : "") +
+				(expr == null ? "*" : expr.toSQL(database, aliases)) + ")";
+	}
+
+	public String toString() {
+		return "Aggregate(" + function + "(" + (distinct ? "DISTINCT " : "") +
+				(expr == null ? "*" : expr.toString()) + "))";
+	}
+
+	public boolean equals(Object other) {
+		if (!(other instanceof Aggregate)) {
+			return false;
+		}
+		Aggregate otherAggregate = (Aggregate) other;
+		return function.equals(otherAggregate.function) && distinct == otherAggregate.distinct
+				&& (expr == null ? otherAggregate.expr == null : expr.equals(otherAggregate.expr));
+	}
+
+	public int hashCode() {
+		return function.hashCode() ^ (expr == null ? 0 : expr.hashCode()) ^ (distinct ? 1 : 0) ^ 3409;
+	}
+}
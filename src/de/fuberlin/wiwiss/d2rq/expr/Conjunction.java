@@ -61,6 +61,10 @@ public class Conjunction extends Expression {
 		return this.attributes;
 	}
 
+	public Set<Expression> expressions() {
+		return Collections.unmodifiableSet(this.expressions);
+	}
+
 	public Expression renameAttributes(ColumnRenamer columnRenamer) {
 		Set<Expression> renamedExpressions = new HashSet<Expression>();
 		for (Expression expression: expressions) {
@@ -40,6 +40,10 @@ public class Constant extends Expression {
 		return value;
 	}
 	
+	public Attribute attributeForTrackingType() {
+		return attributeForTrackingType;
+	}
+	
 	public Set<Attribute> attributes() {
 		return Collections.<Attribute>emptySet();
 	}
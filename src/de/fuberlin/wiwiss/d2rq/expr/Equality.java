@@ -48,6 +48,21 @@ public class Equality extends Expression {
 		columns.addAll(expr2.attributes());
 	}
 	
+	Expression expression1() {
+		return expr1;
+	}
+	
+	Expression expression2() {
+		return expr2;
+	}
+	
+	/**
+	 * @return <code>true</code> if both sides are plain attributes
+	 */
+	public boolean isAttributeEquality() {
+		return expr1 instanceof AttributeExpr && expr2 instanceof AttributeExpr;
+	}
+	
 	public Set<Attribute> attributes() {
 		return columns;
 	}
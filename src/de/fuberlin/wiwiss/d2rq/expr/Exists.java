@@ -0,0 +1,232 @@
+package de.fuberlin.wiwiss.d2rq.expr;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.hp.hpl.jena.sparql.core.Var;
+
+import de.fuberlin.wiwiss.d2rq.algebra.AliasMap;
+import de.fuberlin.wiwiss.d2rq.algebra.AliasMap.Alias;
+import de.fuberlin.wiwiss.d2rq.algebra.Attribute;
+import de.fuberlin.wiwiss.d2rq.algebra.ColumnRenamer;
+import de.fuberlin.wiwiss.d2rq.algebra.ColumnRenamerMap;
+import de.fuberlin.wiwiss.d2rq.algebra.Join;
+import de.fuberlin.wiwiss.d2rq.algebra.NodeRelation;
+import de.fuberlin.wiwiss.d2rq.algebra.ProjectionSpec;
+import de.fuberlin.wiwiss.d2rq.algebra.Relation;
+import de.fuberlin.wiwiss.d2rq.algebra.RelationName;
+import de.fuberlin.wiwiss.d2rq.nodes.NodeMaker;
+import de.fuberlin.wiwiss.d2rq.nodes.NodeSetConstraintBuilder;
+import de.fuberlin.wiwiss.d2rq.sql.ConnectedDB;
+
+/**
+ * An expression that is TRUE iff a correlated subquery has a row:
+ * "<code>EXISTS (SELECT 1 FROM t2 WHERE t2.a = t1.a)</code>".
+ *
+ * The subquery is a {@link Relation} plus a correlation condition
+ * that refers to its tables and to tables of the enclosing
+ * statement. The table names of the two must be distinct.
+ * Only the attributes of the enclosing statement count as
+ * {@link #attributes()} of the expression.
+ */
+public class Exists extends Expression {
+
+	/**
+	 * Translates a SPARQL <code>EXISTS</code> over a pattern into
+	 * SQL. A row of the outer node relation passes if the inner node
+	 * relation has a row that produces the same nodes for the shared
+	 * variables, and produces nodes for all other variables.
+	 *
+	 * @return The expression, or <code>null</code> if the inner node
+	 * 		relation is not from the same database, or if SQL can't tell
+	 * 		whether it produces a node
+	 */
+	public static Expression create(NodeRelation outer, NodeRelation inner) {
+		Relation relation = inner.baseRelation();
+		if (relation.condition().isFalse()) {
+			return Expression.FALSE;
+		}
+		if (!relation.isTrivial()) {
+			ConnectedDB database = outer.baseRelation().database();
+			if (database == null || (database != relation.database()
+					&& !database.equals(relation.database()))) {
+				return null;
+			}
+			if (!relation.orderSpecs().isEmpty() || relation.limit() != Relation.NO_LIMIT) {
+				return null;
+			}
+		}
+		for (Var var: inner.variables()) {
+			if (!inner.producesNodeForEveryRow(var)) return null;
+		}
+		inner = withDistinctTableNames(inner, outer.baseRelation().tables());
+		relation = inner.baseRelation();
+		Collection<Expression> correlations = new ArrayList<Expression>();
+		Collection<Expression> notNull = new ArrayList<Expression>();
+		for (Var var: inner.variables()) {
+			NodeMaker nodeMaker = inner.nodeMaker(var);
+			if (outer.variables().contains(var)) {
+				if (!outer.producesNodeForEveryRow(var)) return null;
+				NodeSetConstraintBuilder nodeSet = new NodeSetConstraintBuilder();
+				outer.nodeMaker(var).describeSelf(nodeSet);
+				nodeMaker.describeSelf(nodeSet);
+				if (nodeSet.isUnsupported()) return null;
+				correlations.add(nodeSet.constraint());
+				continue;
+			}
+			for (ProjectionSpec projection: nodeMaker.projectionSpecs()) {
+				for (Attribute attribute: projection.requiredAttributes()) {
+					if (relation.database().isNullable(relation.aliases().originalOf(attribute))) {
+						notNull.add(NotNull.create(new AttributeExpr(attribute)));
+					}
+				}
+			}
+		}
+		Expression correlation = Conjunction.create(correlations);
+		if (correlation.isFalse()) {
+			return Expression.FALSE;
+		}
+		if (relation.isTrivial()) {
+			// Only constant nodes; the correlation can be checked directly
+			return correlation;
+		}
+		return new Exists(relation.select(Conjunction.create(notNull)), correlation);
+	}
+
+	private static NodeRelation withDistinctTableNames(NodeRelation table, Set<RelationName> others) {
+		int index = 1;
+		NodeRelation result = table;
+		while (!Collections.disjoint(result.baseRelation().tables(), others)) {
+			result = table.withPrefix(index++);
+		}
+		return result;
+	}
+
+	private final Relation relation;
+	private final Expression correlation;
+	private final Set<RelationName> tables;
+	private final Set<Attribute> outerAttributes = new HashSet<Attribute>();
+
+	/**
+	 * @param relation The subquery, without the correlation
+	 * @param correlation A condition on attributes of the subquery
+	 * 		and of the enclosing statement
+	 */
+	public Exists(Relation relation, Expression correlation) {
+		this.relation = relation;
+		this.correlation = correlation;
+		this.tables = relation.tables();
+		for (Attribute attribute: correlation.attributes()) {
+			if (tables.contains(attribute.relationName())) continue;
+			outerAttributes.add(attribute);
+		}
+	}
+
+	public Relation relation() {
+		return relation;
+	}
+
+	public Expression correlation() {
+		return correlation;
+	}
+
+	public Set<Attribute> attributes() {
+		return outerAttributes;
+	}
+
+	public boolean isFalse() {
+		return false;
+	}
+
+	public boolean isTrue() {
+		return false;
+	}
+
+	/**
+	 * Renames the attributes of the enclosing statement. If that would
+	 * give them the same table names as the subquery, the subquery's
+	 * tables are renamed first.
+	 */
+	public Expression renameAttributes(ColumnRenamer columnRenamer) {
+		Map<Attribute,Attribute> renames = new HashMap<Attribute,Attribute>();
+		Set<RelationName> outerTables = new HashSet<RelationName>();
+		for (Attribute attribute: outerAttributes) {
+			Attribute renamed = columnRenamer.applyTo(attribute);
+			renames.put(attribute, renamed);
+			outerTables.add(attribute.relationName());
+			outerTables.add(renamed.relationName());
+		}
+		Exists result = this;
+		int index = 1;
+		while (!Collections.disjoint(result.tables, outerTables)) {
+			result = withPrefix(index++);
+		}
+		ColumnRenamer outerRenamer = new ColumnRenamerMap(renames);
+		return new Exists(result.relation, outerRenamer.applyTo(result.correlation));
+	}
+
+	private Exists withPrefix(int index) {
+		Collection<Alias> aliases = new ArrayList<Alias>();
+		for (RelationName table: tables) {
+			aliases.add(new Alias(table, table.withPrefix(index)));
+		}
+		AliasMap renamer = new AliasMap(aliases);
+		return new Exists(relation.renameColumns(renamer), renamer.applyTo(correlation));
+	}
+
+	public String toSQL(ConnectedDB database, AliasMap aliases) {
+		AliasMap allAliases = aliases.applyTo(relation.aliases());
+		List<Expression> conditions = new ArrayList<Expression>();
+		for (Join join: relation.joinConditions()) {
+			for (Attribute attribute1: join.attributes1()) {
+				Attribute attribute2 = join.equalAttribute(attribute1);
+				conditions.add(Equality.createAttributeEquality(attribute1, attribute2));
+			}
+		}
+		conditions.add(relation.condition());
+		conditions.add(relation.softCondition());
+		conditions.add(correlation);
+		Expression condition = Conjunction.create(conditions);
+		StringBuffer result = new StringBuffer("EXISTS (SELECT 1 FROM ");
+		Iterator<RelationName> it = tables.iterator();
+		while (it.hasNext()) {
+			RelationName table = it.next();
+			if (relation.aliases().isAlias(table)) {
+				result.append(database.vendor().getRelationNameAliasExpression(
+						relation.aliases().originalOf(table), table));
+			} else {
+				result.append(database.vendor().quoteRelationName(table));
+			}
+			if (it.hasNext()) {
+				result.append(", ");
+			}
+		}
+		if (!condition.isTrue()) {
+			result.append(" WHERE ");
+			result.append(condition.toSQL(database, allAliases));
+		}
+		result.append(")");
+		return result.toString();
+	}
+
+	public boolean equals(Object other) {
+		if (!(other instanceof Exists)) return false;
+		Exists otherExists = (Exists) other;
+		return relation.equals(otherExists.relation) && correlation.equals(otherExists.correlation);
+	}
+
+	public int hashCode() {
+		return relation.hashCode() ^ correlation.hashCode() ^ 6121;
+	}
+
+	public String toString() {
+		return "Exists(" + relation + ", " + correlation + ")";
+	}
+}
@@ -0,0 +1,154 @@
+package de.fuberlin.wiwiss.d2rq.expr;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import de.fuberlin.wiwiss.d2rq.algebra.AliasMap;
+import de.fuberlin.wiwiss.d2rq.algebra.Attribute;
+import de.fuberlin.wiwiss.d2rq.algebra.ColumnRenamer;
+import de.fuberlin.wiwiss.d2rq.map.Database;
+import de.fuberlin.wiwiss.d2rq.sql.ConnectedDB;
+import de.fuberlin.wiwiss.d2rq.sql.types.DataType;
+
+/**
+ * An expression that is TRUE iff an attribute has one of a list
+ * of values: "<code>a IN (1, 2, 3)</code>". Lists that are longer
+ * than the database allows are split into several <code>IN</code>
+ * conditions that are joined with <code>OR</code>.
+ */
+public class In extends Expression {
+
+	public static Expression create(Attribute attribute, Collection<String> values) {
+		if (values.isEmpty()) {
+			return Expression.FALSE;
+		}
+		if (values.size() == 1) {
+			return Equality.createAttributeValue(attribute, values.iterator().next());
+		}
+		return new In(attribute, new LinkedHashSet<String>(values));
+	}
+
+	/**
+	 * Like {@link Disjunction#create(Collection)}, but combines
+	 * comparisons of the same attribute with constant values into
+	 * a single <code>IN</code> list.
+	 */
+	public static Expression createDisjunction(Collection<Expression> expressions) {
+		Map<Attribute,List<String>> valuesByAttribute = new LinkedHashMap<Attribute,List<String>>();
+		List<Expression> others = new ArrayList<Expression>();
+		for (Expression expression: expressions) {
+			Attribute attribute = comparedAttribute(expression);
+			if (attribute == null) {
+				others.add(expression);
+				continue;
+			}
+			if (!valuesByAttribute.containsKey(attribute)) {
+				valuesByAttribute.put(attribute, new ArrayList<String>());
+			}
+			valuesByAttribute.get(attribute).add(comparedValue(expression));
+		}
+		for (Attribute attribute: valuesByAttribute.keySet()) {
+			others.add(create(attribute, valuesByAttribute.get(attribute)));
+		}
+		return Disjunction.create(others);
+	}
+
+	/**
+	 * @return The attribute if the expression compares it with a
+	 * 		constant of the attribute's type, <code>null</code> otherwise
+	 */
+	private static Attribute comparedAttribute(Expression expression) {
+		if (!(expression instanceof Equality)) return null;
+		Equality equality = (Equality) expression;
+		if (!(equality.expression1() instanceof AttributeExpr)) return null;
+		if (!(equality.expression2() instanceof Constant)) return null;
+		Attribute attribute = ((AttributeExpr) equality.expression1()).attributes().iterator().next();
+		if (!attribute.equals(((Constant) equality.expression2()).attributeForTrackingType())) return null;
+		return attribute;
+	}
+
+	private static String comparedValue(Expression expression) {
+		return ((Constant) ((Equality) expression).expression2()).value();
+	}
+
+	private final Attribute attribute;
+	private final Set<String> values;
+
+	private In(Attribute attribute, Set<String> values) {
+		this.attribute = attribute;
+		this.values = values;
+	}
+
+	public Attribute attribute() {
+		return attribute;
+	}
+
+	public Set<String> values() {
+		return Collections.unmodifiableSet(values);
+	}
+
+	public Set<Attribute> attributes() {
+		return Collections.singleton(attribute);
+	}
+
+	public boolean isFalse() {
+		return false;
+	}
+
+	public boolean isTrue() {
+		return false;
+	}
+
+	public Expression renameAttributes(ColumnRenamer columnRenamer) {
+		return new In(columnRenamer.applyTo(attribute), values);
+	}
+
+	public String toSQL(ConnectedDB database, AliasMap aliases) {
+		String column = database.vendor().quoteAttribute(attribute);
+		DataType type = database.columnType(aliases.originalOf(attribute));
+		int maxSize = database.vendor().getMaxInListSize();
+		if (maxSize == Database.NO_LIMIT) {
+			maxSize = values.size();
+		}
+		StringBuffer result = new StringBuffer();
+		int count = 0;
+		for (String value: values) {
+			if (count % maxSize == 0) {
+				if (count > 0) {
+					result.append(") OR ");
+				}
+				result.append(column);
+				result.append(" IN (");
+			} else {
+				result.append(", ");
+			}
+			result.append(type.toSQLLiteral(value));
+			count++;
+		}
+		result.append(")");
+		if (values.size() > maxSize) {
+			return "(" + result + ")";
+		}
+		return result.toString();
+	}
+
+	public boolean equals(Object other) {
+		if (!(other instanceof In)) return false;
+		In otherIn = (In) other;
+		return attribute.equals(otherIn.attribute) && values.equals(otherIn.values);
+	}
+
+	public int hashCode() {
+		return attribute.hashCode() ^ values.hashCode() ^ 3751;
+	}
+
+	public String toString() {
+		return "In(" + attribute + ", " + values + ")";
+	}
+}
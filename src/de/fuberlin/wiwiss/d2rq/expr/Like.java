@@ -0,0 +1,111 @@
+package de.fuberlin.wiwiss.d2rq.expr;
+
+import java.util.Set;
+
+import de.fuberlin.wiwiss.d2rq.algebra.AliasMap;
+import de.fuberlin.wiwiss.d2rq.algebra.Attribute;
+import de.fuberlin.wiwiss.d2rq.algebra.ColumnRenamer;
+import de.fuberlin.wiwiss.d2rq.sql.ConnectedDB;
+
+/**
+ * A case-sensitive match of a character string against a SQL
+ * <code>LIKE</code> pattern. The pattern uses backslash as the
+ * escape character.
+ */
+public class Like extends Expression {
+	private final static String REGEX_METACHARACTERS = "\\|.^$?*+{}()[]";
+
+	/**
+	 * Escapes the wildcards and the escape character in a string.
+	 */
+	public static String escape(String s) {
+		StringBuffer result = new StringBuffer(s.length() + 8);
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (c == '\\' || c == '%' || c == '_') {
+				result.append('\\');
+			}
+			result.append(c);
+		}
+		return result.toString();
+	}
+
+	/**
+	 * @param value A string that must occur in matching strings
+	 * @param atStart Must matching strings start with the value?
+	 * @param atEnd Must matching strings end with the value?
+	 * @return A pattern for matching strings
+	 */
+	public static String pattern(String value, boolean atStart, boolean atEnd) {
+		if (value.length() == 0 && !(atStart && atEnd)) return "%";
+		return (atStart ? "" : "%") + escape(value) + (atEnd ? "" : "%");
+	}
+
+	/**
+	 * Turns an XPath regular expression into an equivalent pattern,
+	 * if it consists only of literal characters and the anchors
+	 * <code>^</code> and <code>$</code> at its ends.
+	 *
+	 * @return A pattern, or <code>null</code> if the regular expression
+	 * 		uses other features
+	 */
+	public static String patternForRegex(String regex) {
+		boolean atStart = regex.startsWith("^");
+		boolean atEnd = regex.endsWith("$") && regex.length() > (atStart ? 1 : 0);
+		String value = regex.substring(atStart ? 1 : 0,
+				regex.length() - (atEnd ? 1 : 0));
+		for (int i = 0; i < value.length(); i++) {
+			if (REGEX_METACHARACTERS.indexOf(value.charAt(i)) != -1) {
+				return null;
+			}
+		}
+		return pattern(value, atStart, atEnd);
+	}
+
+	private final Expression expression;
+	private final String pattern;
+
+	public Like(Expression expression, String pattern) {
+		this.expression = expression;
+		this.pattern = pattern;
+	}
+
+	public String pattern() {
+		return pattern;
+	}
+
+	public Set<Attribute> attributes() {
+		return expression.attributes();
+	}
+
+	public boolean isFalse() {
+		return false;
+	}
+
+	public boolean isTrue() {
+		return false;
+	}
+
+	public Expression renameAttributes(ColumnRenamer columnRenamer) {
+		return new Like(columnRenamer.applyTo(expression), pattern);
+	}
+
+	public String toSQL(ConnectedDB database, AliasMap aliases) {
+		return database.vendor().getLikeExpression(
+				expression.toSQL(database, aliases), pattern);
+	}
+
+	public boolean equals(Object other) {
+		if (!(other instanceof Like)) return false;
+		Like otherLike = (Like) other;
+		return expression.equals(otherLike.expression) && pattern.equals(otherLike.pattern);
+	}
+
+	public int hashCode() {
+		return expression.hashCode() ^ pattern.hashCode() ^ 8245;
+	}
+
+	public String toString() {
+		return "Like(" + expression + ", \"" + pattern + "\")";
+	}
+}
@@ -48,4 +48,14 @@ public class Negation extends Expression {
 		return "Negation(" + base + ")";
 	}
 
+	public boolean equals(Object other) {
+		if (!(other instanceof Negation)) {
+			return false;
+		}
+		return base.equals(((Negation) other).base);
+	}
+	
+	public int hashCode() {
+		return base.hashCode() ^ 2341;
+	}
 }
\ No newline at end of file
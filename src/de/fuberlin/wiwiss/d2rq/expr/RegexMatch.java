@@ -0,0 +1,118 @@
+package de.fuberlin.wiwiss.d2rq.expr;
+
+import java.util.Set;
+
+import de.fuberlin.wiwiss.d2rq.algebra.AliasMap;
+import de.fuberlin.wiwiss.d2rq.algebra.Attribute;
+import de.fuberlin.wiwiss.d2rq.algebra.ColumnRenamer;
+import de.fuberlin.wiwiss.d2rq.sql.ConnectedDB;
+import de.fuberlin.wiwiss.d2rq.sql.vendor.Vendor;
+
+/**
+ * A match of a character string against a POSIX extended regular
+ * expression, using the native regular expression support of the
+ * database engine.
+ *
+ * SPARQL uses XPath regular expressions. {@link #toPOSIX(String)}
+ * only accepts the part of their syntax that means the same in
+ * POSIX: no backslash escapes, no non-greedy quantifiers, and no
+ * nested brackets.
+ */
+public class RegexMatch extends Expression {
+
+	/**
+	 * @return <code>true</code> if the engine can match regular expressions
+	 */
+	public static boolean isSupportedBy(Vendor vendor, boolean ignoreCase) {
+		return vendor.getRegexExpression("''", "", ignoreCase) != null;
+	}
+
+	/**
+	 * Turns an XPath regular expression into an equivalent POSIX
+	 * extended regular expression. XPath's <code>.</code> doesn't
+	 * match line breaks, so it becomes a bracket expression.
+	 *
+	 * @return A POSIX regular expression, or <code>null</code> if the
+	 * 		regular expression uses features that differ between the two
+	 */
+	public static String toPOSIX(String regex) {
+		StringBuffer result = new StringBuffer(regex.length() + 8);
+		boolean inBrackets = false;
+		for (int i = 0; i < regex.length(); i++) {
+			char c = regex.charAt(i);
+			char next = i + 1 < regex.length() ? regex.charAt(i + 1) : 0;
+			if (c == '\\') return null;
+			if (inBrackets) {
+				if (c == '[') return null;
+				if (c == ']') inBrackets = false;
+				result.append(c);
+				continue;
+			}
+			if (c == '[') {
+				// Rule out "[]...]" and "[^]...]", which XPath doesn't allow
+				int start = next == '^' ? i + 2 : i + 1;
+				if (start >= regex.length() || regex.charAt(start) == ']') return null;
+				inBrackets = true;
+			} else if (c == '(' && next == '?') {
+				return null;
+			} else if ((c == '*' || c == '+' || c == '?' || c == '}') && next == '?') {
+				return null;
+			} else if (c == '.') {
+				result.append("[^\n\r]");
+				continue;
+			}
+			result.append(c);
+		}
+		if (inBrackets) return null;
+		return result.toString();
+	}
+
+	private final Expression expression;
+	private final String regex;
+	private final boolean ignoreCase;
+
+	/**
+	 * @param regex A POSIX extended regular expression
+	 */
+	public RegexMatch(Expression expression, String regex, boolean ignoreCase) {
+		this.expression = expression;
+		this.regex = regex;
+		this.ignoreCase = ignoreCase;
+	}
+
+	public Set<Attribute> attributes() {
+		return expression.attributes();
+	}
+
+	public boolean isFalse() {
+		return false;
+	}
+
+	public boolean isTrue() {
+		return false;
+	}
+
+	public Expression renameAttributes(ColumnRenamer columnRenamer) {
+		return new RegexMatch(columnRenamer.applyTo(expression), regex, ignoreCase);
+	}
+
+	public String toSQL(ConnectedDB database, AliasMap aliases) {
+		return database.vendor().getRegexExpression(
+				expression.toSQL(database, aliases), regex, ignoreCase);
+	}
+
+	public boolean equals(Object other) {
+		if (!(other instanceof RegexMatch)) return false;
+		RegexMatch otherMatch = (RegexMatch) other;
+		return expression.equals(otherMatch.expression) && regex.equals(otherMatch.regex)
+				&& ignoreCase == otherMatch.ignoreCase;
+	}
+
+	public int hashCode() {
+		return expression.hashCode() ^ regex.hashCode() ^ (ignoreCase ? 6532 : 8734);
+	}
+
+	public String toString() {
+		return "RegexMatch(" + expression + ", \"" + regex + "\"" + (ignoreCase ? ", i" : "") + ")";
+	}
+}
@@ -0,0 +1,80 @@
+package de.fuberlin.wiwiss.d2rq.find;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A cache of triple counts, so that repeated requests for the size
+ * of a graph or the number of matches of a triple pattern don't
+ * have to query the database each time. A count expires a fixed
+ * time after it was computed, as the database may have changed.
+ *
+ * The least recently used count is evicted when the cache is full.
+ * Safe for use by multiple threads.
+ */
+public class CountCache {
+	public final static int MAX_ENTRIES = 1000;
+
+	private final long timeoutMillis;
+	private final Map<String,Entry> counts =
+		new LinkedHashMap<String,Entry>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String,Entry> eldest) {
+				return size() > MAX_ENTRIES;
+			}
+		};
+
+	/**
+	 * @param timeoutSeconds Number of seconds for which a count is
+	 * 		kept; 0 disables the cache
+	 */
+	public CountCache(int timeoutSeconds) {
+		this.timeoutMillis = timeoutSeconds * 1000L;
+	}
+
+	/**
+	 * @return The count, or <code>null</code> if there is none or
+	 * 		it has expired
+	 */
+	public synchronized Long get(String key) {
+		Entry entry = counts.get(key);
+		if (entry == null) return null;
+		if (System.currentTimeMillis() - entry.created >= timeoutMillis) {
+			counts.remove(key);
+			return null;
+		}
+		return entry.count;
+	}
+
+	public synchronized void put(String key, long count) {
+		if (!isEnabled()) return;
+		counts.put(key, new Entry(count, System.currentTimeMillis()));
+	}
+
+	public synchronized void clear() {
+		counts.clear();
+	}
+
+	public boolean isEnabled() {
+		return timeoutMillis > 0;
+	}
+
+	public synchronized int size() {
+		return counts.size();
+	}
+
+	public synchronized String toString() {
+		return "CountCache(" + counts.size() + " counts, " + 
+				(timeoutMillis / 1000) + "s timeout)";
+	}
+
+	private static class Entry {
+		final long count;
+		final long created;
+		Entry(long count, long created) {
+			this.count = count;
+			this.created = created;
+		}
+	}
+}
@@ -2,19 +2,29 @@ package de.fuberlin.wiwiss.d2rq.find;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 
 import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.sparql.core.Var;
 import com.hp.hpl.jena.sparql.engine.ExecutionContext;
 import com.hp.hpl.jena.sparql.engine.iterator.QueryIter;
-import com.hp.hpl.jena.sparql.engine.iterator.QueryIterConcat;
+import com.hp.hpl.jena.sparql.engine.QueryIterator;
 
+import de.fuberlin.wiwiss.d2rq.algebra.Attribute;
 import de.fuberlin.wiwiss.d2rq.algebra.CompatibleRelationGroup;
 import de.fuberlin.wiwiss.d2rq.algebra.JoinOptimizer;
 import de.fuberlin.wiwiss.d2rq.algebra.Relation;
 import de.fuberlin.wiwiss.d2rq.algebra.TripleRelation;
+import de.fuberlin.wiwiss.d2rq.algebra.TripleRelationIndex;
+import de.fuberlin.wiwiss.d2rq.engine.CardinalityEstimator;
+import de.fuberlin.wiwiss.d2rq.engine.QueryIterParallelUnion;
 import de.fuberlin.wiwiss.d2rq.engine.QueryIterTableSQL;
+import de.fuberlin.wiwiss.d2rq.expr.Aggregate;
 import de.fuberlin.wiwiss.d2rq.find.URIMakerRule.URIMakerRuleChecker;
+import de.fuberlin.wiwiss.d2rq.nodes.FixedNodeMaker;
+import de.fuberlin.wiwiss.d2rq.sql.AggregateStatementBuilder;
+import de.fuberlin.wiwiss.d2rq.sql.SQLIterator;
 
 
 /**
@@ -28,9 +38,12 @@ import de.fuberlin.wiwiss.d2rq.find.URIMakerRule.URIMakerRuleChecker;
  * @author Richard Cyganiak (richard@cyganiak.de)
  */
 public class FindQuery {
+	public final static long UNKNOWN = -1;
+	
 	private final Triple triplePattern;
-	private final Collection<TripleRelation> tripleRelations;
+	private final TripleRelationIndex tripleRelations;
 	private final int limitPerRelation;
+	private final int parallelism;
 	private final ExecutionContext context;
 	
 	public FindQuery(Triple triplePattern, Collection<TripleRelation> tripleRelations,
@@ -40,15 +53,34 @@ public class FindQuery {
 
 	public FindQuery(Triple triplePattern, Collection<TripleRelation> tripleRelations, int limit,
 			ExecutionContext context) {
+		this(triplePattern, tripleRelations, limit, 1, context);
+	}	
+
+	/**
+	 * @param parallelism Maximum number of SQL queries to run concurrently
+	 */
+	public FindQuery(Triple triplePattern, Collection<TripleRelation> tripleRelations, int limit,
+			int parallelism, ExecutionContext context) {
+		this(triplePattern, new TripleRelationIndex(tripleRelations), limit, parallelism, context);
+	}	
+
+	/**
+	 * @param tripleRelations An index that narrows down the relations to look at
+	 * @param parallelism Maximum number of SQL queries to run concurrently
+	 */
+	public FindQuery(Triple triplePattern, TripleRelationIndex tripleRelations, int limit,
+			int parallelism, ExecutionContext context) {
 		this.triplePattern = triplePattern;
 		this.tripleRelations = tripleRelations;
 		this.limitPerRelation = limit;
+		this.parallelism = parallelism;
 		this.context = context;
 	}	
 
 	private List<TripleRelation> selectedTripleRelations() {
 		URIMakerRule rule = new URIMakerRule();
-		List<TripleRelation> sortedTripleRelations = rule.sortRDFRelations(tripleRelations);
+		List<TripleRelation> sortedTripleRelations = rule.sortRDFRelations(
+				tripleRelations.candidates(triplePattern));
 		URIMakerRuleChecker subjectChecker = rule.createRuleChecker(triplePattern.getSubject());
 		URIMakerRuleChecker predicateChecker = rule.createRuleChecker(triplePattern.getPredicate());
 		URIMakerRuleChecker objectChecker = rule.createRuleChecker(triplePattern.getObject());
@@ -62,7 +94,8 @@ public class FindQuery {
 				subjectChecker.addPotentialMatch(tripleRelation.nodeMaker(TripleRelation.SUBJECT));
 				predicateChecker.addPotentialMatch(tripleRelation.nodeMaker(TripleRelation.PREDICATE));
 				objectChecker.addPotentialMatch(tripleRelation.nodeMaker(TripleRelation.OBJECT));
-				TripleRelation r = new JoinOptimizer(selectedTripleRelation).optimize();
+				TripleRelation r = TripleRelation.fromNodeRelation(
+						new JoinOptimizer(selectedTripleRelation).optimize());
 				if (limitPerRelation != Relation.NO_LIMIT) {
 					r = r.limit(limitPerRelation);
 				}
@@ -73,14 +106,146 @@ public class FindQuery {
 	}
 	
 	public QueryIter iterator() {
-		QueryIterConcat qIter = new QueryIterConcat(context);
+		return iterator(selectedTripleRelations());
+	}
+	
+	/**
+	 * Checks whether the triple pattern has at least one match. The
+	 * SQL queries run concurrently as far as the parallelism allows,
+	 * and all of them are cancelled as soon as one produces a triple.
+	 * If every row of every query produces a triple, which is the case
+	 * if the pattern has no variables, then each query is issued with
+	 * <code>LIMIT 1</code>.
+	 */
+	public boolean hasMatch() {
+		List<TripleRelation> relations = selectedTripleRelations();
+		if (producesTripleForEveryRow(relations)) {
+			List<TripleRelation> limited = new ArrayList<TripleRelation>(relations.size());
+			for (TripleRelation relation: relations) {
+				limited.add(relation.limit(1));
+			}
+			relations = limited;
+		}
+		QueryIter it = iterator(relations);
+		try {
+			return it.hasNext();
+		} finally {
+			it.close();
+		}
+	}
+	
+	/**
+	 * Counts the triples that match the pattern, as delivered by
+	 * {@link #iterator()}. Relations that produce a triple for each of
+	 * their rows are counted in SQL with <code>COUNT(*)</code>, the others
+	 * by fetching their triples.
+	 */
+	public long count() {
+		long result = 0;
+		for (TripleRelation relation: selectedTripleRelations()) {
+			result += count(relation);
+		}
+		return result;
+	}
+	
+	/**
+	 * Estimates the number of triples that match the pattern from the
+	 * table statistics of the database, using the
+	 * {@link CardinalityEstimator}. Relations on tables without
+	 * statistics are counted with <code>COUNT(*)</code>. They are never
+	 * fetched for counting, as an estimate must be cheap.
+	 * @return The estimate, or {@link #UNKNOWN} if some relation has
+	 * 		neither statistics nor can be counted in SQL
+	 */
+	public long estimateCount() {
+		long result = 0;
+		for (TripleRelation relation: selectedTripleRelations()) {
+			double rows = CardinalityEstimator.estimate(relation.baseRelation());
+			if (rows != CardinalityEstimator.UNKNOWN) {
+				result += Math.round(rows);
+				continue;
+			}
+			long count = countInSQL(relation);
+			if (count == UNKNOWN) return UNKNOWN;
+			result += count;
+		}
+		return result;
+	}
+	
+	private long count(TripleRelation relation) {
+		long result = countInSQL(relation);
+		if (result != UNKNOWN) return result;
+		QueryIterator it = QueryIterTableSQL.create(relation, context);
+		try {
+			result = 0;
+			while (it.hasNext()) {
+				it.next();
+				result++;
+			}
+			return result;
+		} finally {
+			it.close();
+		}
+	}
+	
+	/**
+	 * @return The number of triples, or {@link #UNKNOWN} if they can't
+	 * 		be counted with a <code>COUNT(*)</code> query
+	 */
+	private long countInSQL(TripleRelation relation) {
+		Relation base = relation.baseRelation();
+		if (base.equals(Relation.EMPTY) || base.condition().isFalse() || base.limit() == 0) {
+			return 0;
+		}
+		if (base.isTrivial() || !producesTripleForEveryRow(relation)) {
+			return UNKNOWN;
+		}
+		AggregateStatementBuilder builder = new AggregateStatementBuilder(base, 
+				Collections.<Attribute>emptyList(), 
+				Collections.singletonList(Aggregate.COUNT_ALL));
+		SQLIterator it = new SQLIterator(builder.getSQLStatement(), 
+				builder.getColumnSpecs(), base.database());
+		try {
+			return Long.parseLong(it.next().get(
+					AggregateStatementBuilder.columnSpec(Aggregate.COUNT_ALL)));
+		} finally {
+			it.close();
+		}
+	}
+	
+	private boolean producesTripleForEveryRow(TripleRelation relation) {
+		for (Var var: relation.variables()) {
+			if (!relation.producesNodeForEveryRow(var)) return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * Relations with a fixed node in every position turn each row
+	 * that satisfies their condition into a triple.
+	 */
+	private boolean producesTripleForEveryRow(List<TripleRelation> relations) {
+		for (TripleRelation relation: relations) {
+			for (Var var: relation.variables()) {
+				if (!(relation.nodeMaker(var) instanceof FixedNodeMaker)) return false;
+			}
+		}
+		return true;
+	}
+	
+	private QueryIter iterator(List<TripleRelation> relations) {
+		Collection<CompatibleRelationGroup> groups = new ArrayList<CompatibleRelationGroup>();
+		List<QueryIterator> members = new ArrayList<QueryIterator>();
 		for (CompatibleRelationGroup group: 
-				CompatibleRelationGroup.groupNodeRelations(selectedTripleRelations())) {
+				CompatibleRelationGroup.groupNodeRelations(relations)) {
 			if (!group.baseRelation().equals(Relation.EMPTY) && group.baseRelation().limit()!=0) {
-				qIter.add(QueryIterTableSQL.create(
-						group.baseRelation(), group.bindingMakers(), context));
+				groups.add(group);
+				// Untracked, as they may be evaluated on worker threads
+				members.add(QueryIterTableSQL.create(
+						group.baseRelation(), group.bindingMakers(), null));
 			}
 		}
-		return qIter;
+		return QueryIterParallelUnion.create(members, 
+				QueryIterParallelUnion.effectiveParallelism(parallelism, groups), context);
 	}
 }
@@ -5,6 +5,8 @@ import org.apache.commons.logging.LogFactory;
 
 import com.hp.hpl.jena.graph.Capabilities;
 import com.hp.hpl.jena.graph.Graph;
+import com.hp.hpl.jena.graph.GraphStatisticsHandler;
+import com.hp.hpl.jena.graph.Node;
 import com.hp.hpl.jena.graph.Triple;
 import com.hp.hpl.jena.graph.TripleMatch;
 import com.hp.hpl.jena.graph.impl.GraphBase;
@@ -12,7 +14,10 @@ import com.hp.hpl.jena.graph.query.QueryHandler;
 import com.hp.hpl.jena.util.iterator.ExtendedIterator;
 
 import de.fuberlin.wiwiss.d2rq.D2RQException;
+import de.fuberlin.wiwiss.d2rq.algebra.Relation;
+import de.fuberlin.wiwiss.d2rq.engine.PlanCache;
 import de.fuberlin.wiwiss.d2rq.engine.QueryEngineD2RQ;
+import de.fuberlin.wiwiss.d2rq.find.CountCache;
 import de.fuberlin.wiwiss.d2rq.find.FindQuery;
 import de.fuberlin.wiwiss.d2rq.find.TripleQueryIter;
 import de.fuberlin.wiwiss.d2rq.map.Mapping;
@@ -43,6 +48,8 @@ public class GraphD2RQ extends GraphBase implements Graph {
 	}
 	
 	private final Mapping mapping;
+	private PlanCache planCache = null;
+	private CountCache countCache = null;
 	
 	/**
 	 * Creates a new D2RQ graph from a previously prepared {@link Mapping} instance.
@@ -69,6 +76,12 @@ public class GraphD2RQ extends GraphBase implements Graph {
 
 	@Override
 	public void close() {
+		if (planCache != null) {
+			planCache.clear();
+		}
+		if (countCache != null) {
+			countCache.clear();
+		}
 		mapping.close();
 	}
 
@@ -84,7 +97,8 @@ public class GraphD2RQ extends GraphBase implements Graph {
 		if (log.isDebugEnabled()) {
 			log.debug("Find: " + PrettyPrinter.toString(t, getPrefixMapping()));
 		}
-		FindQuery query = new FindQuery(t, mapping.compiledPropertyBridges(), null);
+		FindQuery query = new FindQuery(t, mapping.compiledPropertyBridgeIndex(), 
+				Relation.NO_LIMIT, mapping.configuration().getQueryParallelism(), null);
 		ExtendedIterator<Triple> result = TripleQueryIter.create(query.iterator());
 		if (mapping.configuration().getServeVocabulary()) {
 			result = result.andThen(mapping.getVocabularyModel().getGraph().find(t));
@@ -92,6 +106,91 @@ public class GraphD2RQ extends GraphBase implements Graph {
 		return result;
     }
 
+	/**
+	 * Answers with one probing SQL query per group of compatible
+	 * relations instead of iterating over {@link #graphBaseFind}.
+	 */
+	@Override
+	public boolean graphBaseContains(Triple t) {
+		checkOpen();
+		if (log.isDebugEnabled()) {
+			log.debug("Contains: " + PrettyPrinter.toString(t, getPrefixMapping()));
+		}
+		FindQuery query = new FindQuery(t, mapping.compiledPropertyBridgeIndex(), 
+				Relation.NO_LIMIT, mapping.configuration().getQueryParallelism(), null);
+		if (query.hasMatch()) {
+			return true;
+		}
+		return mapping.configuration().getServeVocabulary()
+				&& mapping.getVocabularyModel().getGraph().contains(t);
+	}
+
+	/**
+	 * Counts the triples with <code>COUNT(*)</code> queries where possible.
+	 * The result is cached like those of {@link #count(TripleMatch)}.
+	 */
+	@Override
+	protected int graphBaseSize() {
+		return (int) Math.min(count(Triple.ANY), Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Checks for a triple instead of counting all of them.
+	 */
+	@Override
+	public boolean isEmpty() {
+		return !contains(Triple.ANY);
+	}
+
+	/**
+	 * Counts the triples that match a pattern, with
+	 * <code>COUNT(*)</code> queries where possible. Counts are cached for
+	 * the number of seconds set by d2rq:countCacheTimeout.
+	 */
+	public long count(TripleMatch m) {
+		return count(m.asTriple(), false);
+	}
+
+	/**
+	 * Estimates the number of triples that match a pattern from the
+	 * table statistics of the database, and counts them with
+	 * <code>COUNT(*)</code> where there are no statistics. Cached like
+	 * {@link #count(TripleMatch)}.
+	 * @return The estimate, or -1 if it would require fetching triples
+	 */
+	public long estimateCount(TripleMatch m) {
+		return count(m.asTriple(), true);
+	}
+
+	private long count(Triple t, boolean estimate) {
+		checkOpen();
+		String key = (estimate ? "estimate " : "count ") + t;
+		Long cached = countCache().get(key);
+		if (cached != null) {
+			return cached.longValue();
+		}
+		FindQuery query = new FindQuery(t, mapping.compiledPropertyBridgeIndex(), 
+				Relation.NO_LIMIT, mapping.configuration().getQueryParallelism(), null);
+		long result = estimate ? query.estimateCount() : query.count();
+		if (result != FindQuery.UNKNOWN && mapping.configuration().getServeVocabulary()) {
+			result += mapping.getVocabularyModel().getGraph().find(t).toList().size();
+		}
+		countCache().put(key, result);
+		return result;
+	}
+
+	/**
+	 * Answers with {@link #estimateCount(TripleMatch)}.
+	 */
+	@Override
+	protected GraphStatisticsHandler createStatisticsHandler() {
+		return new GraphStatisticsHandler() {
+			public long getStatistic(Node s, Node p, Node o) {
+				return estimateCount(Triple.createMatch(s, p, o));
+			}
+		};
+	}
+
 	@Override
 	protected void checkOpen() {
 		mapping.connect();
@@ -103,4 +202,26 @@ public class GraphD2RQ extends GraphBase implements Graph {
 	public Mapping getMapping() {
 		return mapping;
 	}
+	
+	/**
+	 * @return The cache of translated SPARQL queries against this graph;
+	 * 		its size is set by d2rq:planCacheSize
+	 */
+	public synchronized PlanCache planCache() {
+		if (planCache == null) {
+			planCache = new PlanCache(mapping.configuration().getPlanCacheSize());
+		}
+		return planCache;
+	}
+
+	/**
+	 * @return The cache of triple counts of this graph; its
+	 * 		timeout is set by d2rq:countCacheTimeout
+	 */
+	public synchronized CountCache countCache() {
+		if (countCache == null) {
+			countCache = new CountCache(mapping.configuration().getCountCacheTimeout());
+		}
+		return countCache;
+	}
 }
\ No newline at end of file
@@ -13,6 +13,11 @@ import de.fuberlin.wiwiss.d2rq.D2RQException;
 public class Configuration extends MapObject {
 	private boolean serveVocabulary = true;
 	private boolean useAllOptimizations = false;
+	private int queryParallelism = 1;
+	private int bindJoinBatchSize = 1;
+	private int planCacheSize = 100;
+	private int maxJoinCombinations = 10000;
+	private int countCacheTimeout = 60;
 	
 	public Configuration() {
 		this(null);
@@ -38,11 +43,92 @@ public class Configuration extends MapObject {
 		this.useAllOptimizations = useAllOptimizations;
 	}
 
+	/**
+	 * @return Maximum number of SQL queries that are run concurrently
+	 * 		on behalf of a single SPARQL query or find operation
+	 */
+	public int getQueryParallelism() {
+		return this.queryParallelism;
+	}
+
+	public void setQueryParallelism(int queryParallelism) {
+		this.queryParallelism = queryParallelism;
+	}
+
+	/**
+	 * @return Maximum number of input bindings that are evaluated
+	 * 		together in a single SQL query; 1 means one query per binding
+	 */
+	public int getBindJoinBatchSize() {
+		return this.bindJoinBatchSize;
+	}
+
+	public void setBindJoinBatchSize(int bindJoinBatchSize) {
+		this.bindJoinBatchSize = bindJoinBatchSize;
+	}
+
+	/**
+	 * @return Maximum number of translated SPARQL queries that are kept
+	 * 		for reuse; 0 means no caching
+	 */
+	public int getPlanCacheSize() {
+		return this.planCacheSize;
+	}
+
+	public void setPlanCacheSize(int planCacheSize) {
+		this.planCacheSize = planCacheSize;
+	}
+
+	/**
+	 * @return Maximum number of combinations of property bridges that
+	 * 		are considered when translating a basic graph pattern;
+	 * 		0 means no limit
+	 */
+	public int getMaxJoinCombinations() {
+		return this.maxJoinCombinations;
+	}
+
+	public void setMaxJoinCombinations(int maxJoinCombinations) {
+		this.maxJoinCombinations = maxJoinCombinations;
+	}
+
+	/**
+	 * @return Number of seconds for which triple counts are kept
+	 * 		for reuse; 0 means no caching
+	 */
+	public int getCountCacheTimeout() {
+		return this.countCacheTimeout;
+	}
+
+	public void setCountCacheTimeout(int countCacheTimeout) {
+		this.countCacheTimeout = countCacheTimeout;
+	}
+
 	public String toString() {
 		return "d2rq:Configuration " + super.toString();
 	}
 
 	public void validate() throws D2RQException {
 		/* All settings are optional */
+		if (queryParallelism < 1) {
+			throw new D2RQException("d2rq:queryParallelism must be at least 1", 
+					D2RQException.MUST_BE_NUMERIC);
+		}
+		if (bindJoinBatchSize < 1) {
+			throw new D2RQException("d2rq:bindJoinBatchSize must be at least 1", 
+					D2RQException.MUST_BE_NUMERIC);
+		}
+		if (planCacheSize < 0) {
+			throw new D2RQException("d2rq:planCacheSize must not be negative", 
+					D2RQException.MUST_BE_NUMERIC);
+		}
+		if (maxJoinCombinations < 0) {
+			throw new D2RQException("d2rq:maxJoinCombinations must not be negative", 
+					D2RQException.MUST_BE_NUMERIC);
+		}
+		if (countCacheTimeout < 0) {
+			throw new D2RQException("d2rq:countCacheTimeout must not be negative", 
+					D2RQException.MUST_BE_NUMERIC);
+		}
 	}
 }
\ No newline at end of file
@@ -23,6 +23,7 @@ import de.fuberlin.wiwiss.d2rq.D2RQException;
 import de.fuberlin.wiwiss.d2rq.algebra.Attribute;
 import de.fuberlin.wiwiss.d2rq.algebra.Relation;
 import de.fuberlin.wiwiss.d2rq.algebra.TripleRelation;
+import de.fuberlin.wiwiss.d2rq.algebra.TripleRelationIndex;
 import de.fuberlin.wiwiss.d2rq.sql.types.DataType;
 import de.fuberlin.wiwiss.d2rq.vocab.D2RQ;
 
@@ -54,6 +55,7 @@ public class Mapping {
 	private final Map<Resource,DownloadMap> downloadMaps = new HashMap<Resource,DownloadMap>();
 	private final PrefixMapping prefixes = new PrefixMappingImpl();
 	private Collection<TripleRelation> compiledPropertyBridges;
+	private TripleRelationIndex compiledPropertyBridgeIndex;
 	
 	public Mapping() {
 		this(null);
@@ -80,6 +82,7 @@ public class Mapping {
 			throw new D2RQException("No d2rq:Database defined in the mapping", 
 					D2RQException.MAPPING_NO_DATABASE);
 		}
+		configuration.validate();
 		for (Database db: databases.values()) {
 			db.validate();
 		}
@@ -197,6 +200,17 @@ public class Mapping {
 		return this.compiledPropertyBridges;
 	}
 
+	/**
+	 * @return An index over {@link #compiledPropertyBridges()} for finding
+	 * 		the property bridges that may match a triple pattern
+	 */
+	public synchronized TripleRelationIndex compiledPropertyBridgeIndex() {
+		if (this.compiledPropertyBridgeIndex == null) {
+			this.compiledPropertyBridgeIndex = new TripleRelationIndex(compiledPropertyBridges());
+		}
+		return this.compiledPropertyBridgeIndex;
+	}
+
 	private void compilePropertyBridges() {
 		/**
 		 * validate temporarily disabled, see bug
@@ -54,6 +54,29 @@ public class NodeSetConstraintBuilder implements NodeSetFilter {
 	private String valueStart = "";
 	private String valueEnd = "";
 	
+	/**
+	 * @return A builder with the same restrictions that can be restricted
+	 * 		further without affecting this one
+	 */
+	public NodeSetConstraintBuilder copy() {
+		NodeSetConstraintBuilder result = new NodeSetConstraintBuilder();
+		result.isEmpty = isEmpty;
+		result.unsupported = unsupported;
+		result.type = type;
+		result.constantValue = constantValue;
+		result.constantLanguage = constantLanguage;
+		result.constantDatatype = constantDatatype;
+		result.fixedNode = fixedNode;
+		result.attributes.addAll(attributes);
+		result.patterns.addAll(patterns);
+		result.expressions.addAll(expressions);
+		result.blankNodeIDs.addAll(blankNodeIDs);
+		result.translators.addAll(translators);
+		result.valueStart = valueStart;
+		result.valueEnd = valueEnd;
+		return result;
+	}
+	
 	public void limitToEmptySet() {
 		isEmpty = true;
 	}
@@ -73,7 +73,21 @@ public class TypedNodeMaker implements NodeMaker {
 	{
 		return this.valueMaker;
 	}
+
+	public NodeType nodeType() {
+		return this.nodeType;
+	}
 	
+	/**
+	 * Tells whether every value produced by the value maker turns into
+	 * a node. This is not the case for node types that validate the
+	 * lexical form, such as xsd:date.
+	 */
+	public boolean makesNodeForEveryValue() {
+		return nodeType instanceof URINodeType || nodeType instanceof BlankNodeType
+				|| nodeType.getClass() == LiteralNodeType.class;
+	}
+
 	public Node makeNode(ResultRow tuple) {
 		String value = this.valueMaker.makeValue(tuple);
 		if (value == null) {
@@ -4,6 +4,8 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.Stack;
 
 import org.apache.commons.logging.Log;
@@ -12,11 +14,14 @@ import org.apache.commons.logging.LogFactory;
 import com.hp.hpl.jena.datatypes.RDFDatatype;
 import com.hp.hpl.jena.datatypes.xsd.XSDDatatype;
 import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.sparql.algebra.Op;
+import com.hp.hpl.jena.sparql.algebra.op.OpNull;
 import com.hp.hpl.jena.sparql.core.Var;
 import com.hp.hpl.jena.sparql.expr.E_Add;
 import com.hp.hpl.jena.sparql.expr.E_Datatype;
 import com.hp.hpl.jena.sparql.expr.E_Divide;
 import com.hp.hpl.jena.sparql.expr.E_Equals;
+import com.hp.hpl.jena.sparql.expr.E_Exists;
 import com.hp.hpl.jena.sparql.expr.E_GreaterThan;
 import com.hp.hpl.jena.sparql.expr.E_GreaterThanOrEqual;
 import com.hp.hpl.jena.sparql.expr.E_IsBlank;
@@ -30,8 +35,15 @@ import com.hp.hpl.jena.sparql.expr.E_LogicalNot;
 import com.hp.hpl.jena.sparql.expr.E_LogicalOr;
 import com.hp.hpl.jena.sparql.expr.E_Multiply;
 import com.hp.hpl.jena.sparql.expr.E_NotEquals;
+import com.hp.hpl.jena.sparql.expr.E_NotExists;
+import com.hp.hpl.jena.sparql.expr.E_NotOneOf;
+import com.hp.hpl.jena.sparql.expr.E_OneOfBase;
+import com.hp.hpl.jena.sparql.expr.E_Regex;
 import com.hp.hpl.jena.sparql.expr.E_SameTerm;
 import com.hp.hpl.jena.sparql.expr.E_Str;
+import com.hp.hpl.jena.sparql.expr.E_StrContains;
+import com.hp.hpl.jena.sparql.expr.E_StrEndsWith;
+import com.hp.hpl.jena.sparql.expr.E_StrStartsWith;
 import com.hp.hpl.jena.sparql.expr.E_Subtract;
 import com.hp.hpl.jena.sparql.expr.E_UnaryMinus;
 import com.hp.hpl.jena.sparql.expr.E_UnaryPlus;
@@ -52,21 +64,31 @@ import com.hp.hpl.jena.sparql.expr.nodevalue.NodeFunctions;
 import com.hp.hpl.jena.sparql.expr.nodevalue.NodeValueBoolean;
 
 import de.fuberlin.wiwiss.d2rq.algebra.Attribute;
+import de.fuberlin.wiwiss.d2rq.algebra.ColumnRenamer;
 import de.fuberlin.wiwiss.d2rq.algebra.ExpressionProjectionSpec;
 import de.fuberlin.wiwiss.d2rq.algebra.NodeRelation;
 import de.fuberlin.wiwiss.d2rq.algebra.ProjectionSpec;
+import de.fuberlin.wiwiss.d2rq.algebra.Relation;
 import de.fuberlin.wiwiss.d2rq.algebra.RelationalOperators;
+import de.fuberlin.wiwiss.d2rq.engine.OpTableSQL;
+import de.fuberlin.wiwiss.d2rq.engine.OpUnionTableSQL;
 import de.fuberlin.wiwiss.d2rq.expr.Add;
+import de.fuberlin.wiwiss.d2rq.expr.Conjunction;
 import de.fuberlin.wiwiss.d2rq.expr.Constant;
+import de.fuberlin.wiwiss.d2rq.expr.Disjunction;
 import de.fuberlin.wiwiss.d2rq.expr.Divide;
 import de.fuberlin.wiwiss.d2rq.expr.Equality;
+import de.fuberlin.wiwiss.d2rq.expr.Exists;
 import de.fuberlin.wiwiss.d2rq.expr.Expression;
 import de.fuberlin.wiwiss.d2rq.expr.GreaterThan;
 import de.fuberlin.wiwiss.d2rq.expr.GreaterThanOrEqual;
+import de.fuberlin.wiwiss.d2rq.expr.In;
 import de.fuberlin.wiwiss.d2rq.expr.LessThan;
 import de.fuberlin.wiwiss.d2rq.expr.LessThanOrEqual;
+import de.fuberlin.wiwiss.d2rq.expr.Like;
 import de.fuberlin.wiwiss.d2rq.expr.Multiply;
 import de.fuberlin.wiwiss.d2rq.expr.Negation;
+import de.fuberlin.wiwiss.d2rq.expr.RegexMatch;
 import de.fuberlin.wiwiss.d2rq.expr.SQLExpression;
 import de.fuberlin.wiwiss.d2rq.expr.Subtract;
 import de.fuberlin.wiwiss.d2rq.expr.UnaryMinus;
@@ -75,6 +97,9 @@ import de.fuberlin.wiwiss.d2rq.nodes.FixedNodeMaker;
 import de.fuberlin.wiwiss.d2rq.nodes.NodeMaker;
 import de.fuberlin.wiwiss.d2rq.nodes.NodeSetConstraintBuilder;
 import de.fuberlin.wiwiss.d2rq.nodes.TypedNodeMaker;
+import de.fuberlin.wiwiss.d2rq.sql.ConnectedDB;
+import de.fuberlin.wiwiss.d2rq.sql.types.SQLCharacterString;
+import de.fuberlin.wiwiss.d2rq.values.Column;
 import de.fuberlin.wiwiss.d2rq.values.ValueMaker;
 
 /**
@@ -84,6 +109,10 @@ import de.fuberlin.wiwiss.d2rq.values.ValueMaker;
  * <ul>
  * <li>Literals using d2rq:pattern cannot be compared.</li>
  * <li>No XSD type checking/conversion or constructor functions yet.</li>
+ * <li>REGEX, STRSTARTS, STRENDS and CONTAINS are only converted for
+ *     values taken unchanged from a character string column.</li>
+ * <li>EXISTS and NOT EXISTS are only converted if their pattern was
+ *     translated to SQL on the same database.</li>
  * </ul>
  * 
  * @author Herwig Leimer
@@ -101,7 +130,19 @@ public final class TransformExprToSQLApplyer implements ExprVisitor {
 	 * @return The root node of an {@link Expression Expression} tree, if conversion was successful, <code>null</code> otherwise.
 	 */
 	public static Expression convert(final Expr expr, final NodeRelation nodeRelation) {
-		TransformExprToSQLApplyer transformer = new TransformExprToSQLApplyer(nodeRelation);
+		return convert(expr, nodeRelation, Collections.<Op,Op>emptyMap());
+	}
+	
+	/**
+	 * Converts a SPARQL filter expression to an SQL expression
+	 * 
+	 * @param expr The root node of an {@link Expr Expr} tree, contains the SPARQL filter.
+	 * @param nodeRelation The relation supplying the values to apply the filter on.
+	 * @param patterns Translations of the patterns of <code>EXISTS</code> and <code>NOT EXISTS</code> in the filter
+	 * @return The root node of an {@link Expression Expression} tree, if conversion was successful, <code>null</code> otherwise.
+	 */
+	public static Expression convert(final Expr expr, final NodeRelation nodeRelation, final Map<Op,Op> patterns) {
+		TransformExprToSQLApplyer transformer = new TransformExprToSQLApplyer(nodeRelation, patterns);
 		expr.visit(transformer);
 		return transformer.result(); 
 	}
@@ -111,6 +152,7 @@ public final class TransformExprToSQLApplyer implements ExprVisitor {
 	private static final Expression CONSTANT_TRUE  = new ConstantEx("true", NodeValueBoolean.TRUE.asNode());
 	
 	private final NodeRelation nodeRelation;
+	private final Map<Op,Op> patterns;
 	private final Stack<Expression> expression = new Stack<Expression>();
 	
 	private boolean convertable;     // flag if converting was possible
@@ -122,9 +164,21 @@ public final class TransformExprToSQLApplyer implements ExprVisitor {
 	 * @param nodeRelation
 	 */
 	public TransformExprToSQLApplyer(NodeRelation nodeRelation)
+	{	
+		this(nodeRelation, Collections.<Op,Op>emptyMap());
+	}
+
+	/**
+	 * Creates an expression transformer.
+	 * 
+	 * @param nodeRelation
+	 * @param patterns Translations of the patterns of <code>EXISTS</code> and <code>NOT EXISTS</code>
+	 */
+	public TransformExprToSQLApplyer(NodeRelation nodeRelation, Map<Op,Op> patterns)
 	{	
 		this.convertable  = true;
 		this.nodeRelation = nodeRelation;
+		this.patterns     = patterns;
 	}
 
 	/**
@@ -186,11 +240,35 @@ public final class TransformExprToSQLApplyer implements ExprVisitor {
 	}
 
 	public void visit(ExprFunctionN func) {
+		if (func instanceof E_Regex || func instanceof E_OneOfBase) {
+			logger.debug("visit ExprFunction " + func);
+			
+			if (!convertable) {
+				expression.push(Expression.FALSE); // prevent stack empty exceptions when conversion
+				return;                            // fails in the middle of a multi-arg operator conversion
+			}
+			if (func instanceof E_Regex) {
+				convertRegex((E_Regex) func);
+			} else {
+				convertOneOf((E_OneOfBase) func);
+			}
+			return;
+		}
 		visitExprFunction(func);		
 	}
 
 	public void visit(ExprFunctionOp funcOp) {
-		visitExprFunction(funcOp);		
+		logger.debug("visit ExprFunctionOp " + funcOp);
+		
+		if (!convertable) {
+			expression.push(Expression.FALSE); // prevent stack empty exceptions when conversion
+			return;                            // fails in the middle of a multi-arg operator conversion
+		}
+		if (funcOp instanceof E_Exists || funcOp instanceof E_NotExists) {
+			convertExists(funcOp);
+		} else {
+			conversionFailed(funcOp);
+		}
 	}
 
 	public void visit(ExprAggregator eAgg) {
@@ -415,6 +493,12 @@ public final class TransformExprToSQLApplyer implements ExprVisitor {
 			convertLangMatches((E_LangMatches) expr);
 		} else if (expr instanceof E_SameTerm) {
 			convertSameTerm((E_SameTerm) expr);
+		} else if (expr instanceof E_StrStartsWith) {
+			convertStringMatch(expr, true, false);
+		} else if (expr instanceof E_StrEndsWith) {
+			convertStringMatch(expr, false, true);
+		} else if (expr instanceof E_StrContains) {
+			convertStringMatch(expr, false, false);
 		} else if (extensionSupports(expr)) {
 			expr.getArg(1).visit(this);
 			expr.getArg(2).visit(this);
@@ -701,6 +785,101 @@ public final class TransformExprToSQLApplyer implements ExprVisitor {
 			expression.push(new Negation(e1));
 	}
 	
+	/*
+	 * See http://www.w3.org/TR/sparql11-query/ paragraph 17.4.1.9
+	 * 
+	 * "IN" is defined as a disjunction of "=" tests; comparisons of a
+	 * column with constants are combined into a SQL IN list. "NOT IN"
+	 * is negated like "!=".
+	 */
+	private void convertOneOf(E_OneOfBase expr)
+	{
+		logger.debug("convertOneOf " + expr.toString());
+		
+		List<Expression> alternatives = new ArrayList<Expression>(expr.getRHS().size());
+		for (Expr value: expr.getRHS()) {
+			Expression alternative = convertURIEquality(expr.getLHS(), value);
+			if (alternative == null) {
+				new E_Equals(expr.getLHS(), value).visit(this);
+				alternative = expression.pop();
+			}
+			if (!convertable) {
+				expression.push(Expression.FALSE);
+				return;
+			}
+			alternatives.add(alternative);
+		}
+		Expression result = In.createDisjunction(alternatives);
+		if (expr instanceof E_NotOneOf) {
+			result = result.isFalse() ? Expression.TRUE 
+					: result.isTrue() ? Expression.FALSE : new Negation(result);
+		}
+		expression.push(result);
+	}
+	
+	/**
+	 * "EXISTS" becomes a correlated subquery if its pattern was
+	 * translated to SQL queries on the same database. "NOT EXISTS"
+	 * is its negation.
+	 */
+	private void convertExists(ExprFunctionOp expr)
+	{
+		logger.debug("convertExists " + expr.toString());
+		
+		Op pattern = patterns.get(expr.getGraphPattern());
+		List<Expression> alternatives = new ArrayList<Expression>();
+		if (pattern instanceof OpUnionTableSQL) {
+			for (OpTableSQL tableOp: ((OpUnionTableSQL) pattern).tableOps()) {
+				Expression alternative = Exists.create(nodeRelation, tableOp.table());
+				if (alternative == null) {
+					conversionFailed("pattern cannot become a subquery", expr);
+					return;
+				}
+				alternatives.add(alternative);
+			}
+		} else if (!(pattern instanceof OpNull)) {
+			conversionFailed("pattern was not translated to SQL", expr);
+			return;
+		}
+		Expression result = Disjunction.create(alternatives);
+		if (expr instanceof E_NotExists) {
+			result = result.isFalse() ? Expression.TRUE 
+					: result.isTrue() ? Expression.FALSE : new Negation(result);
+		}
+		expression.push(result);
+	}
+	
+	/**
+	 * Compares a variable with a URI through its node maker. Unlike
+	 * {@link #convertEquality(ExprFunction2)}, this also works for URI
+	 * patterns with several columns, where it becomes a condition on
+	 * each of them.
+	 * 
+	 * @return The condition, or <code>null</code> if the arguments
+	 * 		aren't a variable and a URI
+	 */
+	private Expression convertURIEquality(Expr var, Expr value)
+	{
+		if (!var.isVariable() || !value.isConstant()) return null;
+		Node node = value.getConstant().asNode();
+		if (!node.isURI()) return null;
+		NodeMaker nodeMaker = nodeRelation.nodeMaker(var.asVar());
+		if (nodeMaker == null) return null;
+		final List<Expression> conditions = new ArrayList<Expression>();
+		RelationalOperators selection = new RelationalOperators() {
+			public Relation select(Expression condition) {
+				conditions.add(condition);
+				return null;
+			}
+			public Relation renameColumns(ColumnRenamer renamer) { return null; }
+			public Relation project(Set<? extends ProjectionSpec> projectionSpecs) { return null; }
+		};
+		if (nodeMaker.selectNode(node, selection).equals(NodeMaker.EMPTY)) {
+			return Expression.FALSE;
+		}
+		return Conjunction.create(conditions);
+	}
+	
 	private void convert(E_UnaryPlus expr)
 	{
 		expr.getArg().visit(this);
@@ -1083,6 +1262,113 @@ public final class TransformExprToSQLApplyer implements ExprVisitor {
 	}
 	
 	
+	/*
+	 * See http://www.w3.org/TR/sparql11-query/ paragraph 17.4.3
+	 * 
+	 * STRSTARTS, STRENDS and CONTAINS with a constant second argument
+	 * become a LIKE pattern.
+	 */
+	private void convertStringMatch(ExprFunction2 expr, boolean atStart, boolean atEnd)
+	{
+		logger.debug("convertStringMatch " + expr.toString());
+		
+		expr.getArg1().visit(this);
+		expr.getArg2().visit(this);
+		Expression e2 = expression.pop();
+		Expression e1 = expression.pop();
+		
+		AttributeExprEx column = stringColumn(e1);
+		String value = stringConstant(e2);
+		if (column == null || value == null) {
+			conversionFailed("not a string column and a string constant", expr);
+			return;
+		}
+		expression.push(new Like(column, Like.pattern(value, atStart, atEnd)));
+	}
+	
+	/*
+	 * See http://www.w3.org/TR/rdf-sparql-query paragraph 11.4.14
+	 * 
+	 * "(REGEX) Invokes the XPath fn:matches function to match text against a regular expression pattern."
+	 * 
+	 * Regular expressions without special characters other than ^ and $ become
+	 * a LIKE pattern; others use the database's regular expressions, if any.
+	 */
+	private void convertRegex(E_Regex expr)
+	{
+		logger.debug("convertRegex " + expr.toString());
+		
+		for (int i = 1; i <= expr.numArgs(); i++)
+			expr.getArg(i).visit(this);
+		List<Expression> args = new ArrayList<Expression>(expr.numArgs());
+		for (int i = 0; i < expr.numArgs(); i++)
+			args.add(expression.pop());
+		Collections.reverse(args);
+		
+		AttributeExprEx column = stringColumn(args.get(0));
+		String regex = stringConstant(args.get(1));
+		String flags = args.size() > 2 ? stringConstant(args.get(2)) : "";
+		if (column == null || regex == null || flags == null) {
+			conversionFailed("not a string column and string constants", expr);
+			return;
+		}
+		if (!"".equals(flags) && !"i".equals(flags)) {
+			conversionFailed("unsupported flags", expr);
+			return;
+		}
+		boolean ignoreCase = "i".equals(flags);
+		String pattern = Like.patternForRegex(regex);
+		if (!ignoreCase && pattern != null) {
+			expression.push(new Like(column, pattern));
+			return;
+		}
+		String posixRegex = RegexMatch.toPOSIX(regex);
+		if (posixRegex == null) {
+			conversionFailed("regular expression cannot be used in SQL", expr);
+			return;
+		}
+		if (!RegexMatch.isSupportedBy(nodeRelation.baseRelation().database().vendor(), ignoreCase)) {
+			conversionFailed("no regular expressions in this database", expr);
+			return;
+		}
+		expression.push(new RegexMatch(column, posixRegex, ignoreCase));
+	}
+	
+	/**
+	 * Checks that an argument of a string function is a column whose
+	 * values are turned unchanged into string literals, so that a match
+	 * on the column is the same as a match on the literals.
+	 * 
+	 * @return The column, or <code>null</code>
+	 */
+	private AttributeExprEx stringColumn(Expression arg)
+	{
+		if (!(arg instanceof AttributeExprEx)) return null;
+		AttributeExprEx column = (AttributeExprEx) arg;
+		if (!(column.getNodeMaker() instanceof TypedNodeMaker)) return null;
+		TypedNodeMaker nodeMaker = (TypedNodeMaker) column.getNodeMaker();
+		if (!(nodeMaker.valueMaker() instanceof Column)) return null;
+		Node sample = nodeMaker.nodeType().makeNode("");
+		if (!sample.isLiteral()) return null;
+		RDFDatatype datatype = sample.getLiteralDatatype();
+		if (datatype != null && !XSDDatatype.XSDstring.equals(datatype)) return null;
+		ConnectedDB database = nodeRelation.baseRelation().database();
+		Attribute original = nodeRelation.baseRelation().aliases().originalOf(column.attributes().iterator().next());
+		if (!(database.columnType(original) instanceof SQLCharacterString)) return null;
+		return column;
+	}
+	
+	/**
+	 * @return The value of a simple literal or <code>xsd:string</code>, or <code>null</code>
+	 */
+	private String stringConstant(Expression arg)
+	{
+		if (!(arg instanceof ConstantEx)) return null;
+		Node node = ((ConstantEx) arg).getNode();
+		if (!isStringLiteral(node)) return null;
+		return node.getLiteralLexicalForm();
+	}
+	
 	private void conversionFailed(Expr unconvertableExpr)
 	{
 		// prevent stack empty exceptions when conversion fails in the middle of a multi-arg operator conversion
@@ -1117,6 +1403,14 @@ public final class TransformExprToSQLApplyer implements ExprVisitor {
 		throw new RuntimeException("unknown nodeMaker type");
 	}
 	
+	static boolean isStringLiteral(Node node)
+	{
+		if (!isSimpleLiteral(node))
+			return node.isLiteral() && XSDDatatype.XSDstring.equals(node.getLiteralDatatype());
+		
+		return true;
+	}
+	
 	static boolean isSimpleLiteral(Node node)
 	{
 		if (!node.isLiteral())
@@ -187,6 +187,26 @@ public class MapParser {
 			while (stmts.hasNext()) {
 				configuration.setUseAllOptimizations(stmts.nextStatement().getBoolean());
 			}			
+			stmts = configResource.listProperties(D2RQ.queryParallelism);
+			while (stmts.hasNext()) {
+				configuration.setQueryParallelism(stmts.nextStatement().getInt());
+			}			
+			stmts = configResource.listProperties(D2RQ.bindJoinBatchSize);
+			while (stmts.hasNext()) {
+				configuration.setBindJoinBatchSize(stmts.nextStatement().getInt());
+			}			
+			stmts = configResource.listProperties(D2RQ.planCacheSize);
+			while (stmts.hasNext()) {
+				configuration.setPlanCacheSize(stmts.nextStatement().getInt());
+			}			
+			stmts = configResource.listProperties(D2RQ.maxJoinCombinations);
+			while (stmts.hasNext()) {
+				configuration.setMaxJoinCombinations(stmts.nextStatement().getInt());
+			}			
+			stmts = configResource.listProperties(D2RQ.countCacheTimeout);
+			while (stmts.hasNext()) {
+				configuration.setCountCacheTimeout(stmts.nextStatement().getInt());
+			}			
 			this.mapping.setConfiguration(configuration);
 
 			if (it.hasNext())
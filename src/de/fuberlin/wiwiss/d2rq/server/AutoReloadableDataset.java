@@ -31,6 +31,7 @@ public class AutoReloadableDataset implements Dataset {
 	private final File watchedFile;
 	private final boolean autoReload;
 	
+	private GraphD2RQ graph = null;
 	private DatasetGraph datasetGraph = null;
     
 	private long lastModified = Long.MAX_VALUE;
@@ -59,6 +60,9 @@ public class AutoReloadableDataset implements Dataset {
 		if (watchedFile.lastModified() == this.lastModified) return;
 		
 		log.info("Reloading mapping file");
+		// Plans refer to the old mapping's property bridges and databases
+		log.info("Discarding query plans: " + graph.planCache());
+		graph.planCache().clear();
 		datasetGraph.close();
 		loader.resetMappingFile();
 		reload();
@@ -66,7 +70,7 @@ public class AutoReloadableDataset implements Dataset {
 	
 	private void reload() {
 		loader.getMapping().connect();
-		GraphD2RQ graph = loader.getGraphD2RQ();
+		graph = loader.getGraphD2RQ();
 		
 		datasetGraph = DatasetGraphFactory.createOneGraph(graph);
 		defaultModel = ModelFactory.createModelForGraph(datasetGraph.getDefaultGraph());		
@@ -15,6 +15,8 @@ import javax.servlet.http.HttpServletResponse;
 
 import org.apache.velocity.context.Context;
 
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Triple;
 import com.hp.hpl.jena.rdf.model.Model;
 import com.hp.hpl.jena.rdf.model.ModelFactory;
 import com.hp.hpl.jena.rdf.model.Property;
@@ -25,6 +27,7 @@ import com.hp.hpl.jena.rdf.model.StmtIterator;
 import com.hp.hpl.jena.vocabulary.RDF;
 
 import de.fuberlin.wiwiss.d2rq.ClassMapLister;
+import de.fuberlin.wiwiss.d2rq.jena.GraphD2RQ;
 import de.fuberlin.wiwiss.d2rq.vocab.D2RQ;
 import de.fuberlin.wiwiss.d2rq.vocab.SD;
 import de.fuberlin.wiwiss.d2rq.vocab.VoID;
@@ -90,12 +93,19 @@ public class DatasetDescriptionServlet extends HttpServlet {
 
 		Set<String> prefixes = new HashSet<String>();
 
+		// statistics, counted in the database and cached by the graph
+		GraphD2RQ graph = D2RServer.retrieveSystemLoader(getServletContext())
+				.getGraphD2RQ();
+		dDesc.addLiteral(datasetIRI, VoID.triples, graph.count(Triple.ANY));
+
 		// for all d2rq:ClassMap instances, create a void:classPartition
 		for (Resource partClass : generatePartitions(mapping, D2RQ.ClassMap,
 				D2RQ.class_)) {
 			Resource classPartition = dDesc.createResource();
 			dDesc.add(classPartition, VoID.class_, partClass);
 			dDesc.add(datasetIRI, VoID.classPartition, classPartition);
+			dDesc.addLiteral(classPartition, VoID.entities, graph.count(
+					Triple.create(Node.ANY, RDF.Nodes.type, partClass.asNode())));
 
 			prefixes.add(findPrefix(partClass.getURI()));
 		}
@@ -105,6 +115,8 @@ public class DatasetDescriptionServlet extends HttpServlet {
 			Resource propertyPartition = dDesc.createResource();
 			dDesc.add(propertyPartition, VoID.property, partProp);
 			dDesc.add(datasetIRI, VoID.propertyPartition, propertyPartition);
+			dDesc.addLiteral(propertyPartition, VoID.triples, graph.count(
+					Triple.create(Node.ANY, partProp.asNode(), Node.ANY)));
 
 			prefixes.add(findPrefix(partProp.getURI()));
 		}
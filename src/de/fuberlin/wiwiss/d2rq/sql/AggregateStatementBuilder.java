@@ -0,0 +1,111 @@
+package de.fuberlin.wiwiss.d2rq.sql;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+import de.fuberlin.wiwiss.d2rq.algebra.AliasMap;
+import de.fuberlin.wiwiss.d2rq.algebra.Attribute;
+import de.fuberlin.wiwiss.d2rq.algebra.ColumnRenamer;
+import de.fuberlin.wiwiss.d2rq.algebra.ColumnRenamerMap;
+import de.fuberlin.wiwiss.d2rq.algebra.ExpressionProjectionSpec;
+import de.fuberlin.wiwiss.d2rq.algebra.ProjectionSpec;
+import de.fuberlin.wiwiss.d2rq.algebra.Relation;
+import de.fuberlin.wiwiss.d2rq.algebra.RelationName;
+import de.fuberlin.wiwiss.d2rq.expr.Aggregate;
+
+/**
+ * Delivers a SQL statement that groups the rows of a {@link Relation}
+ * and computes {@link Aggregate}s over each group.
+ *
+ * The relation's own statement, as built by the
+ * {@link SelectStatementBuilder}, becomes a derived table in the
+ * FROM clause. This way, the aggregates see exactly the rows that the
+ * relation would produce, after <code>DISTINCT</code> and row limits
+ * have been applied.
+ *
+ * The grouping attributes and all attributes used in the aggregates
+ * must be among the relation's projections.
+ */
+public class AggregateStatementBuilder {
+	private final static RelationName DERIVED_TABLE = new RelationName(null, "solutions");
+
+	private final ConnectedDB database;
+	private final SelectStatementBuilder solutions;
+	private final List<Attribute> groupBy;
+	private final ColumnRenamer renamer;
+	private final List<ProjectionSpec> columnSpecs = new ArrayList<ProjectionSpec>();
+
+	/**
+	 * @param relation A relation producing the rows to be grouped
+	 * @param groupBy Attributes of the relation that define the groups;
+	 * 		if empty, all rows form a single group
+	 * @param aggregates Aggregates over attributes of the relation
+	 */
+	public AggregateStatementBuilder(Relation relation, List<Attribute> groupBy,
+			List<Aggregate> aggregates) {
+		this.database = relation.database();
+		this.solutions = new SelectStatementBuilder(relation);
+		this.groupBy = new ArrayList<Attribute>(new LinkedHashSet<Attribute>(groupBy));
+		Map<Attribute,Attribute> derivedColumns = new HashMap<Attribute,Attribute>();
+		for (ProjectionSpec projection: solutions.getColumnSpecs()) {
+			if (!(projection instanceof Attribute)) continue;
+			derivedColumns.put((Attribute) projection,
+					new Attribute(DERIVED_TABLE, solutions.columnName(projection)));
+		}
+		this.renamer = new ColumnRenamerMap(derivedColumns);
+		columnSpecs.addAll(this.groupBy);
+		for (Aggregate aggregate: aggregates) {
+			columnSpecs.add(columnSpec(aggregate));
+		}
+	}
+
+	public String getSQLStatement() {
+		StringBuffer result = new StringBuffer("SELECT ");
+		Iterator<ProjectionSpec> it = columnSpecs.iterator();
+		while (it.hasNext()) {
+			result.append(it.next().renameAttributes(renamer).toSQL(
+					database, AliasMap.NO_ALIASES));
+			if (it.hasNext()) {
+				result.append(", ");
+			}
+		}
+		result.append(" FROM (");
+		result.append(solutions.getNamedColumnsSQLStatement());
+		result.append(") ");
+		result.append(database.vendor().quoteRelationName(DERIVED_TABLE));
+		Iterator<Attribute> groupIt = groupBy.iterator();
+		if (groupIt.hasNext()) {
+			result.append(" GROUP BY ");
+		}
+		while (groupIt.hasNext()) {
+			result.append(renamer.applyTo(groupIt.next()).toSQL(
+					database, AliasMap.NO_ALIASES));
+			if (groupIt.hasNext()) {
+				result.append(", ");
+			}
+		}
+		return result.toString();
+	}
+
+	/**
+	 * Returns the entries of the SELECT clause, in order of appearance.
+	 * These are the grouping attributes, followed by an
+	 * {@link ExpressionProjectionSpec} for each aggregate.
+	 *
+	 * @return A list of {@link ProjectionSpec}s
+	 */
+	public List<ProjectionSpec> getColumnSpecs() {
+		return columnSpecs;
+	}
+
+	/**
+	 * @return The SELECT clause entry that holds the value of an aggregate
+	 */
+	public static ProjectionSpec columnSpec(Aggregate aggregate) {
+		return new ExpressionProjectionSpec(aggregate);
+	}
+}
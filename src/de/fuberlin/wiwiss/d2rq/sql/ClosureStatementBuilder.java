@@ -0,0 +1,202 @@
+package de.fuberlin.wiwiss.d2rq.sql;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import de.fuberlin.wiwiss.d2rq.algebra.AliasMap;
+import de.fuberlin.wiwiss.d2rq.algebra.Attribute;
+import de.fuberlin.wiwiss.d2rq.algebra.ColumnRenamer;
+import de.fuberlin.wiwiss.d2rq.algebra.ColumnRenamerMap;
+import de.fuberlin.wiwiss.d2rq.algebra.Join;
+import de.fuberlin.wiwiss.d2rq.algebra.ProjectionSpec;
+import de.fuberlin.wiwiss.d2rq.algebra.Relation;
+import de.fuberlin.wiwiss.d2rq.algebra.RelationName;
+import de.fuberlin.wiwiss.d2rq.expr.Conjunction;
+import de.fuberlin.wiwiss.d2rq.expr.Equality;
+import de.fuberlin.wiwiss.d2rq.expr.Expression;
+
+/**
+ * Delivers a recursive SQL statement that computes the transitive
+ * closure of a {@link Relation} whose rows are edges from source
+ * columns to target columns:
+ * "<code>WITH RECURSIVE closure (s1, t1) AS (SELECT ... UNION
+ * SELECT ... FROM closure, ...) SELECT ... FROM closure</code>".
+ *
+ * The first member selects the edges that satisfy a seed condition.
+ * The recursive member joins the closure with the edges on a link
+ * condition. Going forward, a path is extended by an edge whose source
+ * matches the path's target; going backward, by an edge whose target
+ * matches the path's source. <code>UNION</code> eliminates duplicate
+ * paths, so the recursion ends on cycles.
+ *
+ * The link condition refers to the closure's columns
+ * through {@link #closureRenamer()}. Only engines that answer
+ * {@link de.fuberlin.wiwiss.d2rq.sql.vendor.Vendor#supportsRecursiveQueries()}
+ * with <code>true</code> can run the statement.
+ */
+public class ClosureStatementBuilder {
+	public final static RelationName CLOSURE = new RelationName(null, "closure");
+
+	private final ConnectedDB database;
+	private final Relation edges;
+	private final List<Attribute> sources;
+	private final List<Attribute> targets;
+	private final List<Attribute> closureColumns = new ArrayList<Attribute>();
+	private final ColumnRenamer closureRenamer;
+	private final List<ProjectionSpec> columnSpecs = new ArrayList<ProjectionSpec>();
+
+	/**
+	 * @param edges A relation over a database that supports recursive queries;
+	 * 		it must not use a table named {@link #CLOSURE}
+	 * @param sources Attributes of the relation that identify the start of an edge
+	 * @param targets Attributes of the relation that identify the end of an edge;
+	 * 		must be distinct from the source attributes
+	 */
+	public ClosureStatementBuilder(Relation edges, List<Attribute> sources,
+			List<Attribute> targets) {
+		this.database = edges.database();
+		this.edges = edges;
+		this.sources = sources;
+		this.targets = targets;
+		Map<Attribute,Attribute> renames = new HashMap<Attribute,Attribute>();
+		for (int i = 0; i < sources.size(); i++) {
+			Attribute column = new Attribute(CLOSURE, "s" + (i + 1));
+			closureColumns.add(column);
+			renames.put(sources.get(i), column);
+		}
+		for (int i = 0; i < targets.size(); i++) {
+			Attribute column = new Attribute(CLOSURE, "t" + (i + 1));
+			closureColumns.add(column);
+			renames.put(targets.get(i), column);
+		}
+		this.closureRenamer = new ColumnRenamerMap(renames);
+		columnSpecs.addAll(sources);
+		columnSpecs.addAll(targets);
+	}
+
+	/**
+	 * @return Renames the source and target attributes of the edges
+	 * 		to the corresponding columns of the closure
+	 */
+	public ColumnRenamer closureRenamer() {
+		return closureRenamer;
+	}
+
+	/**
+	 * @param seed Condition on the edges that start the paths
+	 * @param link Condition on the edges and the closure's columns that
+	 * 		tells which edges extend a path
+	 * @param backward Extend paths at their start instead of their end?
+	 */
+	public String getSQLStatement(Expression seed, Expression link,
+			boolean backward) {
+		StringBuffer sql = new StringBuffer("WITH RECURSIVE ");
+		sql.append(database.vendor().quoteRelationName(CLOSURE));
+		sql.append(" (");
+		Iterator<Attribute> it = closureColumns.iterator();
+		while (it.hasNext()) {
+			sql.append(database.vendor().quoteIdentifier(it.next().attributeName()));
+			if (it.hasNext()) {
+				sql.append(", ");
+			}
+		}
+		sql.append(") AS (");
+		List<ProjectionSpec> seedColumns = new ArrayList<ProjectionSpec>(sources);
+		seedColumns.addAll(targets);
+		appendMember(sql, seedColumns, false, seed);
+		sql.append(" UNION ");
+		List<ProjectionSpec> stepColumns = new ArrayList<ProjectionSpec>();
+		for (Attribute source: sources) {
+			stepColumns.add(backward ? source : closureRenamer.applyTo(source));
+		}
+		for (Attribute target: targets) {
+			stepColumns.add(backward ? closureRenamer.applyTo(target) : target);
+		}
+		appendMember(sql, stepColumns, true, link);
+		sql.append(") ");
+		int limit = database.limit();
+		Expression condition = database.vendor().getRowNumLimitAsExpression(limit);
+		sql.append("SELECT ");
+		String s = database.vendor().getRowNumLimitAsSelectModifier(limit);
+		if (!"".equals(s)) {
+			sql.append(s);
+			sql.append(" ");
+		}
+		appendColumns(sql, closureColumns, AliasMap.NO_ALIASES);
+		sql.append(" FROM ");
+		sql.append(database.vendor().quoteRelationName(CLOSURE));
+		if (!condition.isTrue()) {
+			sql.append(" WHERE ");
+			sql.append(condition.toSQL(database, AliasMap.NO_ALIASES));
+		}
+		s = database.vendor().getRowNumLimitAsQueryAppendage(limit);
+		if (!"".equals(s)) {
+			sql.append(" ");
+			sql.append(s);
+		}
+		return sql.toString();
+	}
+
+	/**
+	 * Returns the entries of the SELECT clause, in order of appearance.
+	 * These are the source attributes, followed by the target attributes.
+	 *
+	 * @return A list of {@link ProjectionSpec}s
+	 */
+	public List<ProjectionSpec> getColumnSpecs() {
+		return columnSpecs;
+	}
+
+	private void appendMember(StringBuffer sql, List<? extends ProjectionSpec> columns,
+			boolean withClosure, Expression extraCondition) {
+		List<Expression> conditions = new ArrayList<Expression>();
+		for (Join join: edges.joinConditions()) {
+			for (Attribute attribute1: join.attributes1()) {
+				Attribute attribute2 = join.equalAttribute(attribute1);
+				conditions.add(Equality.createAttributeEquality(attribute1, attribute2));
+			}
+		}
+		conditions.add(edges.condition());
+		conditions.add(edges.softCondition());
+		conditions.add(extraCondition);
+		Expression condition = Conjunction.create(conditions);
+		sql.append("SELECT ");
+		appendColumns(sql, columns, edges.aliases());
+		sql.append(" FROM ");
+		if (withClosure) {
+			sql.append(database.vendor().quoteRelationName(CLOSURE));
+			sql.append(", ");
+		}
+		Iterator<RelationName> it = edges.tables().iterator();
+		while (it.hasNext()) {
+			RelationName table = it.next();
+			if (edges.aliases().isAlias(table)) {
+				sql.append(database.vendor().getRelationNameAliasExpression(
+						edges.aliases().originalOf(table), table));
+			} else {
+				sql.append(database.vendor().quoteRelationName(table));
+			}
+			if (it.hasNext()) {
+				sql.append(", ");
+			}
+		}
+		if (!condition.isTrue()) {
+			sql.append(" WHERE ");
+			sql.append(condition.toSQL(database, edges.aliases()));
+		}
+	}
+
+	private void appendColumns(StringBuffer sql, List<? extends ProjectionSpec> columns,
+			AliasMap aliases) {
+		Iterator<? extends ProjectionSpec> it = columns.iterator();
+		while (it.hasNext()) {
+			sql.append(it.next().toSQL(database, aliases));
+			if (it.hasNext()) {
+				sql.append(", ");
+			}
+		}
+	}
+}
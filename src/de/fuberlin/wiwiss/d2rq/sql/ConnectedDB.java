@@ -8,15 +8,24 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Properties;
 
+import javax.sql.DataSource;
+
+import org.apache.commons.dbcp.ConnectionFactory;
+import org.apache.commons.dbcp.PoolableConnectionFactory;
+import org.apache.commons.dbcp.PoolingDataSource;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.commons.pool.impl.GenericObjectPool;
 
 import de.fuberlin.wiwiss.d2rq.D2RQException;
 import de.fuberlin.wiwiss.d2rq.algebra.Attribute;
+import de.fuberlin.wiwiss.d2rq.algebra.Join;
 import de.fuberlin.wiwiss.d2rq.algebra.RelationName;
 import de.fuberlin.wiwiss.d2rq.dbschema.DatabaseSchemaInspector;
+import de.fuberlin.wiwiss.d2rq.dbschema.TableStatistics;
 import de.fuberlin.wiwiss.d2rq.map.Database;
 import de.fuberlin.wiwiss.d2rq.sql.types.DataType;
 import de.fuberlin.wiwiss.d2rq.sql.types.DataType.GenericType;
@@ -36,6 +45,21 @@ public class ConnectedDB {
 	public static final String KEEP_ALIVE_QUERY_PROPERTY = "keepAliveQuery"; // override default keep alive query
 	public static final String DEFAULT_KEEP_ALIVE_QUERY = "SELECT 1"; // may not work for some DBMS
 
+	public static final String CONNECTION_POOL_PROPERTY = "connectionPool"; // "true" enables pooling for query execution
+	public static final String POOL_MAX_ACTIVE_PROPERTY = "poolMaxActive"; // maximum number of connections in use
+	public static final int DEFAULT_POOL_MAX_ACTIVE = 8;
+	public static final String POOL_MIN_IDLE_PROPERTY = "poolMinIdle"; // idle connections kept open by the evictor
+	public static final int DEFAULT_POOL_MIN_IDLE = 0;
+	public static final String POOL_MAX_WAIT_PROPERTY = "poolMaxWait"; // value in seconds; waiting for a free connection
+	public static final int DEFAULT_POOL_MAX_WAIT = 60;
+	public static final String POOL_VALIDATION_QUERY_PROPERTY = "poolValidationQuery"; // checked on borrow; none by default
+	public static final String POOL_IDLE_TIMEOUT_PROPERTY = "poolIdleTimeout"; // value in seconds
+	public static final int DEFAULT_POOL_IDLE_TIMEOUT = 30*60;
+	public static final String POOL_EVICTION_INTERVAL_PROPERTY = "poolEvictionInterval"; // value in seconds
+	public static final int DEFAULT_POOL_EVICTION_INTERVAL = 5*60;
+
+	public static final String READ_AHEAD_PROPERTY = "readAhead"; // number of rows buffered ahead of the consumer
+
 	{
 		ConnectedDB.registerJDBCDriverIfPresent("com.mysql.jdbc.Driver");
 		ConnectedDB.registerJDBCDriverIfPresent("org.postgresql.Driver");
@@ -63,7 +87,17 @@ public class ConnectedDB {
 	private Map<Attribute,Boolean> zerofillCache = new HashMap<Attribute,Boolean>();
 	private Map<RelationName,Map<String,List<String>>> uniqueIndexCache = 
 		new HashMap<RelationName,Map<String,List<String>>>();
+	private Map<RelationName,List<Attribute>> primaryKeyCache = 
+		new HashMap<RelationName,List<Attribute>>();
+	private Map<RelationName,List<Join>> foreignKeyCache = 
+		new HashMap<RelationName,List<Join>>();
+	private Map<RelationName,TableStatistics> statisticsCache = 
+		new HashMap<RelationName,TableStatistics>();
 	private final Properties connectionProperties;
+	private final boolean usePool;
+	private final int readAhead;
+	private GenericObjectPool<Connection> pool = null;
+	private DataSource pooledDataSource = null;
 
 	private class KeepAliveAgent extends Thread {
 		private final int interval;
@@ -178,6 +212,10 @@ public class ConnectedDB {
 			log.debug("Keep alive agent is enabled (interval: " + interval + " seconds, noop query: '" + query + "').");
 		} else
 			this.keepAliveAgent = null;
+
+		this.usePool = connectionProperties != null 
+				&& "true".equalsIgnoreCase(connectionProperties.getProperty(CONNECTION_POOL_PROPERTY));
+		this.readAhead = connectionProperties == null ? 0 : intProperty(READ_AHEAD_PROPERTY, 0);
 	}
 
 	public String getJdbcURL() {
@@ -199,10 +237,121 @@ public class ConnectedDB {
 		return this.connection;
 	}
 
+	/**
+	 * Obtains a connection for executing a query. If connection pooling
+	 * is enabled through the {@link #CONNECTION_POOL_PROPERTY}, then the
+	 * connection is borrowed from the pool and can be used concurrently
+	 * with other borrowed connections. Otherwise, the shared connection
+	 * returned by {@link #connection()} is used.
+	 * Every borrowed connection must be handed back through
+	 * {@link #releaseConnection(Connection)}.
+	 */
+	public Connection borrowConnection() {
+		if (!usePool) {
+			return connection();
+		}
+		try {
+			return pooledDataSource().getConnection();
+		} catch (SQLException ex) {
+			if (ex.getCause() instanceof NoSuchElementException) {
+				throw new D2RQException(
+						"Timed out waiting for a pooled connection to " + jdbcURL + 
+						"; all " + poolMaxActive() + " connections are in use",
+						D2RQException.D2RQ_DB_CONNECTION_FAILED);
+			}
+			throw new D2RQException(
+					"Could not obtain pooled connection to " + jdbcURL + ": " + ex.getMessage(),
+					D2RQException.D2RQ_DB_CONNECTION_FAILED);
+		}
+	}
+
+	/**
+	 * Returns a connection obtained from {@link #borrowConnection()}.
+	 * Does nothing if connection pooling is not enabled.
+	 */
+	public void releaseConnection(Connection connection) {
+		if (!usePool || connection == null) return;
+		try {
+			connection.close();
+		} catch (SQLException ex) {
+			log.error("Error while returning connection to pool: "
+					+ ex.getMessage(), ex);
+		}
+	}
+
+	public boolean usesConnectionPool() {
+		return usePool;
+	}
+
+	/**
+	 * @return The maximum number of connections that can be borrowed at
+	 * 		the same time; 1 without a connection pool, and 0 for no limit
+	 */
+	public int poolMaxActive() {
+		if (!usePool) return 1;
+		return Math.max(intProperty(POOL_MAX_ACTIVE_PROPERTY, DEFAULT_POOL_MAX_ACTIVE), 0);
+	}
+
+	private synchronized DataSource pooledDataSource() throws SQLException {
+		if (pooledDataSource != null) {
+			return pooledDataSource;
+		}
+		// Pooled connections are initialized the same way as the shared one,
+		// so we can learn the vendor's auto-commit mode from it
+		boolean defaultAutoCommit = connection().getAutoCommit();
+		String validationQuery = connectionProperties.getProperty(POOL_VALIDATION_QUERY_PROPERTY);
+		pool = new GenericObjectPool<Connection>(null);
+		pool.setMaxActive(poolMaxActive());
+		pool.setMaxIdle(pool.getMaxActive());
+		pool.setMinIdle(intProperty(POOL_MIN_IDLE_PROPERTY, DEFAULT_POOL_MIN_IDLE));
+		pool.setWhenExhaustedAction(GenericObjectPool.WHEN_EXHAUSTED_BLOCK);
+		pool.setMaxWait(intProperty(POOL_MAX_WAIT_PROPERTY, DEFAULT_POOL_MAX_WAIT) * 1000L);
+		pool.setTestOnBorrow(validationQuery != null);
+		pool.setTestWhileIdle(validationQuery != null);
+		pool.setMinEvictableIdleTimeMillis(
+				intProperty(POOL_IDLE_TIMEOUT_PROPERTY, DEFAULT_POOL_IDLE_TIMEOUT) * 1000L);
+		pool.setTimeBetweenEvictionRunsMillis(
+				intProperty(POOL_EVICTION_INTERVAL_PROPERTY, DEFAULT_POOL_EVICTION_INTERVAL) * 1000L);
+		ConnectionFactory factory = new ConnectionFactory() {
+			public Connection createConnection() throws SQLException {
+				log.debug("Opening pooled JDBC connection to " + jdbcURL);
+				Connection result = DriverManager.getConnection(jdbcURL, getConnectionProperties());
+				vendor().initializeConnection(result);
+				return result;
+			}
+		};
+		// Registers itself with the pool
+		new PoolableConnectionFactory(factory, pool, null, validationQuery, 
+				false, defaultAutoCommit);
+		log.info("Using connection pool for " + jdbcURL + " (max active: " + 
+				pool.getMaxActive() + ", min idle: " + pool.getMinIdle() + 
+				", max wait: " + pool.getMaxWait() / 1000 + "s" + 
+				", validation query: " + validationQuery + ")");
+		pooledDataSource = new PoolingDataSource(pool);
+		return pooledDataSource;
+	}
+
+	private int intProperty(String key, int defaultValue) {
+		try {
+			int result = Integer.parseInt(connectionProperties.getProperty(key));
+			return result < 0 ? defaultValue : result;
+		} catch (NumberFormatException ex) {
+			return defaultValue;
+		}
+	}
+
 	public int limit() {
 		return this.limit;
 	}
 
+	/**
+	 * @return Number of result rows that {@link SQLIterator}s fetch in
+	 * 		a background thread ahead of the consumer; 0 if disabled
+	 */
+	public int readAhead() {
+		return readAhead;
+	}
+
 	public void setDefaultFetchSize(int value) {
 		defaultFetchSize = value;
 	}
@@ -308,7 +457,7 @@ public class ConnectedDB {
 	 * TODO make private, use {@link #vendor()} and its methods instead
 	 */
 	public boolean vendorIs(Vendor vendor) {
-		return this.vendor.equals(vendor);
+		return vendor().equals(vendor);
 	}
 
 	/**
@@ -394,6 +543,44 @@ public class ConnectedDB {
 			uniqueIndexCache.put(tableName, schemaInspector().uniqueColumns(tableName));
 		return uniqueIndexCache.get(tableName);
 	}
+
+	/**
+	 * Returns the primary key columns of a table. Caches the result.
+	 * @param tableName Name of a table
+	 * @return The columns, an empty list if the table has no primary key,
+	 * 		or <code>null</code> if unknown
+	 */
+	public List<Attribute> getPrimaryKeyColumns(RelationName tableName) {
+		if (!primaryKeyCache.containsKey(tableName) && schemaInspector() != null)
+			primaryKeyCache.put(tableName, schemaInspector().primaryKeyColumns(tableName));
+		return primaryKeyCache.get(tableName);
+	}
+
+	/**
+	 * Returns the foreign keys of a table. Caches the result.
+	 * @param tableName Name of a table
+	 * @return A list of {@link Join}s, with the table's own columns in
+	 * 		{@link Join#attributes1()}, or <code>null</code> if unknown
+	 */
+	public List<Join> getForeignKeys(RelationName tableName) {
+		if (!foreignKeyCache.containsKey(tableName) && schemaInspector() != null)
+			foreignKeyCache.put(tableName, schemaInspector().foreignKeys(
+					tableName, DatabaseSchemaInspector.KEYS_IMPORTED));
+		return foreignKeyCache.get(tableName);
+	}
+
+	/**
+	 * Returns the database's estimates of a table's size. Caches the result.
+	 * @param tableName Name of a table
+	 * @return Statistics, {@link TableStatistics#NONE} if unknown
+	 */
+	public TableStatistics getTableStatistics(RelationName tableName) {
+		if (!statisticsCache.containsKey(tableName)) {
+			statisticsCache.put(tableName, schemaInspector() == null 
+					? TableStatistics.NONE : schemaInspector().tableStatistics(tableName));
+		}
+		return statisticsCache.get(tableName);
+	}
     
 	/**
 	 * In some situations, MySQL stores table names using lowercase only, and then performs
@@ -411,12 +598,25 @@ public class ConnectedDB {
 	}
 
 	/**
-	 * Closes the database connection and shuts down the keep alive agent.
+	 * Closes the database connection and connection pool, and shuts down
+	 * the keep alive agent.
 	 */
 	public void close() {
 		if (keepAliveAgent != null)
 			keepAliveAgent.shutdown();
 
+		synchronized (this) {
+			if (pool != null) try {
+				log.info("Closing connection pool for " + jdbcURL);
+				pool.close();
+			} catch (Exception ex) {
+				log.error("Error while closing connection pool: " + ex.getMessage(), ex);
+			} finally {
+				pool = null;
+				pooledDataSource = null;
+			}
+		}
+
 		if (connection != null) try {
 			log.info("Closing connection to " + jdbcURL);
 			this.connection.close();
@@ -0,0 +1,47 @@
+package de.fuberlin.wiwiss.d2rq.sql;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.fuberlin.wiwiss.d2rq.algebra.ProjectionSpec;
+
+/**
+ * Maps the SELECT clause entries of an SQL query to their positions
+ * (slots) in the query's result rows. An index is created once per
+ * query and shared by all {@link ResultRowArray}s of that query.
+ */
+public class ProjectionIndex {
+	private final List<ProjectionSpec> projectionSpecs;
+	private final Map<ProjectionSpec,Integer> slots;
+
+	public ProjectionIndex(List<ProjectionSpec> projectionSpecs) {
+		this.projectionSpecs = Collections.unmodifiableList(projectionSpecs);
+		this.slots = new HashMap<ProjectionSpec,Integer>(projectionSpecs.size() * 2);
+		for (int i = projectionSpecs.size() - 1; i >= 0; i--) {
+			slots.put(projectionSpecs.get(i), i);
+		}
+	}
+
+	/**
+	 * @return The slot of the projection spec, or -1 if it is not 
+	 * 		part of the SELECT clause
+	 */
+	public int slotOf(ProjectionSpec projection) {
+		Integer result = slots.get(projection);
+		return result == null ? -1 : result.intValue();
+	}
+
+	public ProjectionSpec projectionAt(int slot) {
+		return projectionSpecs.get(slot);
+	}
+
+	public List<ProjectionSpec> projectionSpecs() {
+		return projectionSpecs;
+	}
+
+	public int size() {
+		return projectionSpecs.size();
+	}
+}
@@ -0,0 +1,45 @@
+package de.fuberlin.wiwiss.d2rq.sql;
+
+import de.fuberlin.wiwiss.d2rq.algebra.ProjectionSpec;
+
+/**
+ * Reads the value of a single {@link ProjectionSpec} from
+ * {@link ResultRow}s. For {@link ResultRowArray}s, the projection's
+ * slot is remembered for the most recently seen {@link ProjectionIndex},
+ * so that reading the same projection from all rows of a query
+ * doesn't require any lookups. Safe for use by multiple threads.
+ */
+public class ProjectionSlot {
+	private final ProjectionSpec projection;
+	private volatile ResolvedSlot resolved = null;
+
+	public ProjectionSlot(ProjectionSpec projection) {
+		this.projection = projection;
+	}
+
+	public ProjectionSpec projection() {
+		return projection;
+	}
+
+	public String get(ResultRow row) {
+		if (!(row instanceof ResultRowArray)) {
+			return row.get(projection);
+		}
+		ResultRowArray array = (ResultRowArray) row;
+		ResolvedSlot slot = resolved;
+		if (slot == null || slot.index != array.index()) {
+			slot = new ResolvedSlot(array.index(), array.index().slotOf(projection));
+			resolved = slot;
+		}
+		return array.get(slot.slot);
+	}
+
+	private static class ResolvedSlot {
+		final ProjectionIndex index;
+		final int slot;
+		ResolvedSlot(ProjectionIndex index, int slot) {
+			this.index = index;
+			this.slot = slot;
+		}
+	}
+}
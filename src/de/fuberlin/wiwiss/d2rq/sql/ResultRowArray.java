@@ -0,0 +1,59 @@
+package de.fuberlin.wiwiss.d2rq.sql;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import de.fuberlin.wiwiss.d2rq.algebra.ProjectionSpec;
+
+/**
+ * A result row returned by a database query, stored as an array
+ * of string values. The positions of the SELECT clause entries
+ * are looked up in a {@link ProjectionIndex} shared by all
+ * rows of the query.
+ */
+public class ResultRowArray implements ResultRow {
+	private final ProjectionIndex index;
+	private final String[] values;
+
+	public ResultRowArray(ProjectionIndex index, String[] values) {
+		this.index = index;
+		this.values = values;
+	}
+
+	public String get(ProjectionSpec projection) {
+		return get(index.slotOf(projection));
+	}
+
+	/**
+	 * @param slot A slot of this row's {@link ProjectionIndex}
+	 * @return The value in the slot; <code>null</code> if the slot is -1
+	 */
+	public String get(int slot) {
+		return slot < 0 ? null : values[slot];
+	}
+
+	public ProjectionIndex index() {
+		return index;
+	}
+
+	public String toString() {
+		List<ProjectionSpec> columns = new ArrayList<ProjectionSpec>(index.projectionSpecs());
+		Collections.sort(columns);
+		StringBuffer result = new StringBuffer("{");
+		Iterator<ProjectionSpec> it = columns.iterator();
+		while (it.hasNext()) {
+			ProjectionSpec projection = it.next();
+			result.append(projection.toString());
+			result.append(" => '");
+			result.append(get(projection));
+			result.append("'");
+			if (it.hasNext()) {
+				result.append(", ");
+			}
+		}
+		result.append("}");
+		return result.toString();
+	}
+}
@@ -0,0 +1,68 @@
+package de.fuberlin.wiwiss.d2rq.sql;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.List;
+
+import de.fuberlin.wiwiss.d2rq.algebra.ProjectionSpec;
+import de.fuberlin.wiwiss.d2rq.sql.types.DataType;
+
+/**
+ * Turns the rows of a JDBC {@link ResultSet} into {@link ResultRow}s.
+ * The {@link DataType} of each column is looked up once from the
+ * result set's metadata when the decoder is created, so decoding
+ * a row doesn't require any further metadata calls.
+ */
+public class ResultRowDecoder {
+	private final ProjectionIndex index;
+	private final DataType[] dataTypes;
+
+	/**
+	 * @param metaData Metadata of the result set; may be <code>null</code>
+	 * 		if the driver doesn't provide any
+	 * @param projectionSpecs The SELECT clause entries, in the order of the
+	 * 		result set's columns
+	 * @param database The database that produced the result set
+	 * @throws SQLException
+	 */
+	public ResultRowDecoder(ResultSetMetaData metaData,
+			List<ProjectionSpec> projectionSpecs, ConnectedDB database)
+	throws SQLException {
+		this.index = new ProjectionIndex(projectionSpecs);
+		this.dataTypes = new DataType[projectionSpecs.size()];
+		for (int i = 0; i < dataTypes.length; i++) {
+			int jdbcType = metaData == null ? Integer.MIN_VALUE : metaData.getColumnType(i + 1);
+			String name = metaData == null ? "UNKNOWN" : metaData.getColumnTypeName(i + 1);
+			dataTypes[i] = database.vendor().getDataType(jdbcType, name.toUpperCase(), -1);
+		}
+	}
+
+	/**
+	 * @return The slots of the SELECT clause entries in the decoded rows
+	 */
+	public ProjectionIndex index() {
+		return index;
+	}
+
+	/**
+	 * @return The number of columns decoded by this decoder
+	 */
+	public int columnCount() {
+		return dataTypes.length;
+	}
+
+	/**
+	 * Decodes the current row of a result set.
+	 * @param resultSet A result set positioned on a row
+	 * @return The row's values
+	 * @throws SQLException
+	 */
+	public ResultRow decode(ResultSet resultSet) throws SQLException {
+		String[] values = new String[dataTypes.length];
+		for (int i = 0; i < dataTypes.length; i++) {
+			values[i] = dataTypes[i].value(resultSet, i + 1);
+		}
+		return new ResultRowArray(index, values);
+	}
+}
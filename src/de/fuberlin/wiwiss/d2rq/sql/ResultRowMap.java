@@ -1,11 +1,9 @@
 package de.fuberlin.wiwiss.d2rq.sql;
 
 import java.sql.ResultSet;
-import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -20,18 +18,15 @@ import de.fuberlin.wiwiss.d2rq.algebra.ProjectionSpec;
  */
 public class ResultRowMap implements ResultRow {
 	
-	public static ResultRowMap fromResultSet(ResultSet resultSet, 
+	/**
+	 * Decodes the current row of a result set. When decoding many rows of
+	 * the same result set, use a {@link ResultRowDecoder} instead.
+	 */
+	public static ResultRow fromResultSet(ResultSet resultSet, 
 			List<ProjectionSpec> projectionSpecs, ConnectedDB database) 
 	throws SQLException {
-		Map<ProjectionSpec,String> result = new HashMap<ProjectionSpec,String>();
-		ResultSetMetaData metaData = resultSet.getMetaData();
-		for (int i = 0; i < projectionSpecs.size(); i++) {
-			ProjectionSpec key = projectionSpecs.get(i);
-			int jdbcType = metaData == null ? Integer.MIN_VALUE : metaData.getColumnType(i + 1);
-			String name = metaData == null ? "UNKNOWN" : metaData.getColumnTypeName(i + 1);
-			result.put(key, database.vendor().getDataType(jdbcType, name.toUpperCase(), -1).value(resultSet, i + 1));
-		}
-		return new ResultRowMap(result);
+		return new ResultRowDecoder(resultSet.getMetaData(), 
+				projectionSpecs, database).decode(resultSet);
 	}
 	
 	private final Map<ProjectionSpec,String> projectionsToValues;
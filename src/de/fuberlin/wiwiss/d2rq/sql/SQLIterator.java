@@ -2,10 +2,14 @@ package de.fuberlin.wiwiss.d2rq.sql;
 
 import java.sql.Connection;
 import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -20,6 +24,10 @@ import de.fuberlin.wiwiss.d2rq.map.Database;
 /**
  * Executes an SQL query and delivers result rows as an iterator over {@link ResultRow}s.
  * The query is executed lazily. This class logs all executed SQL queries.
+ * <p>
+ * If the database has a read-ahead buffer (see {@link ConnectedDB#readAhead()}),
+ * then a background thread fetches and decodes rows into the buffer while
+ * the consumer is still busy with earlier rows.
  *
  * @author Chris Bizer chris@bizer.de
  * @author Richard Cyganiak (richard@cyganiak.de)
@@ -29,13 +37,16 @@ public class SQLIterator implements ClosableIterator<ResultRow> {
 	private String sql;
 	private List<ProjectionSpec> columns;
 	private ConnectedDB database;
+	private volatile Connection connection = null;
 	private volatile Statement statement = null;
 	private ResultSet resultSet = null;
 	private ResultRow prefetchedRow = null;
+	private ResultRowDecoder decoder = null;
 	private int numCols = 0;
 	private boolean queryExecuted = false;
 	private boolean explicitlyClosed = false;
 	private volatile boolean cancelled = false;
+	private ReadAheadWorker readAhead = null;
 
 	public SQLIterator(String sql, List<ProjectionSpec> columns, ConnectedDB db) {
 		this.sql = sql;
@@ -52,7 +63,11 @@ public class SQLIterator implements ClosableIterator<ResultRow> {
 		}
 		if (prefetchedRow == null) {
 		    ensureQueryExecuted();
-			tryFetchNextRow();
+		    if (readAhead == null) {
+		    	tryFetchNextRow();
+		    } else {
+		    	takeNextRow();
+		    }
 		}
 		return prefetchedRow != null;
 	}
@@ -86,65 +101,177 @@ public class SQLIterator implements ClosableIterator<ResultRow> {
 				this.resultSet.close();
 				this.resultSet = null;
 		    	this.prefetchedRow = null;
+		    	// Hand the connection back as early as possible
+		    	close();
 		    	return;
 			}
 			BeanCounter.totalNumberOfReturnedRows++;
 			BeanCounter.totalNumberOfReturnedFields+=this.numCols;
-			prefetchedRow = ResultRowMap.fromResultSet(resultSet, columns, database);
+			prefetchedRow = decoder.decode(resultSet);
 		} catch (SQLException ex) {
 			throw new D2RQException(ex);
 		}
 	}
 	
+	private void takeNextRow() {
+		Object next;
+		try {
+			next = readAhead.take();
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			cancel();
+			throw new QueryCancelledException();
+		}
+		if (next instanceof ResultRow) {
+			prefetchedRow = (ResultRow) next;
+			return;
+		}
+		prefetchedRow = null;
+		close();
+		if (next instanceof Throwable) {
+			if (cancelled) {
+				throw new QueryCancelledException();
+			}
+			if (next instanceof RuntimeException) {
+				throw (RuntimeException) next;
+			}
+			if (next instanceof Error) {
+				throw (Error) next;
+			}
+			throw new D2RQException((Throwable) next);
+		}
+		if (cancelled) {
+			throw new QueryCancelledException();
+		}
+	}
+
+	/**
+	 * Fetches rows from the result set into a bounded buffer. The end of
+	 * the result set is signalled by a marker object, a failure by the
+	 * exception, which the consumer rethrows.
+	 */
+	private class ReadAheadWorker extends Thread {
+		private final Object END = new Object();
+		private final BlockingQueue<Object> buffer;
+		private volatile boolean stopped = false;
+
+		ReadAheadWorker(int bufferSize) {
+			super("SQL read-ahead");
+			setDaemon(true);
+			buffer = new ArrayBlockingQueue<Object>(bufferSize);
+		}
+
+		public void run() {
+			try {
+				while (!stopped) {
+					if (!resultSet.next()) {
+						put(END);
+						return;
+					}
+					BeanCounter.totalNumberOfReturnedRows++;
+					BeanCounter.totalNumberOfReturnedFields+=numCols;
+					put(decoder.decode(resultSet));
+				}
+			} catch (Throwable ex) {
+				// Any failure must reach the consumer, or it would look like the end of the results
+				put(ex);
+			}
+		}
+
+		/**
+		 * Waits for buffer space, giving up if the consumer goes away.
+		 */
+		private void put(Object o) {
+			try {
+				while (!stopped && !cancelled) {
+					if (buffer.offer(o, 100, TimeUnit.MILLISECONDS)) return;
+				}
+			} catch (InterruptedException ex) {
+				stopped = true;
+			}
+		}
+
+		/**
+		 * @return The next {@link ResultRow}, or the exception that
+		 * 		stopped the worker, or
+		 * 		<code>null</code> at the end of the result set
+		 */
+		Object take() throws InterruptedException {
+			while (true) {
+				Object result = buffer.poll(100, TimeUnit.MILLISECONDS);
+				if (result == END) return null;
+				if (result != null) return result;
+				if (cancelled || !isAlive() && buffer.isEmpty()) return null;
+			}
+		}
+
+		/**
+		 * Stops fetching and waits until the worker no longer touches
+		 * the result set.
+		 */
+		void shutdown() {
+			stopped = true;
+			if (Thread.currentThread() == this) return;
+			try {
+				join();
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
 	/**
-	 * Make sure the SQL result set is closed and freed. Will auto-close when the
+	 * Make sure the SQL result set is closed and freed, and the connection
+	 * is returned to the database. Will auto-close when the
 	 * record-set is exhausted.
 	 */
 	public void close() {
 		if (explicitlyClosed) return;
 		log.debug("Closing SQLIterator");
 	    explicitlyClosed = true;
+
+	    if (this.readAhead != null) {
+	    	this.readAhead.shutdown();
+	    }
 	    
 	    /* JDBC 4+ requires manual closing of result sets and statements */
 	    if (this.resultSet != null) {
 			try {
 				this.resultSet.close();
+				this.resultSet = null;
 			} catch (SQLException ex) {
 				throw new D2RQException(ex.getMessage() + "; query was: " + this.sql);
 			}
 	    }
 	    
-	    if (this.database != null) {
-			try {
-				this.database.vendor().beforeClose(this.database.connection());
-			} catch (SQLException ex) {
-				throw new D2RQException(ex.getMessage() + "; query was: " + this.sql);
-			}
-	    }
-	    if (this.statement != null) {
-			try {
-				this.statement.close();
-			} catch (SQLException ex) {
-				throw new D2RQException(ex.getMessage() + "; query was: " + this.sql);
-			}
-	    }
-
-	    if (this.database != null) {
-			try {
-				this.database.vendor().afterClose(this.database.connection());
-			} catch (SQLException ex) {
-				throw new D2RQException(ex.getMessage() + "; query was: " + this.sql);
-			}
+	    Connection con = this.connection;
+	    if (con == null) return;
+	    try {
+	    	try {
+	    		this.database.vendor().beforeClose(con);
+	    		if (this.statement != null) {
+	    			this.statement.close();
+	    			this.statement = null;
+	    		}
+	    		this.database.vendor().afterClose(con);
+	    	} catch (SQLException ex) {
+	    		throw new D2RQException(ex.getMessage() + "; query was: " + this.sql);
+	    	}
+	    } finally {
+	    	this.connection = null;
+	    	this.database.releaseConnection(con);
 	    }
 	}
 
 	public synchronized void cancel() {
 		cancelled = true;
-		if (statement != null) {
+		Statement stmt = statement;
+		Connection con = connection;
+		if (stmt != null && con != null) {
 			try {
-				database.vendor().beforeCancel(database.connection());
-				statement.cancel();
-				database.vendor().afterCancel(database.connection());
+				database.vendor().beforeCancel(con);
+				stmt.cancel();
+				database.vendor().afterCancel(con);
 			} catch (SQLException ex) {
 				throw new RuntimeException(ex);
 			}
@@ -163,7 +290,8 @@ public class SQLIterator implements ClosableIterator<ResultRow> {
     	log.info(sql);
     	BeanCounter.totalNumberOfExecutedSQLQueries++;
         try {
-			Connection con = this.database.connection();
+			Connection con = this.database.borrowConnection();
+			this.connection = con;
 			this.statement = con.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
 			if (database.fetchSize() != Database.NO_FETCH_SIZE) {
 				try {
@@ -171,13 +299,24 @@ public class SQLIterator implements ClosableIterator<ResultRow> {
 				}
 				catch (SQLException e) {} /* Some drivers don't support fetch sizes, e.g. JDBC-ODBC */
 			}
-			database.vendor().beforeQuery(database.connection());
+			database.vendor().beforeQuery(con);
 			this.resultSet = this.statement.executeQuery(this.sql);
-			database.vendor().afterQuery(database.connection());
+			database.vendor().afterQuery(con);
 
 			log.debug("SQL result set created");
-			this.numCols = this.resultSet.getMetaData().getColumnCount();
+			ResultSetMetaData metaData = this.resultSet.getMetaData();
+			this.numCols = metaData.getColumnCount();
+			this.decoder = new ResultRowDecoder(metaData, columns, database);
+			if (database.readAhead() > 0) {
+				this.readAhead = new ReadAheadWorker(database.readAhead());
+				this.readAhead.start();
+			}
         } catch (SQLException ex) {
+        	try {
+        		close();
+        	} catch (D2RQException ignore) {
+        		// report the original problem instead
+        	}
         	if (cancelled) {
         		log.debug("SQL query execution cancelled", ex);
         		throw new QueryCancelledException();
@@ -5,6 +5,7 @@ import java.util.Collection;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -14,6 +15,7 @@ import de.fuberlin.wiwiss.d2rq.D2RQException;
 import de.fuberlin.wiwiss.d2rq.algebra.AliasMap;
 import de.fuberlin.wiwiss.d2rq.algebra.Attribute;
 import de.fuberlin.wiwiss.d2rq.algebra.Join;
+import de.fuberlin.wiwiss.d2rq.algebra.LeftJoinRelation;
 import de.fuberlin.wiwiss.d2rq.algebra.OrderSpec;
 import de.fuberlin.wiwiss.d2rq.algebra.ProjectionSpec;
 import de.fuberlin.wiwiss.d2rq.algebra.Relation;
@@ -42,6 +44,7 @@ public class SelectStatementBuilder {
 	private Collection<RelationName> mentionedTables = new HashSet<RelationName>(5); // in their alias forms	
 	private List<OrderSpec> orderSpecs;
 	private int limit;
+	private List<LeftJoinRelation> leftJoins = new ArrayList<LeftJoinRelation>();
 	
 	public SelectStatementBuilder(Relation relation) {
 		if (relation.isTrivial()) {
@@ -54,6 +57,11 @@ public class SelectStatementBuilder {
 		this.limit = Relation.combineLimits(relation.limit(), database.limit());
 		this.orderSpecs = relation.orderSpecs();
 		this.aliases = this.aliases.applyTo(relation.aliases());
+		Relation innermost = relation;
+		while (innermost instanceof LeftJoinRelation) {
+			leftJoins.add(0, (LeftJoinRelation) innermost);
+			innermost = ((LeftJoinRelation) innermost).left();
+		}
 		for (Join join: relation.joinConditions()) {
 			for (Attribute attribute1: join.attributes1()) {
 				Attribute attribute2 = join.equalAttribute(attribute1);
@@ -65,10 +73,13 @@ public class SelectStatementBuilder {
 		for (ProjectionSpec projection: relation.projections()) {
 			addSelectSpec(projection);
 		}
-		eliminateDuplicates = !relation.isUnique();
+		eliminateDuplicates = !relation.isUnique() && !relation.projectsUniqueKeys();
 		addCondition(database.vendor().getRowNumLimitAsExpression(limit));
 	
 		addMentionedTablesFromConditions();
+		for (LeftJoinRelation leftJoin: leftJoins) {
+			mentionedTables.removeAll(leftJoin.right().tables());
+		}
 		
 		if (eliminateDuplicates) {
 			for (ProjectionSpec projection: selectSpecs) {
@@ -99,6 +110,75 @@ public class SelectStatementBuilder {
 	}
 	
 	public String getSQLStatement() {
+		return getSQLStatement(false);
+	}
+	
+	/**
+	 * Returns the statement with a name for each entry of the SELECT
+	 * clause, so that it can be used as a derived table in the FROM
+	 * clause of another statement.
+	 * 
+	 * @see #columnName(ProjectionSpec)
+	 */
+	public String getNamedColumnsSQLStatement() {
+		return getSQLStatement(true);
+	}
+	
+	/**
+	 * @return The name of a SELECT clause entry in the
+	 * 		{@link #getNamedColumnsSQLStatement()} statement
+	 */
+	public String columnName(ProjectionSpec projection) {
+		return "c" + (selectSpecs.indexOf(projection) + 1);
+	}
+	
+	/**
+	 * Returns the statement for use as one branch of a
+	 * <code>UNION ALL</code> statement. The SELECT clause starts with the
+	 * branch number, followed by the given columns, which must include
+	 * all of {@link #getColumnSpecs()}. The other columns are selected
+	 * as <code>NULL</code>.
+	 * 
+	 * @param branch Number that identifies the rows of this branch
+	 * @param columns The SELECT clause entries of all branches
+	 */
+	public String getUnionBranchSQLStatement(int branch, List<ProjectionSpec> columns) {
+		StringBuffer selectList = new StringBuffer();
+		selectList.append(branch);
+		for (ProjectionSpec projection: columns) {
+			selectList.append(", ");
+			if (selectSpecs.contains(projection)) {
+				selectList.append(projection.toSQL(database, aliases));
+			} else {
+				selectList.append("NULL");
+			}
+		}
+		return getSQLStatement(selectList);
+	}
+	
+	private String getSQLStatement(boolean nameColumns) {
+		StringBuffer selectList = new StringBuffer();
+		Iterator<ProjectionSpec> it = this.selectSpecs.iterator();
+		if (!it.hasNext()) {
+			selectList.append("1");
+		}
+		while (it.hasNext()) {
+			ProjectionSpec projection = it.next();
+			if (nameColumns) {
+				selectList.append(projection.toExpression().toSQL(database, aliases));
+				selectList.append(" AS ");
+				selectList.append(database.vendor().quoteIdentifier(columnName(projection)));
+			} else {
+				selectList.append(projection.toSQL(database, aliases));
+			}
+			if (it.hasNext()) {
+				selectList.append(", ");
+			}
+		}
+		return getSQLStatement(selectList);
+	}
+	
+	private String getSQLStatement(CharSequence selectList) {
 		
 		StringBuffer result = new StringBuffer("SELECT ");
 		
@@ -112,33 +192,24 @@ public class SelectStatementBuilder {
 			result.append(" ");
 		}
 		
-		Iterator<ProjectionSpec> it = this.selectSpecs.iterator();
-		if (!it.hasNext()) {
-			result.append("1");
-		}
-		while (it.hasNext()) {
-			ProjectionSpec projection = it.next();
-			result.append(projection.toSQL(database, aliases));
-			if (it.hasNext()) {
-				result.append(", ");
-			}
-		}
-		
+		result.append(selectList);
 		
 		result.append(" FROM ");
-		Iterator<RelationName> tableIt = mentionedTables.iterator();
-		while (tableIt.hasNext()) {			
-			RelationName tableName = tableIt.next();
-			if (this.aliases.isAlias(tableName)) {
-				result.append(database.vendor().getRelationNameAliasExpression(
-						aliases.originalOf(tableName), tableName));
-			} else {
-				result.append(database.vendor().quoteRelationName(tableName));
+		if (leftJoins.isEmpty()) {
+			appendTables(result, mentionedTables, ", ");
+		} else {
+			// Commas bind weaker than JOIN, so the ON clauses couldn't
+			// see all the tables on the left
+			appendTables(result, mentionedTables, " CROSS JOIN ");
+			for (LeftJoinRelation leftJoin: leftJoins) {
+				Set<RelationName> rightTables = leftJoin.right().tables();
+				result.append(" LEFT OUTER JOIN ");
+				if (rightTables.size() > 1) result.append("(");
+				appendTables(result, rightTables, " CROSS JOIN ");
+				if (rightTables.size() > 1) result.append(")");
+				result.append(" ON ");
+				result.append(leftJoin.onCondition().toSQL(this.database, this.aliases));
 			}
-			if (tableIt.hasNext()) {
-				result.append(", ");
-			}
-		
 		}
 		
 		if (!condition().isTrue()) {
@@ -166,6 +237,23 @@ public class SelectStatementBuilder {
 		return result.toString();
 	}
 	
+	private void appendTables(StringBuffer result, Collection<RelationName> tables, 
+			String separator) {
+		Iterator<RelationName> tableIt = tables.iterator();
+		while (tableIt.hasNext()) {			
+			RelationName tableName = tableIt.next();
+			if (this.aliases.isAlias(tableName)) {
+				result.append(database.vendor().getRelationNameAliasExpression(
+						aliases.originalOf(tableName), tableName));
+			} else {
+				result.append(database.vendor().quoteRelationName(tableName));
+			}
+			if (tableIt.hasNext()) {
+				result.append(separator);
+			}
+		}
+	}
+	
 	/**
 	 * Returns the projection specs used in this query, in order of appearance 
 	 * in the "SELECT x, y, z" part of the query.
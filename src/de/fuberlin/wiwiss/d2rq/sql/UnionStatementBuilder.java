@@ -0,0 +1,92 @@
+package de.fuberlin.wiwiss.d2rq.sql;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import de.fuberlin.wiwiss.d2rq.algebra.Attribute;
+import de.fuberlin.wiwiss.d2rq.algebra.ProjectionSpec;
+import de.fuberlin.wiwiss.d2rq.algebra.Relation;
+import de.fuberlin.wiwiss.d2rq.algebra.RelationName;
+import de.fuberlin.wiwiss.d2rq.map.Database;
+
+/**
+ * Delivers a single <code>UNION ALL</code> statement that returns
+ * the rows of several {@link Relation}s over the same database.
+ *
+ * Each relation becomes one branch, as built by the
+ * {@link SelectStatementBuilder}. All branches select the same
+ * columns: first the number of the branch, starting at 1, then every
+ * entry of any branch's SELECT clause. A branch selects
+ * <code>NULL</code> for the entries of other branches. The
+ * {@link #BRANCH} column tells which relation a result row belongs to.
+ *
+ * Relations must be combinable according to {@link #canCombine(Relation)}.
+ */
+public class UnionStatementBuilder {
+
+	/**
+	 * The result column that holds the number of the branch
+	 * that produced a row
+	 */
+	public final static ProjectionSpec BRANCH =
+		new Attribute(new RelationName(null, "union"), "branch");
+
+	/**
+	 * Tells if a relation can be a branch of the statement.
+	 * A <code>LIMIT</code> or <code>ORDER BY</code> clause would apply
+	 * to the whole statement, so relations with a limit or ordering
+	 * can't be combined with others.
+	 */
+	public static boolean canCombine(Relation relation) {
+		if (relation.isTrivial() || relation.equals(Relation.EMPTY)) return false;
+		if (relation.condition().isFalse()) return false;
+		if (relation.limit() != Relation.NO_LIMIT) return false;
+		if (!relation.orderSpecs().isEmpty()) return false;
+		return relation.database().limit() == Database.NO_LIMIT;
+	}
+
+	private final List<SelectStatementBuilder> branches =
+		new ArrayList<SelectStatementBuilder>();
+	private final List<ProjectionSpec> columns;
+
+	/**
+	 * @param relations Combinable relations over the same database
+	 */
+	public UnionStatementBuilder(List<Relation> relations) {
+		Set<ProjectionSpec> allColumns = new LinkedHashSet<ProjectionSpec>();
+		for (Relation relation: relations) {
+			SelectStatementBuilder branch = new SelectStatementBuilder(relation);
+			branches.add(branch);
+			allColumns.addAll(branch.getColumnSpecs());
+		}
+		this.columns = new ArrayList<ProjectionSpec>(allColumns);
+	}
+
+	public String getSQLStatement() {
+		StringBuffer result = new StringBuffer();
+		Iterator<SelectStatementBuilder> it = branches.iterator();
+		int branch = 1;
+		while (it.hasNext()) {
+			result.append(it.next().getUnionBranchSQLStatement(branch, columns));
+			branch++;
+			if (it.hasNext()) {
+				result.append(" UNION ALL ");
+			}
+		}
+		return result.toString();
+	}
+
+	/**
+	 * Returns the projection specs used in this query, in order of
+	 * appearance in the SELECT clause, starting with {@link #BRANCH}.
+	 */
+	public List<ProjectionSpec> getColumnSpecs() {
+		List<ProjectionSpec> result = new ArrayList<ProjectionSpec>(columns.size() + 1);
+		result.add(BRANCH);
+		result.addAll(columns);
+		return result;
+	}
+}
@@ -18,6 +18,7 @@ import de.fuberlin.wiwiss.d2rq.expr.Constant;
 import de.fuberlin.wiwiss.d2rq.expr.Equality;
 import de.fuberlin.wiwiss.d2rq.expr.Expression;
 import de.fuberlin.wiwiss.d2rq.nodes.NodeSetFilter;
+import de.fuberlin.wiwiss.d2rq.sql.ProjectionSlot;
 import de.fuberlin.wiwiss.d2rq.sql.ResultRow;
 
 /**
@@ -35,6 +36,7 @@ public class BlankNodeID implements ValueMaker {
 
 	private String classMapID;
 	private List<Attribute> attributes;
+	private ProjectionSlot[] attributeSlots;
 	
 	/**
 	 * Constructs a new blank node identifier.
@@ -46,6 +48,10 @@ public class BlankNodeID implements ValueMaker {
 	public BlankNodeID(String classMapID, List<Attribute> attributes) {
 		this.classMapID = classMapID;
 		this.attributes = attributes;
+		this.attributeSlots = new ProjectionSlot[attributes.size()];
+		for (int i = 0; i < attributeSlots.length; i++) {
+			attributeSlots[i] = new ProjectionSlot(attributes.get(i));
+		}
 	}
 
 	public List<Attribute> attributes() {
@@ -94,8 +100,8 @@ public class BlankNodeID implements ValueMaker {
 	 */
 	public String makeValue(ResultRow row) {
 		StringBuffer result = new StringBuffer(this.classMapID);
-		for (Attribute attribute: attributes) {
-			String value = row.get(attribute);
+		for (ProjectionSlot slot: attributeSlots) {
+			String value = slot.get(row);
 			if (value == null) {
 				return null;
 		    }
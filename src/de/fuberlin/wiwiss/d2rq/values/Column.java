@@ -12,6 +12,7 @@ import de.fuberlin.wiwiss.d2rq.expr.AttributeExpr;
 import de.fuberlin.wiwiss.d2rq.expr.Equality;
 import de.fuberlin.wiwiss.d2rq.expr.Expression;
 import de.fuberlin.wiwiss.d2rq.nodes.NodeSetFilter;
+import de.fuberlin.wiwiss.d2rq.sql.ProjectionSlot;
 import de.fuberlin.wiwiss.d2rq.sql.ResultRow;
 
 /**
@@ -23,14 +24,16 @@ import de.fuberlin.wiwiss.d2rq.sql.ResultRow;
 public class Column implements ValueMaker {
 	private Attribute attribute;
 	private Set<ProjectionSpec> attributeAsSet;
+	private ProjectionSlot slot;
 	
 	public Column(Attribute attribute) {
 		this.attribute = attribute;
 		this.attributeAsSet = Collections.<ProjectionSpec>singleton(this.attribute);
+		this.slot = new ProjectionSlot(attribute);
 	}
 	
 	public String makeValue(ResultRow row) {
-		return row.get(this.attribute);
+		return this.slot.get(row);
 	}
 
 	public void describeSelf(NodeSetFilter c) {
@@ -24,6 +24,7 @@ import de.fuberlin.wiwiss.d2rq.expr.Equality;
 import de.fuberlin.wiwiss.d2rq.expr.Expression;
 import de.fuberlin.wiwiss.d2rq.mapgen.IRIEncoder;
 import de.fuberlin.wiwiss.d2rq.nodes.NodeSetFilter;
+import de.fuberlin.wiwiss.d2rq.sql.ProjectionSlot;
 import de.fuberlin.wiwiss.d2rq.sql.ResultRow;
 import de.fuberlin.wiwiss.d2rq.sql.SQL;
 
@@ -41,6 +42,7 @@ public class Pattern implements ValueMaker {
 	private String pattern;
 	private String firstLiteralPart;
 	private List<Attribute> columns = new ArrayList<Attribute>(3);
+	private ProjectionSlot[] columnSlots;
 	private List<ColumnFunction> columnFunctions = new ArrayList<ColumnFunction>(3);
 	private List<String> literalParts = new ArrayList<String>(3);
 	private Set<ProjectionSpec> columnsAsSet;
@@ -54,6 +56,10 @@ public class Pattern implements ValueMaker {
 	public Pattern(String pattern) {
 		this.pattern = pattern;
 		parsePattern();
+		this.columnSlots = new ProjectionSlot[this.columns.size()];
+		for (int i = 0; i < this.columnSlots.length; i++) {
+			this.columnSlots[i] = new ProjectionSlot(this.columns.get(i));
+		}
 		this.columnsAsSet = new HashSet<ProjectionSpec>(this.columns);
 	}
 
@@ -125,10 +131,9 @@ public class Pattern implements ValueMaker {
 	public String makeValue(ResultRow row) {
 		int index = 0;
 		StringBuffer result = new StringBuffer(this.firstLiteralPart);
-		while (index < this.columns.size()) {
-			Attribute column = columns.get(index);
+		while (index < this.columnSlots.length) {
 			ColumnFunction function = columnFunctions.get(index);
-			String value = row.get(column);
+			String value = columnSlots[index].get(row);
 			if (value == null) {
 				return null;
 			}
@@ -11,6 +11,7 @@ import de.fuberlin.wiwiss.d2rq.algebra.ProjectionSpec;
 import de.fuberlin.wiwiss.d2rq.expr.Equality;
 import de.fuberlin.wiwiss.d2rq.expr.Expression;
 import de.fuberlin.wiwiss.d2rq.nodes.NodeSetFilter;
+import de.fuberlin.wiwiss.d2rq.sql.ProjectionSlot;
 import de.fuberlin.wiwiss.d2rq.sql.ResultRow;
 
 /**
@@ -23,10 +24,12 @@ import de.fuberlin.wiwiss.d2rq.sql.ResultRow;
 public class SQLExpressionValueMaker implements ValueMaker {
 	private final Expression expression;
 	private final ProjectionSpec projection;
+	private final ProjectionSlot slot;
 	
 	public SQLExpressionValueMaker(Expression expression) {
 		this.expression = expression;
 		this.projection = new ExpressionProjectionSpec(expression); 
+		this.slot = new ProjectionSlot(projection);
 	}
 	
 	public void describeSelf(NodeSetFilter c) {
@@ -38,7 +41,7 @@ public class SQLExpressionValueMaker implements ValueMaker {
 	}
 	
 	public String makeValue(ResultRow row) {
-		return row.get(projection);
+		return slot.get(row);
 	}
 
 	public Expression valueExpression(String value) {
@@ -36,6 +36,9 @@ public class D2RQ {
      */
     public static final Property allowDistinct = m_model.createProperty( "http://www.wiwiss.fu-berlin.de/suhl/bizer/D2RQ/0.1#allowDistinct" );
     
+    /** <p>Number of solutions of one part of a SPARQL query that are combined into a single SQL query for evaluating the next part</p> */
+    public static final Property bindJoinBatchSize = m_model.createProperty( "http://www.wiwiss.fu-berlin.de/suhl/bizer/D2RQ/0.1#bindJoinBatchSize" );
+    
     /** <p>Comma-separated list of database columns used for construction of blank nodes.</p> */
     public static final Property bNodeIdColumns = m_model.createProperty( "http://www.wiwiss.fu-berlin.de/suhl/bizer/D2RQ/0.1#bNodeIdColumns" );
     
@@ -82,6 +85,9 @@ public class D2RQ {
     /** <p>A database column containing data to be made downloadable.</p> */
     public static final Property contentDownloadColumn = m_model.createProperty( "http://www.wiwiss.fu-berlin.de/suhl/bizer/D2RQ/0.1#contentDownloadColumn" );
     
+    /** <p>Number of seconds for which triple counts are cached for reuse</p> */
+    public static final Property countCacheTimeout = m_model.createProperty( "http://www.wiwiss.fu-berlin.de/suhl/bizer/D2RQ/0.1#countCacheTimeout" );
+    
     public static final Property dataStorage = m_model.createProperty( "http://www.wiwiss.fu-berlin.de/suhl/bizer/D2RQ/0.1#dataStorage" );
     
     public static final Property databaseValue = m_model.createProperty( "http://www.wiwiss.fu-berlin.de/suhl/bizer/D2RQ/0.1#databaseValue" );
@@ -131,6 +137,9 @@ public class D2RQ {
     /** <p>URL of a D2RQ mapping file.</p> */
     public static final Property mappingFile = m_model.createProperty( "http://www.wiwiss.fu-berlin.de/suhl/bizer/D2RQ/0.1#mappingFile" );
     
+    /** <p>Maximum number of combinations of property bridges considered when translating a basic graph pattern</p> */
+    public static final Property maxJoinCombinations = m_model.createProperty( "http://www.wiwiss.fu-berlin.de/suhl/bizer/D2RQ/0.1#maxJoinCombinations" );
+    
     /** <p>The Internet media type, such as image/png, of the downloadable content, suitable 
      *  for use in the HTTP Content-Type header.</p>
      */
@@ -155,6 +164,9 @@ public class D2RQ {
     /** <p>Links a d2rq:PropertyBridge to an RDF property.</p> */
     public static final Property property = m_model.createProperty( "http://www.wiwiss.fu-berlin.de/suhl/bizer/D2RQ/0.1#property" );
     
+    /** <p>Maximum number of translated SPARQL queries that are cached for reuse</p> */
+    public static final Property planCacheSize = m_model.createProperty( "http://www.wiwiss.fu-berlin.de/suhl/bizer/D2RQ/0.1#planCacheSize" );
+    
     /** <p>Used for linking RDFS properties to D2R property bridges. Deprecated, use 
      *  inverse d2rq:property instead.</p>
      */
@@ -170,6 +182,9 @@ public class D2RQ {
     
     public static final Property propertyValue = m_model.createProperty( "http://www.wiwiss.fu-berlin.de/suhl/bizer/D2RQ/0.1#propertyValue" );
     
+    /** <p>Maximum number of SQL queries that may run concurrently for one query (requires a connection pool)</p> */
+    public static final Property queryParallelism = m_model.createProperty( "http://www.wiwiss.fu-berlin.de/suhl/bizer/D2RQ/0.1#queryParallelism" );
+    
     public static final Property rdfValue = m_model.createProperty( "http://www.wiwiss.fu-berlin.de/suhl/bizer/D2RQ/0.1#rdfValue" );
     
     /** <p>Has to be used if a join refers to a different classMap.</p> */
@@ -47,4 +47,10 @@ public class VoID {
 	
 	public static final Property inDataset = vocabModel
 			.createProperty(NS + "inDataset");
+	
+	public static final Property triples = vocabModel
+			.createProperty(NS + "triples");
+	
+	public static final Property entities = vocabModel
+			.createProperty(NS + "entities");
 }
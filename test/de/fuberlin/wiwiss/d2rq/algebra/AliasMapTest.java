@@ -168,6 +168,18 @@ public class AliasMapTest extends TestCase {
 		assertEquals("AliasMap(foo AS bar, abc AS xyz)", new AliasMap(aliases).toString());
 	}
 	
+	public void testRetainAliasesDropsUnusedAliases() {
+		Collection<Alias> aliases = new ArrayList<Alias>();
+		aliases.add(fooAsBar);
+		aliases.add(new Alias(foo, baz));
+		AliasMap m = new AliasMap(aliases).retainAliases(Collections.singleton(bar));
+		assertEquals(fooAsBarMap, m);
+	}
+	
+	public void testRetainAliasesKeepsMapIfAllAreUsed() {
+		assertSame(fooAsBarMap, fooAsBarMap.retainAliases(Collections.singleton(bar)));
+	}
+	
 	public void testWithSchema() {
 		RelationName table = new RelationName(null, "table");
 		RelationName schema_table = new RelationName("schema", "table");
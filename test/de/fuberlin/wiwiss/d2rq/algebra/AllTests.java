@@ -16,6 +16,8 @@ public class AllTests {
 		suite.addTestSuite(ColumnRenamerTest.class);
 		suite.addTestSuite(CompatibleRelationGroupTest.class);
 		suite.addTestSuite(JoinTest.class);
+		suite.addTestSuite(JoinOptimizerTest.class);
+		suite.addTestSuite(TripleRelationIndexTest.class);
 		//$JUnit-END$
 		return suite;
 	}
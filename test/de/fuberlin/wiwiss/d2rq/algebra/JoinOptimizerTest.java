@@ -0,0 +1,118 @@
+package de.fuberlin.wiwiss.d2rq.algebra;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.graph.test.NodeCreateUtils;
+
+import de.fuberlin.wiwiss.d2rq.engine.GraphPatternTranslator;
+import de.fuberlin.wiwiss.d2rq.engine.MapFixture;
+import de.fuberlin.wiwiss.d2rq.sql.DummyDB;
+
+public class JoinOptimizerTest extends TestCase {
+	private final static RelationName person = new RelationName(null, "person");
+	private final static RelationName address = new RelationName(null, "address");
+
+	private DummyDB db;
+	private Collection<TripleRelation> bridges;
+
+	public void setUp() {
+		db = new DummyDB();
+		db.setPrimaryKey(person, Collections.singletonList(new Attribute(person, "id")));
+		db.setPrimaryKey(address, Collections.singletonList(new Attribute(address, "id")));
+		bridges = MapFixture.loadPropertyBridges("engine/star.n3", db);
+	}
+
+	private Relation translate(String... triples) {
+		List<Triple> pattern = new ArrayList<Triple>();
+		for (String triple: triples) {
+			pattern.add(NodeCreateUtils.createTriple(MapFixture.prefixes(), triple));
+		}
+		List<NodeRelation> results = new GraphPatternTranslator(pattern, bridges, false).translate();
+		assertEquals(1, results.size());
+		return results.get(0).baseRelation();
+	}
+
+	private Attribute column(String table, String column) {
+		return new Attribute(null, table, column);
+	}
+
+	public void testStarOnPrimaryKeyBecomesSingleTable() {
+		Relation r = translate("?x ex:name ?name", "?x ex:email ?email", "?x ex:age ?age");
+		assertEquals(Collections.singleton(new RelationName(null, "T1_person")), r.tables());
+		assertTrue(r.joinConditions().isEmpty());
+		assertEquals(new HashSet<ProjectionSpec>(Arrays.asList(
+				column("T1_person", "id"), column("T1_person", "name"),
+				column("T1_person", "email"), column("T1_person", "age"))),
+				r.projections());
+	}
+
+	public void testMergedAliasesArePruned() {
+		Relation r = translate("?x ex:name ?name", "?x ex:email ?email");
+		assertEquals(AliasMap.create1(person, new RelationName(null, "T1_person")), r.aliases());
+	}
+
+	public void testSelfJoinRequiresKeyToBeNotNull() {
+		Relation r = translate("?x ex:name ?name", "?x ex:email ?email");
+		assertTrue(r.condition().toString().contains("NotNull(AttributeExpr(@@T1_person.id@@))"));
+		assertFalse(r.condition().toString().contains("Equality"));
+	}
+
+	public void testJoinedTablesReachedOnSameKeyAreMerged() {
+		Relation r = translate("?x ex:city ?city", "?x ex:street ?street");
+		assertEquals(2, r.tables().size());
+		assertEquals(1, r.joinConditions().size());
+	}
+
+	public void testJoinOnNonKeyColumnsIsKept() {
+		Relation r = translate("?x ex:name ?n", "?y ex:email ?n");
+		assertEquals(2, r.tables().size());
+	}
+
+	public void testSelfJoinWithoutKeyIsKept() {
+		db.setPrimaryKey(person, Collections.<Attribute>emptyList());
+		Relation r = translate("?x ex:name ?name", "?x ex:email ?email");
+		assertEquals(2, r.tables().size());
+	}
+
+	public void testSelfJoinOnUniqueKeyIsMerged() {
+		final Map<String,List<String>> uniqueKeys = Collections.singletonMap(
+				"person_id", Collections.singletonList("id"));
+		DummyDB uniqueDB = new DummyDB() {
+			@Override
+			public Map<String,List<String>> getUniqueKeyColumns(RelationName tableName) {
+				return person.equals(tableName) ? uniqueKeys : null;
+			}
+		};
+		bridges = MapFixture.loadPropertyBridges("engine/star.n3", uniqueDB);
+		Relation r = translate("?x ex:name ?name", "?x ex:email ?email");
+		assertEquals(1, r.tables().size());
+	}
+
+	public void testReferencedAliasIsMergedWithSubjectOfNextPattern() {
+		Relation r = translate("?x ex:knows ?y", "?y ex:name ?name");
+		assertEquals(2, r.tables().size());
+		assertEquals(1, r.joinConditions().size());
+	}
+
+	public void testJoinToKeyOnlyIsRemoved() {
+		TripleRelation knows = null;
+		for (TripleRelation bridge: bridges) {
+			if (bridge.nodeMaker(TripleRelation.PREDICATE).toString().contains("knows")) {
+				knows = bridge;
+			}
+		}
+		NodeRelation optimized = new JoinOptimizer(knows).optimize();
+		assertEquals(Collections.singleton(person), optimized.baseRelation().tables());
+		assertTrue(optimized.baseRelation().joinConditions().isEmpty());
+		assertEquals(AliasMap.NO_ALIASES, optimized.baseRelation().aliases());
+	}
+}
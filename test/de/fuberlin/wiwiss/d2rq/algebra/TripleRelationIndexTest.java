@@ -0,0 +1,120 @@
+package de.fuberlin.wiwiss.d2rq.algebra;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.vocabulary.RDF;
+
+import de.fuberlin.wiwiss.d2rq.nodes.FixedNodeMaker;
+import de.fuberlin.wiwiss.d2rq.nodes.NodeMaker;
+import de.fuberlin.wiwiss.d2rq.nodes.TypedNodeMaker;
+import de.fuberlin.wiwiss.d2rq.values.Column;
+import de.fuberlin.wiwiss.d2rq.values.Pattern;
+
+public class TripleRelationIndexTest extends TestCase {
+	private final static RelationName table = new RelationName(null, "table");
+	private final static Node p1 = Node.createURI("http://example.org/p1");
+	private final static Node p2 = Node.createURI("http://example.org/p2");
+	private final static Node class1 = Node.createURI("http://example.org/Class1");
+	private final static Node class2 = Node.createURI("http://example.org/Class2");
+
+	private final static NodeMaker uri = new TypedNodeMaker(TypedNodeMaker.URI,
+			new Pattern("http://example.org/thing/@@table.id@@"), true);
+	private final static NodeMaker blank = new TypedNodeMaker(TypedNodeMaker.BLANK,
+			new Column(new Attribute(table, "id")), true);
+	private final static NodeMaker literal = new TypedNodeMaker(TypedNodeMaker.PLAIN_LITERAL,
+			new Column(new Attribute(table, "value")), false);
+	private final static NodeMaker uriColumn = new TypedNodeMaker(TypedNodeMaker.URI,
+			new Column(new Attribute(table, "uri")), false);
+
+	private final static TripleRelation property = relation(uri, fixed(p1), literal);
+	private final static TripleRelation type1 = relation(uri, fixed(RDF.Nodes.type), fixed(class1));
+	private final static TripleRelation type2 = relation(uri, fixed(RDF.Nodes.type), fixed(class2));
+	private final static TripleRelation anyProperty = relation(uri, uriColumn, uriColumn);
+	private final static TripleRelation blankProperty = relation(blank, fixed(p2), literal);
+	private final static TripleRelation anyType = relation(uri, fixed(RDF.Nodes.type), uriColumn);
+
+	private TripleRelationIndex index;
+
+	private static NodeMaker fixed(Node node) {
+		return new FixedNodeMaker(node, false);
+	}
+
+	private static TripleRelation relation(NodeMaker s, NodeMaker p, NodeMaker o) {
+		return new TripleRelation(Relation.TRUE, s, p, o);
+	}
+
+	public void setUp() {
+		index = new TripleRelationIndex(Arrays.asList(
+				property, type1, type2, anyProperty, blankProperty, anyType));
+	}
+
+	private List<TripleRelation> candidates(Node s, Node p, Node o) {
+		return index.candidates(Triple.create(s, p, o));
+	}
+
+	public void testVariablesMatchEverything() {
+		assertEquals(index.all(), candidates(Node.ANY, Node.ANY, Node.ANY));
+		assertEquals(6, index.size());
+	}
+
+	public void testLookupByPredicateKeepsOrder() {
+		assertEquals(Arrays.asList(property, anyProperty),
+				candidates(Node.ANY, p1, Node.ANY));
+		assertEquals(Arrays.asList(type1, type2, anyProperty, anyType),
+				candidates(Node.ANY, RDF.Nodes.type, Node.ANY));
+	}
+
+	public void testUnknownPredicateOnlyMatchesNonFixedPredicates() {
+		assertEquals(Collections.singletonList(anyProperty),
+				candidates(Node.ANY, Node.createURI("http://example.org/unknown"), Node.ANY));
+	}
+
+	public void testLookupByType() {
+		assertEquals(Arrays.asList(type1, anyProperty, anyType),
+				candidates(Node.ANY, RDF.Nodes.type, class1));
+	}
+
+	public void testNodeKindOfSubjectAndObject() {
+		assertEquals(Arrays.asList(property, blankProperty),
+				candidates(Node.ANY, Node.ANY, Node.createLiteral("foo")));
+		assertEquals(Collections.singletonList(blankProperty),
+				candidates(Node.createAnon(), Node.ANY, Node.ANY));
+		assertEquals(Collections.singletonList(anyProperty),
+				candidates(Node.ANY, p1, class1));
+	}
+
+	private static NodeMaker uriPattern(String pattern) {
+		return new TypedNodeMaker(TypedNodeMaker.URI, new Pattern(pattern), true);
+	}
+
+	public void testURIPatternTrie() {
+		TripleRelation order = relation(uriPattern("http://example.org/order/@@table.id@@"), fixed(p1), literal);
+		TripleRelation customer = relation(uriPattern("http://example.org/customer/@@table.id@@"), fixed(p1), literal);
+		TripleRelation page = relation(uriPattern("http://example.org/@@table.id@@.html"), fixed(p1), literal);
+		TripleRelation constant = relation(uriPattern("http://example.org/static"), fixed(p1), literal);
+		TripleRelation column = relation(uriColumn, fixed(p1), literal);
+		TripleRelation orderObject = relation(uriColumn, fixed(p2),
+				uriPattern("http://example.org/order/@@table.id@@"));
+		index = new TripleRelationIndex(Arrays.asList(
+				order, customer, page, constant, column, orderObject));
+		Node order123 = Node.createURI("http://example.org/order/123");
+		assertEquals(Arrays.asList(order, column, orderObject),
+				candidates(order123, Node.ANY, Node.ANY));
+		assertEquals(Arrays.asList(order, column),
+				candidates(order123, p1, Node.ANY));
+		assertEquals(Arrays.asList(page, column, orderObject),
+				candidates(Node.createURI("http://example.org/index.html"), Node.ANY, Node.ANY));
+		assertEquals(Arrays.asList(constant, column, orderObject),
+				candidates(Node.createURI("http://example.org/static"), Node.ANY, Node.ANY));
+		assertEquals(Arrays.asList(column, orderObject),
+				candidates(Node.createURI("http://example.org/ord"), Node.ANY, Node.ANY));
+		assertEquals(Collections.singletonList(orderObject),
+				candidates(Node.ANY, Node.ANY, order123));
+	}
+}
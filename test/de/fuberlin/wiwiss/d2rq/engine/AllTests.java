@@ -9,8 +9,26 @@ public class AllTests {
 		TestSuite suite = new TestSuite(
 				"Test for de.fuberlin.wiwiss.d2rq.engine");
 		//$JUnit-BEGIN$
+		suite.addTestSuite(CardinalityEstimatorTest.class);
 		suite.addTestSuite(GraphPatternTranslatorTest.class);
+		suite.addTestSuite(PlanCacheTest.class);
+		suite.addTestSuite(QueryIterParallelUnionTest.class);
+		suite.addTestSuite(QueryIterBatchRepeatApplyTest.class);
+		suite.addTestSuite(RejectedValuesTest.class);
+		suite.addTestSuite(TransformOpBGPTest.class);
+		suite.addTestSuite(TransformOpDistinctTest.class);
+		suite.addTestSuite(TransformOpGroupTest.class);
+		suite.addTestSuite(TransformOpLeftJoinTest.class);
+		suite.addTestSuite(TransformOpMinusTest.class);
+		suite.addTestSuite(TransformOpOrderTest.class);
+		suite.addTestSuite(TransformOpPathTest.class);
+		suite.addTestSuite(TransformOpProjectTest.class);
+		suite.addTestSuite(TransformOpSliceTest.class);
+		suite.addTestSuite(TransformOpTableTest.class);
+		suite.addTestSuite(TransformOpUnionTest.class);
 		//$JUnit-END$
+// TODO: Needs a PostgreSQL server, like the MySQL tests
+//		suite.addTestSuite(PostgreSQLPathTest.class);
 		return suite;
 	}
 
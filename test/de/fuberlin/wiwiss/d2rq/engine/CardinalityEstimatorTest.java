@@ -0,0 +1,100 @@
+package de.fuberlin.wiwiss.d2rq.engine;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import de.fuberlin.wiwiss.d2rq.algebra.AliasMap;
+import de.fuberlin.wiwiss.d2rq.algebra.Attribute;
+import de.fuberlin.wiwiss.d2rq.algebra.Join;
+import de.fuberlin.wiwiss.d2rq.algebra.OrderSpec;
+import de.fuberlin.wiwiss.d2rq.algebra.ProjectionSpec;
+import de.fuberlin.wiwiss.d2rq.algebra.Relation;
+import de.fuberlin.wiwiss.d2rq.algebra.RelationImpl;
+import de.fuberlin.wiwiss.d2rq.algebra.RelationName;
+import de.fuberlin.wiwiss.d2rq.dbschema.TableStatistics;
+import de.fuberlin.wiwiss.d2rq.expr.Conjunction;
+import de.fuberlin.wiwiss.d2rq.expr.Equality;
+import de.fuberlin.wiwiss.d2rq.expr.Expression;
+import de.fuberlin.wiwiss.d2rq.sql.DummyDB;
+
+public class CardinalityEstimatorTest extends TestCase {
+	private final static RelationName orders = new RelationName(null, "orders");
+	private final static RelationName customers = new RelationName(null, "customers");
+	private final static Attribute orderID = new Attribute(orders, "id");
+	private final static Attribute orderCustomer = new Attribute(orders, "customer");
+	private final static Attribute orderStatus = new Attribute(orders, "status");
+	private final static Attribute customerID = new Attribute(customers, "id");
+
+	private DummyDB db;
+
+	public void setUp() {
+		db = new DummyDB();
+		Map<String,Long> distinct = new HashMap<String,Long>();
+		distinct.put("id", 1000L);
+		distinct.put("customer", 50L);
+		db.setTableStatistics(orders, new TableStatistics(1000, distinct));
+		db.setTableStatistics(customers, new TableStatistics(
+				50, Collections.singletonMap("id", 50L)));
+	}
+
+	private Relation relation(Expression condition, Set<Join> joins, int limit) {
+		Set<ProjectionSpec> projections = new HashSet<ProjectionSpec>();
+		projections.add(orderID);
+		return new RelationImpl(db, AliasMap.NO_ALIASES, condition, Expression.TRUE,
+				joins, projections, false, OrderSpec.NONE, limit, Relation.NO_LIMIT);
+	}
+
+	private Relation relation(Expression condition) {
+		return relation(condition, Collections.<Join>emptySet(), Relation.NO_LIMIT);
+	}
+
+	public void testTableWithoutConditions() {
+		assertEquals(1000.0, CardinalityEstimator.estimate(relation(Expression.TRUE)));
+	}
+
+	public void testEqualityUsesDistinctValues() {
+		assertEquals(1.0, CardinalityEstimator.estimate(relation(
+				Equality.createAttributeValue(orderID, "5"))), 0.001);
+		assertEquals(20.0, CardinalityEstimator.estimate(relation(
+				Equality.createAttributeValue(orderCustomer, "5"))), 0.001);
+	}
+
+	public void testEqualityWithoutDistinctValues() {
+		assertEquals(100.0, CardinalityEstimator.estimate(relation(
+				Equality.createAttributeValue(orderStatus, "open"))), 0.001);
+	}
+
+	public void testConjunction() {
+		assertEquals(2.0, CardinalityEstimator.estimate(relation(Conjunction.create(Arrays.asList(
+				Equality.createAttributeValue(orderCustomer, "5"),
+				Equality.createAttributeValue(orderStatus, "open"))))), 0.001);
+	}
+
+	public void testJoin() {
+		Relation joined = relation(Expression.TRUE, Collections.singleton(
+				new Join(orderCustomer, customerID, Join.DIRECTION_RIGHT)), Relation.NO_LIMIT);
+		assertEquals(1000.0, CardinalityEstimator.estimate(joined), 0.001);
+	}
+
+	public void testLimit() {
+		assertEquals(10.0, CardinalityEstimator.estimate(
+				relation(Expression.TRUE, Collections.<Join>emptySet(), 10)));
+	}
+
+	public void testUnknownStatistics() {
+		db.setTableStatistics(orders, TableStatistics.NONE);
+		assertEquals(CardinalityEstimator.UNKNOWN, 
+				CardinalityEstimator.estimate(relation(Expression.TRUE)));
+	}
+
+	public void testTrivialRelations() {
+		assertEquals(1.0, CardinalityEstimator.estimate(Relation.TRUE));
+		assertEquals(0.0, CardinalityEstimator.estimate(Relation.EMPTY));
+	}
+}
@@ -17,6 +17,7 @@ import de.fuberlin.wiwiss.d2rq.algebra.NodeRelation;
 import de.fuberlin.wiwiss.d2rq.algebra.Relation;
 import de.fuberlin.wiwiss.d2rq.algebra.RelationName;
 import de.fuberlin.wiwiss.d2rq.algebra.TripleRelation;
+import de.fuberlin.wiwiss.d2rq.algebra.TripleRelationIndex;
 import de.fuberlin.wiwiss.d2rq.expr.Equality;
 import de.fuberlin.wiwiss.d2rq.expr.Expression;
 import de.fuberlin.wiwiss.d2rq.sql.SQL;
@@ -153,6 +154,29 @@ public class GraphPatternTranslatorTest extends TestCase {
 				r.condition());
 	}
 
+	public void testCandidatesWithoutPartnerArePruned() {
+		// ?x can only be an org, so the person name is never joined
+		String pattern = "?x ex:name ?n . ?y ex:name ?m . ?x ex:member ?y";
+		assertEquals(2, translate(pattern, "engine/members.n3", 3).size());
+	}
+
+	public void testUnsatisfiableChainIsEmpty() {
+		assertEquals(0, translate("?x ex:member ?y . ?y ex:name ?n . ?n ex:name ?m", 
+				"engine/members.n3", GraphPatternTranslator.NO_LIMIT).size());
+	}
+
+	public void testTooManyCombinationsGivesUp() {
+		String pattern = "?a ex:name ?b . ?c ex:name ?d . ?e ex:name ?f";
+		assertEquals(8, translate(pattern, "engine/members.n3", 8).size());
+		assertNull(translate(pattern, "engine/members.n3", 7));
+	}
+
+	private List<NodeRelation> translate(String pattern, String mappingFile, int maxJoinCombinations) {
+		return new GraphPatternTranslator(triplesToList(pattern), 
+				new TripleRelationIndex(MapFixture.loadPropertyBridges(mappingFile)), 
+				false, maxJoinCombinations).translate();
+	}
+
 	private NodeRelation translate1(String pattern, String mappingFile) {
 		return translate1(triplesToList(pattern), mappingFile);
 	}
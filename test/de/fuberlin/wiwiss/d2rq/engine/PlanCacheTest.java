@@ -0,0 +1,93 @@
+package de.fuberlin.wiwiss.d2rq.engine;
+
+import junit.framework.TestCase;
+
+import com.hp.hpl.jena.query.QueryExecution;
+import com.hp.hpl.jena.query.QueryExecutionFactory;
+import com.hp.hpl.jena.query.ResultSet;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.sparql.algebra.Op;
+import com.hp.hpl.jena.sparql.algebra.op.OpNull;
+import com.hp.hpl.jena.sparql.algebra.op.OpTable;
+
+import de.fuberlin.wiwiss.d2rq.helpers.HSQLDatabase;
+import de.fuberlin.wiwiss.d2rq.helpers.MappingHelper;
+import de.fuberlin.wiwiss.d2rq.jena.GraphD2RQ;
+import de.fuberlin.wiwiss.d2rq.map.Mapping;
+
+public class PlanCacheTest extends TestCase {
+	private final static Op plan1 = OpTable.unit();
+	private final static Op plan2 = OpNull.create();
+
+	public void testMissThenHit() {
+		PlanCache cache = new PlanCache(10);
+		assertNull(cache.get("a"));
+		cache.put("a", plan1);
+		assertSame(plan1, cache.get("a"));
+		assertEquals(1, cache.hits());
+		assertEquals(1, cache.misses());
+		assertEquals(1, cache.size());
+	}
+
+	public void testLeastRecentlyUsedIsEvicted() {
+		PlanCache cache = new PlanCache(2);
+		cache.put("a", plan1);
+		cache.put("b", plan2);
+		cache.get("a");
+		cache.put("c", plan2);
+		assertEquals(2, cache.size());
+		assertEquals(1, cache.evictions());
+		assertSame(plan1, cache.get("a"));
+		assertNull(cache.get("b"));
+	}
+
+	public void testClear() {
+		PlanCache cache = new PlanCache(10);
+		cache.put("a", plan1);
+		cache.clear();
+		assertEquals(0, cache.size());
+		assertNull(cache.get("a"));
+	}
+
+	public void testSizeZeroDisablesCache() {
+		PlanCache cache = new PlanCache(0);
+		assertFalse(cache.isEnabled());
+		cache.put("a", plan1);
+		assertNull(cache.get("a"));
+	}
+
+	public void testRepeatedQueryUsesCachedPlan() {
+		HSQLDatabase db = new HSQLDatabase("test");
+		db.executeSQL("CREATE TABLE TEST (ID INT PRIMARY KEY, VALUE VARCHAR(50) NULL)");
+		db.executeSQL("INSERT INTO TEST VALUES (1, 'Hello World!')");
+		try {
+			Mapping mapping = MappingHelper.readFromTestFile("helpers/simple.ttl");
+			mapping.configuration().setServeVocabulary(false);
+			GraphD2RQ graph = new GraphD2RQ(mapping);
+			Model model = ModelFactory.createModelForGraph(graph);
+			String query = "SELECT ?x { ?x a <http://example.org/Test> }";
+			assertEquals(1, count(query, model));
+			assertEquals(1, count(query, model));
+			assertEquals(1, graph.planCache().hits());
+			assertEquals(1, graph.planCache().misses());
+			graph.close();
+			assertEquals(0, graph.planCache().size());
+		} finally {
+			db.close(true);
+		}
+	}
+
+	private int count(String query, Model model) {
+		QueryExecution qe = QueryExecutionFactory.create(query, model);
+		try {
+			int result = 0;
+			for (ResultSet rs = qe.execSelect(); rs.hasNext(); rs.next()) {
+				result++;
+			}
+			return result;
+		} finally {
+			qe.close();
+		}
+	}
+}
@@ -0,0 +1,113 @@
+package de.fuberlin.wiwiss.d2rq.engine;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import com.hp.hpl.jena.query.QueryExecution;
+import com.hp.hpl.jena.query.QueryExecutionFactory;
+import com.hp.hpl.jena.query.ResultSet;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+
+import de.fuberlin.wiwiss.d2rq.helpers.MappingHelper;
+import de.fuberlin.wiwiss.d2rq.jena.GraphD2RQ;
+import de.fuberlin.wiwiss.d2rq.sql.ConnectedDB;
+
+/**
+ * Runs the recursive SQL queries of {@link TransformOpPath}, which
+ * HSQLDB can't evaluate, against PostgreSQL.
+ *
+ * TODO: Put PostgreSQL connection details into a properties file
+ */
+public class PostgreSQLPathTest extends TestCase {
+	private final static String PREFIX =
+		"PREFIX ex: <http://example.org/> PREFIX emp: <http://example.org/emp/> ";
+
+	private GraphD2RQ graph;
+	private Model model;
+
+	public void setUp() throws SQLException {
+		ConnectedDB.registerJDBCDriver("org.postgresql.Driver");
+		ConnectedDB db = new ConnectedDB("jdbc:postgresql://localhost/d2rq_test", "postgres", null);
+		try {
+			Statement stmt = db.connection().createStatement();
+			try {
+				// 1 -> 2 -> 3 -> 4, and a cycle 5 -> 6 -> 5
+				stmt.execute("DROP TABLE IF EXISTS emp");
+				stmt.execute("CREATE TABLE emp (id INT PRIMARY KEY, boss INT NULL)");
+				stmt.execute("INSERT INTO emp VALUES (1, 2), (2, 3), (3, 4), (4, NULL), (5, 6), (6, 5)");
+			} finally {
+				db.vendor().beforeClose(db.connection());
+				stmt.close();
+				db.vendor().afterClose(db.connection());
+			}
+		} finally {
+			db.close();
+		}
+		graph = new GraphD2RQ(MappingHelper.readFromTestFile("engine/hierarchy-postgresql.ttl"));
+		model = ModelFactory.createModelForGraph(graph);
+	}
+
+	public void tearDown() {
+		graph.close();
+	}
+
+	private Set<String> select(String pattern) {
+		QueryExecution qe = QueryExecutionFactory.create(
+				PREFIX + "SELECT ?result { " + pattern + " }", model);
+		try {
+			Set<String> results = new HashSet<String>();
+			ResultSet rs = qe.execSelect();
+			while (rs.hasNext()) {
+				results.add(rs.next().getResource("result").getLocalName());
+			}
+			return results;
+		} finally {
+			qe.close();
+		}
+	}
+
+	private boolean ask(String pattern) {
+		QueryExecution qe = QueryExecutionFactory.create(PREFIX + "ASK { " + pattern + " }", model);
+		try {
+			return qe.execAsk();
+		} finally {
+			qe.close();
+		}
+	}
+
+	private Set<String> set(String... ids) {
+		return new HashSet<String>(Arrays.asList(ids));
+	}
+
+	public void testOneOrMoreFromSubject() {
+		assertEquals(set("2", "3", "4"), select("emp:1 ex:boss+ ?result"));
+	}
+
+	public void testOneOrMoreFromObject() {
+		assertEquals(set("1", "2", "3"), select("?result ex:boss+ emp:4"));
+	}
+
+	public void testZeroOrMoreIncludesStart() {
+		assertEquals(set("1", "2", "3", "4"), select("emp:1 ex:boss* ?result"));
+	}
+
+	public void testInverse() {
+		assertEquals(set("1", "2"), select("emp:3 ^ex:boss+ ?result"));
+	}
+
+	public void testCycleTerminates() {
+		assertEquals(set("5", "6"), select("emp:5 ex:boss+ ?result"));
+	}
+
+	public void testBothEndsBound() {
+		assertTrue(ask("emp:1 ex:boss+ emp:4"));
+		assertFalse(ask("emp:4 ex:boss+ emp:1"));
+		assertTrue(ask("emp:4 ex:boss* emp:4"));
+	}
+}
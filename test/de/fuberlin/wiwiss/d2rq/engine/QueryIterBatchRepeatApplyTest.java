@@ -0,0 +1,70 @@
+package de.fuberlin.wiwiss.d2rq.engine;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.sparql.core.Var;
+import com.hp.hpl.jena.sparql.engine.QueryIterator;
+import com.hp.hpl.jena.sparql.engine.binding.Binding;
+import com.hp.hpl.jena.sparql.engine.binding.BindingFactory;
+import com.hp.hpl.jena.sparql.engine.iterator.QueryIterPlainWrapper;
+
+public class QueryIterBatchRepeatApplyTest extends TestCase {
+	private final static Var x = Var.alloc("x");
+
+	private static QueryIterator input(int count) {
+		List<Binding> bindings = new ArrayList<Binding>();
+		for (int i = 1; i <= count; i++) {
+			bindings.add(BindingFactory.binding(x, Node.createLiteral(Integer.toString(i))));
+		}
+		return new QueryIterPlainWrapper(bindings.iterator());
+	}
+
+	public void testBatchesOfGivenSize() {
+		final List<Integer> batchSizes = new ArrayList<Integer>();
+		QueryIterator it = new QueryIterBatchRepeatApply(input(7), 3, null) {
+			protected QueryIterator nextStage(List<Binding> bindings) {
+				batchSizes.add(bindings.size());
+				return new QueryIterPlainWrapper(bindings.iterator());
+			}
+		};
+		List<String> values = new ArrayList<String>();
+		while (it.hasNext()) {
+			values.add(it.nextBinding().get(x).getLiteralLexicalForm());
+		}
+		it.close();
+		assertEquals("[3, 3, 1]", batchSizes.toString());
+		assertEquals("[1, 2, 3, 4, 5, 6, 7]", values.toString());
+	}
+
+	public void testEmptyStagesAreSkipped() {
+		QueryIterator it = new QueryIterBatchRepeatApply(input(4), 2, null) {
+			protected QueryIterator nextStage(List<Binding> bindings) {
+				List<Binding> result = new ArrayList<Binding>();
+				if (bindings.get(0).get(x).getLiteralLexicalForm().equals("3")) {
+					result.addAll(bindings);
+				}
+				return new QueryIterPlainWrapper(result.iterator());
+			}
+		};
+		assertTrue(it.hasNext());
+		assertEquals("3", it.nextBinding().get(x).getLiteralLexicalForm());
+		assertEquals("4", it.nextBinding().get(x).getLiteralLexicalForm());
+		assertFalse(it.hasNext());
+		it.close();
+	}
+
+	public void testEmptyInput() {
+		QueryIterator it = new QueryIterBatchRepeatApply(input(0), 5, null) {
+			protected QueryIterator nextStage(List<Binding> bindings) {
+				fail("No stage expected for empty input");
+				return null;
+			}
+		};
+		assertFalse(it.hasNext());
+		it.close();
+	}
+}
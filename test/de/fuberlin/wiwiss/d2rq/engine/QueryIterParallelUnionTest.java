@@ -0,0 +1,116 @@
+package de.fuberlin.wiwiss.d2rq.engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.sparql.core.Var;
+import com.hp.hpl.jena.sparql.engine.QueryIterator;
+import com.hp.hpl.jena.sparql.engine.binding.Binding;
+import com.hp.hpl.jena.sparql.engine.binding.BindingFactory;
+import com.hp.hpl.jena.sparql.engine.iterator.QueryIter;
+import com.hp.hpl.jena.sparql.engine.iterator.QueryIterConcat;
+import com.hp.hpl.jena.sparql.engine.iterator.QueryIterPlainWrapper;
+
+public class QueryIterParallelUnionTest extends TestCase {
+	private final static Var x = Var.alloc("x");
+
+	private static QueryIterator members(String... values) {
+		List<Binding> bindings = new ArrayList<Binding>();
+		for (String value: values) {
+			bindings.add(BindingFactory.binding(x, Node.createLiteral(value)));
+		}
+		return new QueryIterPlainWrapper(bindings.iterator());
+	}
+
+	private static Set<String> drain(QueryIterator it) {
+		Set<String> result = new HashSet<String>();
+		while (it.hasNext()) {
+			result.add(it.nextBinding().get(x).getLiteralLexicalForm());
+		}
+		it.close();
+		return result;
+	}
+
+	public void testSequentialIfParallelismIsOne() {
+		QueryIterator it = QueryIterParallelUnion.create(
+				Arrays.asList(members("a"), members("b")), 1, null);
+		assertTrue(it instanceof QueryIterConcat);
+		assertEquals(new HashSet<String>(Arrays.asList("a", "b")), drain(it));
+	}
+
+	public void testAllBindingsFromAllMembers() {
+		QueryIterator it = QueryIterParallelUnion.create(Arrays.asList(
+				members("a", "b"), members(), members("c"), members("d", "e", "f")), 3, null);
+		assertTrue(it instanceof QueryIterParallelUnion);
+		assertEquals(new HashSet<String>(Arrays.asList("a", "b", "c", "d", "e", "f")), drain(it));
+	}
+
+	public void testCancelIsPassedToMembers() {
+		CancelRecorder m1 = new CancelRecorder();
+		CancelRecorder m2 = new CancelRecorder();
+		QueryIterator it = QueryIterParallelUnion.create(
+				Arrays.<QueryIterator>asList(m1, m2), 2, null);
+		it.cancel();
+		assertTrue(m1.cancelRequested);
+		assertTrue(m2.cancelRequested);
+	}
+
+	public void testCloseBeforeUseClosesMembers() {
+		CancelRecorder m1 = new CancelRecorder();
+		CancelRecorder m2 = new CancelRecorder();
+		QueryIterator it = QueryIterParallelUnion.create(
+				Arrays.<QueryIterator>asList(m1, m2), 2, null);
+		it.close();
+		assertTrue(m1.closed);
+		assertTrue(m2.closed);
+	}
+
+	public void testCloseWaitsForWorkersAndClosesMembersOnConsumerThread() {
+		EndlessMember m1 = new EndlessMember();
+		EndlessMember m2 = new EndlessMember();
+		QueryIterator it = QueryIterParallelUnion.create(
+				Arrays.<QueryIterator>asList(m1, m2), 2, null);
+		assertTrue(it.hasNext());
+		it.nextBinding();
+		it.close();
+		assertFalse(m1.inWorker);
+		assertFalse(m2.inWorker);
+		assertSame(Thread.currentThread(), m1.closingThread);
+		assertSame(Thread.currentThread(), m2.closingThread);
+	}
+
+	private static class CancelRecorder extends QueryIter {
+		volatile boolean cancelRequested = false;
+		volatile boolean closed = false;
+		volatile Thread closingThread = null;
+		CancelRecorder() { super(null); }
+		protected boolean hasNextBinding() { return false; }
+		protected Binding moveToNextBinding() { return null; }
+		protected void closeIterator() {
+			closed = true;
+			closingThread = Thread.currentThread();
+		}
+		protected void requestCancel() { cancelRequested = true; }
+	}
+
+	private static class EndlessMember extends CancelRecorder {
+		volatile boolean inWorker = false;
+		protected boolean hasNextBinding() { return true; }
+		protected Binding moveToNextBinding() {
+			inWorker = true;
+			try {
+				Thread.sleep(1);
+			} catch (InterruptedException ex) {
+				// ignore
+			}
+			inWorker = false;
+			return BindingFactory.binding(x, Node.createLiteral("a"));
+		}
+	}
+}
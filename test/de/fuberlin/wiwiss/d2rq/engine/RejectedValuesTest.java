@@ -0,0 +1,112 @@
+package de.fuberlin.wiwiss.d2rq.engine;
+
+import junit.framework.TestCase;
+
+import com.hp.hpl.jena.query.QueryExecution;
+import com.hp.hpl.jena.query.QueryExecutionFactory;
+import com.hp.hpl.jena.query.QuerySolution;
+import com.hp.hpl.jena.query.ResultSet;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+
+import de.fuberlin.wiwiss.d2rq.helpers.HSQLDatabase;
+import de.fuberlin.wiwiss.d2rq.helpers.MappingHelper;
+import de.fuberlin.wiwiss.d2rq.jena.GraphD2RQ;
+import de.fuberlin.wiwiss.d2rq.map.Mapping;
+
+/**
+ * Queries over rows whose values don't become nodes: invalid
+ * xsd:dates, and codes missing from a translation table. Such rows
+ * come first, so SQL that cuts off or joins rows without regard
+ * for them returns wrong results.
+ */
+public class RejectedValuesTest extends TestCase {
+	private final static String PREFIX = "PREFIX : <http://example.org/> ";
+
+	private HSQLDatabase db;
+	private GraphD2RQ graph;
+	private Model model;
+
+	public void setUp() {
+		db = new HSQLDatabase("rejected");
+		db.executeSQL("CREATE TABLE EV (ID INT PRIMARY KEY, D VARCHAR(20) NULL, KIND VARCHAR(5) NULL)");
+		db.executeSQL("INSERT INTO EV VALUES (1, 'not a date', 'x')");
+		db.executeSQL("INSERT INTO EV VALUES (2, 'not a date', 'y')");
+		db.executeSQL("INSERT INTO EV VALUES (3, '2012-01-01', 'a')");
+		db.executeSQL("INSERT INTO EV VALUES (5, 'not a date', 'a')");
+		Mapping mapping = MappingHelper.readFromTestFile("engine/rejected.ttl");
+		mapping.configuration().setServeVocabulary(false);
+		graph = new GraphD2RQ(mapping);
+		model = ModelFactory.createModelForGraph(graph);
+	}
+
+	public void tearDown() {
+		graph.close();
+		db.close(true);
+	}
+
+	private int count(String query) {
+		QueryExecution qe = QueryExecutionFactory.create(PREFIX + query, model);
+		try {
+			ResultSet rs = qe.execSelect();
+			int result = 0;
+			while (rs.hasNext()) {
+				rs.next();
+				result++;
+			}
+			return result;
+		} finally {
+			qe.close();
+		}
+	}
+
+	private boolean ask(String query) {
+		QueryExecution qe = QueryExecutionFactory.create(PREFIX + query, model);
+		try {
+			return qe.execAsk();
+		} finally {
+			qe.close();
+		}
+	}
+
+	public void testLimitSkipsInvalidDates() {
+		assertEquals(1, count("SELECT ?d { ?x :date ?d } LIMIT 1"));
+		assertEquals(1, count("SELECT ?d { ?x :date ?d } LIMIT 2"));
+	}
+
+	public void testLimitSkipsUntranslatedValues() {
+		assertEquals(1, count("SELECT ?k { ?x :kind ?k } LIMIT 1"));
+	}
+
+	public void testAskSkipsInvalidDates() {
+		assertTrue(ask("ASK { ?x :date ?d }"));
+	}
+
+	public void testAskSkipsUntranslatedValues() {
+		assertTrue(ask("ASK { ?x :kind ?k }"));
+		assertFalse(ask("ASK { ?x :kind 'B' }"));
+	}
+
+	public void testOptionalGroupIsUnboundIfOneValueIsRejected() {
+		QueryExecution qe = QueryExecutionFactory.create(PREFIX +
+				"SELECT * { ?x a :Event OPTIONAL { ?x :date ?d . ?x :kind ?k } }", model);
+		try {
+			ResultSet rs = qe.execSelect();
+			int count = 0;
+			while (rs.hasNext()) {
+				QuerySolution solution = rs.next();
+				count++;
+				if (solution.getResource("x").getURI().endsWith("ev/3")) {
+					assertTrue(solution.contains("d"));
+					assertTrue(solution.contains("k"));
+				} else {
+					assertFalse(solution.contains("d"));
+					assertFalse(solution.contains("k"));
+				}
+			}
+			assertEquals(4, count);
+		} finally {
+			qe.close();
+		}
+	}
+}
@@ -0,0 +1,57 @@
+package de.fuberlin.wiwiss.d2rq.engine;
+
+import java.util.HashSet;
+
+import junit.framework.TestCase;
+
+import com.hp.hpl.jena.graph.test.NodeCreateUtils;
+import com.hp.hpl.jena.sparql.algebra.Op;
+import com.hp.hpl.jena.sparql.algebra.Transformer;
+import com.hp.hpl.jena.sparql.algebra.op.OpBGP;
+import com.hp.hpl.jena.sparql.algebra.op.OpFilter;
+import com.hp.hpl.jena.sparql.core.BasicPattern;
+import com.hp.hpl.jena.sparql.util.ExprUtils;
+
+import de.fuberlin.wiwiss.d2rq.map.Mapping;
+
+public class TransformOpBGPTest extends TestCase {
+	private Mapping mapping;
+
+	public void setUp() {
+		mapping = MapFixture.loadMapping("engine/members.n3");
+		mapping.configuration().setMaxJoinCombinations(7);
+	}
+
+	private OpBGP threeNames() {
+		BasicPattern pattern = new BasicPattern();
+		pattern.add(NodeCreateUtils.createTriple(MapFixture.prefixes(), "?a ex:name ?b"));
+		pattern.add(NodeCreateUtils.createTriple(MapFixture.prefixes(), "?c ex:name ?d"));
+		pattern.add(NodeCreateUtils.createTriple(MapFixture.prefixes(), "?e ex:name ?f"));
+		return new OpBGP(pattern);
+	}
+
+	public void testBGPWithTooManyCombinationsIsLeftAlone() {
+		OpBGP bgp = threeNames();
+		assertSame(bgp, Transformer.transform(new TransformOpBGP(mapping, false), bgp));
+	}
+
+	public void testGivenUpBGPIsNotAttemptedAgain() {
+		OpBGP bgp = threeNames();
+		Op op = OpFilter.filter(ExprUtils.parse("?b != ?d"), bgp);
+		CountingSet untranslatable = new CountingSet();
+		op = Transformer.transform(new TransformOpBGP(mapping, true, untranslatable), op);
+		op = Transformer.transform(new TransformOpBGP(mapping, false, untranslatable), op);
+		assertSame(bgp, ((OpFilter) op).getSubOp());
+		assertEquals(1, untranslatable.adds);
+	}
+
+	private static class CountingSet extends HashSet<BasicPattern> {
+		private static final long serialVersionUID = 1L;
+		int adds = 0;
+		@Override
+		public boolean add(BasicPattern pattern) {
+			adds++;
+			return super.add(pattern);
+		}
+	}
+}
@@ -0,0 +1,132 @@
+package de.fuberlin.wiwiss.d2rq.engine;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import com.hp.hpl.jena.query.Query;
+import com.hp.hpl.jena.query.SortCondition;
+import com.hp.hpl.jena.sparql.algebra.Op;
+import com.hp.hpl.jena.sparql.algebra.Transformer;
+import com.hp.hpl.jena.sparql.algebra.op.Op1;
+import com.hp.hpl.jena.sparql.algebra.op.OpDistinct;
+import com.hp.hpl.jena.sparql.algebra.op.OpOrder;
+import com.hp.hpl.jena.sparql.algebra.op.OpProject;
+import com.hp.hpl.jena.sparql.algebra.op.OpReduced;
+import com.hp.hpl.jena.sparql.core.Var;
+import com.hp.hpl.jena.sparql.expr.ExprVar;
+
+import de.fuberlin.wiwiss.d2rq.algebra.AliasMap;
+import de.fuberlin.wiwiss.d2rq.algebra.Attribute;
+import de.fuberlin.wiwiss.d2rq.algebra.Join;
+import de.fuberlin.wiwiss.d2rq.algebra.NodeRelation;
+import de.fuberlin.wiwiss.d2rq.algebra.OrderSpec;
+import de.fuberlin.wiwiss.d2rq.algebra.ProjectionSpec;
+import de.fuberlin.wiwiss.d2rq.algebra.Relation;
+import de.fuberlin.wiwiss.d2rq.algebra.RelationImpl;
+import de.fuberlin.wiwiss.d2rq.algebra.RelationName;
+import de.fuberlin.wiwiss.d2rq.expr.Expression;
+import de.fuberlin.wiwiss.d2rq.nodes.NodeMaker;
+import de.fuberlin.wiwiss.d2rq.nodes.TypedNodeMaker;
+import de.fuberlin.wiwiss.d2rq.sql.DummyDB;
+import de.fuberlin.wiwiss.d2rq.values.Column;
+import de.fuberlin.wiwiss.d2rq.values.Pattern;
+
+public class TransformOpDistinctTest extends TestCase {
+	private final static Var x = Var.alloc("x");
+	private final static Var y = Var.alloc("y");
+	private final static RelationName table = new RelationName(null, "table");
+	private final static Attribute foo = new Attribute(table, "foo");
+	private final static Attribute bar = new Attribute(table, "bar");
+
+	private DummyDB db;
+
+	public void setUp() {
+		db = new DummyDB();
+	}
+
+	private Op table(NodeMaker xNodeMaker) {
+		Map<Var,NodeMaker> nodeMakers = new HashMap<Var,NodeMaker>();
+		nodeMakers.put(x, xNodeMaker);
+		nodeMakers.put(y, new TypedNodeMaker(TypedNodeMaker.PLAIN_LITERAL, new Column(bar), false));
+		Set<ProjectionSpec> projections = new HashSet<ProjectionSpec>();
+		projections.addAll(xNodeMaker.projectionSpecs());
+		projections.add(bar);
+		Relation relation = new RelationImpl(db, AliasMap.NO_ALIASES,
+				Expression.TRUE, Expression.TRUE, Collections.<Join>emptySet(),
+				projections, false, OrderSpec.NONE, Relation.NO_LIMIT, Relation.NO_LIMIT);
+		return OpUnionTableSQL.create(Collections.singleton(
+				new NodeRelation(relation, nodeMakers)));
+	}
+
+	private Op table() {
+		return table(new TypedNodeMaker(TypedNodeMaker.PLAIN_LITERAL, new Column(foo), false));
+	}
+
+	private Op transform(Op op) {
+		return Transformer.transform(new TransformOpDistinct(), op);
+	}
+
+	private Relation relationOf(Op op) {
+		while (op instanceof Op1) {
+			op = ((Op1) op).getSubOp();
+		}
+		return ((OpUnionTableSQL) op).tableOps().get(0).table().baseRelation();
+	}
+
+	public void testDistinctIsPushedDown() {
+		Op op = transform(new OpDistinct(new OpProject(table(), Arrays.asList(x))));
+		assertTrue(op instanceof OpProject);
+		assertEquals(Collections.singleton(foo), relationOf(op).projections());
+		assertFalse(relationOf(op).isUnique());
+	}
+
+	public void testReducedIsPushedDown() {
+		Op op = transform(OpReduced.create(new OpProject(table(), Arrays.asList(x))));
+		assertTrue(op instanceof OpProject);
+		assertEquals(Collections.singleton(foo), relationOf(op).projections());
+	}
+
+	public void testPrimaryKeyMakesDistinctUnnecessary() {
+		db.setPrimaryKey(table, Collections.singletonList(foo));
+		Op op = transform(new OpDistinct(new OpProject(table(), Arrays.asList(x))));
+		assertTrue(op instanceof OpProject);
+		assertTrue(relationOf(op).isUnique());
+	}
+
+	public void testPrimaryKeyNotProjected() {
+		db.setPrimaryKey(table, Collections.singletonList(bar));
+		Op op = transform(new OpDistinct(new OpProject(table(), Arrays.asList(x))));
+		assertFalse(relationOf(op).isUnique());
+	}
+
+	public void testPatternWithTwoColumnsKeepsDistinct() {
+		Op op = transform(new OpDistinct(new OpProject(table(
+				new TypedNodeMaker(TypedNodeMaker.URI,
+						new Pattern("http://example.org/@@table.foo@@-@@table.baz@@"), false)),
+				Arrays.asList(x))));
+		assertTrue(op instanceof OpDistinct);
+		assertFalse(relationOf(op).projections().contains(bar));
+	}
+
+	public void testOrderByProjectedVariable() {
+		Op op = transform(new OpDistinct(new OpProject(new OpOrder(table(),
+				Collections.singletonList(new SortCondition(new ExprVar(x), Query.ORDER_DEFAULT))),
+				Arrays.asList(x))));
+		assertTrue(op instanceof OpProject);
+		assertTrue(((OpProject) op).getSubOp() instanceof OpOrder);
+	}
+
+	public void testOrderByOtherVariableIsNotPushedDown() {
+		Op op = transform(new OpDistinct(new OpProject(new OpOrder(table(),
+				Collections.singletonList(new SortCondition(new ExprVar(y), Query.ORDER_DEFAULT))),
+				Arrays.asList(x))));
+		assertTrue(op instanceof OpDistinct);
+		assertEquals(2, relationOf(op).projections().size());
+	}
+}
@@ -0,0 +1,92 @@
+package de.fuberlin.wiwiss.d2rq.engine;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.graph.test.NodeCreateUtils;
+import com.hp.hpl.jena.sparql.algebra.Op;
+import com.hp.hpl.jena.sparql.algebra.Transformer;
+import com.hp.hpl.jena.sparql.algebra.op.OpGroup;
+import com.hp.hpl.jena.sparql.core.Var;
+import com.hp.hpl.jena.sparql.core.VarExprList;
+import com.hp.hpl.jena.sparql.expr.ExprAggregator;
+import com.hp.hpl.jena.sparql.expr.ExprVar;
+import com.hp.hpl.jena.sparql.expr.aggregate.Aggregator;
+import com.hp.hpl.jena.sparql.expr.aggregate.AggregatorFactory;
+
+import de.fuberlin.wiwiss.d2rq.algebra.Attribute;
+import de.fuberlin.wiwiss.d2rq.algebra.NodeRelation;
+import de.fuberlin.wiwiss.d2rq.algebra.TripleRelation;
+
+public class TransformOpGroupTest extends TestCase {
+	private final static Var x = Var.alloc("x");
+	private final static Var foo = Var.alloc("foo");
+	private final static Var count = Var.alloc("count");
+
+	private Collection<TripleRelation> bridges;
+
+	public void setUp() {
+		bridges = MapFixture.loadPropertyBridges("engine/simple.n3");
+	}
+
+	private Op table(String triple) {
+		List<Triple> pattern = Collections.singletonList(
+				NodeCreateUtils.createTriple(MapFixture.prefixes(), triple));
+		List<NodeRelation> tables = new GraphPatternTranslator(pattern,
+				bridges, true).translate();
+		return OpUnionTableSQL.create(tables);
+	}
+
+	private Op group(Op subOp, VarExprList groupVars, Aggregator aggregator) {
+		return Transformer.transform(new TransformOpGroup(), new OpGroup(subOp,
+				groupVars, Collections.singletonList(new ExprAggregator(count, aggregator))));
+	}
+
+	public void testCountAllIsTranslated() {
+		Op op = group(table("?x ex:foo ?foo"), new VarExprList(),
+				AggregatorFactory.createCount(false));
+		assertTrue(op instanceof OpGroupTableSQL);
+	}
+
+	public void testGroupedCountIsTranslated() {
+		Op op = group(table("?x ex:foo ?foo"),
+				new VarExprList(Collections.singletonList(foo)),
+				AggregatorFactory.createCountExpr(false, new ExprVar(x)));
+		assertTrue(op instanceof OpGroupTableSQL);
+	}
+
+	public void testGroupByUsesColumn() {
+		NodeRelation table = ((OpUnionTableSQL) table("?x ex:foo ?foo")).singleTable();
+		GroupBindingMaker maker = GroupBindingMaker.create(table,
+				new VarExprList(Collections.singletonList(foo)),
+				Collections.singletonList(new ExprAggregator(count,
+						AggregatorFactory.createCount(false))));
+		assertEquals(Collections.singletonList(new Attribute(null, "table1", "foo")),
+				maker.groupBy());
+	}
+
+	public void testGroupConcatIsNotTranslated() {
+		Op op = group(table("?x ex:foo ?foo"),
+				new VarExprList(Collections.singletonList(x)),
+				AggregatorFactory.createGroupConcat(false, new ExprVar(foo), " ", null));
+		assertTrue(op instanceof OpGroup);
+	}
+
+	public void testSampleIsNotTranslated() {
+		Op op = group(table("?x ex:foo ?foo"), new VarExprList(),
+				AggregatorFactory.createSample(false, new ExprVar(foo)));
+		assertTrue(op instanceof OpGroup);
+	}
+
+	public void testGroupByExpressionIsNotTranslated() {
+		VarExprList groupVars = new VarExprList();
+		groupVars.add(Var.alloc("y"), new ExprVar(foo));
+		Op op = group(table("?x ex:foo ?foo"), groupVars,
+				AggregatorFactory.createCount(false));
+		assertTrue(op instanceof OpGroup);
+	}
+}
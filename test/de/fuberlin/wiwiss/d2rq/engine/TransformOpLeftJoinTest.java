@@ -0,0 +1,72 @@
+package de.fuberlin.wiwiss.d2rq.engine;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.graph.test.NodeCreateUtils;
+import com.hp.hpl.jena.sparql.algebra.Op;
+import com.hp.hpl.jena.sparql.algebra.Transformer;
+import com.hp.hpl.jena.sparql.algebra.op.OpLeftJoin;
+import com.hp.hpl.jena.sparql.core.Var;
+import com.hp.hpl.jena.sparql.expr.E_Bound;
+import com.hp.hpl.jena.sparql.expr.ExprVar;
+
+import de.fuberlin.wiwiss.d2rq.algebra.LeftJoinRelation;
+import de.fuberlin.wiwiss.d2rq.algebra.NodeRelation;
+import de.fuberlin.wiwiss.d2rq.algebra.RelationName;
+import de.fuberlin.wiwiss.d2rq.algebra.TripleRelation;
+
+public class TransformOpLeftJoinTest extends TestCase {
+	private final static Var x = Var.alloc("x");
+	private final static Var foo = Var.alloc("foo");
+
+	private Collection<TripleRelation> bridges;
+
+	public void setUp() {
+		bridges = MapFixture.loadPropertyBridges("engine/simple.n3");
+	}
+
+	private Op table(String triple) {
+		List<Triple> pattern = Collections.singletonList(
+				NodeCreateUtils.createTriple(MapFixture.prefixes(), triple));
+		List<NodeRelation> tables = new GraphPatternTranslator(pattern,
+				bridges, true).translate();
+		return OpUnionTableSQL.create(tables);
+	}
+
+	private Op transform(Op op) {
+		return Transformer.transform(new TransformOpLeftJoin(), op);
+	}
+
+	public void testOptionalIsTranslated() {
+		Op op = transform(OpLeftJoin.create(
+				table("?x rdf:type ex:Class1"), table("?x ex:foo ?foo"), (ExprVar) null));
+		assertTrue(op instanceof OpLeftJoinTableSQL);
+		OpLeftJoinTableSQL leftJoin = (OpLeftJoinTableSQL) op;
+		assertEquals(Collections.singleton(foo), leftJoin.optionalVars());
+		assertTrue(leftJoin.table().variables().contains(x));
+		assertTrue(leftJoin.table().variables().contains(foo));
+		assertTrue(leftJoin.table().baseRelation() instanceof LeftJoinRelation);
+	}
+
+	public void testRightTablesAreRenamed() {
+		Op op = transform(OpLeftJoin.create(
+				table("?x rdf:type ex:Class1"), table("?x ex:foo ?foo"), (ExprVar) null));
+		LeftJoinRelation relation = (LeftJoinRelation)
+				((OpLeftJoinTableSQL) op).table().baseRelation();
+		assertEquals(Collections.singleton(new RelationName(null, "table1")),
+				relation.left().tables());
+		assertFalse(relation.right().tables().contains(new RelationName(null, "table1")));
+	}
+
+	public void testOptionalWithFilterIsNotTranslated() {
+		Op op = transform(OpLeftJoin.create(
+				table("?x rdf:type ex:Class1"), table("?x ex:foo ?foo"),
+				new E_Bound(new ExprVar(foo))));
+		assertTrue(op instanceof OpLeftJoin);
+	}
+}
@@ -0,0 +1,88 @@
+package de.fuberlin.wiwiss.d2rq.engine;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.graph.test.NodeCreateUtils;
+import com.hp.hpl.jena.sparql.algebra.Op;
+import com.hp.hpl.jena.sparql.algebra.Transformer;
+import com.hp.hpl.jena.sparql.algebra.op.OpBGP;
+import com.hp.hpl.jena.sparql.algebra.op.OpMinus;
+import com.hp.hpl.jena.sparql.algebra.op.OpNull;
+import com.hp.hpl.jena.sparql.core.BasicPattern;
+
+import de.fuberlin.wiwiss.d2rq.algebra.NodeRelation;
+import de.fuberlin.wiwiss.d2rq.algebra.TripleRelation;
+import de.fuberlin.wiwiss.d2rq.expr.Exists;
+import de.fuberlin.wiwiss.d2rq.expr.Expression;
+import de.fuberlin.wiwiss.d2rq.expr.Negation;
+
+public class TransformOpMinusTest extends TestCase {
+	private Collection<TripleRelation> bridges;
+
+	public void setUp() {
+		bridges = MapFixture.loadPropertyBridges("engine/simple.n3");
+	}
+
+	private Triple triple(String triple) {
+		return NodeCreateUtils.createTriple(MapFixture.prefixes(), triple);
+	}
+
+	private Op table(String triple) {
+		List<Triple> pattern = Collections.singletonList(triple(triple));
+		List<NodeRelation> tables = new GraphPatternTranslator(pattern,
+				bridges, true).translate();
+		return OpUnionTableSQL.create(tables);
+	}
+
+	private Op transform(Op op) {
+		return Transformer.transform(new TransformOpMinus(), op);
+	}
+
+	private NodeRelation singleTable(Op op) {
+		assertTrue(op instanceof OpUnionTableSQL);
+		assertEquals(1, ((OpUnionTableSQL) op).tableOps().size());
+		return ((OpUnionTableSQL) op).tableOps().get(0).table();
+	}
+
+	public void testMinusBecomesNotExists() {
+		Op op = transform(OpMinus.create(
+				table("?x rdf:type ex:Class1"), table("?x ex:foo ?foo")));
+		Expression condition = singleTable(op).baseRelation().condition();
+		assertTrue(condition instanceof Negation);
+		assertTrue(condition.toString().contains("Exists("));
+	}
+
+	public void testMinusWithoutSharedVariablesIsDropped() {
+		Op left = table("?x rdf:type ex:Class1");
+		assertEquals(left, transform(OpMinus.create(left, table("?y ex:foo ?foo"))));
+	}
+
+	public void testMinusOfIncompatibleNodesIsDropped() {
+		Op left = table("?x rdf:type ex:Class1");
+		assertEquals(singleTable(left).baseRelation(),
+				singleTable(transform(OpMinus.create(left, table("?y ex:foo ?x")))).baseRelation());
+	}
+
+	public void testMinusOfEmptyPatternIsDropped() {
+		Op left = table("?x rdf:type ex:Class1");
+		assertEquals(left, transform(OpMinus.create(left, OpNull.create())));
+	}
+
+	public void testUntranslatedRightSideIsKept() {
+		Op right = new OpBGP(BasicPattern.wrap(Collections.singletonList(triple("?x ex:foo ?foo"))));
+		Op op = transform(OpMinus.create(table("?x rdf:type ex:Class1"), right));
+		assertTrue(op instanceof OpMinus);
+	}
+
+	public void testExistsIsRenderedWithDistinctTableNames() {
+		NodeRelation left = singleTable(table("?x rdf:type ex:Class1"));
+		NodeRelation right = singleTable(table("?x ex:foo ?foo"));
+		Expression exists = Exists.create(left, right);
+		assertTrue(exists.toString().contains("T1_table1"));
+	}
+}
@@ -0,0 +1,91 @@
+package de.fuberlin.wiwiss.d2rq.engine;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.graph.test.NodeCreateUtils;
+import com.hp.hpl.jena.query.Query;
+import com.hp.hpl.jena.query.SortCondition;
+import com.hp.hpl.jena.sparql.algebra.Op;
+import com.hp.hpl.jena.sparql.algebra.Transformer;
+import com.hp.hpl.jena.sparql.algebra.op.OpOrder;
+import com.hp.hpl.jena.sparql.algebra.op.OpSlice;
+import com.hp.hpl.jena.sparql.core.Var;
+
+import de.fuberlin.wiwiss.d2rq.algebra.NodeRelation;
+import de.fuberlin.wiwiss.d2rq.algebra.OrderSpec;
+import de.fuberlin.wiwiss.d2rq.algebra.Relation;
+import de.fuberlin.wiwiss.d2rq.expr.AttributeExpr;
+import de.fuberlin.wiwiss.d2rq.sql.SQL;
+
+public class TransformOpOrderTest extends TestCase {
+	private final static Var x = Var.alloc("x");
+	private final static Var foo = Var.alloc("foo");
+	private final static Var bar = Var.alloc("bar");
+
+	private Op table() {
+		List<Triple> pattern = Collections.singletonList(
+				NodeCreateUtils.createTriple(MapFixture.prefixes(), "?x ex:foo ?foo"));
+		List<NodeRelation> tables = new GraphPatternTranslator(pattern, 
+				MapFixture.loadPropertyBridges("engine/simple.n3"), true).translate();
+		return OpUnionTableSQL.create(tables);
+	}
+
+	private Op order(Op op, SortCondition... conditions) {
+		return new OpOrder(op, Arrays.asList(conditions));
+	}
+
+	private Op transform(Op op) {
+		Op result = Transformer.transform(new TransformOpOrder(), op);
+		return Transformer.transform(new TransformOpSlice(), result);
+	}
+
+	private Relation relationOf(OpOrderedTableSQL op) {
+		return op.orderedOp().tableOps().get(0).table().baseRelation();
+	}
+
+	public void testOrderByColumnIsPushedDown() {
+		Op op = transform(order(table(), new SortCondition(foo, Query.ORDER_DESCENDING)));
+		assertTrue(op instanceof OpOrderedTableSQL);
+		assertEquals(Collections.singletonList(new OrderSpec(
+				new AttributeExpr(SQL.parseAttribute("table1.foo")), false)),
+				relationOf((OpOrderedTableSQL) op).orderSpecs());
+	}
+
+	public void testUnboundVariableIsIgnored() {
+		Op op = transform(order(table(), new SortCondition(bar, Query.ORDER_DEFAULT),
+				new SortCondition(foo, Query.ORDER_ASCENDING)));
+		assertTrue(op instanceof OpOrderedTableSQL);
+		assertEquals(1, relationOf((OpOrderedTableSQL) op).orderSpecs().size());
+	}
+
+	public void testOrderByURIPatternIsNotPushedDown() {
+		assertTrue(transform(order(table(), new SortCondition(x, Query.ORDER_DEFAULT))) instanceof OpOrder);
+	}
+
+	public void testTopN() {
+		Op op = transform(new OpSlice(order(table(), 
+				new SortCondition(foo, Query.ORDER_DEFAULT)), 10, 5));
+		OpOrderedTableSQL ordered = (OpOrderedTableSQL) ((OpSlice) op).getSubOp();
+		assertEquals(15, relationOf(ordered).limit());
+		assertEquals(1, relationOf(ordered).orderSpecs().size());
+	}
+
+	public void testEqualityIncludesSortConditions() {
+		Op table = table();
+		OpOrderedTableSQL op = (OpOrderedTableSQL) transform(
+				order(table, new SortCondition(foo, Query.ORDER_ASCENDING)));
+		OpOrderedTableSQL same = new OpOrderedTableSQL((OpOrder) order(table,
+				new SortCondition(foo, Query.ORDER_ASCENDING)), op.orderedOp());
+		OpOrderedTableSQL different = new OpOrderedTableSQL((OpOrder) order(table,
+				new SortCondition(bar, Query.ORDER_DEFAULT),
+				new SortCondition(foo, Query.ORDER_ASCENDING)), op.orderedOp());
+		assertEquals(op, same);
+		assertEquals(op.hashCode(), same.hashCode());
+		assertFalse(op.equals(different));
+	}
+}
@@ -0,0 +1,130 @@
+package de.fuberlin.wiwiss.d2rq.engine;
+
+import junit.framework.TestCase;
+
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.query.QueryFactory;
+import com.hp.hpl.jena.sparql.algebra.Algebra;
+import com.hp.hpl.jena.sparql.algebra.Op;
+import com.hp.hpl.jena.sparql.algebra.Transformer;
+import com.hp.hpl.jena.sparql.algebra.op.OpPath;
+import com.hp.hpl.jena.sparql.core.Var;
+
+import de.fuberlin.wiwiss.d2rq.algebra.TripleRelationIndex;
+import de.fuberlin.wiwiss.d2rq.sql.DummyDB;
+import de.fuberlin.wiwiss.d2rq.sql.vendor.Vendor;
+
+public class TransformOpPathTest extends TestCase {
+	private final static Node emp1 = Node.createURI("http://example.org/emp/1");
+	private final static Node emp2 = Node.createURI("http://example.org/emp/2");
+	private final static Node part1 = Node.createURI("http://example.org/part/1");
+	private final static Var x = Var.alloc("x");
+	private final static Var y = Var.alloc("y");
+
+	private TripleRelationIndex index(Vendor vendor) {
+		return new TripleRelationIndex(
+				MapFixture.loadPropertyBridges("engine/hierarchy.n3", new DummyDB(vendor)));
+	}
+
+	private Op transform(String pattern, Vendor vendor) {
+		Op op = Algebra.compile(QueryFactory.create(
+				"PREFIX ex: <http://example.org/> SELECT * { " + pattern + " }"));
+		return Transformer.transform(new TransformOpPath(index(vendor)), op);
+	}
+
+	private OpPathTableSQL path(String pattern) {
+		Op op = transform(pattern, Vendor.PostgreSQL);
+		assertTrue(op instanceof OpPathTableSQL);
+		return (OpPathTableSQL) op;
+	}
+
+	public void testOneOrMoreIsTranslated() {
+		assertTrue(transform("?x ex:boss+ ?y", Vendor.PostgreSQL) instanceof OpPathTableSQL);
+	}
+
+	public void testZeroOrMoreIsTranslated() {
+		assertTrue(transform("?x ex:boss* ?y", Vendor.PostgreSQL) instanceof OpPathTableSQL);
+	}
+
+	public void testInverseIsTranslated() {
+		assertTrue(transform("?x ^ex:boss+ ?y", Vendor.PostgreSQL) instanceof OpPathTableSQL);
+		assertTrue(transform("?x ^ex:boss* ?y", Vendor.PostgreSQL) instanceof OpPathTableSQL);
+	}
+
+	public void testPathWithoutRecursiveQueriesIsNotTranslated() {
+		assertTrue(transform("?x ex:boss+ ?y", Vendor.SQL92) instanceof OpPath);
+		assertTrue(transform("?x ex:boss+ ?y", Vendor.HSQLDB) instanceof OpPath);
+	}
+
+	public void testSequenceIsNotTranslated() {
+		assertFalse(transform("?x ex:boss/ex:boss ?y", Vendor.PostgreSQL) instanceof OpPathTableSQL);
+	}
+
+	public void testPropertyOfSeveralBridgesIsNotTranslated() {
+		assertTrue(transform("?x ex:memberOf+ ?y", Vendor.PostgreSQL) instanceof OpPath);
+	}
+
+	public void testUnmappedPropertyIsNotTranslated() {
+		assertTrue(transform("?x ex:unknown+ ?y", Vendor.PostgreSQL) instanceof OpPath);
+	}
+
+	public void testObjectsOfOtherPatternAreNotTranslated() {
+		assertTrue(transform("?x ex:worksOn+ ?y", Vendor.PostgreSQL) instanceof OpPath);
+	}
+
+	public void testLiteralObjectsAreNotTranslated() {
+		assertTrue(transform("?x ex:bossID+ ?y", Vendor.PostgreSQL) instanceof OpPath);
+	}
+
+	public void testCycleToSameVariableIsNotTranslated() {
+		assertTrue(transform("?x ex:boss+ ?x", Vendor.PostgreSQL) instanceof OpPath);
+	}
+
+	public void testRecursionStartsAtSubject() {
+		String sql = path("?x ex:boss+ ?y").getSQLStatement(emp1, y);
+		assertTrue(sql.startsWith("WITH RECURSIVE \"closure\" (\"s1\", \"t1\") AS ("));
+		assertTrue(sql.contains("\"emp\".\"id\" = '1'"));
+		assertTrue(sql.contains(" UNION SELECT \"closure\".\"s1\", \"emp\".\"boss\" FROM \"closure\", \"emp\""));
+		assertTrue(sql.contains("\"closure\".\"t1\" = \"emp\".\"id\""));
+		assertTrue(sql.endsWith(" SELECT \"closure\".\"s1\", \"closure\".\"t1\" FROM \"closure\""));
+	}
+
+	public void testRecursionStartsAtObjectIfOnlyObjectIsBound() {
+		String sql = path("?x ex:boss+ ?y").getSQLStatement(x, emp1);
+		assertTrue(sql.contains("\"emp\".\"boss\" = '1'"));
+		assertTrue(sql.contains(" UNION SELECT \"emp\".\"id\", \"closure\".\"t1\" FROM \"closure\", \"emp\""));
+		assertTrue(sql.contains("\"closure\".\"s1\" = \"emp\".\"boss\""));
+	}
+
+	public void testRecursionStartsAtSubjectIfBothAreBound() {
+		String sql = path("?x ex:boss+ ?y").getSQLStatement(emp1, emp2);
+		assertTrue(sql.contains("\"emp\".\"id\" = '1'"));
+		assertFalse(sql.contains("'2'"));
+	}
+
+	public void testNullableColumnsAreExcluded() {
+		String sql = path("?x ex:boss+ ?y").getSQLStatement(x, y);
+		assertTrue(sql.contains("\"emp\".\"boss\" IS NOT NULL"));
+	}
+
+	public void testJoinOfAliasedTableIsRepeatedInBothMembers() {
+		String sql = path("?x ex:partOf+ ?y").getSQLStatement(part1, y);
+		assertTrue(sql.contains("SELECT \"part\".\"id\", \"whole\".\"id\" FROM \"part\", \"part\" AS \"whole\""));
+		assertTrue(sql.contains("FROM \"closure\", \"part\", \"part\" AS \"whole\""));
+		assertTrue(sql.contains("\"closure\".\"t1\" = \"part\".\"id\""));
+	}
+
+	public void testStartThatCannotBeProducedHasNoStatement() {
+		assertNull(path("?x ex:boss+ ?y").getSQLStatement(part1, y));
+	}
+
+	public void testStatement() {
+		assertEquals("WITH RECURSIVE \"closure\" (\"s1\", \"t1\") AS (" +
+				"SELECT \"emp\".\"id\", \"emp\".\"boss\" FROM \"emp\" " +
+				"WHERE (\"emp\".\"boss\" IS NOT NULL AND \"emp\".\"id\" = '1' AND \"emp\".\"id\" IS NOT NULL) " +
+				"UNION SELECT \"closure\".\"s1\", \"emp\".\"boss\" FROM \"closure\", \"emp\" " +
+				"WHERE (\"closure\".\"t1\" = \"emp\".\"id\" AND \"emp\".\"boss\" IS NOT NULL AND \"emp\".\"id\" IS NOT NULL)) " +
+				"SELECT \"closure\".\"s1\", \"closure\".\"t1\" FROM \"closure\"",
+				path("?x ex:boss+ ?y").getSQLStatement(emp1, y));
+	}
+}
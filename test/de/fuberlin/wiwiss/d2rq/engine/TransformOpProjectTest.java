@@ -0,0 +1,132 @@
+package de.fuberlin.wiwiss.d2rq.engine;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import com.hp.hpl.jena.query.Query;
+import com.hp.hpl.jena.query.SortCondition;
+import com.hp.hpl.jena.sparql.algebra.Op;
+import com.hp.hpl.jena.sparql.algebra.Transformer;
+import com.hp.hpl.jena.sparql.algebra.op.Op1;
+import com.hp.hpl.jena.sparql.algebra.op.OpOrder;
+import com.hp.hpl.jena.sparql.algebra.op.OpProject;
+import com.hp.hpl.jena.sparql.core.Var;
+import com.hp.hpl.jena.sparql.expr.ExprVar;
+
+import de.fuberlin.wiwiss.d2rq.algebra.AliasMap;
+import de.fuberlin.wiwiss.d2rq.algebra.Attribute;
+import de.fuberlin.wiwiss.d2rq.algebra.Join;
+import de.fuberlin.wiwiss.d2rq.algebra.NodeRelation;
+import de.fuberlin.wiwiss.d2rq.algebra.OrderSpec;
+import de.fuberlin.wiwiss.d2rq.algebra.ProjectionSpec;
+import de.fuberlin.wiwiss.d2rq.algebra.Relation;
+import de.fuberlin.wiwiss.d2rq.algebra.RelationImpl;
+import de.fuberlin.wiwiss.d2rq.algebra.RelationName;
+import de.fuberlin.wiwiss.d2rq.expr.Expression;
+import de.fuberlin.wiwiss.d2rq.nodes.NodeMaker;
+import de.fuberlin.wiwiss.d2rq.nodes.TypedNodeMaker;
+import de.fuberlin.wiwiss.d2rq.sql.DummyDB;
+import de.fuberlin.wiwiss.d2rq.values.Column;
+
+public class TransformOpProjectTest extends TestCase {
+	private final static Var x = Var.alloc("x");
+	private final static Var y = Var.alloc("y");
+	private final static RelationName table = new RelationName(null, "table");
+	private final static RelationName other = new RelationName(null, "other");
+	private final static Attribute foo = new Attribute(table, "foo");
+	private final static Attribute bar = new Attribute(table, "bar");
+	private final static Attribute ref = new Attribute(table, "ref");
+	private final static Attribute id = new Attribute(other, "id");
+
+	private DummyDB db;
+
+	public void setUp() {
+		db = new DummyDB();
+	}
+
+	private NodeMaker column(Attribute column) {
+		return new TypedNodeMaker(TypedNodeMaker.PLAIN_LITERAL, new Column(column), false);
+	}
+
+	private Op table(Attribute yColumn, Set<Join> joins, boolean isUnique) {
+		Map<Var,NodeMaker> nodeMakers = new HashMap<Var,NodeMaker>();
+		nodeMakers.put(x, column(foo));
+		nodeMakers.put(y, column(yColumn));
+		Set<ProjectionSpec> projections = new HashSet<ProjectionSpec>();
+		projections.add(foo);
+		projections.add(yColumn);
+		Relation relation = new RelationImpl(db, AliasMap.NO_ALIASES,
+				Expression.TRUE, Expression.TRUE, joins,
+				projections, isUnique, OrderSpec.NONE, Relation.NO_LIMIT, Relation.NO_LIMIT);
+		return OpUnionTableSQL.create(Collections.singleton(
+				new NodeRelation(relation, nodeMakers)));
+	}
+
+	private Op table(boolean isUnique) {
+		return table(bar, Collections.<Join>emptySet(), isUnique);
+	}
+
+	private Op transform(Op op) {
+		return Transformer.transform(new TransformOpProject(), op);
+	}
+
+	private Relation relationOf(Op op) {
+		while (op instanceof Op1) {
+			op = ((Op1) op).getSubOp();
+		}
+		return ((OpUnionTableSQL) op).tableOps().get(0).table().baseRelation();
+	}
+
+	public void testUniqueRelationIsNarrowed() {
+		Op op = transform(new OpProject(table(true), Arrays.asList(x)));
+		assertEquals(Collections.singleton(foo), relationOf(op).projections());
+		assertTrue(op instanceof OpProject);
+	}
+
+	public void testNonUniqueRelationWithoutKeyIsUnchanged() {
+		Op op = transform(new OpProject(table(false), Arrays.asList(x)));
+		assertEquals(2, relationOf(op).projections().size());
+	}
+
+	public void testNonUniqueRelationKeepsPrimaryKey() {
+		db.setPrimaryKey(table, Collections.singletonList(foo));
+		Op op = transform(new OpProject(table(false), Arrays.asList(y)));
+		assertEquals(new HashSet<ProjectionSpec>(Arrays.asList(foo, bar)),
+				relationOf(op).projections());
+		db.setPrimaryKey(table, Collections.singletonList(bar));
+		op = transform(new OpProject(table(false), Arrays.asList(y)));
+		assertEquals(Collections.singleton(bar), relationOf(op).projections());
+	}
+
+	public void testOrderVariablesAreKept() {
+		Op op = transform(new OpProject(new OpOrder(table(true),
+				Collections.singletonList(new SortCondition(new ExprVar(y), Query.ORDER_DEFAULT))),
+				Arrays.asList(x)));
+		assertEquals(2, relationOf(op).projections().size());
+		assertTrue(((OpProject) op).getSubOp() instanceof OpOrder);
+	}
+
+	public void testJoinAlongForeignKeyIsRemoved() {
+		db.addForeignKey(new Join(ref, id, Join.DIRECTION_RIGHT));
+		Op op = transform(new OpProject(
+				table(id, Collections.singleton(new Join(ref, id, Join.DIRECTION_RIGHT)), true),
+				Arrays.asList(x)));
+		Relation relation = relationOf(op);
+		assertTrue(relation.joinConditions().isEmpty());
+		assertEquals(Collections.singleton(table), relation.tables());
+		assertEquals(Collections.singleton(foo), relation.projections());
+	}
+
+	public void testJoinWithoutForeignKeyIsKept() {
+		Op op = transform(new OpProject(
+				table(id, Collections.singleton(new Join(ref, id, Join.DIRECTION_RIGHT)), true),
+				Arrays.asList(x)));
+		assertEquals(1, relationOf(op).joinConditions().size());
+	}
+}
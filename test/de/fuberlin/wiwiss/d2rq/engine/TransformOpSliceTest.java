@@ -0,0 +1,81 @@
+package de.fuberlin.wiwiss.d2rq.engine;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.graph.test.NodeCreateUtils;
+import com.hp.hpl.jena.query.Query;
+import com.hp.hpl.jena.sparql.algebra.Op;
+import com.hp.hpl.jena.sparql.algebra.Transformer;
+import com.hp.hpl.jena.sparql.algebra.op.Op1;
+import com.hp.hpl.jena.sparql.algebra.op.OpDistinct;
+import com.hp.hpl.jena.sparql.algebra.op.OpProject;
+import com.hp.hpl.jena.sparql.algebra.op.OpSlice;
+import com.hp.hpl.jena.sparql.algebra.op.OpUnion;
+import com.hp.hpl.jena.sparql.core.Var;
+
+import de.fuberlin.wiwiss.d2rq.algebra.NodeRelation;
+import de.fuberlin.wiwiss.d2rq.algebra.Relation;
+
+public class TransformOpSliceTest extends TestCase {
+	private final static Var x = Var.alloc("x");
+
+	private Op table() {
+		List<Triple> pattern = Collections.singletonList(
+				NodeCreateUtils.createTriple(MapFixture.prefixes(), "?x rdf:type ex:Class1"));
+		List<NodeRelation> tables = new GraphPatternTranslator(pattern, 
+				MapFixture.loadPropertyBridges("engine/type-bridge.n3"), true).translate();
+		return OpUnionTableSQL.create(tables);
+	}
+
+	private Op transform(Op op) {
+		return Transformer.transform(new TransformOpSlice(), op);
+	}
+
+	private int limitOf(Op op) {
+		while (op instanceof Op1) {
+			op = ((Op1) op).getSubOp();
+		}
+		return ((OpUnionTableSQL) op).tableOps().get(0).table().baseRelation().limit();
+	}
+
+	public void testNoLimitWithoutSlice() {
+		assertEquals(Relation.NO_LIMIT, limitOf(transform(table())));
+	}
+
+	public void testLimitIsPushedDown() {
+		Op op = transform(new OpSlice(table(), Query.NOLIMIT, 10));
+		assertTrue(op instanceof OpSlice);
+		assertEquals(10, limitOf(op));
+	}
+
+	public void testOffsetIsAddedToLimit() {
+		assertEquals(15, limitOf(transform(new OpSlice(table(), 5, 10))));
+	}
+
+	public void testOffsetOnlyIsNotPushedDown() {
+		assertEquals(Relation.NO_LIMIT, limitOf(transform(new OpSlice(table(), 5, Query.NOLIMIT))));
+	}
+
+	public void testLimitIsPushedThroughProject() {
+		Op op = new OpSlice(new OpProject(table(), 
+				new ArrayList<Var>(Collections.singleton(x))), Query.NOLIMIT, 10);
+		assertEquals(10, limitOf(transform(op)));
+	}
+
+	public void testLimitIsPushedIntoUnionBranches() {
+		Op op = transform(new OpSlice(new OpUnion(table(), table()), Query.NOLIMIT, 10));
+		OpUnion union = (OpUnion) ((OpSlice) op).getSubOp();
+		assertEquals(10, limitOf(union.getLeft()));
+		assertEquals(10, limitOf(union.getRight()));
+	}
+
+	public void testLimitIsNotPushedThroughDistinct() {
+		Op op = new OpSlice(new OpDistinct(table()), Query.NOLIMIT, 10);
+		assertEquals(Relation.NO_LIMIT, limitOf(transform(op)));
+	}
+}
@@ -0,0 +1,60 @@
+package de.fuberlin.wiwiss.d2rq.engine;
+
+import junit.framework.TestCase;
+
+import com.hp.hpl.jena.query.QueryFactory;
+import com.hp.hpl.jena.query.Syntax;
+import com.hp.hpl.jena.sparql.algebra.Algebra;
+import com.hp.hpl.jena.sparql.algebra.Op;
+import com.hp.hpl.jena.sparql.algebra.Transformer;
+import com.hp.hpl.jena.sparql.sse.SSE;
+
+public class TransformOpTableTest extends TestCase {
+
+	private Op transform(String query) {
+		Op op = Algebra.compile(QueryFactory.create(query, Syntax.syntaxARQ));
+		return Transformer.transform(new TransformOpTable(), op);
+	}
+
+	public void testBindingsBecomeFilter() {
+		assertEquals(SSE.parseOp("(filter (in ?s <http://example.org/a> <http://example.org/b>) " +
+				"(bgp (triple ?s ?p ?o)))"),
+				transform("SELECT * { ?s ?p ?o } " +
+						"BINDINGS ?s { (<http://example.org/a>) (<http://example.org/b>) }"));
+	}
+
+	public void testBindingsAreAddedToExistingFilter() {
+		assertEquals(SSE.parseOp("(filter (exprlist (isLiteral ?o) (in ?s <http://example.org/a>)) " +
+				"(bgp (triple ?s ?p ?o)))"),
+				transform("SELECT * { ?s ?p ?o FILTER isLiteral(?o) } " +
+						"BINDINGS ?s { (<http://example.org/a>) }"));
+	}
+
+	public void testLiteralBindingsAreKeptAsJoin() {
+		Op op = transform("SELECT * { ?s ?p ?o } BINDINGS ?o { (1) (2) }");
+		assertEquals("join", op.getName());
+	}
+
+	public void testDuplicateBindingsAreKeptAsJoin() {
+		Op op = transform("SELECT * { ?s ?p ?o } " +
+				"BINDINGS ?s { (<http://example.org/a>) (<http://example.org/a>) }");
+		assertEquals("join", op.getName());
+	}
+
+	public void testUndefBindingsAreKeptAsJoin() {
+		Op op = transform("SELECT * { ?s ?p ?o } " +
+				"BINDINGS ?s { (<http://example.org/a>) (UNDEF) }");
+		assertEquals("join", op.getName());
+	}
+
+	public void testBindingsOfUnboundVariableAreKeptAsJoin() {
+		Op op = transform("SELECT * { ?s ?p ?o } BINDINGS ?x { (<http://example.org/a>) }");
+		assertEquals("join", op.getName());
+	}
+
+	public void testBindingsOfSeveralVariablesAreKeptAsJoin() {
+		Op op = transform("SELECT * { ?s ?p ?o } " +
+				"BINDINGS ?s ?o { (<http://example.org/a> <http://example.org/b>) }");
+		assertEquals("join", op.getName());
+	}
+}
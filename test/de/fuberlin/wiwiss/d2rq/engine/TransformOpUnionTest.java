@@ -0,0 +1,50 @@
+package de.fuberlin.wiwiss.d2rq.engine;
+
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.graph.test.NodeCreateUtils;
+import com.hp.hpl.jena.sparql.algebra.Op;
+import com.hp.hpl.jena.sparql.algebra.Transformer;
+import com.hp.hpl.jena.sparql.algebra.op.OpTable;
+import com.hp.hpl.jena.sparql.algebra.op.OpUnion;
+
+import de.fuberlin.wiwiss.d2rq.algebra.NodeRelation;
+
+public class TransformOpUnionTest extends TestCase {
+
+	private Op table(String pattern) {
+		List<Triple> triples = Collections.singletonList(
+				NodeCreateUtils.createTriple(MapFixture.prefixes(), pattern));
+		List<NodeRelation> tables = new GraphPatternTranslator(triples, 
+				MapFixture.loadPropertyBridges("engine/type-bridge.n3"), true).translate();
+		return OpUnionTableSQL.create(tables);
+	}
+
+	private Op transform(Op op) {
+		return Transformer.transform(new TransformOpUnion(), op);
+	}
+
+	public void testUnionOfTablesBecomesOneOp() {
+		Op op = transform(new OpUnion(
+				table("?x rdf:type ex:Class1"), table("?y rdf:type ex:Class1")));
+		assertTrue(op instanceof OpUnionTableSQL);
+		assertEquals(2, ((OpUnionTableSQL) op).tableOps().size());
+	}
+
+	public void testNestedUnions() {
+		Op op = transform(new OpUnion(
+				new OpUnion(table("?x rdf:type ex:Class1"), table("?y rdf:type ex:Class1")),
+				table("?z rdf:type ex:Class1")));
+		assertTrue(op instanceof OpUnionTableSQL);
+		assertEquals(3, ((OpUnionTableSQL) op).tableOps().size());
+	}
+
+	public void testOtherOpsAreKept() {
+		Op op = transform(new OpUnion(table("?x rdf:type ex:Class1"), OpTable.unit()));
+		assertTrue(op instanceof OpUnion);
+	}
+}
@@ -0,0 +1,111 @@
+package de.fuberlin.wiwiss.d2rq.engine;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.graph.test.NodeCreateUtils;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.rdf.model.Resource;
+import com.hp.hpl.jena.vocabulary.RDF;
+
+import de.fuberlin.wiwiss.d2rq.algebra.NodeRelation;
+import de.fuberlin.wiwiss.d2rq.algebra.TripleRelationIndex;
+import de.fuberlin.wiwiss.d2rq.map.Configuration;
+import de.fuberlin.wiwiss.d2rq.map.Mapping;
+import de.fuberlin.wiwiss.d2rq.parser.MapParser;
+import de.fuberlin.wiwiss.d2rq.vocab.D2RQ;
+import de.fuberlin.wiwiss.d2rq.vocab.Test;
+
+/**
+ * Measures how long it takes to translate basic graph patterns
+ * against synthetic mappings of growing size. Not part of the test
+ * suite; run it from the command line.
+ *
+ * Each mapping has a number of tables with one class map each,
+ * and the same number of property bridges in each class map.
+ * Property bridge <em>i</em> of every class map uses the property
+ * <code>ex:p<em>i</em></code>, so patterns with a constant
+ * predicate still match one property bridge per table.
+ * Every fifth property bridge links to the next table.
+ */
+public class TranslationBenchmark {
+	private final static String[] PATTERNS = {
+		"?s ex:p1 ?o",
+		"?s ex:p1 ?o . ?s ex:p2 ?o2",
+		"?s ?p ?o . ?s ex:p1 ?o2",
+		"?s ?p ?o . ?o ?p2 ?o2",
+		"?s ?p ?o . ?s ?p2 ?o2",
+	};
+	private final static int[] TABLES = {5, 20, 50};
+	private final static int BRIDGES_PER_TABLE = 10;
+	private final static int MIN_RUNS = 5;
+	private final static long MIN_MILLIS = 500;
+
+	public static void main(String[] args) {
+		int maxJoinCombinations = args.length > 0
+				? Integer.parseInt(args[0]) : new Configuration().getMaxJoinCombinations();
+		System.out.println("d2rq:maxJoinCombinations = " + maxJoinCombinations);
+		System.out.println("tables\tbridges\tms/translation\tresults\tpattern");
+		for (int tables: TABLES) {
+			TripleRelationIndex index =
+				createMapping(tables, BRIDGES_PER_TABLE).compiledPropertyBridgeIndex();
+			for (String pattern: PATTERNS) {
+				run(index, pattern, maxJoinCombinations);
+			}
+		}
+	}
+
+	private static void run(TripleRelationIndex index, String pattern, int maxJoinCombinations) {
+		List<Triple> triples = triples(pattern);
+		List<NodeRelation> results = null;
+		int runs = 0;
+		long start = System.currentTimeMillis();
+		while (runs < MIN_RUNS || System.currentTimeMillis() - start < MIN_MILLIS) {
+			// The dummy database has no keys, which the reuse of aliases
+			// under d2rq:useAllOptimizations would look up
+			results = new GraphPatternTranslator(triples, index, false, maxJoinCombinations).translate();
+			runs++;
+		}
+		double millis = (double) (System.currentTimeMillis() - start) / runs;
+		System.out.println(index.size() / BRIDGES_PER_TABLE + "\t" + index.size() + "\t" +
+				String.format("%.3f", millis) + "\t" +
+				(results == null ? "gave up" : Integer.toString(results.size())) + "\t" +
+				pattern);
+	}
+
+	private static Mapping createMapping(int tables, int bridgesPerTable) {
+		Model m = ModelFactory.createDefaultModel();
+		Resource db = m.createResource(Test.DummyDatabase.getURI());
+		db.addProperty(RDF.type, D2RQ.Database);
+		for (int t = 0; t < tables; t++) {
+			Resource classMap = m.createResource("#t" + t);
+			classMap.addProperty(RDF.type, D2RQ.ClassMap);
+			classMap.addProperty(D2RQ.dataStorage, db);
+			classMap.addProperty(D2RQ.uriPattern, "http://example.org/t" + t + "/@@t" + t + ".id@@");
+			for (int p = 0; p < bridgesPerTable; p++) {
+				Resource bridge = m.createResource("#t" + t + "_p" + p);
+				bridge.addProperty(RDF.type, D2RQ.PropertyBridge);
+				bridge.addProperty(D2RQ.belongsToClassMap, classMap);
+				bridge.addProperty(D2RQ.property, m.createResource("http://example.org/p" + p));
+				if (p % 5 == 0) {
+					int target = (t + 1) % tables;
+					bridge.addProperty(D2RQ.uriPattern,
+							"http://example.org/t" + target + "/@@t" + t + ".ref" + p + "@@");
+				} else {
+					bridge.addProperty(D2RQ.column, "t" + t + ".c" + p);
+				}
+			}
+		}
+		return new MapParser(m, "http://example.org/benchmark#").parse();
+	}
+
+	private static List<Triple> triples(String pattern) {
+		List<Triple> results = new ArrayList<Triple>();
+		for (String part: pattern.split("\\s+\\.\\s*")) {
+			results.add(NodeCreateUtils.createTriple(MapFixture.prefixes(), part));
+		}
+		return results;
+	}
+}
@@ -12,6 +12,10 @@ public class AllTests {
 		suite.addTestSuite(SQLExpressionTest.class);
 		suite.addTestSuite(ConcatenationTest.class);
 		suite.addTestSuite(ExpressionTest.class);
+		suite.addTestSuite(ExistsTest.class);
+		suite.addTestSuite(InTest.class);
+		suite.addTestSuite(LikeTest.class);
+		suite.addTestSuite(RegexMatchTest.class);
 		//$JUnit-END$
 		return suite;
 	}
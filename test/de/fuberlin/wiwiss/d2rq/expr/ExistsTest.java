@@ -0,0 +1,109 @@
+package de.fuberlin.wiwiss.d2rq.expr;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import com.hp.hpl.jena.sparql.core.Var;
+
+import de.fuberlin.wiwiss.d2rq.algebra.AliasMap;
+import de.fuberlin.wiwiss.d2rq.algebra.Attribute;
+import de.fuberlin.wiwiss.d2rq.algebra.Join;
+import de.fuberlin.wiwiss.d2rq.algebra.NodeRelation;
+import de.fuberlin.wiwiss.d2rq.algebra.OrderSpec;
+import de.fuberlin.wiwiss.d2rq.algebra.ProjectionSpec;
+import de.fuberlin.wiwiss.d2rq.algebra.Relation;
+import de.fuberlin.wiwiss.d2rq.algebra.RelationImpl;
+import de.fuberlin.wiwiss.d2rq.algebra.RelationName;
+import de.fuberlin.wiwiss.d2rq.nodes.NodeMaker;
+import de.fuberlin.wiwiss.d2rq.nodes.TypedNodeMaker;
+import de.fuberlin.wiwiss.d2rq.sql.DummyDB;
+import de.fuberlin.wiwiss.d2rq.values.Column;
+import de.fuberlin.wiwiss.d2rq.values.ValueDecorator;
+import de.fuberlin.wiwiss.d2rq.values.ValueDecorator.ValueConstraint;
+
+public class ExistsTest extends TestCase {
+	private final static Var x = Var.alloc("x");
+	private final static Var y = Var.alloc("y");
+	private final static RelationName people = new RelationName(null, "people");
+	private final static RelationName papers = new RelationName(null, "papers");
+	private final static Attribute peopleID = new Attribute(people, "id");
+	private final static Attribute author = new Attribute(papers, "author");
+	private final static Attribute title = new Attribute(papers, "title");
+
+	private DummyDB db;
+
+	public void setUp() {
+		db = new DummyDB();
+	}
+
+	private NodeMaker column(Attribute column) {
+		return new TypedNodeMaker(TypedNodeMaker.PLAIN_LITERAL, new Column(column), false);
+	}
+
+	private NodeRelation table(Map<Var,NodeMaker> nodeMakers) {
+		Set<ProjectionSpec> projections = new HashSet<ProjectionSpec>();
+		for (NodeMaker nodeMaker: nodeMakers.values()) {
+			projections.addAll(nodeMaker.projectionSpecs());
+		}
+		Relation relation = new RelationImpl(db, AliasMap.NO_ALIASES,
+				Expression.TRUE, Expression.TRUE, Collections.<Join>emptySet(),
+				projections, false, OrderSpec.NONE, Relation.NO_LIMIT, Relation.NO_LIMIT);
+		return new NodeRelation(relation, nodeMakers);
+	}
+
+	private NodeRelation table(Var var, NodeMaker nodeMaker) {
+		return table(Collections.singletonMap(var, nodeMaker));
+	}
+
+	private NodeRelation table(Var var1, NodeMaker nodeMaker1, Var var2, NodeMaker nodeMaker2) {
+		Map<Var,NodeMaker> nodeMakers = new HashMap<Var,NodeMaker>();
+		nodeMakers.put(var1, nodeMaker1);
+		nodeMakers.put(var2, nodeMaker2);
+		return table(nodeMakers);
+	}
+
+	public void testCorrelatedSubquery() {
+		db.setNullable(author, false);
+		Expression exists = Exists.create(table(x, column(peopleID)),
+				table(x, column(author), y, column(title)));
+		assertEquals(Collections.singleton(peopleID), exists.attributes());
+		assertEquals("EXISTS (SELECT 1 FROM \"papers\" WHERE " +
+				"(\"papers\".\"author\" = \"people\".\"id\" AND \"papers\".\"title\" IS NOT NULL))",
+				exists.toSQL(db, AliasMap.NO_ALIASES));
+	}
+
+	public void testSameTableIsAliased() {
+		db.setNullable(author, false);
+		Expression exists = Exists.create(table(x, column(author)), table(x, column(author)));
+		assertEquals(Collections.singleton(author), exists.attributes());
+		assertEquals("EXISTS (SELECT 1 FROM \"papers\" AS \"T1_papers\" WHERE " +
+				"\"T1_papers\".\"author\" = \"papers\".\"author\")",
+				exists.toSQL(db, AliasMap.NO_ALIASES));
+	}
+
+	public void testRenamingOnlyAffectsOuterAttributes() {
+		db.setNullable(author, false);
+		Expression exists = Exists.create(table(x, column(peopleID)), table(x, column(author)));
+		Expression renamed = exists.renameAttributes(AliasMap.create1(people, papers));
+		assertEquals(Collections.singleton(new Attribute(papers, "id")), renamed.attributes());
+		assertEquals("EXISTS (SELECT 1 FROM \"papers\" AS \"T1_papers\" WHERE " +
+				"\"T1_papers\".\"author\" = \"papers\".\"id\")",
+				renamed.toSQL(db, AliasMap.NO_ALIASES));
+	}
+
+	public void testIncompatibleNodesAreFalse() {
+		NodeMaker uri = new TypedNodeMaker(TypedNodeMaker.URI, new Column(peopleID), false);
+		assertEquals(Expression.FALSE, Exists.create(table(x, uri), table(x, column(author))));
+	}
+
+	public void testInexactNodeMakerIsNotConverted() {
+		NodeMaker decorated = new TypedNodeMaker(TypedNodeMaker.PLAIN_LITERAL,
+				new ValueDecorator(new Column(author), Collections.<ValueConstraint>emptyList()), false);
+		assertNull(Exists.create(table(x, column(peopleID)), table(x, decorated)));
+	}
+}
@@ -0,0 +1,62 @@
+package de.fuberlin.wiwiss.d2rq.expr;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+import de.fuberlin.wiwiss.d2rq.algebra.AliasMap;
+import de.fuberlin.wiwiss.d2rq.algebra.Attribute;
+import de.fuberlin.wiwiss.d2rq.sql.DummyDB;
+import de.fuberlin.wiwiss.d2rq.sql.vendor.Vendor;
+
+public class InTest extends TestCase {
+	private final static Attribute id = new Attribute(null, "people", "id");
+	private final static Attribute name = new Attribute(null, "people", "name");
+
+	public void testEmptyListIsFalse() {
+		assertEquals(Expression.FALSE, In.create(id, Collections.<String>emptyList()));
+	}
+
+	public void testSingleValueIsEquality() {
+		assertEquals(Equality.createAttributeValue(id, "1"), 
+				In.create(id, Collections.singletonList("1")));
+	}
+
+	public void testSQL() {
+		assertEquals("\"people\".\"id\" IN ('1', '2', '3')", 
+				In.create(id, Arrays.asList("1", "2", "3", "2")).toSQL(
+						new DummyDB(), AliasMap.NO_ALIASES));
+	}
+
+	public void testLongListIsSplit() {
+		List<String> values = new ArrayList<String>();
+		for (int i = 0; i < 2001; i++) {
+			values.add(Integer.toString(i));
+		}
+		String sql = In.create(id, values).toSQL(new DummyDB(Vendor.Oracle), AliasMap.NO_ALIASES);
+		assertTrue(sql.startsWith("(\"people\".\"id\" IN ('0', "));
+		assertTrue(sql.contains("'999') OR \"people\".\"id\" IN ('1000', "));
+		assertTrue(sql.endsWith("'1999') OR \"people\".\"id\" IN ('2000'))"));
+		assertEquals(1, In.create(id, values).toSQL(
+				new DummyDB(), AliasMap.NO_ALIASES).split(" IN ").length - 1);
+	}
+
+	public void testDisjunctionOfEqualitiesIsCombined() {
+		Expression disjunction = In.createDisjunction(Arrays.asList(
+				Equality.createAttributeValue(id, "1"),
+				Equality.createAttributeValue(name, "Alice"),
+				Equality.createAttributeValue(id, "2")));
+		assertEquals(Disjunction.create(Arrays.asList(
+				In.create(id, Arrays.asList("1", "2")),
+				Equality.createAttributeValue(name, "Alice"))), disjunction);
+	}
+
+	public void testOtherAlternativesAreKept() {
+		Expression other = new Negation(Equality.createAttributeValue(name, "Bob"));
+		assertEquals(Disjunction.create(Arrays.asList(other, Equality.createAttributeValue(id, "1"))),
+				In.createDisjunction(Arrays.asList(other, Equality.createAttributeValue(id, "1"))));
+		assertEquals(Expression.FALSE, In.createDisjunction(Arrays.asList(Expression.FALSE)));
+	}
+}
@@ -0,0 +1,60 @@
+package de.fuberlin.wiwiss.d2rq.expr;
+
+import junit.framework.TestCase;
+import de.fuberlin.wiwiss.d2rq.algebra.AliasMap;
+import de.fuberlin.wiwiss.d2rq.algebra.Attribute;
+import de.fuberlin.wiwiss.d2rq.sql.DummyDB;
+import de.fuberlin.wiwiss.d2rq.sql.vendor.Vendor;
+
+public class LikeTest extends TestCase {
+	private final static Expression name = new AttributeExpr(new Attribute(null, "people", "name"));
+
+	public void testEscape() {
+		assertEquals("abc", Like.escape("abc"));
+		assertEquals("100\\% a\\_b c\\\\d", Like.escape("100% a_b c\\d"));
+	}
+
+	public void testPattern() {
+		assertEquals("ab%", Like.pattern("ab", true, false));
+		assertEquals("%ab", Like.pattern("ab", false, true));
+		assertEquals("%ab%", Like.pattern("ab", false, false));
+		assertEquals("ab", Like.pattern("ab", true, true));
+		assertEquals("\\%%", Like.pattern("%", true, false));
+	}
+
+	public void testPatternForLiteralRegex() {
+		assertEquals("%abc%", Like.patternForRegex("abc"));
+		assertEquals("abc%", Like.patternForRegex("^abc"));
+		assertEquals("%abc", Like.patternForRegex("abc$"));
+		assertEquals("abc", Like.patternForRegex("^abc$"));
+		assertEquals("%50\\%%", Like.patternForRegex("50%"));
+		assertEquals("%", Like.patternForRegex(""));
+		assertEquals("", Like.patternForRegex("^$"));
+	}
+
+	public void testNoPatternForRegexWithSpecialCharacters() {
+		assertNull(Like.patternForRegex("a.c"));
+		assertNull(Like.patternForRegex("ab*"));
+		assertNull(Like.patternForRegex("a|b"));
+		assertNull(Like.patternForRegex("a\\.b"));
+		assertNull(Like.patternForRegex("a^b"));
+	}
+
+	public void testSQL() {
+		Like like = new Like(name, "ab\\%%");
+		assertEquals("\"people\".\"name\" LIKE 'ab\\%%' ESCAPE '\\'", 
+				like.toSQL(new DummyDB(), AliasMap.NO_ALIASES));
+	}
+
+	public void testMySQLIsCaseSensitive() {
+		Like like = new Like(name, "ab%");
+		assertEquals("`people`.`name` LIKE BINARY 'ab%' ESCAPE '\\\\'", 
+				like.toSQL(new DummyDB(Vendor.MySQL), AliasMap.NO_ALIASES));
+	}
+
+	public void testSQLServerEscapesBrackets() {
+		Like like = new Like(name, "[a]%");
+		assertEquals("\"people\".\"name\" LIKE '\\[a]%' COLLATE Latin1_General_BIN ESCAPE '\\'", 
+				like.toSQL(new DummyDB(Vendor.SQLServer), AliasMap.NO_ALIASES));
+	}
+}
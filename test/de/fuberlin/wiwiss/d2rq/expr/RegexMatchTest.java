@@ -0,0 +1,49 @@
+package de.fuberlin.wiwiss.d2rq.expr;
+
+import junit.framework.TestCase;
+import de.fuberlin.wiwiss.d2rq.algebra.AliasMap;
+import de.fuberlin.wiwiss.d2rq.algebra.Attribute;
+import de.fuberlin.wiwiss.d2rq.sql.DummyDB;
+import de.fuberlin.wiwiss.d2rq.sql.vendor.Vendor;
+
+public class RegexMatchTest extends TestCase {
+	private final static Expression name = new AttributeExpr(new Attribute(null, "people", "name"));
+
+	public void testToPOSIX() {
+		assertEquals("^(ab|cd)+[0-9]{2,3}$", RegexMatch.toPOSIX("^(ab|cd)+[0-9]{2,3}$"));
+		assertEquals("[^a.]", RegexMatch.toPOSIX("[^a.]"));
+	}
+
+	public void testDotDoesNotMatchLineBreaks() {
+		assertEquals("a[^\n\r]*b", RegexMatch.toPOSIX("a.*b"));
+	}
+
+	public void testUnportableRegexes() {
+		assertNull(RegexMatch.toPOSIX("\\d+"));
+		assertNull(RegexMatch.toPOSIX("a*?"));
+		assertNull(RegexMatch.toPOSIX("(?:ab)"));
+		assertNull(RegexMatch.toPOSIX("[a-z-[aeiou]]"));
+		assertNull(RegexMatch.toPOSIX("[]a]"));
+		assertNull(RegexMatch.toPOSIX("[[:alpha:]]"));
+		assertNull(RegexMatch.toPOSIX("[ab"));
+	}
+
+	public void testSupport() {
+		assertFalse(RegexMatch.isSupportedBy(Vendor.SQL92, false));
+		assertTrue(RegexMatch.isSupportedBy(Vendor.PostgreSQL, true));
+		assertTrue(RegexMatch.isSupportedBy(Vendor.MySQL, false));
+		assertFalse(RegexMatch.isSupportedBy(Vendor.MySQL, true));
+		assertTrue(RegexMatch.isSupportedBy(Vendor.Oracle, true));
+	}
+
+	public void testSQL() {
+		assertEquals("\"people\".\"name\" ~ '^a'", new RegexMatch(name, "^a", false).toSQL(
+				new DummyDB(Vendor.PostgreSQL), AliasMap.NO_ALIASES));
+		assertEquals("\"people\".\"name\" ~* '^a'", new RegexMatch(name, "^a", true).toSQL(
+				new DummyDB(Vendor.PostgreSQL), AliasMap.NO_ALIASES));
+		assertEquals("BINARY `people`.`name` REGEXP BINARY '^a'", new RegexMatch(name, "^a", false).toSQL(
+				new DummyDB(Vendor.MySQL), AliasMap.NO_ALIASES));
+		assertEquals("REGEXP_LIKE(\"people\".\"name\", '^a', 'i')", new RegexMatch(name, "^a", true).toSQL(
+				new DummyDB(Vendor.Oracle), AliasMap.NO_ALIASES));
+	}
+}
@@ -8,6 +8,8 @@ public class AllTests {
 	public static Test suite() {
 		TestSuite suite = new TestSuite("Test for de.fuberlin.wiwiss.d2rq.find");
 		//$JUnit-BEGIN$
+		suite.addTestSuite(CountCacheTest.class);
+		suite.addTestSuite(FindQueryTest.class);
 		suite.addTestSuite(URIMakerRuleTest.class);
 		//$JUnit-END$
 		return suite;
@@ -0,0 +1,47 @@
+package de.fuberlin.wiwiss.d2rq.find;
+
+import junit.framework.TestCase;
+
+public class CountCacheTest extends TestCase {
+
+	public void testEmptyCache() {
+		CountCache cache = new CountCache(60);
+		assertTrue(cache.isEnabled());
+		assertNull(cache.get("a"));
+		assertEquals(0, cache.size());
+	}
+
+	public void testPutAndGet() {
+		CountCache cache = new CountCache(60);
+		cache.put("a", 42);
+		assertEquals(Long.valueOf(42), cache.get("a"));
+		assertNull(cache.get("b"));
+	}
+
+	public void testDisabledCacheKeepsNothing() {
+		CountCache cache = new CountCache(0);
+		assertFalse(cache.isEnabled());
+		cache.put("a", 42);
+		assertNull(cache.get("a"));
+		assertEquals(0, cache.size());
+	}
+
+	public void testLeastRecentlyUsedCountIsEvicted() {
+		CountCache cache = new CountCache(60);
+		for (int i = 0; i < CountCache.MAX_ENTRIES; i++) {
+			cache.put("key" + i, i);
+		}
+		cache.get("key0");
+		cache.put("new", 1);
+		assertEquals(CountCache.MAX_ENTRIES, cache.size());
+		assertEquals(Long.valueOf(0), cache.get("key0"));
+		assertNull(cache.get("key1"));
+	}
+
+	public void testClear() {
+		CountCache cache = new CountCache(60);
+		cache.put("a", 42);
+		cache.clear();
+		assertNull(cache.get("a"));
+	}
+}
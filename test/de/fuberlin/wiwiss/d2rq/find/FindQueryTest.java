@@ -0,0 +1,115 @@
+package de.fuberlin.wiwiss.d2rq.find;
+
+import junit.framework.TestCase;
+
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.query.QueryExecution;
+import com.hp.hpl.jena.query.QueryExecutionFactory;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.vocabulary.RDF;
+
+import de.fuberlin.wiwiss.d2rq.helpers.HSQLDatabase;
+import de.fuberlin.wiwiss.d2rq.helpers.MappingHelper;
+import de.fuberlin.wiwiss.d2rq.jena.GraphD2RQ;
+import de.fuberlin.wiwiss.d2rq.map.Mapping;
+
+public class FindQueryTest extends TestCase {
+	private final static String EX = "http://example.org/";
+
+	private HSQLDatabase db;
+	private Mapping mapping;
+	private GraphD2RQ graph;
+
+	public void setUp() {
+		db = new HSQLDatabase("contains");
+		db.executeSQL("CREATE TABLE TEST (ID INT PRIMARY KEY, VALUE VARCHAR(50) NULL)");
+		db.executeSQL("INSERT INTO TEST VALUES (1, NULL)");
+		db.executeSQL("INSERT INTO TEST VALUES (2, NULL)");
+		db.executeSQL("INSERT INTO TEST VALUES (3, 'foo')");
+		mapping = MappingHelper.readFromTestFile("find/contains.ttl");
+		mapping.configuration().setServeVocabulary(false);
+		graph = new GraphD2RQ(mapping);
+	}
+
+	public void tearDown() {
+		graph.close();
+		db.close(true);
+	}
+
+	private Node test(int id) {
+		return Node.createURI(EX + "test/" + id);
+	}
+
+	public void testContainsConcreteTriple() {
+		assertTrue(graph.contains(test(3), Node.createURI(EX + "value"), Node.createLiteral("foo")));
+		assertTrue(graph.contains(test(1), RDF.Nodes.type, Node.createURI(EX + "Test")));
+	}
+
+	public void testDoesNotContainConcreteTriple() {
+		assertFalse(graph.contains(test(1), Node.createURI(EX + "value"), Node.createLiteral("foo")));
+		assertFalse(graph.contains(test(4), RDF.Nodes.type, Node.createURI(EX + "Test")));
+	}
+
+	public void testContainsSkipsRowsWithoutTriple() {
+		assertTrue(graph.contains(Node.ANY, Node.createURI(EX + "value"), Node.ANY));
+		db.executeSQL("DELETE FROM TEST WHERE ID = 3");
+		assertFalse(graph.contains(Node.ANY, Node.createURI(EX + "value"), Node.ANY));
+	}
+
+	public void testAsk() {
+		Model model = ModelFactory.createModelForGraph(graph);
+		assertTrue(ask(model, "ASK { ?x <" + EX + "value> 'foo' }"));
+		assertFalse(ask(model, "ASK { ?x <" + EX + "value> 'bar' }"));
+		assertTrue(ask(model, "ASK { ?x a <" + EX + "Test> }"));
+	}
+
+	public void testSize() {
+		assertEquals(4, graph.size());
+		assertFalse(graph.isEmpty());
+	}
+
+	public void testCountSkipsRowsWithoutTriple() {
+		assertEquals(1, graph.count(Triple.create(Node.ANY, Node.createURI(EX + "value"), Node.ANY)));
+		assertEquals(3, graph.count(Triple.create(Node.ANY, RDF.Nodes.type, Node.ANY)));
+		assertEquals(1, graph.count(Triple.create(test(2), Node.ANY, Node.ANY)));
+		assertEquals(0, graph.count(Triple.create(test(4), Node.ANY, Node.ANY)));
+	}
+
+	public void testEstimateWithoutStatisticsCounts() {
+		assertEquals(3, graph.estimateCount(Triple.create(Node.ANY, RDF.Nodes.type, Node.ANY)));
+		assertEquals(3, graph.getStatisticsHandler().getStatistic(Node.ANY, RDF.Nodes.type, Node.ANY));
+	}
+
+	public void testEstimateIsUnknownIfTriplesCantBeCountedInSQL() {
+		Node date = Node.createURI(EX + "date");
+		assertEquals(-1, graph.estimateCount(Triple.create(Node.ANY, date, Node.ANY)));
+		assertEquals(-1, graph.getStatisticsHandler().getStatistic(Node.ANY, date, Node.ANY));
+		assertEquals(0, graph.count(Triple.create(Node.ANY, date, Node.ANY)));
+	}
+
+	public void testCountsAreCached() {
+		assertEquals(4, graph.size());
+		db.executeSQL("INSERT INTO TEST VALUES (4, 'bar')");
+		assertEquals(4, graph.size());
+		graph.countCache().clear();
+		assertEquals(6, graph.size());
+	}
+
+	public void testCountCacheCanBeDisabled() {
+		mapping.configuration().setCountCacheTimeout(0);
+		assertEquals(4, graph.size());
+		db.executeSQL("INSERT INTO TEST VALUES (4, 'bar')");
+		assertEquals(6, graph.size());
+	}
+
+	private boolean ask(Model model, String query) {
+		QueryExecution qe = QueryExecutionFactory.create(query, model);
+		try {
+			return qe.execAsk();
+		} finally {
+			qe.close();
+		}
+	}
+}
@@ -56,4 +56,22 @@ public class NodeMakerTest extends TestCase {
 		NodeMaker u = new TypedNodeMaker(TypedNodeMaker.URI, new Column(table_col1), true);
 		assertEquals("URI(Column(table.col1))", u.toString());
 	}
+	
+	public void testMakesNodeForEveryValue() {
+		Column c = new Column(table_col1);
+		assertTrue(new TypedNodeMaker(TypedNodeMaker.URI, c, true).makesNodeForEveryValue());
+		assertTrue(new TypedNodeMaker(TypedNodeMaker.BLANK, c, true).makesNodeForEveryValue());
+		assertTrue(new TypedNodeMaker(TypedNodeMaker.PLAIN_LITERAL, c, true).makesNodeForEveryValue());
+		assertTrue(new TypedNodeMaker(TypedNodeMaker.languageLiteral("en"), c, true).makesNodeForEveryValue());
+		assertTrue(new TypedNodeMaker(TypedNodeMaker.typedLiteral(XSDDatatype.XSDint), c, true).makesNodeForEveryValue());
+	}
+	
+	public void testValidatingNodeTypesDontMakeNodeForEveryValue() {
+		Column c = new Column(table_col1);
+		assertFalse(new TypedNodeMaker(TypedNodeMaker.XSD_DATE, c, true).makesNodeForEveryValue());
+		assertFalse(new TypedNodeMaker(TypedNodeMaker.XSD_TIME, c, true).makesNodeForEveryValue());
+		assertFalse(new TypedNodeMaker(TypedNodeMaker.XSD_DATETIME, c, true).makesNodeForEveryValue());
+		assertFalse(new TypedNodeMaker(TypedNodeMaker.XSD_BOOLEAN, c, true).makesNodeForEveryValue());
+		assertNull(TypedNodeMaker.XSD_DATE.makeNode("not a date"));
+	}
 }
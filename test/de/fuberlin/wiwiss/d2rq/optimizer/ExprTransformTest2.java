@@ -1,25 +1,40 @@
 package de.fuberlin.wiwiss.d2rq.optimizer;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import junit.framework.TestCase;
 
 import com.hp.hpl.jena.datatypes.xsd.XSDDatatype;
 import com.hp.hpl.jena.graph.Node;
 import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.sparql.algebra.Op;
+import com.hp.hpl.jena.sparql.algebra.op.OpBGP;
+import com.hp.hpl.jena.sparql.core.BasicPattern;
 import com.hp.hpl.jena.sparql.core.Var;
 import com.hp.hpl.jena.sparql.expr.E_Datatype;
 import com.hp.hpl.jena.sparql.expr.E_Equals;
+import com.hp.hpl.jena.sparql.expr.E_Exists;
 import com.hp.hpl.jena.sparql.expr.E_IsBlank;
 import com.hp.hpl.jena.sparql.expr.E_IsIRI;
 import com.hp.hpl.jena.sparql.expr.E_IsLiteral;
 import com.hp.hpl.jena.sparql.expr.E_Lang;
 import com.hp.hpl.jena.sparql.expr.E_LangMatches;
 import com.hp.hpl.jena.sparql.expr.E_LogicalOr;
+import com.hp.hpl.jena.sparql.expr.E_NotExists;
+import com.hp.hpl.jena.sparql.expr.E_NotOneOf;
+import com.hp.hpl.jena.sparql.expr.E_OneOf;
+import com.hp.hpl.jena.sparql.expr.E_Regex;
 import com.hp.hpl.jena.sparql.expr.E_SameTerm;
+import com.hp.hpl.jena.sparql.expr.E_StrContains;
+import com.hp.hpl.jena.sparql.expr.E_StrStartsWith;
 import com.hp.hpl.jena.sparql.expr.Expr;
+import com.hp.hpl.jena.sparql.expr.ExprList;
 import com.hp.hpl.jena.sparql.expr.ExprVar;
 import com.hp.hpl.jena.sparql.expr.NodeValue;
 import com.hp.hpl.jena.sparql.expr.nodevalue.NodeValueNode;
@@ -28,11 +43,22 @@ import com.hp.hpl.jena.vocabulary.RDFS;
 import de.fuberlin.wiwiss.d2rq.algebra.Attribute;
 import de.fuberlin.wiwiss.d2rq.algebra.NodeRelation;
 import de.fuberlin.wiwiss.d2rq.algebra.ProjectionSpec;
+import de.fuberlin.wiwiss.d2rq.algebra.Relation;
+import de.fuberlin.wiwiss.d2rq.algebra.RelationImpl;
+import de.fuberlin.wiwiss.d2rq.algebra.TripleRelation;
 import de.fuberlin.wiwiss.d2rq.engine.GraphPatternTranslator;
 import de.fuberlin.wiwiss.d2rq.engine.MapFixture;
+import de.fuberlin.wiwiss.d2rq.engine.OpUnionTableSQL;
+import de.fuberlin.wiwiss.d2rq.expr.AttributeExpr;
+import de.fuberlin.wiwiss.d2rq.expr.Disjunction;
 import de.fuberlin.wiwiss.d2rq.expr.Expression;
+import de.fuberlin.wiwiss.d2rq.expr.In;
+import de.fuberlin.wiwiss.d2rq.expr.Like;
+import de.fuberlin.wiwiss.d2rq.expr.Negation;
+import de.fuberlin.wiwiss.d2rq.nodes.NodeMaker;
 import de.fuberlin.wiwiss.d2rq.nodes.TypedNodeMaker;
 import de.fuberlin.wiwiss.d2rq.optimizer.expr.TransformExprToSQLApplyer;
+import de.fuberlin.wiwiss.d2rq.sql.DummyDB;
 
 
 public class ExprTransformTest2 extends TestCase {
@@ -242,9 +268,119 @@ public class ExprTransformTest2 extends TestCase {
 		assertEquals("sameTerm(?o, \"1\"^^xsd:decimal)", Expression.FALSE, result);
 	}
 	
+	public void testStringFunctions()
+	{
+		List<Triple> pattern = new ArrayList<Triple>();
+		pattern.add(Triple.create(Node.createVariable("s"), RDFS.label.asNode(), Node.createVariable("o")));
+		// The regular expression support depends on the database vendor
+		NodeRelation label = withDummyDB(search("table1", "label", translate(pattern, "optimizer/filtertests.n3")));
+		Expression column = new AttributeExpr(new Attribute(null, "table1", "label"));
+		
+		Expr startsWith = new E_StrStartsWith(new ExprVar("o"), NodeValue.makeString("50%"));
+		Expr regex = new E_Regex(new ExprVar("o"), "^abc", "");
+		Expr unportableRegex = new E_Regex(new ExprVar("o"), "a.c", "");
+		Expr caseInsensitiveRegex = new E_Regex(new ExprVar("o"), "abc", "i");
+		
+		assertEquals(new Like(column, "50\\%%"), TransformExprToSQLApplyer.convert(startsWith, label));
+		assertEquals(new Like(column, "abc%"), TransformExprToSQLApplyer.convert(regex, label));
+		assertNull("SQL-92 has no regular expressions", TransformExprToSQLApplyer.convert(unportableRegex, label));
+		assertNull("SQL-92 has no regular expressions", TransformExprToSQLApplyer.convert(caseInsensitiveRegex, label));
+	}
+	
+	public void testStringFunctionsOnTypedLiterals()
+	{
+		List<Triple> pattern = new ArrayList<Triple>();
+		pattern.add(Triple.create(Node.createVariable("s"), Node.createURI("http://example.org/value"), Node.createVariable("o")));
+		NodeRelation intvalue = search("table2", "intvalue", translate(pattern, "optimizer/filtertests.n3"));
+		
+		Expr contains = new E_StrContains(new ExprVar("o"), NodeValue.makeString("1"));
+		
+		assertNull("CONTAINS(xsd:int) is an error", TransformExprToSQLApplyer.convert(contains, intvalue));
+	}
+	
+	public void testOneOf()
+	{
+		List<Triple> pattern = new ArrayList<Triple>();
+		pattern.add(Triple.create(Node.createVariable("s"), Node.createURI("http://example.org/value"), Node.createVariable("o")));
+		NodeRelation intvalue = search("table2", "intvalue", translate(pattern, "optimizer/filtertests.n3"));
+		
+		ExprList values = new ExprList();
+		values.add(NodeValue.makeNode("1", XSDDatatype.XSDint));
+		values.add(NodeValue.makeNode("2", XSDDatatype.XSDint));
+		values.add(NodeValue.makeString("3"));
+		Expression expected = In.create(new Attribute(null, "table2", "intvalue"), Arrays.asList("1", "2"));
+		
+		assertEquals("?o IN (1, 2, \"3\")", expected, 
+				TransformExprToSQLApplyer.convert(new E_OneOf(new ExprVar("o"), values), intvalue));
+		assertEquals("?o NOT IN (1, 2, \"3\")", new Negation(expected), 
+				TransformExprToSQLApplyer.convert(new E_NotOneOf(new ExprVar("o"), values), intvalue));
+	}
+	
+	public void testOneOfURIs()
+	{
+		List<Triple> pattern = new ArrayList<Triple>();
+		pattern.add(Triple.create(Node.createVariable("s"), RDFS.label.asNode(), Node.createVariable("o")));
+		NodeRelation label = search("table1", "label", translate(pattern, "optimizer/filtertests.n3"));
+		
+		ExprList values = new ExprList();
+		values.add(NodeValue.makeNode(Node.createURI("http://example.org/res1")));
+		values.add(NodeValue.makeNode(Node.createURI("http://example.org/res2")));
+		values.add(NodeValue.makeNode(Node.createURI("http://example.org/other")));
+		Expression expected = In.create(new Attribute(null, "table1", "id"), Arrays.asList("1", "2"));
+		
+		assertEquals(expected, TransformExprToSQLApplyer.convert(new E_OneOf(new ExprVar("s"), values), label));
+		assertEquals(Expression.TRUE, TransformExprToSQLApplyer.convert(
+				new E_NotOneOf(new ExprVar("s"), new ExprList(NodeValue.makeNode(Node.createURI("http://example.org/other")))), label));
+	}
+	
+	public void testExists()
+	{
+		// All patterns must use the same database
+		Collection<TripleRelation> bridges = MapFixture.loadPropertyBridges("optimizer/filtertests.n3");
+		List<Triple> pattern = new ArrayList<Triple>();
+		pattern.add(Triple.create(Node.createVariable("s"), RDFS.label.asNode(), Node.createVariable("o")));
+		NodeRelation label = search("table1", "label", translate(pattern, bridges));
+		
+		List<Triple> labels = new ArrayList<Triple>();
+		labels.add(Triple.create(Node.createVariable("s"), RDFS.label.asNode(), Node.createVariable("other")));
+		List<Triple> values = new ArrayList<Triple>();
+		values.add(Triple.create(Node.createVariable("s"), Node.createURI("http://example.org/value"), Node.createVariable("v")));
+		Op labelsOp = new OpBGP(BasicPattern.wrap(labels));
+		Op valuesOp = new OpBGP(BasicPattern.wrap(values));
+		Map<Op,Op> patterns = new HashMap<Op,Op>();
+		patterns.put(labelsOp, OpUnionTableSQL.create(Arrays.asList(translate(labels, bridges))));
+		patterns.put(valuesOp, OpUnionTableSQL.create(Arrays.asList(translate(values, bridges))));
+		
+		Expression exists = TransformExprToSQLApplyer.convert(new E_Exists(labelsOp), label, patterns);
+		assertTrue(exists instanceof Disjunction);
+		assertEquals(Collections.singleton(new Attribute(null, "table1", "id")), exists.attributes());
+		assertEquals(new Negation(exists).toString(), 
+				TransformExprToSQLApplyer.convert(new E_NotExists(labelsOp), label, patterns).toString());
+		
+		// ?s is a blank node in the pattern and a URI in the relation
+		assertEquals(Expression.FALSE, TransformExprToSQLApplyer.convert(new E_Exists(valuesOp), label, patterns));
+		assertEquals(Expression.TRUE, TransformExprToSQLApplyer.convert(new E_NotExists(valuesOp), label, patterns));
+		
+		assertNull("pattern not translated", TransformExprToSQLApplyer.convert(new E_Exists(labelsOp), label));
+	}
+	
+	private NodeRelation withDummyDB(NodeRelation table) {
+		Relation r = table.baseRelation();
+		Map<Var,NodeMaker> nodeMakers = new HashMap<Var,NodeMaker>();
+		for (Var var: table.variables()) {
+			nodeMakers.put(var, table.nodeMaker(var));
+		}
+		return new NodeRelation(new RelationImpl(new DummyDB(), r.aliases(), r.condition(), 
+				r.softCondition(), r.joinConditions(), r.projections(), r.isUnique(), 
+				r.orderSpecs(), r.limit(), r.limitInverse()), nodeMakers);
+	}
+	
 	private NodeRelation[] translate(List<Triple> pattern, String mappingFile) {
-		Collection<NodeRelation> rels = new GraphPatternTranslator(pattern,
-				MapFixture.loadPropertyBridges(mappingFile), true).translate();
+		return translate(pattern, MapFixture.loadPropertyBridges(mappingFile));
+	}
+	
+	private NodeRelation[] translate(List<Triple> pattern, Collection<TripleRelation> bridges) {
+		Collection<NodeRelation> rels = new GraphPatternTranslator(pattern, bridges, true).translate();
 		return (NodeRelation[]) rels.toArray(new NodeRelation[rels.size()]);
 	}
 
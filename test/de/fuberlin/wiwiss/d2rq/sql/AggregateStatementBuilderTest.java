@@ -0,0 +1,65 @@
+package de.fuberlin.wiwiss.d2rq.sql;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import junit.framework.TestCase;
+import de.fuberlin.wiwiss.d2rq.algebra.AliasMap;
+import de.fuberlin.wiwiss.d2rq.algebra.Attribute;
+import de.fuberlin.wiwiss.d2rq.algebra.Join;
+import de.fuberlin.wiwiss.d2rq.algebra.OrderSpec;
+import de.fuberlin.wiwiss.d2rq.algebra.ProjectionSpec;
+import de.fuberlin.wiwiss.d2rq.algebra.Relation;
+import de.fuberlin.wiwiss.d2rq.algebra.RelationImpl;
+import de.fuberlin.wiwiss.d2rq.expr.Aggregate;
+import de.fuberlin.wiwiss.d2rq.expr.AttributeExpr;
+import de.fuberlin.wiwiss.d2rq.expr.Expression;
+
+public class AggregateStatementBuilderTest extends TestCase {
+	private final static Attribute foo = new Attribute(null, "table", "foo");
+	private final static Attribute bar = new Attribute(null, "table", "bar");
+
+	private Relation relation;
+
+	public void setUp() {
+		Set<ProjectionSpec> projections = new LinkedHashSet<ProjectionSpec>(
+				Arrays.<ProjectionSpec>asList(foo, bar));
+		relation = new RelationImpl(new DummyDB(), AliasMap.NO_ALIASES,
+				Expression.TRUE, Expression.TRUE, Collections.<Join>emptySet(),
+				projections, true, OrderSpec.NONE, Relation.NO_LIMIT, Relation.NO_LIMIT);
+	}
+
+	public void testCountAll() {
+		AggregateStatementBuilder builder = new AggregateStatementBuilder(relation,
+				Collections.<Attribute>emptyList(),
+				Collections.singletonList(Aggregate.COUNT_ALL));
+		String sql = builder.getSQLStatement();
+		assertTrue(sql.startsWith("SELECT COUNT(*) AS "));
+		assertTrue(sql.endsWith(" FROM (SELECT \"table\".\"foo\" AS \"c1\", " +
+				"\"table\".\"bar\" AS \"c2\" FROM \"table\") \"solutions\""));
+		assertEquals(Collections.singletonList(
+				AggregateStatementBuilder.columnSpec(Aggregate.COUNT_ALL)),
+				builder.getColumnSpecs());
+	}
+
+	public void testGroupByWithAggregate() {
+		Aggregate sum = Aggregate.sum(new AttributeExpr(bar));
+		AggregateStatementBuilder builder = new AggregateStatementBuilder(relation,
+				Collections.singletonList(foo), Collections.singletonList(sum));
+		String sql = builder.getSQLStatement();
+		assertTrue(sql.startsWith("SELECT \"solutions\".\"c1\", SUM(\"solutions\".\"c2\") AS "));
+		assertTrue(sql.endsWith(" FROM (SELECT \"table\".\"foo\" AS \"c1\", " +
+				"\"table\".\"bar\" AS \"c2\" FROM \"table\") \"solutions\" " +
+				"GROUP BY \"solutions\".\"c1\""));
+		assertEquals(Arrays.asList(foo, AggregateStatementBuilder.columnSpec(sum)),
+				builder.getColumnSpecs());
+	}
+
+	public void testCountDistinct() {
+		Aggregate count = Aggregate.count(new AttributeExpr(foo), true);
+		assertEquals("COUNT(DISTINCT \"table\".\"foo\")",
+				count.toSQL(new DummyDB(), AliasMap.NO_ALIASES));
+	}
+}
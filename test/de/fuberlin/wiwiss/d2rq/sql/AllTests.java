@@ -12,6 +12,10 @@ public class AllTests {
 		suite.addTestSuite(ResultRowTest.class);
 		suite.addTestSuite(SQLSyntaxTest.class);
 		suite.addTestSuite(HSQLDBDatatypeTest.class);
+		suite.addTestSuite(ConnectionPoolTest.class);
+		suite.addTestSuite(ReadAheadTest.class);
+		suite.addTestSuite(AggregateStatementBuilderTest.class);
+		suite.addTestSuite(UnionStatementBuilderTest.class);
 // TODO: MySQL tests are just too bloody slow
 //		suite.addTestSuite(MySQLDatatypeTest.class);
 		//$JUnit-END$
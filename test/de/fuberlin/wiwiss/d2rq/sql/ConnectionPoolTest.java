@@ -0,0 +1,116 @@
+package de.fuberlin.wiwiss.d2rq.sql;
+
+import java.sql.Connection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import junit.framework.TestCase;
+import de.fuberlin.wiwiss.d2rq.D2RQException;
+import de.fuberlin.wiwiss.d2rq.algebra.ProjectionSpec;
+import de.fuberlin.wiwiss.d2rq.helpers.HSQLDatabase;
+import de.fuberlin.wiwiss.d2rq.map.Database;
+import de.fuberlin.wiwiss.d2rq.sql.types.DataType.GenericType;
+
+public class ConnectionPoolTest extends TestCase {
+	private HSQLDatabase hsql;
+	private ConnectedDB db;
+
+	public void setUp() {
+		hsql = new HSQLDatabase("pooltest");
+		hsql.executeSQL("CREATE TABLE T (ID INT NOT NULL PRIMARY KEY, NAME VARCHAR(50))");
+		hsql.executeSQL("INSERT INTO T VALUES (1, 'foo')");
+		hsql.executeSQL("INSERT INTO T VALUES (2, 'bar')");
+	}
+
+	public void tearDown() {
+		if (db != null) db.close();
+		hsql.close(true);
+	}
+
+	private ConnectedDB connect(Properties properties) {
+		return new ConnectedDB(hsql.getJdbcURL(), hsql.getUser(), hsql.getPassword(),
+				Collections.<String,GenericType>emptyMap(),
+				Database.NO_LIMIT, Database.NO_FETCH_SIZE, properties);
+	}
+
+	private Properties poolProperties() {
+		Properties result = new Properties();
+		result.setProperty(ConnectedDB.CONNECTION_POOL_PROPERTY, "true");
+		result.setProperty(ConnectedDB.POOL_MAX_ACTIVE_PROPERTY, "2");
+		result.setProperty(ConnectedDB.POOL_VALIDATION_QUERY_PROPERTY,
+				"SELECT 1 FROM INFORMATION_SCHEMA.SYSTEM_USERS");
+		return result;
+	}
+
+	public void testSharedConnectionWithoutPool() {
+		db = connect(null);
+		assertFalse(db.usesConnectionPool());
+		assertSame(db.connection(), db.borrowConnection());
+	}
+
+	public void testBorrowedConnectionsAreDistinct() {
+		db = connect(poolProperties());
+		assertTrue(db.usesConnectionPool());
+		Connection c1 = db.borrowConnection();
+		Connection c2 = db.borrowConnection();
+		assertNotSame(c1, c2);
+		assertNotSame(db.connection(), c1);
+		db.releaseConnection(c1);
+		db.releaseConnection(c2);
+	}
+
+	public void testConcurrentIteratorsWithPool() {
+		db = connect(poolProperties());
+		List<ProjectionSpec> columns = Collections.<ProjectionSpec>singletonList(SQL.parseAttribute("T.NAME"));
+		SQLIterator it1 = new SQLIterator("SELECT T.NAME FROM T ORDER BY T.ID", columns, db);
+		SQLIterator it2 = new SQLIterator("SELECT T.NAME FROM T ORDER BY T.ID DESC", columns, db);
+		assertEquals("foo", it1.next().get(columns.get(0)));
+		assertEquals("bar", it2.next().get(columns.get(0)));
+		assertEquals("bar", it1.next().get(columns.get(0)));
+		assertEquals("foo", it2.next().get(columns.get(0)));
+		assertFalse(it1.hasNext());
+		assertFalse(it2.hasNext());
+	}
+
+	public void testExhaustedIteratorsReturnConnections() {
+		db = connect(poolProperties());
+		List<ProjectionSpec> columns = Collections.<ProjectionSpec>singletonList(SQL.parseAttribute("T.NAME"));
+		// More iterators than connections in the pool; this would block
+		// if connections were not returned on exhaustion
+		for (int i = 0; i < 5; i++) {
+			SQLIterator it = new SQLIterator("SELECT T.NAME FROM T", columns, db);
+			int count = 0;
+			while (it.hasNext()) {
+				it.next();
+				count++;
+			}
+			assertEquals(2, count);
+		}
+	}
+
+	public void testPoolMaxActive() {
+		db = connect(null);
+		assertEquals(1, db.poolMaxActive());
+		db.close();
+		db = connect(poolProperties());
+		assertEquals(2, db.poolMaxActive());
+	}
+
+	public void testExhaustedPoolTimesOut() {
+		Properties properties = poolProperties();
+		properties.setProperty(ConnectedDB.POOL_MAX_WAIT_PROPERTY, "1");
+		db = connect(properties);
+		Connection c1 = db.borrowConnection();
+		Connection c2 = db.borrowConnection();
+		try {
+			db.borrowConnection();
+			fail("Expected a timeout");
+		} catch (D2RQException ex) {
+			assertTrue(ex.getMessage().startsWith("Timed out waiting for a pooled connection"));
+		} finally {
+			db.releaseConnection(c1);
+			db.releaseConnection(c2);
+		}
+	}
+}
@@ -1,9 +1,14 @@
 package de.fuberlin.wiwiss.d2rq.sql;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import de.fuberlin.wiwiss.d2rq.algebra.Attribute;
+import de.fuberlin.wiwiss.d2rq.algebra.Join;
+import de.fuberlin.wiwiss.d2rq.algebra.RelationName;
+import de.fuberlin.wiwiss.d2rq.dbschema.TableStatistics;
 import de.fuberlin.wiwiss.d2rq.map.Database;
 import de.fuberlin.wiwiss.d2rq.sql.types.DataType.GenericType;
 import de.fuberlin.wiwiss.d2rq.sql.vendor.Vendor;
@@ -12,6 +17,9 @@ public class DummyDB extends ConnectedDB {
 	private final Vendor vendor;
 	private int limit = Database.NO_LIMIT;
 	private Map<Attribute,Boolean> nullability = new HashMap<Attribute,Boolean>();
+	private Map<RelationName,List<Attribute>> primaryKeys = new HashMap<RelationName,List<Attribute>>();
+	private Map<RelationName,List<Join>> foreignKeys = new HashMap<RelationName,List<Join>>();
+	private Map<RelationName,TableStatistics> statistics = new HashMap<RelationName,TableStatistics>();
 	
 	public DummyDB() {
 		this(Vendor.SQL92);
@@ -35,6 +43,21 @@ public class DummyDB extends ConnectedDB {
 		nullability.put(column, flag);
 	}
 	
+	public void setPrimaryKey(RelationName table, List<Attribute> columns) {
+		primaryKeys.put(table, columns);
+	}
+	
+	public void addForeignKey(Join foreignKey) {
+		if (!foreignKeys.containsKey(foreignKey.table1())) {
+			foreignKeys.put(foreignKey.table1(), new ArrayList<Join>());
+		}
+		foreignKeys.get(foreignKey.table1()).add(foreignKey);
+	}
+	
+	public void setTableStatistics(RelationName table, TableStatistics tableStatistics) {
+		statistics.put(table, tableStatistics);
+	}
+	
 	@Override
 	public Vendor vendor() {
 		return vendor;
@@ -51,6 +74,22 @@ public class DummyDB extends ConnectedDB {
 		return nullability.get(column);
 	}
 	
+	@Override
+	public List<Attribute> getPrimaryKeyColumns(RelationName tableName) {
+		return primaryKeys.get(tableName);
+	}
+	
+	@Override
+	public List<Join> getForeignKeys(RelationName tableName) {
+		return foreignKeys.get(tableName);
+	}
+	
+	@Override
+	public TableStatistics getTableStatistics(RelationName tableName) {
+		if (!statistics.containsKey(tableName)) return TableStatistics.NONE;
+		return statistics.get(tableName);
+	}
+	
 	public boolean equals(Object other) {
 		return other instanceof DummyDB;
 	}
@@ -0,0 +1,119 @@
+package de.fuberlin.wiwiss.d2rq.sql;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import junit.framework.TestCase;
+
+import com.hp.hpl.jena.query.QueryCancelledException;
+
+import de.fuberlin.wiwiss.d2rq.D2RQException;
+import de.fuberlin.wiwiss.d2rq.algebra.Attribute;
+import de.fuberlin.wiwiss.d2rq.algebra.ProjectionSpec;
+import de.fuberlin.wiwiss.d2rq.helpers.HSQLDatabase;
+import de.fuberlin.wiwiss.d2rq.map.Database;
+import de.fuberlin.wiwiss.d2rq.sql.types.DataType;
+import de.fuberlin.wiwiss.d2rq.sql.types.DataType.GenericType;
+import de.fuberlin.wiwiss.d2rq.sql.vendor.HSQLDB;
+import de.fuberlin.wiwiss.d2rq.sql.vendor.Vendor;
+
+public class ReadAheadTest extends TestCase {
+	private final static Attribute id = SQL.parseAttribute("T.ID");
+	private final static List<ProjectionSpec> columns = Collections.<ProjectionSpec>singletonList(id);
+	private final static String query = "SELECT T.ID FROM T ORDER BY T.ID";
+	private HSQLDatabase hsql;
+	private ConnectedDB db;
+
+	public void setUp() {
+		hsql = new HSQLDatabase("readahead");
+		hsql.executeSQL("CREATE TABLE T (ID INT NOT NULL PRIMARY KEY)");
+		for (int i = 1; i <= 100; i++) {
+			hsql.executeSQL("INSERT INTO T VALUES (" + i + ")");
+		}
+		Properties properties = new Properties();
+		properties.setProperty(ConnectedDB.READ_AHEAD_PROPERTY, "5");
+		db = new ConnectedDB(hsql.getJdbcURL(), hsql.getUser(), hsql.getPassword(),
+				Collections.<String,GenericType>emptyMap(),
+				Database.NO_LIMIT, Database.NO_FETCH_SIZE, properties);
+	}
+
+	public void tearDown() {
+		db.close();
+		hsql.close(true);
+	}
+
+	public void testReadAheadIsConfigured() {
+		assertEquals(5, db.readAhead());
+	}
+
+	public void testAllRowsInOrder() {
+		SQLIterator it = new SQLIterator(query, columns, db);
+		for (int i = 1; i <= 100; i++) {
+			assertTrue(it.hasNext());
+			assertEquals(Integer.toString(i), it.next().get(id));
+		}
+		assertFalse(it.hasNext());
+	}
+
+	public void testCloseBeforeExhausted() {
+		SQLIterator it = new SQLIterator(query, columns, db);
+		assertEquals("1", it.next().get(id));
+		it.close();
+		assertFalse(it.hasNext());
+	}
+
+	public void testCancel() {
+		SQLIterator it = new SQLIterator(query, columns, db);
+		assertEquals("1", it.next().get(id));
+		it.cancel();
+		try {
+			it.hasNext();
+			fail("Expected QueryCancelledException");
+		} catch (QueryCancelledException ex) {
+			// expected
+		}
+		it.close();
+	}
+
+	public void testDecodingFailureIsRethrown() {
+		Properties properties = new Properties();
+		properties.setProperty(ConnectedDB.READ_AHEAD_PROPERTY, "5");
+		final Vendor failingVendor = new HSQLDB() {
+			@Override
+			public DataType getDataType(int jdbcType, String name, int size) {
+				return new DataType(this, name) {
+					@Override
+					public String value(ResultSet resultSet, int column) throws SQLException {
+						String value = resultSet.getString(column);
+						if ("10".equals(value)) throw new D2RQException("decoding failed");
+						return value;
+					}
+				};
+			}
+		};
+		ConnectedDB failingDB = new ConnectedDB(hsql.getJdbcURL(), hsql.getUser(), hsql.getPassword(),
+				Collections.<String,GenericType>emptyMap(),
+				Database.NO_LIMIT, Database.NO_FETCH_SIZE, properties) {
+			@Override
+			public Vendor vendor() {
+				return failingVendor;
+			}
+		};
+		SQLIterator it = new SQLIterator(query, columns, failingDB);
+		try {
+			for (int i = 1; i < 10; i++) {
+				assertEquals(Integer.toString(i), it.next().get(id));
+			}
+			it.hasNext();
+			fail("Expected D2RQException");
+		} catch (D2RQException ex) {
+			assertTrue(ex.getMessage().startsWith("decoding failed"));
+		} finally {
+			it.close();
+			failingDB.close();
+		}
+	}
+}
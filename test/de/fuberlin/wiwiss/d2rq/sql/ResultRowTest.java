@@ -1,5 +1,6 @@
 package de.fuberlin.wiwiss.d2rq.sql;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
@@ -40,4 +41,37 @@ public class ResultRowTest extends TestCase {
 		// columns sorted alphabetically
 		assertEquals("{@@foo.col1@@ => 'value1', @@foo.col2@@ => 'value2'}", new ResultRowMap(m).toString());
 	}
+
+	public void testArrayRowGetBySlot() {
+		ProjectionIndex index = new ProjectionIndex(Arrays.<ProjectionSpec>asList(col2, col1));
+		ResultRowArray r = new ResultRowArray(index, new String[]{"value2", "value1"});
+		assertEquals(0, index.slotOf(col2));
+		assertEquals(1, index.slotOf(col1));
+		assertEquals("value1", r.get(col1));
+		assertEquals("value2", r.get(0));
+		assertNull(r.get(-1));
+	}
+	
+	public void testArrayRowGetUndefinedReturnsNull() {
+		ProjectionIndex index = new ProjectionIndex(Collections.<ProjectionSpec>singletonList(col1));
+		ResultRow r = new ResultRowArray(index, new String[]{"value1"});
+		assertNull(r.get(col2));
+	}
+	
+	public void testArrayRowToString() {
+		ProjectionIndex index = new ProjectionIndex(Arrays.<ProjectionSpec>asList(col2, col1));
+		// columns sorted alphabetically
+		assertEquals("{@@foo.col1@@ => 'value1', @@foo.col2@@ => 'value2'}", 
+				new ResultRowArray(index, new String[]{"value2", "value1"}).toString());
+	}
+	
+	public void testProjectionSlotReadsFromDifferentIndexes() {
+		ProjectionSlot slot = new ProjectionSlot(col1);
+		ProjectionIndex index1 = new ProjectionIndex(Arrays.<ProjectionSpec>asList(col1, col2));
+		ProjectionIndex index2 = new ProjectionIndex(Arrays.<ProjectionSpec>asList(col2, col1));
+		assertEquals("a", slot.get(new ResultRowArray(index1, new String[]{"a", "b"})));
+		assertEquals("d", slot.get(new ResultRowArray(index2, new String[]{"c", "d"})));
+		assertEquals("e", slot.get(new ResultRowArray(index1, new String[]{"e", "f"})));
+		assertEquals("value1", slot.get(new ResultRowMap(Collections.<ProjectionSpec,String>singletonMap(col1, "value1"))));
+	}
 }
@@ -0,0 +1,98 @@
+package de.fuberlin.wiwiss.d2rq.sql;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import junit.framework.TestCase;
+import de.fuberlin.wiwiss.d2rq.algebra.AliasMap;
+import de.fuberlin.wiwiss.d2rq.algebra.Attribute;
+import de.fuberlin.wiwiss.d2rq.algebra.Join;
+import de.fuberlin.wiwiss.d2rq.algebra.OrderSpec;
+import de.fuberlin.wiwiss.d2rq.algebra.ProjectionSpec;
+import de.fuberlin.wiwiss.d2rq.algebra.Relation;
+import de.fuberlin.wiwiss.d2rq.algebra.RelationImpl;
+import de.fuberlin.wiwiss.d2rq.expr.Expression;
+import de.fuberlin.wiwiss.d2rq.helpers.HSQLDatabase;
+
+public class UnionStatementBuilderTest extends TestCase {
+	private final static Attribute foo = new Attribute(null, "table", "foo");
+	private final static Attribute bar = new Attribute(null, "table", "bar");
+	private final static Attribute baz = new Attribute(null, "other", "baz");
+
+	private DummyDB db;
+
+	public void setUp() {
+		db = new DummyDB();
+	}
+
+	private Relation relation(boolean isUnique, int limit, ProjectionSpec... projections) {
+		return relation(db, isUnique, limit, projections);
+	}
+	
+	private Relation relation(ConnectedDB db, boolean isUnique, int limit, 
+			ProjectionSpec... projections) {
+		return new RelationImpl(db, AliasMap.NO_ALIASES,
+				Expression.TRUE, Expression.TRUE, Collections.<Join>emptySet(),
+				new LinkedHashSet<ProjectionSpec>(Arrays.asList(projections)), 
+				isUnique, OrderSpec.NONE, limit, Relation.NO_LIMIT);
+	}
+
+	public void testSharedAndMissingColumns() {
+		UnionStatementBuilder builder = new UnionStatementBuilder(Arrays.asList(
+				relation(true, Relation.NO_LIMIT, foo, bar), 
+				relation(true, Relation.NO_LIMIT, bar, baz)));
+		assertEquals("SELECT 1, \"table\".\"foo\", \"table\".\"bar\", NULL FROM \"table\" " +
+				"UNION ALL " +
+				"SELECT 2, NULL, \"table\".\"bar\", \"other\".\"baz\" FROM \"other\", \"table\"",
+				builder.getSQLStatement());
+		assertEquals(Arrays.asList(UnionStatementBuilder.BRANCH, foo, bar, baz),
+				builder.getColumnSpecs());
+	}
+
+	public void testBranchKeepsDistinct() {
+		List<Relation> relations = Arrays.asList(
+				relation(false, Relation.NO_LIMIT, foo), relation(true, Relation.NO_LIMIT, baz));
+		assertEquals("SELECT DISTINCT 1, \"table\".\"foo\", NULL FROM \"table\" " +
+				"UNION ALL SELECT 2, NULL, \"other\".\"baz\" FROM \"other\"",
+				new UnionStatementBuilder(relations).getSQLStatement());
+	}
+
+	public void testCanCombine() {
+		assertTrue(UnionStatementBuilder.canCombine(relation(true, Relation.NO_LIMIT, foo)));
+		assertFalse(UnionStatementBuilder.canCombine(relation(true, 10, foo)));
+		assertFalse(UnionStatementBuilder.canCombine(Relation.TRUE));
+		db.setLimit(100);
+		assertFalse(UnionStatementBuilder.canCombine(relation(true, Relation.NO_LIMIT, foo)));
+	}
+
+	public void testRowsTellTheirBranch() {
+		HSQLDatabase hsql = new HSQLDatabase("union");
+		hsql.executeSQL("CREATE TABLE \"table\" (\"foo\" INT, \"bar\" VARCHAR(10))");
+		hsql.executeSQL("INSERT INTO \"table\" VALUES (1, 'a')");
+		hsql.executeSQL("CREATE TABLE \"other\" (\"baz\" DATE)");
+		hsql.executeSQL("INSERT INTO \"other\" VALUES (DATE '2012-01-01')");
+		ConnectedDB hsqlDB = new ConnectedDB(hsql.getJdbcURL(), hsql.getUser(), hsql.getPassword());
+		try {
+			UnionStatementBuilder builder = new UnionStatementBuilder(Arrays.asList(
+					relation(hsqlDB, true, Relation.NO_LIMIT, foo, bar), 
+					relation(hsqlDB, true, Relation.NO_LIMIT, baz)));
+			SQLIterator it = new SQLIterator(builder.getSQLStatement(), 
+					builder.getColumnSpecs(), hsqlDB);
+			ResultRow row = it.next();
+			assertEquals("1", row.get(UnionStatementBuilder.BRANCH));
+			assertEquals("1", row.get(foo));
+			assertEquals("a", row.get(bar));
+			assertNull(row.get(baz));
+			row = it.next();
+			assertEquals("2", row.get(UnionStatementBuilder.BRANCH));
+			assertNull(row.get(foo));
+			assertEquals("2012-01-01", row.get(baz));
+			assertFalse(it.hasNext());
+		} finally {
+			hsqlDB.close();
+			hsql.close(true);
+		}
+	}
+}